@@ -1,25 +1,38 @@
 package com.vladimirpandurov.invoice_manager01;
 
+import com.vladimirpandurov.invoice_manager01.configuration.NativeRuntimeHints;
+import com.vladimirpandurov.invoice_manager01.provider.PooledPasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 
-@SpringBootApplication
+import java.util.concurrent.Executor;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.AsyncConfig.PASSWORD_HASHING_EXECUTOR;
+
+// R2DBC is on the class path for the reactive variant of the user API only, see ReactiveUserApplication
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
+@ImportRuntimeHints(NativeRuntimeHints.class)
 @CrossOrigin
 public class InvoiceManager01Application {
 
-	private static final int STRENGTH = 12;
+	public static final int STRENGTH = 12;
 
 	public static void main(String[] args) {
 		SpringApplication.run(InvoiceManager01Application.class, args);
 	}
 
 	@Bean
-	public BCryptPasswordEncoder encoder(){
-		return new BCryptPasswordEncoder(STRENGTH);
+	public BCryptPasswordEncoder encoder(@Qualifier(PASSWORD_HASHING_EXECUTOR) Executor passwordHashingExecutor){
+		return new PooledPasswordEncoder(STRENGTH, passwordHashingExecutor);
 	}
 
 }
@@ -0,0 +1,30 @@
+package com.vladimirpandurov.invoice_manager01.audit;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.EventType;
+import lombok.Getter;
+
+/**
+ * Mutable ring buffer slot. Instances are allocated once and overwritten for every event.
+ */
+@Getter
+public class AuditEvent {
+    private EventType type;
+    private Long userId;
+    private String email;
+    private String ipAddress;
+    private String device;
+    private long createdAt;
+
+    void set(EventType type, Long userId, String email, String ipAddress, String device, long createdAt){
+        this.type = type;
+        this.userId = userId;
+        this.email = email;
+        this.ipAddress = ipAddress;
+        this.device = device;
+        this.createdAt = createdAt;
+    }
+
+    void copyFrom(AuditEvent other){
+        set(other.type, other.userId, other.email, other.ipAddress, other.device, other.createdAt);
+    }
+}
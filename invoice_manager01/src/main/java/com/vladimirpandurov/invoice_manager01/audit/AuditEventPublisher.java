@@ -0,0 +1,114 @@
+package com.vladimirpandurov.invoice_manager01.audit;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.EventType;
+import com.vladimirpandurov.invoice_manager01.enumeration.OverflowPolicy;
+import com.vladimirpandurov.invoice_manager01.repository.EventRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.springframework.http.HttpHeaders.USER_AGENT;
+
+/**
+ * Publishes authentication events without touching the database on the request thread. A single consumer
+ * thread drains the ring buffer and writes the events with JDBC batch inserts once the batch is full or the
+ * flush interval has passed. Between events it sleeps until a producer wakes it.
+ */
+@Component
+@Slf4j
+public class AuditEventPublisher {
+
+    private final EventRepository eventRepository;
+    private final AuditRingBuffer ringBuffer;
+    private final AuditEvent[] batch;
+    private final long flushInterval;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean running = true;
+    private Thread consumer;
+
+    public AuditEventPublisher(EventRepository eventRepository, MeterRegistry meterRegistry,
+                               @Value("${application.audit.buffer-size:8192}") int bufferSize,
+                               @Value("${application.audit.batch-size:256}") int batchSize,
+                               @Value("${application.audit.flush-interval:200}") long flushInterval,
+                               @Value("${application.audit.overflow-policy:DROP}") OverflowPolicy overflowPolicy){
+        this.eventRepository = eventRepository;
+        this.ringBuffer = new AuditRingBuffer(bufferSize, overflowPolicy);
+        this.batch = new AuditEvent[batchSize];
+        for(int i = 0; i < batchSize; i++){
+            batch[i] = new AuditEvent();
+        }
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        Gauge.builder("audit.events.lag", ringBuffer, AuditRingBuffer::getLag).register(meterRegistry);
+        FunctionCounter.builder("audit.events.dropped", ringBuffer, AuditRingBuffer::getDropped).register(meterRegistry);
+        FunctionCounter.builder("audit.events.written", written, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("audit.events.failed", failed, LongAdder::sum).register(meterRegistry);
+    }
+
+    public void publish(EventType type, Long userId, String email){
+        String ipAddress = null;
+        String device = null;
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if(attributes instanceof ServletRequestAttributes servletAttributes){
+            HttpServletRequest request = servletAttributes.getRequest();
+            ipAddress = request.getRemoteAddr();
+            device = request.getHeader(USER_AGENT);
+        }
+        ringBuffer.publish(type, userId, email, ipAddress, device);
+    }
+
+    @PostConstruct
+    public void start(){
+        consumer = new Thread(this::consume, "audit-event-writer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void consume(){
+        int size = 0;
+        long lastFlush = System.nanoTime();
+        while(running || ringBuffer.getLag() > 0){
+            int drained = ringBuffer.drainTo(batch, size);
+            size += drained;
+            if(size == batch.length || (size > 0 && System.nanoTime() - lastFlush >= flushInterval)){
+                flush(size);
+                size = 0;
+                lastFlush = System.nanoTime();
+            }else if(drained == 0 && running){
+                // An empty batch waits for the next event; a partial one only until it is due
+                ringBuffer.awaitPublished(size == 0 ? 0 : Math.max(1, flushInterval - (System.nanoTime() - lastFlush)));
+            }
+        }
+        if(size > 0) flush(size);
+    }
+
+    private void flush(int size){
+        try{
+            eventRepository.addEvents(batch, size);
+            written.add(size);
+        }catch (Exception exception){
+            failed.add(size);
+            log.error("Failed to write {} audit events: {}", size, exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.vladimirpandurov.invoice_manager01.audit;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.EventType;
+import com.vladimirpandurov.invoice_manager01.enumeration.OverflowPolicy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated multi-producer, single-consumer ring buffer. Producers claim a sequence with a CAS, fill the
+ * slot in place and publish it; the consumer drains published slots in order and only then frees them.
+ */
+public class AuditRingBuffer {
+
+    private final AuditEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private volatile Thread waitingConsumer;
+
+    public AuditRingBuffer(int capacity, OverflowPolicy overflowPolicy){
+        if(Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+        this.slots = new AuditEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for(int i = 0; i < capacity; i++){
+            slots[i] = new AuditEvent();
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public boolean publish(EventType type, Long userId, String email, String ipAddress, String device){
+        long sequence;
+        while(true){
+            sequence = claimed.get();
+            if(sequence - consumed.get() >= slots.length){
+                if(overflowPolicy == OverflowPolicy.DROP){
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(1_000);
+                continue;
+            }
+            if(claimed.compareAndSet(sequence, sequence + 1)) break;
+        }
+        int index = (int) (sequence & mask);
+        slots[index].set(type, userId, email, ipAddress, device, System.currentTimeMillis());
+        published.set(index, sequence);
+        Thread consumer = waitingConsumer;
+        if(consumer != null) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Blocks the consumer until an event is published, the timeout passes or it is unparked; a timeout of zero
+     * waits without limit. Must only be called from the consumer thread.
+     */
+    public void awaitPublished(long timeoutNanos){
+        waitingConsumer = Thread.currentThread();
+        // Checked after announcing the wait, so an event published in between still wakes the consumer
+        long next = consumed.get();
+        if(published.get((int) (next & mask)) != next){
+            if(timeoutNanos > 0){
+                LockSupport.parkNanos(this, timeoutNanos);
+            }else {
+                LockSupport.park(this);
+            }
+        }
+        waitingConsumer = null;
+    }
+
+    /**
+     * Copies up to {@code batch.length - offset} published events into {@code batch} and frees their slots.
+     * Must only be called from the consumer thread.
+     */
+    public int drainTo(AuditEvent[] batch, int offset){
+        long next = consumed.get();
+        int count = 0;
+        while(offset + count < batch.length && published.get((int) (next & mask)) == next){
+            batch[offset + count].copyFrom(slots[(int) (next & mask)]);
+            next++;
+            count++;
+        }
+        if(count > 0) consumed.set(next);
+        return count;
+    }
+
+    public long getLag(){
+        return claimed.get() - consumed.get();
+    }
+
+    public long getDropped(){
+        return dropped.sum();
+    }
+}
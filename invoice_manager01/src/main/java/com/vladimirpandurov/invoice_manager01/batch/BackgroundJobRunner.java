@@ -0,0 +1,94 @@
+package com.vladimirpandurov.invoice_manager01.batch;
+
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobStatus;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobType;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.BackgroundJobRepository;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.AsyncConfig.BACKGROUND_JOB_EXECUTOR;
+
+/**
+ * Runs long jobs outside the request that starts them. The request gets the job row as a handle that any
+ * instance can report on. Progress is kept in memory and written with a periodic heartbeat, so a job that
+ * stops reporting for {@code stale-after} is treated as abandoned and can be started again.
+ */
+@Component
+@Slf4j
+public class BackgroundJobRunner {
+
+    private final BackgroundJobRepository jobRepository;
+    private final TaskExecutor executor;
+    private final Duration staleAfter;
+    private final Map<Long, AtomicLong> running = new ConcurrentHashMap<>();
+
+    public BackgroundJobRunner(BackgroundJobRepository jobRepository, @Qualifier(BACKGROUND_JOB_EXECUTOR) TaskExecutor executor,
+                               @Value("${application.jobs.stale-after:PT2M}") Duration staleAfter){
+        this.jobRepository = jobRepository;
+        this.executor = executor;
+        this.staleAfter = staleAfter;
+    }
+
+    /**
+     * Starts {@code work} in the caller's tenant. The work adds to the progress counter it is given and returns
+     * a short summary for the job row.
+     */
+    public JobData submit(JobType type, Function<AtomicLong, String> work){
+        Long tenantId = TenantContext.getTenantId();
+        Long id = jobRepository.start(type, tenantId, LocalDateTime.now().minus(staleAfter));
+        AtomicLong processed = new AtomicLong();
+        running.put(id, processed);
+        try{
+            executor.execute(() -> run(id, type, tenantId, processed, work));
+        }catch (TaskRejectedException exception){
+            running.remove(id);
+            jobRepository.finish(id, JobStatus.FAILED, 0, "Rejected, the server is busy");
+            throw new ApiException("The server is busy. Please try again later.");
+        }
+        return getJob(id);
+    }
+
+    public JobData getJob(Long id){
+        return jobRepository.get(id, TenantContext.getTenantId());
+    }
+
+    @Scheduled(fixedDelayString = "${application.jobs.heartbeat-interval:5000}")
+    public void heartbeat(){
+        running.forEach((id, processed) -> {
+            try{
+                jobRepository.updateProgress(id, processed.get());
+            }catch (Exception exception){
+                log.error("Failed to record progress of job {}: {}", id, exception.getMessage());
+            }
+        });
+    }
+
+    private void run(Long id, JobType type, Long tenantId, AtomicLong processed, Function<AtomicLong, String> work){
+        long start = System.nanoTime();
+        try{
+            String message = TenantContext.callAs(tenantId, () -> work.apply(processed));
+            jobRepository.finish(id, JobStatus.COMPLETED, processed.get(), message);
+            log.info("Job {} {} completed in {} ms: {}", type, id, (System.nanoTime() - start) / 1_000_000, message);
+        }catch (Exception exception){
+            log.error("Job {} {} failed: {}", type, id, exception.getMessage());
+            jobRepository.finish(id, JobStatus.FAILED, processed.get(), exception instanceof ApiException ? exception.getMessage() : "An error occurred");
+        }finally {
+            running.remove(id);
+        }
+    }
+}
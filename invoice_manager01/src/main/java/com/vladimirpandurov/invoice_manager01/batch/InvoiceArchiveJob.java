@@ -0,0 +1,144 @@
+package com.vladimirpandurov.invoice_manager01.batch;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.domain.TableSize;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.repository.InvoiceRepository;
+import com.vladimirpandurov.invoice_manager01.storage.InvoiceArchive;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantFanOut;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_TRANSACTION_TEMPLATE;
+import static com.vladimirpandurov.invoice_manager01.enumeration.JobType.INVOICE_ARCHIVE;
+
+/**
+ * Moves paid invoices older than the configured age from MySQL into the {@link InvoiceArchive}. Each chunk is
+ * locked, written to a durable segment and deleted, lines included, in one transaction; a chunk that rolls back
+ * has its segment discarded. When the outcome of the commit is unknown the segment is kept: if the rows were
+ * deleted it is their only copy, and if not, readers take the hot copy of a row present in both stores. Locked
+ * rows are skipped, so instances running at once split the work.
+ * <p>
+ * The size of the Invoices table and the latency of a first-page listing are reported before and after a run.
+ */
+@Component
+@Slf4j
+public class InvoiceArchiveJob {
+
+    private static final int LATENCY_PROBES = 5;
+    private final InvoiceRepository<Invoice> invoiceRepository;
+    private final InvoiceArchive invoiceArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final TenantFanOut tenantFanOut;
+    private final BackgroundJobRunner jobRunner;
+    private final Period minAge;
+    private final int chunkSize;
+    private final Counter invoicesArchived;
+    private final Timer chunkTimer;
+    private final AtomicLong hotRows = new AtomicLong();
+    private final AtomicLong hotBytes = new AtomicLong();
+
+    public InvoiceArchiveJob(InvoiceRepository<Invoice> invoiceRepository, InvoiceArchive invoiceArchive,
+                             @Qualifier(TENANT_TRANSACTION_TEMPLATE) TransactionTemplate transactionTemplate,
+                             TenantFanOut tenantFanOut, BackgroundJobRunner jobRunner, MeterRegistry meterRegistry,
+                             @Value("${application.archive.min-age:P2Y}") Period minAge,
+                             @Value("${application.archive.chunk-size:5000}") int chunkSize){
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceArchive = invoiceArchive;
+        this.transactionTemplate = transactionTemplate;
+        this.tenantFanOut = tenantFanOut;
+        this.jobRunner = jobRunner;
+        this.minAge = minAge;
+        this.chunkSize = chunkSize;
+        this.invoicesArchived = Counter.builder("invoice.archive.archived").register(meterRegistry);
+        this.chunkTimer = Timer.builder("invoice.archive.chunk").register(meterRegistry);
+        Gauge.builder("invoice.hot.rows", hotRows, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("invoice.hot.bytes", hotBytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${application.archive.cron:0 30 3 * * SUN}")
+    public void runScheduled(){
+        LocalDate runDate = LocalDate.now();
+        tenantFanOut.forEachTenant(() -> run(runDate));
+    }
+
+    public JobData submit(LocalDate runDate){
+        return jobRunner.submit(INVOICE_ARCHIVE, progress -> "Archived " + run(runDate, progress) + " invoices issued before " + runDate.minus(minAge));
+    }
+
+    public long run(LocalDate runDate){
+        return run(runDate, new AtomicLong());
+    }
+
+    long run(LocalDate runDate, AtomicLong progress){
+        LocalDate cutoff = runDate.minus(minAge);
+        TableSize before = invoiceRepository.getTableSize();
+        long latencyBefore = probeLatency();
+        long archived = 0;
+        while(true){
+            long start = System.nanoTime();
+            Integer moved = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            chunkTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            if(moved == null || moved == 0) break;
+            archived += moved;
+            progress.addAndGet(moved);
+            invoicesArchived.increment(moved);
+            if(moved < chunkSize) break;
+        }
+        TableSize after = invoiceRepository.getTableSize();
+        long latencyAfter = probeLatency();
+        hotRows.set(after.rows());
+        hotBytes.set(after.bytes());
+        log.info("Archived {} invoices issued before {}. Invoices table: {} rows / {} MB -> {} rows / {} MB, first page listing: {} us -> {} us",
+                archived, cutoff, before.rows(), before.bytes() >> 20, after.rows(), after.bytes() >> 20, latencyBefore, latencyAfter);
+        return archived;
+    }
+
+    private int archiveChunk(LocalDate cutoff){
+        List<Invoice> invoices = invoiceRepository.lockArchivableInvoices(cutoff, chunkSize);
+        if(invoices.isEmpty()) return 0;
+        Path segment;
+        try{
+            segment = invoiceArchive.write(invoices);
+        }catch (IOException exception){
+            throw new UncheckedIOException(exception);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status == STATUS_ROLLED_BACK) invoiceArchive.discard(segment);
+            }
+        });
+        invoiceRepository.deleteInvoices(invoices.stream().map(Invoice::getId).toList());
+        return invoices.size();
+    }
+
+    /**
+     * Average latency, in microseconds, of the first page of the default invoice listing.
+     */
+    private long probeLatency(){
+        long start = System.nanoTime();
+        for(int i = 0; i < LATENCY_PROBES; i++) invoiceRepository.getInvoices(InvoiceFilter.builder().size(20).build());
+        return (System.nanoTime() - start) / LATENCY_PROBES / 1_000;
+    }
+}
@@ -0,0 +1,218 @@
+package com.vladimirpandurov.invoice_manager01.batch;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLine;
+import com.vladimirpandurov.invoice_manager01.domain.RecurringInvoiceRun;
+import com.vladimirpandurov.invoice_manager01.domain.RecurringInvoiceTemplate;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.provider.InvoiceNumberProvider;
+import com.vladimirpandurov.invoice_manager01.repository.RecurringInvoiceRepository;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantFanOut;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.AsyncConfig.RECURRING_INVOICE_EXECUTOR;
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_TRANSACTION_TEMPLATE;
+import static com.vladimirpandurov.invoice_manager01.enumeration.JobType.RECURRING_INVOICES;
+import static com.vladimirpandurov.invoice_manager01.provider.InvoiceNumberProvider.DEFAULT_SEQUENCE;
+import static com.vladimirpandurov.invoice_manager01.utils.MoneyMath.lineTotal;
+import static com.vladimirpandurov.invoice_manager01.utils.MoneyMath.tax;
+
+/**
+ * Generates the invoices of due recurring templates. Templates are partitioned into id ranges, and a bounded
+ * pool of workers takes the partitions of a run one after another, so the pool size and the partition count of a
+ * run are independent. A template that missed runs gets an invoice for every overdue period. Every chunk inserts its invoices and lines, advances the templates and moves the partition checkpoint in a
+ * single transaction, so a run that dies is resumed from the checkpoints without creating duplicates. The
+ * unique (template_id, billing_period) key guards against anything that slips past them.
+ */
+@Component
+@Slf4j
+public class RecurringInvoiceJob {
+
+    private static final String COMPLETED = "COMPLETED";
+    private static final String FAILED = "FAILED";
+    private final RecurringInvoiceRepository recurringInvoiceRepository;
+    private final InvoiceNumberProvider invoiceNumberProvider;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor executor;
+    private final TenantFanOut tenantFanOut;
+    private final BackgroundJobRunner jobRunner;
+    private final int partitions;
+    private final int chunkSize;
+    private final Duration staleAfter;
+    private final RoundingMode roundingMode;
+    private final Counter invoicesCreated;
+    private final Timer runTimer;
+    private final AtomicLong throughput = new AtomicLong();
+    private final AtomicLong lagDays = new AtomicLong();
+
+    public RecurringInvoiceJob(RecurringInvoiceRepository recurringInvoiceRepository, InvoiceNumberProvider invoiceNumberProvider,
+                               @Qualifier(TENANT_TRANSACTION_TEMPLATE) TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                               @Qualifier(RECURRING_INVOICE_EXECUTOR) ThreadPoolTaskExecutor executor, TenantFanOut tenantFanOut,
+                               BackgroundJobRunner jobRunner,
+                               @Value("${application.recurring-invoices.partitions:4}") int partitions,
+                               @Value("${application.recurring-invoices.chunk-size:200}") int chunkSize,
+                               @Value("${application.recurring-invoices.stale-after:PT10M}") Duration staleAfter,
+                               @Value("${application.invoice.rounding-mode:HALF_EVEN}") RoundingMode roundingMode){
+        this.recurringInvoiceRepository = recurringInvoiceRepository;
+        this.invoiceNumberProvider = invoiceNumberProvider;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.tenantFanOut = tenantFanOut;
+        this.jobRunner = jobRunner;
+        this.partitions = partitions;
+        this.chunkSize = chunkSize;
+        this.staleAfter = staleAfter;
+        this.roundingMode = roundingMode;
+        this.invoicesCreated = Counter.builder("recurring.invoices.created").register(meterRegistry);
+        this.runTimer = Timer.builder("recurring.invoices.run").register(meterRegistry);
+        Gauge.builder("recurring.invoices.throughput", throughput, AtomicLong::get).baseUnit("invoices/s").register(meterRegistry);
+        Gauge.builder("recurring.invoices.lag", lagDays, AtomicLong::get).baseUnit("days").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${application.recurring-invoices.cron:0 0 2 * * *}")
+    public void runScheduled(){
+        LocalDate runDate = LocalDate.now();
+        tenantFanOut.forEachTenant(() -> run(runDate));
+    }
+
+    public JobData submit(LocalDate runDate){
+        return jobRunner.submit(RECURRING_INVOICES, progress -> "Generated " + run(runDate, progress) + " recurring invoices for " + runDate);
+    }
+
+    public long run(LocalDate runDate){
+        return run(runDate, new AtomicLong());
+    }
+
+    long run(LocalDate runDate, AtomicLong progress){
+        RecurringInvoiceRun run = recurringInvoiceRepository.claimRun(runDate, partitions, LocalDateTime.now().minus(staleAfter));
+        if(run == null){
+            log.info("Recurring invoice run for {} is complete or owned by another instance", runDate);
+            return 0;
+        }
+        long start = System.nanoTime();
+        Long tenantId = TenantContext.getTenantId();
+        Queue<RecurringInvoiceRun.Checkpoint> pending = new ConcurrentLinkedQueue<>(run.getCheckpoints());
+        AtomicBoolean failed = new AtomicBoolean();
+        int workers = Math.max(1, Math.min(pending.size(), executor.getMaxPoolSize()));
+        List<CompletableFuture<Void>> futures = new ArrayList<>(workers);
+        for(int worker = 0; worker < workers; worker++){
+            futures.add(CompletableFuture.runAsync(() -> TenantContext.runAs(tenantId, () -> {
+                RecurringInvoiceRun.Checkpoint checkpoint;
+                while((checkpoint = pending.poll()) != null){
+                    try{
+                        runPartition(run, checkpoint, progress);
+                    }catch (Exception exception){
+                        failed.set(true);
+                        log.error("Recurring invoice partition {} failed: {}", checkpoint.partition(), exception.getMessage());
+                    }
+                }
+            }), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        long created = progress.get();
+        long elapsed = System.nanoTime() - start;
+        recurringInvoiceRepository.finishRun(run.getId(), failed.get() ? FAILED : COMPLETED);
+        runTimer.record(Duration.ofNanos(elapsed));
+        throughput.set(created * 1_000_000_000L / Math.max(1, elapsed));
+        LocalDate oldestDue = recurringInvoiceRepository.getOldestDueDate(runDate);
+        lagDays.set(oldestDue == null ? 0 : ChronoUnit.DAYS.between(oldestDue, runDate));
+        log.info("Recurring invoice run for {} {}: {} invoices in {} ms", runDate, failed.get() ? "failed" : "completed", created, elapsed / 1_000_000);
+        if(failed.get()) throw new IllegalStateException("Recurring invoice run for " + runDate + " failed after " + created + " invoices");
+        return created;
+    }
+
+    private void runPartition(RecurringInvoiceRun run, RecurringInvoiceRun.Checkpoint checkpoint, AtomicLong progress){
+        long lastTemplateId = checkpoint.lastTemplateId();
+        while(true){
+            long after = lastTemplateId;
+            ChunkResult chunk = transactionTemplate.execute(status -> processChunk(run, checkpoint, after));
+            progress.addAndGet(chunk.created);
+            invoicesCreated.increment(chunk.created);
+            if(chunk.lastTemplateId < 0) return;
+            lastTemplateId = chunk.lastTemplateId;
+        }
+    }
+
+    private ChunkResult processChunk(RecurringInvoiceRun run, RecurringInvoiceRun.Checkpoint checkpoint, long lastTemplateId){
+        List<RecurringInvoiceTemplate> templates = recurringInvoiceRepository.getDueTemplates(run.getRunDate(), lastTemplateId, checkpoint.endTemplateId(), chunkSize);
+        if(templates.isEmpty()){
+            recurringInvoiceRepository.saveCheckpoint(run.getId(), checkpoint.partition(), lastTemplateId, 0, true);
+            return new ChunkResult(-1, 0);
+        }
+        Map<Long, Set<LocalDate>> invoiced = recurringInvoiceRepository.getInvoicedPeriods(templates, run.getRunDate());
+        List<Invoice> invoices = new ArrayList<>(templates.size());
+        for(RecurringInvoiceTemplate template : templates){
+            Set<LocalDate> invoicedPeriods = invoiced.getOrDefault(template.getId(), Set.of());
+            for(LocalDate period : template.getDuePeriods(run.getRunDate())){
+                if(!invoicedPeriods.contains(period)) invoices.add(toInvoice(template, period, run.getRunDate()));
+            }
+        }
+        recurringInvoiceRepository.createInvoices(invoices);
+        recurringInvoiceRepository.advanceTemplates(templates, run.getRunDate());
+        long last = templates.get(templates.size() - 1).getId();
+        recurringInvoiceRepository.saveCheckpoint(run.getId(), checkpoint.partition(), last, invoices.size(), false);
+        return new ChunkResult(last, invoices.size());
+    }
+
+    private Invoice toInvoice(RecurringInvoiceTemplate template, LocalDate billingPeriod, LocalDate issuedAt){
+        long subtotal = 0;
+        long invoiceTax = 0;
+        List<InvoiceLine> lines = new ArrayList<>(template.getLines().size());
+        for(InvoiceLine templateLine : template.getLines()){
+            long total = lineTotal(templateLine.getQuantity(), templateLine.getUnitPrice(), templateLine.getDiscount(), roundingMode);
+            long lineTax = tax(total, templateLine.getTaxRate(), roundingMode);
+            subtotal += total;
+            invoiceTax += lineTax;
+            lines.add(InvoiceLine.builder()
+                    .description(templateLine.getDescription())
+                    .quantity(templateLine.getQuantity())
+                    .unitPrice(templateLine.getUnitPrice())
+                    .discount(templateLine.getDiscount())
+                    .taxRate(templateLine.getTaxRate())
+                    .lineTotal(total)
+                    .lineTax(lineTax)
+                    .build());
+        }
+        return Invoice.builder()
+                .invoiceNumber(invoiceNumberProvider.nextInvoiceNumber(DEFAULT_SEQUENCE))
+                .customerId(template.getCustomerId())
+                .issuedAt(issuedAt)
+                .dueAt(issuedAt.plusDays(template.getDueDays()))
+                .currency(template.getCurrency())
+                .subtotal(subtotal)
+                .tax(invoiceTax)
+                .total(subtotal + invoiceTax)
+                .templateId(template.getId())
+                .billingPeriod(billingPeriod)
+                .lines(lines)
+                .build();
+    }
+
+    private record ChunkResult(long lastTemplateId, int created) {}
+}
@@ -0,0 +1,116 @@
+package com.vladimirpandurov.invoice_manager01.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.vladimirpandurov.invoice_manager01.query.CacheQuery.*;
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Cross-node cache invalidation through the EntityChanges table. Writers evict locally and append a change
+ * record; every node polls the table with a cursor and evicts the keys written by other nodes. The cursor only
+ * moves past records older than the settle window, so rows whose auto-increment id committed late are still seen;
+ * records inside the window are remembered so that re-reading them does not evict again.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus {
+
+    public static final String USER = "user";
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ObjectProvider<CacheInvalidationListener> listeners;
+    private final int batchSize;
+    private final int settleSeconds;
+    private final int retentionMinutes;
+    private final Timer staleness;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final NavigableSet<Long> notifiedAfterCursor = new TreeSet<>();
+
+    public CacheInvalidationBus(NamedParameterJdbcTemplate jdbc, ObjectProvider<CacheInvalidationListener> listeners, MeterRegistry meterRegistry,
+                                @Value("${application.cache.invalidation.batch-size:500}") int batchSize,
+                                @Value("${application.cache.invalidation.settle-seconds:5}") int settleSeconds,
+                                @Value("${application.cache.invalidation.retention-minutes:60}") int retentionMinutes){
+        this.jdbc = jdbc;
+        this.listeners = listeners;
+        this.batchSize = batchSize;
+        this.settleSeconds = settleSeconds;
+        this.retentionMinutes = retentionMinutes;
+        this.staleness = Timer.builder("cache.invalidation.staleness").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        Gauge.builder("cache.invalidation.cursor", cursor, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * Records the change in the caller's transaction, so the record commits or rolls back with the write it
+     * describes and a failure to record it fails that write. Local caches are evicted once it commits.
+     */
+    public void publish(String entity, Long id){
+        jdbc.update(INSERT_ENTITY_CHANGE_QUERY, Map.of("entity", entity, "entityId", id));
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyListeners(entity, id);
+                }
+            });
+        }else {
+            notifyListeners(entity, id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.cache.invalidation.poll-interval:1000}")
+    public void poll(){
+        if(cursor.get() < 0){
+            Long start = jdbc.queryForObject(SELECT_MAX_ENTITY_CHANGE_ID_QUERY, Map.of(), Long.class);
+            cursor.set(start);
+            return;
+        }
+        long next = cursor.get();
+        long settledCursor = next;
+        boolean pendingSeen = false;
+        List<EntityChange> changes;
+        do{
+            changes = jdbc.query(SELECT_ENTITY_CHANGES_AFTER_QUERY, Map.of("cursor", next, "size", batchSize, "settleSeconds", -settleSeconds),
+                    (rs, rowNum) -> new EntityChange(rs.getLong("id"), rs.getString("entity"), rs.getLong("entity_id"),
+                            rs.getTimestamp("created_at").getTime(), rs.getBoolean("settled")));
+            for(EntityChange change : changes){
+                if(notifiedAfterCursor.add(change.id())){
+                    notifyListeners(change.entity(), change.entityId());
+                    staleness.record(Duration.ofMillis(Math.max(0, currentTimeMillis() - change.createdAt())));
+                }
+                if(!change.settled()) pendingSeen = true;
+                if(!pendingSeen) settledCursor = change.id();
+                next = change.id();
+            }
+        }while(changes.size() == batchSize);
+        cursor.set(settledCursor);
+        notifiedAfterCursor.headSet(settledCursor, true).clear();
+    }
+
+    @Scheduled(fixedDelayString = "${application.cache.invalidation.purge-interval:60000}")
+    public void purge(){
+        int deleted = jdbc.update(DELETE_ENTITY_CHANGES_BEFORE_QUERY, Map.of("retentionMinutes", -retentionMinutes));
+        if(deleted > 0) log.info("Purged {} entity change records", deleted);
+    }
+
+    private void notifyListeners(String entity, Long id){
+        listeners.forEach(listener -> listener.invalidate(entity, id));
+    }
+
+    private record EntityChange(long id, String entity, long entityId, long createdAt, boolean settled) {}
+}
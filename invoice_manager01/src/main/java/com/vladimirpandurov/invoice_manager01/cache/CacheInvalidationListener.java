@@ -0,0 +1,7 @@
+package com.vladimirpandurov.invoice_manager01.cache;
+
+public interface CacheInvalidationListener {
+
+    void invalidate(String entity, Long id);
+
+}
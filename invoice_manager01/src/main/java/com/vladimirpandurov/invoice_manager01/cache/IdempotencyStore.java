@@ -0,0 +1,156 @@
+package com.vladimirpandurov.invoice_manager01.cache;
+
+import com.vladimirpandurov.invoice_manager01.domain.IdempotentResponse;
+import com.vladimirpandurov.invoice_manager01.repository.IdempotencyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Remembers the responses of requests sent with an idempotency key. The first request for a key owns it
+ * and runs; duplicates wait on its future. With persistence enabled the key is also claimed in the
+ * IdempotencyKeys table, so a retry that lands on another node waits for or replays the same response.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private static final long REMOTE_POLL_INTERVAL = 50;
+    private final IdempotencyRepository idempotencyRepository;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long timeToLive;
+    private final long lockTimeout;
+    private final boolean persistent;
+
+    public IdempotencyStore(IdempotencyRepository idempotencyRepository,
+                            @Value("${application.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${application.idempotency.time-to-live:86400000}") long timeToLive,
+                            @Value("${application.idempotency.lock-timeout:60000}") long lockTimeout,
+                            @Value("${application.idempotency.persistent:false}") boolean persistent){
+        this.idempotencyRepository = idempotencyRepository;
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+        this.lockTimeout = lockTimeout;
+        this.persistent = persistent;
+    }
+
+    /**
+     * Returns null when the caller now owns the key and must run the request. Otherwise returns the future
+     * response of the owner; it completes with null when the owner gave up and the key may be claimed again.
+     */
+    public CompletableFuture<IdempotentResponse> claim(String key, long deadline){
+        Entry fresh = new Entry();
+        while(true){
+            Entry existing = entries.putIfAbsent(key, fresh);
+            if(existing == null) break;
+            if(!existing.isExpired()) return existing.future;
+            entries.remove(key, existing);
+        }
+        if(entries.size() > maxEntries) evict();
+        if(!persistent || claimRemote(key)) return null;
+        awaitRemote(key, fresh, deadline);
+        return fresh.future;
+    }
+
+    public void complete(String key, IdempotentResponse response){
+        Entry entry = entries.get(key);
+        if(entry == null) return;
+        entry.expiresAt = currentTimeMillis() + timeToLive;
+        entry.future.complete(response);
+        if(persistent){
+            try{
+                idempotencyRepository.complete(key, response, LocalDateTime.now().plus(Duration.ofMillis(timeToLive)));
+            }catch (Exception exception){
+                log.error("Unable to persist idempotent response: {}", exception.getMessage());
+            }
+        }
+    }
+
+    public void abandon(String key){
+        Entry entry = entries.remove(key);
+        if(entry != null) entry.future.complete(null);
+        if(persistent){
+            try{
+                idempotencyRepository.release(key);
+            }catch (Exception exception){
+                log.error("Unable to release idempotency key: {}", exception.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.idempotency.purge-interval:60000}")
+    public void purge(){
+        entries.values().removeIf(Entry::isExpired);
+        if(persistent){
+            try{
+                int deleted = idempotencyRepository.deleteExpired();
+                if(deleted > 0) log.debug("Deleted {} expired idempotency keys", deleted);
+            }catch (Exception exception){
+                log.error("Unable to purge idempotency keys: {}", exception.getMessage());
+            }
+        }
+    }
+
+    private boolean claimRemote(String key){
+        try{
+            return idempotencyRepository.claim(key, LocalDateTime.now().plus(Duration.ofMillis(lockTimeout)));
+        }catch (Exception exception){
+            log.error("Unable to claim idempotency key, continuing with the local store: {}", exception.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Another node owns the key. Polls until it stores its response or releases the key; local duplicates
+     * meanwhile wait on this node's entry.
+     */
+    private void awaitRemote(String key, Entry entry, long deadline){
+        try{
+            while(System.nanoTime() < deadline){
+                Optional<IdempotentResponse> response = idempotencyRepository.getCompleted(key);
+                if(response.isPresent()){
+                    entry.expiresAt = currentTimeMillis() + timeToLive;
+                    entry.future.complete(response.get());
+                    return;
+                }
+                if(!idempotencyRepository.exists(key)) break;
+                Thread.sleep(REMOTE_POLL_INTERVAL);
+            }
+        }catch (InterruptedException exception){
+            Thread.currentThread().interrupt();
+        }catch (Exception exception){
+            log.error("Unable to read idempotency key: {}", exception.getMessage());
+        }
+        entries.remove(key, entry);
+        entry.future.complete(null);
+    }
+
+    private void evict(){
+        entries.values().removeIf(Entry::isExpired);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(entries.size() > maxEntries && iterator.hasNext()){
+            if(iterator.next().future.isDone()) iterator.remove();
+        }
+    }
+
+    private static class Entry {
+        private final CompletableFuture<IdempotentResponse> future = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private boolean isExpired(){
+            return expiresAt < currentTimeMillis();
+        }
+    }
+}
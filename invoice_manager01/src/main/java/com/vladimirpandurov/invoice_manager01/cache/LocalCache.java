@@ -0,0 +1,79 @@
+package com.vladimirpandurov.invoice_manager01.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Small bounded read-through cache. Entries expire after a fixed time as a safety net; invalidation is
+ * expected to come from {@link CacheInvalidationBus}. A load that overlaps an invalidation is not cached.
+ * A cache keyed by something other than the id that invalidations carry can index its values by that id.
+ */
+public class LocalCache<K, V> {
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<Object, K> keysByIndex = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final int maxSize;
+    private final long timeToLive;
+    private final Function<V, ?> indexer;
+
+    public LocalCache(int maxSize, long timeToLive){
+        this(maxSize, timeToLive, null);
+    }
+
+    public LocalCache(int maxSize, long timeToLive, Function<V, ?> indexer){
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.indexer = indexer;
+    }
+
+    public V get(K key, Function<K, V> loader){
+        Entry<V> entry = entries.get(key);
+        long now = currentTimeMillis();
+        if(entry != null && entry.expiresAt() > now) return entry.value();
+        long loadGeneration = generation.get();
+        V value = loader.apply(key);
+        if(generation.get() == loadGeneration){
+            if(entries.size() >= maxSize) evictOne();
+            entries.put(key, new Entry<>(value, now + timeToLive));
+            if(indexer != null && value != null) keysByIndex.put(indexer.apply(value), key);
+        }
+        return value;
+    }
+
+    public void remove(K key){
+        generation.incrementAndGet();
+        Entry<V> entry = entries.remove(key);
+        if(entry != null) unindex(key, entry.value());
+    }
+
+    /**
+     * Removes the entry whose value has the given index. Loads in flight are discarded even when no entry
+     * is cached yet, since one of them may be loading that value.
+     */
+    public void removeByIndex(Object index){
+        generation.incrementAndGet();
+        K key = keysByIndex.remove(index);
+        if(key != null) entries.remove(key);
+    }
+
+    private void evictOne(){
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        if(iterator.hasNext()){
+            Map.Entry<K, Entry<V>> evicted = iterator.next();
+            iterator.remove();
+            unindex(evicted.getKey(), evicted.getValue().value());
+        }
+    }
+
+    private void unindex(K key, V value){
+        if(indexer != null && value != null) keysByIndex.remove(indexer.apply(value), key);
+    }
+
+    private record Entry<V>(V value, long expiresAt) {}
+}
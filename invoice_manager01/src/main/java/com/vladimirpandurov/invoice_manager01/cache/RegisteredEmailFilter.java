@@ -0,0 +1,156 @@
+package com.vladimirpandurov.invoice_manager01.cache;
+
+import com.vladimirpandurov.invoice_manager01.utils.BloomFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.vladimirpandurov.invoice_manager01.query.UserQuery.COUNT_USERS_QUERY;
+import static com.vladimirpandurov.invoice_manager01.query.UserQuery.SELECT_USER_EMAILS_QUERY;
+import static com.vladimirpandurov.invoice_manager01.query.UserQuery.SELECT_USER_EMAIL_BY_ID_QUERY;
+import static com.vladimirpandurov.invoice_manager01.utils.StreamingQueryUtils.prepareStreaming;
+
+/**
+ * Bloom filter of every registered email, so lookups of unknown addresses are answered without a query.
+ * Until the first build finishes every email is reported as possibly registered. A rebuild fills a new
+ * filter while the old one keeps serving; emails registered meanwhile are added to both. Registrations are
+ * published on the {@link CacheInvalidationBus}, so every node adds the email within a poll interval instead of
+ * denying the new user until its next rebuild.
+ */
+@Component
+@Slf4j
+public class RegisteredEmailFilter implements CacheInvalidationListener {
+
+    public static final String REGISTERED_EMAIL = "registered-email";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final long expectedEmails;
+    private final double falsePositiveRate;
+    private final long rebuildInterval;
+    private final AtomicLong emails = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    private ScheduledExecutorService rebuilder;
+
+    public RegisteredEmailFilter(NamedParameterJdbcTemplate jdbc, MeterRegistry meterRegistry,
+                                 @Value("${application.email-filter.expected-emails:20000000}") long expectedEmails,
+                                 @Value("${application.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                                 @Value("${application.email-filter.rebuild-interval:21600000}") long rebuildInterval){
+        this.jdbc = jdbc;
+        this.expectedEmails = expectedEmails;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+        FunctionCounter.builder("email.filter.rejected", rejected, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("email.filter.false.positives", falsePositives, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("email.filter.false.positive.rate", this, RegisteredEmailFilter::getMeasuredFalsePositiveRate).register(meterRegistry);
+        Gauge.builder("email.filter.emails", emails, AtomicLong::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start(){
+        rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuilder.scheduleWithFixedDelay(this::rebuild, 0, rebuildInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop(){
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * False means the email is certainly not registered.
+     */
+    public boolean mightBeRegistered(String email){
+        BloomFilter current = filter;
+        if(current == null || current.mightContain(normalize(email))) return true;
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Adds the email of a user whose registration was published, on this node after the commit and on the
+     * others when they poll the change.
+     */
+    @Override
+    public void invalidate(String entity, Long id) {
+        if(!REGISTERED_EMAIL.equals(entity)) return;
+        String email = jdbc.query(SELECT_USER_EMAIL_BY_ID_QUERY, Map.of("id", id), rs -> rs.next() ? rs.getString(1) : null);
+        if(email != null) add(email);
+    }
+
+    /**
+     * Reading the filter being built before the live one guarantees the email reaches whichever filter ends up
+     * serving: a rebuild that starts later streams the row.
+     */
+    void add(String email){
+        String normalized = normalize(email);
+        BloomFilter next = building;
+        if(next != null) next.put(normalized);
+        BloomFilter current = filter;
+        if(current != null) current.put(normalized);
+        emails.incrementAndGet();
+    }
+
+    /**
+     * Called when an email passed the filter but was not found in the database.
+     */
+    public void recordFalsePositive(){
+        falsePositives.increment();
+    }
+
+    public double getMeasuredFalsePositiveRate(){
+        long positives = falsePositives.sum();
+        long negatives = rejected.sum() + positives;
+        return negatives == 0 ? 0 : (double) positives / negatives;
+    }
+
+    void rebuild(){
+        try{
+            long start = System.nanoTime();
+            Long count = jdbc.queryForObject(COUNT_USERS_QUERY, Map.of(), Long.class);
+            long size = Math.max(expectedEmails, count == null ? 0 : count * 2);
+            BloomFilter next = new BloomFilter(size, falsePositiveRate);
+            building = next;
+            long[] streamed = new long[1];
+            jdbc.getJdbcOperations().query(connection -> {
+                return prepareStreaming(connection, SELECT_USER_EMAILS_QUERY);
+            }, (ResultSet resultSet) -> {
+                next.put(normalize(resultSet.getString(1)));
+                streamed[0]++;
+            });
+            filter = next;
+            building = null;
+            emails.set(streamed[0]);
+            log.info("Built email filter of {} emails in {} ms: {} bits, expected false positive rate {}, measured {}",
+                    streamed[0], (System.nanoTime() - start) / 1_000_000, next.bitSize(),
+                    String.format("%.5f", next.expectedFalsePositiveRate(streamed[0])), String.format("%.5f", getMeasuredFalsePositiveRate()));
+        }catch (Exception exception){
+            building = null;
+            log.error("Unable to build email filter: {}", exception.getMessage());
+        }
+    }
+
+    private static String normalize(String email){
+        return email.trim().toLowerCase();
+    }
+}
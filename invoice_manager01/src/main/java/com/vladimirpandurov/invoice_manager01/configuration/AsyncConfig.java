@@ -0,0 +1,76 @@
+package com.vladimirpandurov.invoice_manager01.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    public static final String PASSWORD_HASHING_EXECUTOR = "passwordHashingExecutor";
+    public static final String RECURRING_INVOICE_EXECUTOR = "recurringInvoiceExecutor";
+    public static final String THUMBNAIL_EXECUTOR = "thumbnailExecutor";
+    public static final String TENANT_FAN_OUT_EXECUTOR = "tenantFanOutExecutor";
+    public static final String BACKGROUND_JOB_EXECUTOR = "backgroundJobExecutor";
+
+    /**
+     * Runs BCrypt only, see {@code PooledPasswordEncoder}; more threads than cores would just slow every hash down.
+     */
+    @Bean(PASSWORD_HASHING_EXECUTOR)
+    public ThreadPoolTaskExecutor passwordHashingExecutor(@Value("${application.password-hashing.threads:0}") int threads,
+                                                          @Value("${application.password-hashing.queue-capacity:256}") int queueCapacity){
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        return executor;
+    }
+
+    /**
+     * Sized on its own: a run starts at most this many workers, whatever the partition count stored with the run.
+     */
+    @Bean(RECURRING_INVOICE_EXECUTOR)
+    public ThreadPoolTaskExecutor recurringInvoiceExecutor(@Value("${application.recurring-invoices.threads:4}") int threads,
+                                                           @Value("${application.recurring-invoices.queue-capacity:64}") int queueCapacity){
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("recurring-invoice-");
+        return executor;
+    }
+
+    @Bean(THUMBNAIL_EXECUTOR)
+    public ThreadPoolTaskExecutor thumbnailExecutor(@Value("${application.image.thumbnail-threads:2}") int threads,
+                                                    @Value("${application.image.thumbnail-queue-capacity:100}") int queueCapacity){
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("thumbnail-");
+        return executor;
+    }
+
+    @Bean(TENANT_FAN_OUT_EXECUTOR)
+    public ThreadPoolTaskExecutor tenantFanOutExecutor(@Value("${application.sharding.fan-out-threads:8}") int threads){
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("tenant-fan-out-");
+        return executor;
+    }
+
+    @Bean(BACKGROUND_JOB_EXECUTOR)
+    public ThreadPoolTaskExecutor backgroundJobExecutor(@Value("${application.jobs.threads:2}") int threads,
+                                                        @Value("${application.jobs.queue-capacity:8}") int queueCapacity){
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("background-job-");
+        return executor;
+    }
+}
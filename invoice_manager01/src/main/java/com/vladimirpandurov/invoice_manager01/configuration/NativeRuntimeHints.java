@@ -0,0 +1,67 @@
+package com.vladimirpandurov.invoice_manager01.configuration;
+
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLine;
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+import com.vladimirpandurov.invoice_manager01.domain.Role;
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
+import com.vladimirpandurov.invoice_manager01.dto.EventsData;
+import com.vladimirpandurov.invoice_manager01.dto.ImageData;
+import com.vladimirpandurov.invoice_manager01.dto.InvoiceData;
+import com.vladimirpandurov.invoice_manager01.dto.InvoicesData;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.dto.ReconciliationData;
+import com.vladimirpandurov.invoice_manager01.dto.ReportProgressData;
+import com.vladimirpandurov.invoice_manager01.dto.TokenData;
+import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import com.vladimirpandurov.invoice_manager01.dto.UserData;
+import com.vladimirpandurov.invoice_manager01.form.LoginForm;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.stream.Stream;
+
+/**
+ * Reflection hints for the parts of the application that the AOT engine cannot see on its own:
+ * {@code BeanUtils.copyProperties} in the DTO mapper, response payloads held as {@code Object},
+ * and the Jackson-bound internals of java-jwt and the Twilio SDK.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final MemberCategory[] BEAN_CATEGORIES = {
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS};
+    private static final String[] LIBRARY_TYPES = {
+            "com.auth0.jwt.impl.BasicHeader",
+            "com.auth0.jwt.impl.HeaderDeserializer",
+            "com.auth0.jwt.impl.HeaderSerializer",
+            "com.auth0.jwt.impl.HeaderClaimsHolder",
+            "com.auth0.jwt.impl.PayloadDeserializer",
+            "com.auth0.jwt.impl.PayloadSerializer",
+            "com.auth0.jwt.impl.PayloadClaimsHolder",
+            "com.auth0.jwt.impl.PayloadImpl",
+            "com.auth0.jwt.impl.ClaimsHolder",
+            "com.twilio.rest.api.v2010.account.Message",
+            "com.twilio.rest.api.v2010.account.Message$Status",
+            "com.twilio.rest.api.v2010.account.Message$Direction",
+            "com.twilio.base.Page"};
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        Stream.of(User.class, Role.class, UserDTO.class, UserData.class, TokenData.class, LoginForm.class, HttpResponse.class,
+                        EventsData.class, UserEvent.class, InvoicesData.class, Invoice.class, InvoiceLine.class, ReportProgressData.class,
+                        ReconciliationData.class, Tenant.class, Outstanding.class, JobData.class, ImageData.class,
+                        InvoiceData.class)
+                .forEach(type -> hints.reflection().registerType(type, BEAN_CATEGORIES));
+        Stream.of(LIBRARY_TYPES)
+                .forEach(type -> hints.reflection().registerType(TypeReference.of(type), BEAN_CATEGORIES));
+        hints.resources().registerPattern("banner.txt");
+        // Spring Boot registers db/migration itself; these are read by the tenant code
+        hints.resources().registerPattern("tenant-schema.sql");
+        hints.resources().registerPattern("db/tenant-migration/*.sql");
+    }
+}
@@ -19,6 +19,14 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.DELETE_CUSTOMER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.DELETE_USER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.MANAGE_INVOICE;
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.MANAGE_TENANT;
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.READ_CUSTOMER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.UPDATE_CUSTOMER;
+import static com.vladimirpandurov.invoice_manager01.provider.PermissionAuthorizationManager.hasPermission;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
@@ -32,15 +40,22 @@ public class SecurityConfig {
     private final CustomAuthorizationFilter customAuthorizationFilter;
     private final BCryptPasswordEncoder encoder;
     private static final String[] PUBLIC_URLS = {"/user/login/**", "/user/register/**", "/user/verify/code/**",
-            "/user/resetpassword/**", "/user/verify/password/**", "/user/verify/account/**", "/user/refresh/token/**"};
+            "/user/resetpassword/**", "/user/verify/password/**", "/user/verify/account/**", "/user/refresh/token/**",
+            "/actuator/health/**"};
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception{
         http.csrf().disable();
         http.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
         http.authorizeHttpRequests().requestMatchers(PUBLIC_URLS).permitAll();
-        http.authorizeHttpRequests().requestMatchers(HttpMethod.DELETE, "/user/delete/**").hasAnyAuthority("DELETE:USER");
-        http.authorizeHttpRequests().requestMatchers(HttpMethod.DELETE, "/customer/delete/**").hasAnyAuthority("DELETE:CUSTOMER");
+        http.authorizeHttpRequests().requestMatchers(HttpMethod.GET, "/user/image/**").permitAll();
+        http.authorizeHttpRequests().requestMatchers(HttpMethod.DELETE, "/user/delete/**").access(hasPermission(DELETE_USER));
+        http.authorizeHttpRequests().requestMatchers(HttpMethod.DELETE, "/customer/delete/**").access(hasPermission(DELETE_CUSTOMER));
+        http.authorizeHttpRequests().requestMatchers(HttpMethod.POST, "/invoice/recalculate/**").access(hasPermission(MANAGE_INVOICE));
+        http.authorizeHttpRequests().requestMatchers(HttpMethod.POST, "/invoice/recurring/**", "/invoice/archive/**", "/invoice/reconcile").access(hasPermission(UPDATE_CUSTOMER));
+        http.authorizeHttpRequests().requestMatchers(HttpMethod.GET, "/report/**").access(hasPermission(READ_CUSTOMER));
+        http.authorizeHttpRequests().requestMatchers(HttpMethod.GET, "/invoice", "/invoice/**").access(hasPermission(READ_CUSTOMER));
+        http.authorizeHttpRequests().requestMatchers("/tenant/**").access(hasPermission(MANAGE_TENANT));
 
         http.exceptionHandling().accessDeniedHandler(customAccessDeniedHandler).authenticationEntryPoint(customAuthenticationEntryPoint);
         http.authorizeHttpRequests().anyRequest().authenticated();
@@ -0,0 +1,63 @@
+package com.vladimirpandurov.invoice_manager01.configuration;
+
+import com.vladimirpandurov.invoice_manager01.tenant.ShardRouter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Two sets of JDBC beans. The primary ones work on the application database, which holds users, roles and the
+ * tenant directory. The tenant ones, injected by qualifier into everything that touches customers and invoices,
+ * go through the {@link ShardRouter}. Declaring them makes Spring Boot back off from its own, hence the primary
+ * copies here.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    public static final String TENANT_JDBC = "tenantJdbc";
+    public static final String TENANT_TRANSACTION_MANAGER = "tenantTransactionManager";
+    public static final String TENANT_TRANSACTION_TEMPLATE = "tenantTransactionTemplate";
+
+    @Bean
+    @Primary
+    public NamedParameterJdbcTemplate namedParameterJdbcTemplate(JdbcTemplate jdbcTemplate){
+        return new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Bean
+    @Primary
+    public JdbcTransactionManager transactionManager(DataSource dataSource){
+        return new JdbcTransactionManager(dataSource);
+    }
+
+    @Bean
+    @Primary
+    public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager){
+        return new TransactionTemplate(transactionManager);
+    }
+
+    @Bean(TENANT_JDBC)
+    public NamedParameterJdbcTemplate tenantJdbc(ShardRouter shardRouter){
+        return new NamedParameterJdbcTemplate(shardRouter.getRoutingDataSource());
+    }
+
+    @Bean(TENANT_TRANSACTION_MANAGER)
+    public JdbcTransactionManager tenantTransactionManager(ShardRouter shardRouter){
+        return new JdbcTransactionManager(shardRouter.getRoutingDataSource());
+    }
+
+    @Bean(TENANT_TRANSACTION_TEMPLATE)
+    public TransactionTemplate tenantTransactionTemplate(@Qualifier(TENANT_TRANSACTION_MANAGER) PlatformTransactionManager transactionManager){
+        return new TransactionTemplate(transactionManager);
+    }
+}
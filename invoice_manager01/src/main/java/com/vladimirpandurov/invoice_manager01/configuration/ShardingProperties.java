@@ -0,0 +1,33 @@
+package com.vladimirpandurov.invoice_manager01.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shards under {@code application.sharding.shards}, keyed by the name stored in {@code Tenants.shard}. Sharding
+ * is off unless enabled, and then every tenant query goes to the single {@code spring.datasource}.
+ */
+@Data
+@ConfigurationProperties(prefix = "application.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+    private String databasePrefix = "tenant_";
+    private Duration directoryTimeToLive = Duration.ofMinutes(5);
+    private int moveChunkSize = 1000;
+    private Duration moveGrace = Duration.ofSeconds(10);
+    private Duration fanOutTimeout = Duration.ofSeconds(60);
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,28 @@
+package com.vladimirpandurov.invoice_manager01.configuration;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource in a {@link StatementCountingDataSource}, so flows can record how many round
+ * trips they make. Disabled with {@code application.metrics.count-statements=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.metrics.count-statements", matchIfMissing = true)
+public class StatementCountingConfig {
+
+    @Bean
+    public static BeanPostProcessor statementCountingPostProcessor(){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource) && "dataSource".equals(beanName)
+                        ? new StatementCountingDataSource(dataSource) : bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.vladimirpandurov.invoice_manager01.configuration;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Counts the database round trips of the current thread: every statement execution, commit and rollback. A flow
+ * reads {@link #count()} before and after its work, which is cheap enough to leave on in production. Unwrapping
+ * passes through to the pool, so {@code unwrap(HikariDataSource.class)} keeps working.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final Set<String> CONNECTION_ROUND_TRIPS = Set.of("commit", "rollback");
+
+    public StatementCountingDataSource(DataSource target){
+        super(target);
+    }
+
+    /**
+     * Round trips made by the current thread so far.
+     */
+    public static long count(){
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(super.getConnection(username, password));
+    }
+
+    private static Connection countingConnection(Connection connection){
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if(CONNECTION_ROUND_TRIPS.contains(method.getName())) COUNT.get()[0]++;
+            Object result = invoke(connection, method, args);
+            if(result instanceof Statement statement && STATEMENT_FACTORIES.contains(method.getName())) return countingStatement(statement);
+            return result;
+        });
+    }
+
+    private static Statement countingStatement(Statement statement){
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        InvocationHandler handler = (proxy, method, args) -> {
+            if(method.getName().startsWith("execute")) COUNT.get()[0]++;
+            return invoke(statement, method, args);
+        };
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try{
+            return method.invoke(target, args);
+        }catch (InvocationTargetException exception){
+            throw exception.getCause();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.vladimirpandurov.invoice_manager01.domain.AgingSegment.BUCKETS;
+
+/**
+ * Aging segments of consecutive customer id ranges in range order. Merging only concatenates segment lists,
+ * so no per-customer data is copied.
+ */
+public class AgingReport {
+
+    private final LocalDate asOf;
+    private final List<AgingSegment> segments = new ArrayList<>();
+
+    public AgingReport(LocalDate asOf){
+        this.asOf = asOf;
+    }
+
+    public AgingReport(LocalDate asOf, AgingSegment segment){
+        this(asOf);
+        segments.add(segment);
+    }
+
+    public AgingReport merge(AgingReport next){
+        segments.addAll(next.segments);
+        return this;
+    }
+
+    public long getInvoices(){
+        return segments.stream().mapToLong(AgingSegment::invoices).sum();
+    }
+
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("as_of,customer_id,customer_name,currency");
+        for(int bucket = 0; bucket < BUCKETS; bucket++) writer.write("," + AgingSegment.bucketName(bucket));
+        writer.write(",total\n");
+        Map<String, long[]> totals = new TreeMap<>();
+        for(AgingSegment segment : segments){
+            for(int row = 0; row < segment.size(); row++){
+                long[] currencyTotals = totals.computeIfAbsent(segment.currency(row), currency -> new long[BUCKETS]);
+                writer.write(asOf + "," + segment.customerId(row) + "," + escape(segment.customerName(row)) + "," + segment.currency(row));
+                writeAmounts(writer, segment.currency(row), row, segment, currencyTotals);
+            }
+        }
+        for(Map.Entry<String, long[]> entry : totals.entrySet()){
+            writer.write(asOf + ",,TOTAL," + entry.getKey());
+            writeAmounts(writer, entry.getKey(), -1, null, entry.getValue());
+        }
+        writer.flush();
+    }
+
+    private void writeAmounts(Writer writer, String currency, int row, AgingSegment segment, long[] totals) throws IOException {
+        int digits = Currency.getInstance(currency).getDefaultFractionDigits();
+        long sum = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++){
+            long amount = segment == null ? totals[bucket] : segment.amount(row, bucket);
+            if(segment != null) totals[bucket] += amount;
+            sum += amount;
+            writer.write("," + BigDecimal.valueOf(amount, digits).toPlainString());
+        }
+        writer.write("," + BigDecimal.valueOf(sum, digits).toPlainString() + "\n");
+    }
+
+    private static String escape(String value){
+        if(value == null) return "";
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
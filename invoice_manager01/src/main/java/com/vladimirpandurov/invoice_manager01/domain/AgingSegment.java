@@ -0,0 +1,74 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import java.util.Arrays;
+
+/**
+ * Aging totals for one customer id range, one row per customer and currency, kept in primitive arrays.
+ * Invoices must arrive ordered by customer and currency; a row is closed as soon as either changes.
+ */
+public class AgingSegment {
+
+    public static final int BUCKETS = 5;
+    private static final String[] BUCKET_NAMES = {"current", "1-30", "31-60", "61-90", "90+"};
+
+    private long[] customerIds = new long[64];
+    private String[] customerNames = new String[64];
+    private String[] currencies = new String[64];
+    private long[] amounts = new long[64 * BUCKETS];
+    private int size;
+    private long invoices;
+
+    public void add(long customerId, String customerName, String currency, int daysOverdue, long amount){
+        if(size == 0 || customerIds[size - 1] != customerId || !currencies[size - 1].equals(currency)) openRow(customerId, customerName, currency);
+        amounts[(size - 1) * BUCKETS + bucket(daysOverdue)] += amount;
+        invoices++;
+    }
+
+    public static int bucket(int daysOverdue){
+        if(daysOverdue <= 0) return 0;
+        if(daysOverdue > 90) return 4;
+        return (daysOverdue + 29) / 30;
+    }
+
+    public static String bucketName(int bucket){
+        return BUCKET_NAMES[bucket];
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public long invoices(){
+        return invoices;
+    }
+
+    public long customerId(int row){
+        return customerIds[row];
+    }
+
+    public String customerName(int row){
+        return customerNames[row];
+    }
+
+    public String currency(int row){
+        return currencies[row];
+    }
+
+    public long amount(int row, int bucket){
+        return amounts[row * BUCKETS + bucket];
+    }
+
+    private void openRow(long customerId, String customerName, String currency){
+        if(size == customerIds.length){
+            int capacity = size * 2;
+            customerIds = Arrays.copyOf(customerIds, capacity);
+            customerNames = Arrays.copyOf(customerNames, capacity);
+            currencies = Arrays.copyOf(currencies, capacity);
+            amounts = Arrays.copyOf(amounts, capacity * BUCKETS);
+        }
+        customerIds[size] = customerId;
+        customerNames[size] = customerName;
+        currencies[size] = currency;
+        size++;
+    }
+}
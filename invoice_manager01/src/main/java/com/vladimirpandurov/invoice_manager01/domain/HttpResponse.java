@@ -5,8 +5,6 @@ import lombok.Data;
 import lombok.experimental.SuperBuilder;
 import org.springframework.http.HttpStatus;
 
-import java.util.Map;
-
 @Data
 @SuperBuilder
 @JsonInclude(JsonInclude.Include.NON_DEFAULT)
@@ -17,5 +15,5 @@ public class HttpResponse {
     protected String reason;
     protected String message;
     protected String developerMessage;
-    protected Map<?,?> data;
+    protected Object data;
 }
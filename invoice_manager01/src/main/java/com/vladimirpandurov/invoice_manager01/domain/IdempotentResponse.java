@@ -0,0 +1,13 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class IdempotentResponse {
+    private final int status;
+    private final String contentType;
+    private final String location;
+    private final byte[] body;
+}
@@ -0,0 +1,32 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class Invoice {
+    private Long id;
+    private String invoiceNumber;
+    private Long customerId;
+    private String status;
+    private LocalDate issuedAt;
+    private LocalDate dueAt;
+    private String currency;
+    private long subtotal;
+    private long tax;
+    private long total;
+    private long amountPaid;
+    private Long templateId;
+    private LocalDate billingPeriod;
+    private List<InvoiceLine> lines;
+}
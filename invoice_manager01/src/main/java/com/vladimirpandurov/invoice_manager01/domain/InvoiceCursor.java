@@ -0,0 +1,35 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.InvoiceSort;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last invoice of a page: its sort key and id. Encoded as an opaque token that is only
+ * valid for the sort order it was issued for.
+ */
+public record InvoiceCursor(InvoiceSort sort, long key, long id) {
+
+    private static final String SEPARATOR = ".";
+
+    public static InvoiceCursor after(InvoiceSort sort, Invoice invoice){
+        return new InvoiceCursor(sort, sort.getKey(invoice), invoice.getId());
+    }
+
+    public String encode(){
+        String value = sort.ordinal() + SEPARATOR + key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static InvoiceCursor decode(String token, InvoiceSort sort){
+        try{
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split("\\.");
+            if(parts.length != 3 || Integer.parseInt(parts[0]) != sort.ordinal()) throw new ApiException("Invalid cursor. Please start from the first page.");
+            return new InvoiceCursor(sort, Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        }catch (IllegalArgumentException exception){
+            throw new ApiException("Invalid cursor. Please start from the first page.");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.InvoiceSort;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Invoice listing criteria. Every criterion is optional; date bounds are inclusive, amount bounds are
+ * inclusive minor units of the invoice total.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceFilter {
+    private String status;
+    private Long customerId;
+    private LocalDate issuedFrom;
+    private LocalDate issuedTo;
+    private Long minTotal;
+    private Long maxTotal;
+    @Builder.Default
+    private InvoiceSort sort = InvoiceSort.ISSUED_AT_DESC;
+    private InvoiceCursor cursor;
+    private int size;
+}
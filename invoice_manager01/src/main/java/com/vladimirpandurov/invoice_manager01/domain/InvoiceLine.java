@@ -0,0 +1,24 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+@Data
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class InvoiceLine {
+    private Long id;
+    private Long invoiceId;
+    private String description;
+    private long quantity;
+    private long unitPrice;
+    private int discount;
+    private int taxRate;
+    private long lineTotal;
+    private long lineTax;
+}
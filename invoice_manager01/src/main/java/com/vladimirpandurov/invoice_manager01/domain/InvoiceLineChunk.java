@@ -0,0 +1,50 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+/**
+ * A reusable column-wise buffer of invoice lines, ordered by invoice. Lets a recalculation pass run over
+ * millions of lines without allocating an object per line.
+ */
+public class InvoiceLineChunk {
+
+    public final long[] lineIds;
+    public final long[] invoiceIds;
+    public final long[] quantities;
+    public final long[] unitPrices;
+    public final int[] discounts;
+    public final long[] lineTotals;
+    public final long[] lineTaxes;
+    private int size;
+
+    public InvoiceLineChunk(int capacity){
+        this.lineIds = new long[capacity];
+        this.invoiceIds = new long[capacity];
+        this.quantities = new long[capacity];
+        this.unitPrices = new long[capacity];
+        this.discounts = new int[capacity];
+        this.lineTotals = new long[capacity];
+        this.lineTaxes = new long[capacity];
+    }
+
+    public int add(long lineId, long invoiceId, long quantity, long unitPrice, int discount, long lineTotal, long lineTax){
+        lineIds[size] = lineId;
+        invoiceIds[size] = invoiceId;
+        quantities[size] = quantity;
+        unitPrices[size] = unitPrice;
+        discounts[size] = discount;
+        lineTotals[size] = lineTotal;
+        lineTaxes[size] = lineTax;
+        return ++size;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isFull(){
+        return size == lineIds.length;
+    }
+
+    public void clear(){
+        size = 0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.vladimirpandurov.invoice_manager01.utils.MoneyMath;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * An amount in the minor units of its currency. Used at the API boundary; hot paths work on the raw
+ * {@code long} through {@link MoneyMath}.
+ */
+public record Money(long minorUnits, Currency currency) {
+
+    public static Money of(long minorUnits, String currencyCode){
+        return new Money(minorUnits, Currency.getInstance(currencyCode));
+    }
+
+    public static Money of(BigDecimal amount, String currencyCode){
+        Currency currency = Currency.getInstance(currencyCode);
+        return new Money(amount.movePointRight(currency.getDefaultFractionDigits()).longValueExact(), currency);
+    }
+
+    public Money plus(Money other){
+        checkCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other){
+        checkCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money tax(int rateBasisPoints, RoundingMode roundingMode){
+        return new Money(MoneyMath.tax(minorUnits, rateBasisPoints, roundingMode), currency);
+    }
+
+    public BigDecimal toBigDecimal(){
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
+    private void checkCurrency(Money other){
+        if(!currency.equals(other.currency)) throw new ArithmeticException("Currency mismatch: " + currency + " and " + other.currency);
+    }
+
+    @Override
+    public String toString(){
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+}
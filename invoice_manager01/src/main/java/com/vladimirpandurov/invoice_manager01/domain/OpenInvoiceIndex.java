@@ -0,0 +1,114 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Open invoices in primitive arrays, with hash lookups by invoice number and by currency and open amount.
+ * Invoices with the same currency and amount are chained through an int array, so the index holds two map
+ * entries per invoice and nothing else. Invoices must arrive ordered by customer so each customer's name is
+ * stored once.
+ */
+public class OpenInvoiceIndex {
+
+    private long[] invoiceIds = new long[1024];
+    private String[] references = new String[1024];
+    private long[] customerIds = new long[1024];
+    private String[] customerNames = new String[1024];
+    private String[] currencies = new String[1024];
+    private long[] openAmounts = new long[1024];
+    private int[] nextWithAmount = new int[1024];
+    private final Map<String, Integer> byReference = new HashMap<>();
+    private final Map<AmountKey, Integer> byAmount = new HashMap<>();
+    private final Map<String, String> currencyNames = new HashMap<>();
+    private int size;
+
+    public void add(long invoiceId, String invoiceNumber, long customerId, String customerName, String currency, long openAmount){
+        if(size == invoiceIds.length) grow();
+        int row = size++;
+        invoiceIds[row] = invoiceId;
+        references[row] = normalize(invoiceNumber);
+        customerIds[row] = customerId;
+        customerNames[row] = row > 0 && customerIds[row - 1] == customerId ? customerNames[row - 1] : normalize(customerName);
+        currencies[row] = currencyNames.computeIfAbsent(currency, name -> name);
+        openAmounts[row] = openAmount;
+        byReference.put(references[row], row);
+        Integer next = byAmount.put(new AmountKey(currencies[row], openAmount), row);
+        nextWithAmount[row] = next == null ? -1 : next;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Row of the invoice with the given normalized number, or -1.
+     */
+    public int findByReference(String reference){
+        Integer row = byReference.get(reference);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * First row of the invoices that were open for exactly this amount when the index was built, or -1.
+     */
+    public int firstWithAmount(String currency, long amount){
+        Integer row = byAmount.get(new AmountKey(currency, amount));
+        return row == null ? -1 : row;
+    }
+
+    public int nextWithAmount(int row){
+        return nextWithAmount[row];
+    }
+
+    public long invoiceId(int row){
+        return invoiceIds[row];
+    }
+
+    public String reference(int row){
+        return references[row];
+    }
+
+    public String customerName(int row){
+        return customerNames[row];
+    }
+
+    public String currency(int row){
+        return currencies[row];
+    }
+
+    public long openAmount(int row){
+        return openAmounts[row];
+    }
+
+    public void pay(int row, long amount){
+        openAmounts[row] -= amount;
+    }
+
+    /**
+     * Upper case letters and digits only, so "inv-0001 " in a statement finds invoice INV-0001.
+     */
+    public static String normalize(String value){
+        if(value == null) return "";
+        StringBuilder normalized = new StringBuilder(value.length());
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if(Character.isLetterOrDigit(c)) normalized.append(Character.toUpperCase(c));
+        }
+        return normalized.toString();
+    }
+
+    private void grow(){
+        int capacity = size * 2;
+        invoiceIds = Arrays.copyOf(invoiceIds, capacity);
+        references = Arrays.copyOf(references, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        customerNames = Arrays.copyOf(customerNames, capacity);
+        currencies = Arrays.copyOf(currencies, capacity);
+        openAmounts = Arrays.copyOf(openAmounts, capacity);
+        nextWithAmount = Arrays.copyOf(nextWithAmount, capacity);
+    }
+
+    private record AmountKey(String currency, long amount) {}
+}
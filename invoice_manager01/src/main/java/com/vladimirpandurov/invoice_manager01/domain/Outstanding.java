@@ -0,0 +1,11 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+/**
+ * Open invoices of one currency and the amount still owed on them, in minor units.
+ */
+public record Outstanding(String currency, long invoices, long amount) {
+
+    public Outstanding merge(Outstanding other){
+        return new Outstanding(currency, invoices + other.invoices, amount + other.amount);
+    }
+}
@@ -0,0 +1,45 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of payments matched to invoices, written in one batch. Keeps the statement line of each
+ * payment so a payment the database refuses can still be reported, and its payment key to record it as applied.
+ */
+public class PaymentChunk {
+
+    public final long[] invoiceIds;
+    public final long[] amounts;
+    public final StatementLine[] lines;
+    public final String[] paymentKeys;
+    private int size;
+
+    public PaymentChunk(int capacity){
+        this.invoiceIds = new long[capacity];
+        this.amounts = new long[capacity];
+        this.lines = new StatementLine[capacity];
+        this.paymentKeys = new String[capacity];
+    }
+
+    public int add(long invoiceId, long amount, StatementLine line, String paymentKey){
+        invoiceIds[size] = invoiceId;
+        amounts[size] = amount;
+        lines[size] = line;
+        paymentKeys[size] = paymentKey;
+        return ++size;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isFull(){
+        return size == invoiceIds.length;
+    }
+
+    public void clear(){
+        Arrays.fill(lines, 0, size, null);
+        Arrays.fill(paymentKeys, 0, size, null);
+        size = 0;
+    }
+}
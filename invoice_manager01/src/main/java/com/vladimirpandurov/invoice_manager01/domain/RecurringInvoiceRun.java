@@ -0,0 +1,25 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringInvoiceRun {
+    private Long id;
+    private LocalDate runDate;
+    private int partitions;
+    private List<Checkpoint> checkpoints;
+
+    /**
+     * A partition covers the template ids after {@code lastTemplateId} up to and including {@code endTemplateId}.
+     */
+    public record Checkpoint(int partition, long lastTemplateId, long endTemplateId) {}
+}
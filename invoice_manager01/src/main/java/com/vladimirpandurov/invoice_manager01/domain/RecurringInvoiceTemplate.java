@@ -0,0 +1,43 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class RecurringInvoiceTemplate {
+    private Long id;
+    private Long customerId;
+    private String currency;
+    private int intervalMonths;
+    private int dueDays;
+    private LocalDate nextRunDate;
+    private List<InvoiceLine> lines;
+
+    /**
+     * Every billing period due by {@code runDate}, oldest first, so a template that missed runs catches up.
+     */
+    public List<LocalDate> getDuePeriods(LocalDate runDate){
+        List<LocalDate> periods = new ArrayList<>();
+        for(LocalDate period = nextRunDate; !period.isAfter(runDate); period = period.plusMonths(Math.max(1, intervalMonths))){
+            periods.add(period);
+        }
+        return periods;
+    }
+
+    public LocalDate getNextRunDateAfter(LocalDate runDate){
+        LocalDate next = nextRunDate;
+        while(!next.isAfter(runDate)) next = next.plusMonths(Math.max(1, intervalMonths));
+        return next;
+    }
+}
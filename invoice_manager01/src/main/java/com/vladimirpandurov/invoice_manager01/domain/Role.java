@@ -15,4 +15,5 @@ public class Role {
     private Long id;
     private String name;
     private String permission;
+    private long permissionMask;
 }
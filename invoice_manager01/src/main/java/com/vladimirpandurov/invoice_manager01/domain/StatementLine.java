@@ -0,0 +1,30 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+
+/**
+ * One incoming payment of a bank statement. The amount is in currency minor units; the transaction id is the
+ * bank's own id of the payment, when the statement carries one.
+ */
+public record StatementLine(long lineNumber, LocalDate bookedAt, long amount, String currency, String reference, String payer,
+                            String transactionId) {
+
+    /**
+     * Identifies the payment across reconciliations: the SHA-256 of the transaction id when there is one, which
+     * also holds across overlapping statements, and otherwise of the line number and content, which holds when
+     * the same statement is read again.
+     */
+    public String paymentKey(){
+        String identity = transactionId != null && !transactionId.isBlank() ? "transaction:" + transactionId
+                : "line:" + lineNumber + "|" + bookedAt + "|" + amount + "|" + currency + "|" + reference + "|" + payer;
+        try{
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8)));
+        }catch (NoSuchAlgorithmException exception){
+            throw new IllegalStateException(exception);
+        }
+    }
+}
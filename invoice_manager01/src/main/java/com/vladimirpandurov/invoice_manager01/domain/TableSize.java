@@ -0,0 +1,7 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+/**
+ * Row count and on-disk bytes (data and indexes) of a table, as estimated by information_schema.
+ */
+public record TableSize(long rows, long bytes) {
+}
@@ -0,0 +1,18 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+@Data
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Tenant {
+    private Long id;
+    private String name;
+    private String shard;
+    private TenantStatus status;
+}
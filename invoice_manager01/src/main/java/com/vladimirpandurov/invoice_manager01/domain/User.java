@@ -36,4 +36,6 @@ public class User {
     private boolean isNotLocked;
     private boolean isUsingMfa;
     private LocalDateTime createdAt;
+    private int version;
+    private Long tenantId;
 }
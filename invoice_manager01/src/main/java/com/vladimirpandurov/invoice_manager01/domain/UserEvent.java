@@ -0,0 +1,24 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.vladimirpandurov.invoice_manager01.enumeration.EventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+
+@Data
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class UserEvent {
+    private Long id;
+    private EventType type;
+    private String description;
+    private String ipAddress;
+    private String device;
+    private LocalDateTime createdAt;
+}
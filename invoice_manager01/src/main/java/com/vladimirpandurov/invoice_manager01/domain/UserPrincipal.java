@@ -1,14 +1,12 @@
 package com.vladimirpandurov.invoice_manager01.domain;
 
 import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import com.vladimirpandurov.invoice_manager01.enumeration.Permission;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.stream.Collectors;
 
 import static com.vladimirpandurov.invoice_manager01.dtomapper.UserDTOMapper.fromUser;
 
@@ -21,7 +19,15 @@ public class UserPrincipal implements UserDetails {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Arrays.stream(this.role.getPermission().split(",".trim())).map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+        return Permission.getAuthorities(this.role.getPermissionMask());
+    }
+
+    public long getPermissionMask() {
+        return this.role.getPermissionMask();
+    }
+
+    public Long getTenantId() {
+        return this.user.getTenantId();
     }
 
     @Override
@@ -0,0 +1,14 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+
+@Getter
+@AllArgsConstructor
+public class EventsData {
+    private final Collection<UserEvent> events;
+    private final Long nextCursor;
+}
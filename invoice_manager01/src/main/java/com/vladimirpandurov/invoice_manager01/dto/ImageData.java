@@ -0,0 +1,11 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ImageData {
+    private final String imageUrl;
+    private final String thumbnailUrl;
+}
@@ -0,0 +1,11 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class InvoiceData {
+    private final Invoice invoice;
+}
@@ -0,0 +1,14 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+
+@Getter
+@AllArgsConstructor
+public class InvoicesData {
+    private final Collection<Invoice> invoices;
+    private final String nextCursor;
+}
@@ -0,0 +1,20 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.JobStatus;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+public class JobData {
+    private final Long id;
+    private final JobType type;
+    private final JobStatus status;
+    private final long processed;
+    private final String message;
+    private final LocalDateTime startedAt;
+    private final LocalDateTime updatedAt;
+}
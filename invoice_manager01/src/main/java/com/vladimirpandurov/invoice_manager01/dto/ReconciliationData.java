@@ -0,0 +1,19 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ReconciliationData {
+    private final long lines;
+    private final long exactMatches;
+    private final long fuzzyMatches;
+    private final long partialPayments;
+    private final long exceptions;
+    private final long ignored;
+    private final long alreadyApplied;
+    private final int openInvoices;
+    private final long elapsedMillis;
+    private final String report;
+}
@@ -0,0 +1,14 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ReportProgressData {
+    private final boolean running;
+    private final int rangesCompleted;
+    private final int rangesTotal;
+    private final long invoicesScanned;
+    private final long elapsedMillis;
+}
@@ -0,0 +1,15 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TokenData {
+    private final UserDTO user;
+    @JsonProperty("access_token")
+    private final String accessToken;
+    @JsonProperty("refresh_token")
+    private final String refreshToken;
+}
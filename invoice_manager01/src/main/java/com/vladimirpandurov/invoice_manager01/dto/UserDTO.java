@@ -23,6 +23,8 @@ public class UserDTO {
     private boolean isNotLocked;
     private boolean isUsingMfa;
     private LocalDateTime createdAt;
+    private int version;
+    private Long tenantId;
     private String roleName;
     private String permissions;
 }
@@ -0,0 +1,10 @@
+package com.vladimirpandurov.invoice_manager01.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UserData {
+    private final UserDTO user;
+}
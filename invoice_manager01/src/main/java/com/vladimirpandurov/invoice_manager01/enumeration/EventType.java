@@ -0,0 +1,21 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+public enum EventType {
+    LOGIN_ATTEMPT_SUCCESS("You logged in successfully"),
+    LOGIN_ATTEMPT_FAILURE("You tried to log in and you failed"),
+    MFA_CHALLENGE("A verification code was sent to you"),
+    MFA_VERIFIED("You verified your login with a code"),
+    PASSWORD_RESET_REQUEST("You requested a password reset"),
+    PASSWORD_UPDATE("You updated your password"),
+    ROLE_UPDATE("Your role and permissions were updated");
+
+    private final String description;
+
+    EventType(String description){
+        this.description = description;
+    }
+
+    public String getDescription(){
+        return this.description;
+    }
+}
@@ -0,0 +1,48 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+public enum ImageType {
+    PNG("image/png", "png", new byte[]{(byte) 0x89, 'P', 'N', 'G'}),
+    JPEG("image/jpeg", "jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    GIF("image/gif", "gif", new byte[]{'G', 'I', 'F', '8'});
+
+    public static final int HEADER_LENGTH = 4;
+    private final String contentType;
+    private final String extension;
+    private final byte[] signature;
+
+    ImageType(String contentType, String extension, byte[] signature){
+        this.contentType = contentType;
+        this.extension = extension;
+        this.signature = signature;
+    }
+
+    public String getContentType(){
+        return this.contentType;
+    }
+
+    public String getExtension(){
+        return this.extension;
+    }
+
+    public static ImageType fromHeader(byte[] header){
+        for(ImageType type : values()){
+            if(startsWith(header, type.signature)) return type;
+        }
+        return null;
+    }
+
+    public static ImageType fromExtension(String extension){
+        for(ImageType type : values()){
+            if(type.extension.equals(extension)) return type;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, byte[] signature){
+        if(header.length < signature.length) return false;
+        for(int i = 0; i < signature.length; i++){
+            if(header[i] != signature[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+
+import java.time.LocalDate;
+
+/**
+ * Sort orders of the invoice listing. Every order ends with the id, so the sort key plus the id identify a row
+ * and can be used as a keyset cursor.
+ */
+public enum InvoiceSort {
+    ISSUED_AT_DESC("issued_at", true),
+    ISSUED_AT_ASC("issued_at", false),
+    TOTAL_DESC("total", true),
+    TOTAL_ASC("total", false);
+
+    private final String column;
+    private final boolean descending;
+
+    InvoiceSort(String column, boolean descending){
+        this.column = column;
+        this.descending = descending;
+    }
+
+    public String getColumn(){
+        return this.column;
+    }
+
+    public boolean isDescending(){
+        return this.descending;
+    }
+
+    public long getKey(Invoice invoice){
+        return isDate() ? invoice.getIssuedAt().toEpochDay() : invoice.getTotal();
+    }
+
+    public Object toParameter(long key){
+        return isDate() ? LocalDate.ofEpochDay(key) : key;
+    }
+
+    private boolean isDate(){
+        return this == ISSUED_AT_DESC || this == ISSUED_AT_ASC;
+    }
+}
@@ -0,0 +1,8 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+/**
+ * ABANDONED jobs stopped reporting, usually because their instance went down; they can be started again.
+ */
+public enum JobStatus {
+    RUNNING, COMPLETED, FAILED, ABANDONED
+}
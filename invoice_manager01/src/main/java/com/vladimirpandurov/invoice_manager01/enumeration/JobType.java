@@ -0,0 +1,11 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+/**
+ * Kinds of {@code BackgroundJobRunner} jobs. At most one job of a type runs per tenant at a time.
+ */
+public enum JobType {
+    TAX_RECALCULATION,
+    RECURRING_INVOICES,
+    TENANT_MOVE,
+    INVOICE_ARCHIVE
+}
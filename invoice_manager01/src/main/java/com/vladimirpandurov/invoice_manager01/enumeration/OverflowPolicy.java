@@ -0,0 +1,5 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+public enum OverflowPolicy {
+    DROP, BLOCK
+}
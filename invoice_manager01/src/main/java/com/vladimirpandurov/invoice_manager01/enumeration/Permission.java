@@ -0,0 +1,91 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of every permission stored in {@code Roles.permission}. The bit of a permission is its ordinal and
+ * is carried in access tokens, so new permissions must only ever be appended.
+ */
+@Slf4j
+public enum Permission {
+    READ_USER("READ:USER"),
+    READ_CUSTOMER("READ:CUSTOMER"),
+    CREATE_USER("CREATE:USER"),
+    CREATE_CUSTOMER("CREATE:CUSTOMER"),
+    UPDATE_USER("UPDATE:USER"),
+    UPDATE_CUSTOMER("UPDATE:CUSTOMER"),
+    DELETE_USER("DELETE:USER"),
+    DELETE_CUSTOMER("DELETE:CUSTOMER"),
+    MANAGE_TENANT("MANAGE:TENANT"),
+    MANAGE_INVOICE("MANAGE:INVOICE");
+
+    private static final Map<String, Permission> BY_AUTHORITY = new HashMap<>();
+    private static final Map<Long, List<GrantedAuthority>> AUTHORITIES_BY_MASK = new ConcurrentHashMap<>();
+
+    static {
+        for(Permission permission : values()){
+            BY_AUTHORITY.put(permission.authority, permission);
+        }
+    }
+
+    private final String authority;
+    private final GrantedAuthority grantedAuthority;
+
+    Permission(String authority){
+        this.authority = authority;
+        this.grantedAuthority = new SimpleGrantedAuthority(authority);
+    }
+
+    public String getAuthority(){
+        return this.authority;
+    }
+
+    public long getMask(){
+        return 1L << ordinal();
+    }
+
+    public boolean isGranted(long mask){
+        return (mask & getMask()) != 0;
+    }
+
+    /**
+     * Fails on a permission missing from this registry; dropping it would silently take that access away.
+     */
+    public static long toMask(String permissions){
+        long mask = 0;
+        if(permissions == null) return mask;
+        for(String authority : permissions.split(",")){
+            if(authority.isBlank()) continue;
+            Permission permission = BY_AUTHORITY.get(authority.trim());
+            if(permission == null){
+                log.error("Unknown permission: {}", authority.trim());
+                throw new IllegalArgumentException("Unknown permission: " + authority.trim());
+            }
+            mask |= permission.getMask();
+        }
+        return mask;
+    }
+
+    public static long toMask(String[] authorities){
+        return authorities == null ? 0 : toMask(String.join(",", authorities));
+    }
+
+    public static List<GrantedAuthority> getAuthorities(long mask){
+        return AUTHORITIES_BY_MASK.computeIfAbsent(mask, key -> {
+            List<GrantedAuthority> authorities = new ArrayList<>(Long.bitCount(key));
+            for(Permission permission : values()){
+                if(permission.isGranted(key)) authorities.add(permission.grantedAuthority);
+            }
+            return Collections.unmodifiableList(authorities);
+        });
+    }
+}
@@ -0,0 +1,9 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+/**
+ * ACTIVE tenants are served from their shard. COPYING tenants are being copied to another shard and stay fully
+ * usable; READ_ONLY tenants are in the last pass of a move and get read-only connections.
+ */
+public enum TenantStatus {
+    ACTIVE, COPYING, READ_ONLY
+}
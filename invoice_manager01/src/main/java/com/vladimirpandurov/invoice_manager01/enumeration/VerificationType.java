@@ -2,7 +2,8 @@ package com.vladimirpandurov.invoice_manager01.enumeration;
 
 public enum VerificationType {
     ACCOUNT("ACCOUNT"),
-    PASSWORD("PASSWORD");
+    PASSWORD("PASSWORD"),
+    CODE("CODE");
 
     private final String type;
 
@@ -3,6 +3,7 @@ package com.vladimirpandurov.invoice_manager01.exception;
 import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.servlet.error.ErrorController;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -16,6 +17,7 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
@@ -61,4 +63,30 @@ public class HandleException extends ResponseEntityExceptionHandler implements E
                 .build(), HttpStatus.BAD_REQUEST
         );
     }
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<HttpResponse> optimisticLockingFailureException(OptimisticLockingFailureException exception){
+        return new ResponseEntity<>(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .reason(exception.getMessage())
+                .developerMessage(exception.getMessage())
+                .status(HttpStatus.CONFLICT)
+                .statusCode(HttpStatus.CONFLICT.value())
+                .build(), HttpStatus.CONFLICT
+        );
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<HttpResponse> rejectedExecutionException(RejectedExecutionException exception){
+        log.warn(exception.getMessage());
+        return new ResponseEntity<>(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .reason("The server is busy. Please try again later.")
+                .developerMessage(exception.getMessage())
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .build(), HttpStatus.SERVICE_UNAVAILABLE
+        );
+    }
 }
@@ -0,0 +1,101 @@
+package com.vladimirpandurov.invoice_manager01.filter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * AIMD concurrency limit driven by latency. The fastest latency of the previous window of samples is the
+ * no-queueing baseline; a response slower than {@link #LATENCY_TOLERANCE} times the baseline, or a failure, means
+ * requests are queueing downstream and the limit is cut by {@link #BACKOFF_RATIO}, at most once per such latency.
+ * Otherwise, while at least half of the limit is in use, it grows by one per limit's worth of responses.
+ * <p>
+ * The baseline is re-measured every window, so after a lasting slowdown the limit probes upwards again instead of
+ * staying at its floor. Responses update the limit without a lock: a sample counted into the wrong window or a
+ * growth step lost to a concurrent one only shifts the estimate by a fraction of a permit.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final int BASELINE_SAMPLES = 500;
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoTime;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+    private final AtomicLong estimate;
+    private final AtomicLong windowMinLatency = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicInteger windowSamples = new AtomicInteger();
+    private final AtomicLong lastDecrease;
+    private volatile long baselineLatency = Long.MAX_VALUE;
+    private volatile int limit;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit){
+        this(initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, LongSupplier nanoTime){
+        double initial = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.nanoTime = nanoTime;
+        this.estimate = new AtomicLong(Double.doubleToLongBits(initial));
+        this.lastDecrease = new AtomicLong(nanoTime.getAsLong() - TimeUnit.HOURS.toNanos(1));
+        this.limit = (int) initial;
+    }
+
+    public boolean tryAcquire(){
+        while(true){
+            int current = inFlight.get();
+            if(current >= limit){
+                shed.increment();
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    public void release(long latencyNanos, boolean failed){
+        int used = inFlight.getAndDecrement();
+        long baseline = sample(latencyNanos);
+        if(failed || latencyNanos > baseline * LATENCY_TOLERANCE){
+            long now = nanoTime.getAsLong();
+            long last = lastDecrease.get();
+            if(now - last < latencyNanos || !lastDecrease.compareAndSet(last, now)) return;
+            update(current -> Math.max(minLimit, current * BACKOFF_RATIO));
+        }else if(used * 2 >= limit){
+            update(current -> Math.min(maxLimit, current + 1.0 / current));
+        }
+    }
+
+    private long sample(long latencyNanos){
+        long windowMin = windowMinLatency.accumulateAndGet(latencyNanos, Math::min);
+        if(windowSamples.incrementAndGet() == BASELINE_SAMPLES){
+            baselineLatency = windowMinLatency.getAndSet(Long.MAX_VALUE);
+            windowSamples.set(0);
+        }
+        long baseline = baselineLatency;
+        return baseline == Long.MAX_VALUE ? windowMin : baseline;
+    }
+
+    private void update(DoubleUnaryOperator step){
+        long next = estimate.updateAndGet(bits -> Double.doubleToLongBits(step.applyAsDouble(Double.longBitsToDouble(bits))));
+        limit = (int) Double.longBitsToDouble(next);
+    }
+
+    public int getLimit(){
+        return this.limit;
+    }
+
+    public int getInFlight(){
+        return this.inFlight.get();
+    }
+
+    public long getShed(){
+        return this.shed.sum();
+    }
+}
@@ -0,0 +1,143 @@
+package com.vladimirpandurov.invoice_manager01.filter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+/**
+ * Sheds /user requests beyond an {@link AdaptiveConcurrencyLimit} with an immediate 503, so a slow database
+ * builds no backlog in Tomcat. Runs ahead of the security chain, so a shed request costs no token verification,
+ * and the 503 body is serialized once at startup. Every authentication route, reads and writes each have their own
+ * limit and latency baseline, so a login storm cannot starve reads, and BCrypt-bound logins are not measured
+ * against token refreshes. Since nothing is authenticated yet, requests are classified by path and method only.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String[] AUTH_ROUTES = {"/user/login", "/user/register", "/user/verify/", "/user/resetpassword", "/user/refresh/token"};
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    private final Map<String, AdaptiveConcurrencyLimit> limits = new HashMap<>();
+    private final byte[] overloadedBody;
+    private final String retryAfter;
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${application.concurrency-limit.initial:20}") int initialLimit,
+                                  @Value("${application.concurrency-limit.min:4}") int minLimit,
+                                  @Value("${application.concurrency-limit.max:200}") int maxLimit,
+                                  @Value("${application.concurrency-limit.retry-after:1}") int retryAfter) throws JsonProcessingException {
+        List<String> routeClasses = new ArrayList<>(List.of(AUTH_ROUTES));
+        routeClasses.add(READ);
+        routeClasses.add(WRITE);
+        for(String routeClass : routeClasses){
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit);
+            limits.put(routeClass, limit);
+            Gauge.builder("http.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit).tag("route", routeClass).register(meterRegistry);
+            Gauge.builder("http.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight).tag("route", routeClass).register(meterRegistry);
+            FunctionCounter.builder("http.concurrency.shed", limit, AdaptiveConcurrencyLimit::getShed).tag("route", routeClass).register(meterRegistry);
+        }
+        this.retryAfter = String.valueOf(retryAfter);
+        this.overloadedBody = new ObjectMapper().writeValueAsBytes(HttpResponse.builder()
+                .reason("The service is busy. Please try again shortly.")
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .build());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        AdaptiveConcurrencyLimit limit = limits.get(getRouteClass(request));
+        if(!limit.tryAcquire()){
+            reject(response);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean released = false;
+        try{
+            filterChain.doFilter(request, response);
+            if(request.isAsyncStarted()){
+                request.getAsyncContext().addListener(new ReleaseListener(limit, start));
+            }else {
+                limit.release(System.nanoTime() - start, response.getStatus() >= 500);
+            }
+            released = true;
+        }finally {
+            if(!released) limit.release(System.nanoTime() - start, true);
+        }
+    }
+
+    /**
+     * Image downloads are excluded: their duration follows the client's bandwidth, not the load on the database.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !path.startsWith("/user/") || path.startsWith("/user/image/");
+    }
+
+    static String getRouteClass(HttpServletRequest request){
+        String path = request.getRequestURI();
+        for(String route : AUTH_ROUTES){
+            if(path.startsWith(route)) return route;
+        }
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()) ? READ : WRITE;
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(RETRY_AFTER, retryAfter);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(overloadedBody.length);
+        response.getOutputStream().write(overloadedBody);
+    }
+
+    private record ReleaseListener(AdaptiveConcurrencyLimit limit, long start) implements AsyncListener {
+
+        // Also follows onTimeout and onError, so the permit is released exactly once, here
+        @Override
+        public void onComplete(AsyncEvent event) {
+            HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+            limit.release(System.nanoTime() - start, response.getStatus() >= 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
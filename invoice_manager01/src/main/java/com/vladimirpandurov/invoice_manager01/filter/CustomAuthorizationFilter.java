@@ -1,6 +1,10 @@
 package com.vladimirpandurov.invoice_manager01.filter;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.vladimirpandurov.invoice_manager01.provider.PermissionAuthenticationToken;
 import com.vladimirpandurov.invoice_manager01.provider.TokenProvider;
+import com.vladimirpandurov.invoice_manager01.service.UserService;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,15 +13,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 import static com.vladimirpandurov.invoice_manager01.utils.ExceptionUtils.processError;
@@ -32,18 +34,16 @@ public class CustomAuthorizationFilter extends OncePerRequestFilter {
     private static final String[] PUBLIC_ROUTES = {"/user/login", "/user/verify/code", "/user/register", "/user/refresh/token"};
     private static final String HTTP_OPTIONS_METHOD = "OPTIONS";
     private final TokenProvider tokenProvider;
-    protected static final String TOKEN_KEY = "token";
-    protected static final String EMAIL_KEY = "email";
+    private final UserService userService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         try{
-            String token = getToken(request);
-            Map<String, String> values = getRequestValues(request, token);
-            if(tokenProvider.isTokenValid(values.get(EMAIL_KEY), token)){
-                List<GrantedAuthority> authorities = tokenProvider.getAuthorities(values.get(TOKEN_KEY));
-                Authentication authentication = tokenProvider.getAuthentication(values.get(EMAIL_KEY), authorities, request);
+            DecodedJWT token = tokenProvider.verify(getToken(request), request);
+            if(tokenProvider.isAccessTokenActive(token)){
+                Authentication authentication = getAuthentication(token.getSubject(), tokenProvider.getPermissions(token), request);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                TenantContext.setTenantId(tokenProvider.getTenantId(token));
             }else {
                 SecurityContextHolder.clearContext();
             }
@@ -51,6 +51,8 @@ public class CustomAuthorizationFilter extends OncePerRequestFilter {
         }catch (Exception exception){
             log.error(exception.getMessage());
             processError(request, response, exception);
+        }finally {
+            TenantContext.clear();
         }
     }
 
@@ -62,8 +64,10 @@ public class CustomAuthorizationFilter extends OncePerRequestFilter {
                 Arrays.asList(PUBLIC_ROUTES).contains(request.getRequestURI());
     }
 
-    private Map<String, String> getRequestValues(HttpServletRequest request, String token){
-        return Map.of(EMAIL_KEY, tokenProvider.getSubject(token, request), TOKEN_KEY, token);
+    private Authentication getAuthentication(String email, long permissions, HttpServletRequest request){
+        PermissionAuthenticationToken authenticationToken = new PermissionAuthenticationToken(userService.getUserByEmail(email), permissions);
+        authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        return authenticationToken;
     }
 
     private String getToken(HttpServletRequest request){
@@ -0,0 +1,282 @@
+package com.vladimirpandurov.invoice_manager01.filter;
+
+import com.vladimirpandurov.invoice_manager01.cache.IdempotencyStore;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.domain.IdempotentResponse;
+import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.vladimirpandurov.invoice_manager01.utils.ResponseUtils.writeResponse;
+import static org.springframework.http.HttpHeaders.LOCATION;
+
+/**
+ * Replays the stored response of a write request retried with the same Idempotency-Key header, without
+ * reaching the service layer. Keys are scoped to the method, path, authenticated user and body of the request,
+ * so a retry with a refreshed token still replays while the same key reused for a different body runs on its own.
+ * Image uploads are the exception: they are streamed to disk unbuffered, and their key covers the content type and
+ * length rather than the bytes.
+ * The filter runs after the security filter chain, which has authenticated the request by then. Server errors
+ * are not stored, so the client may retry them.
+ */
+@Component
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String KEY_ATTRIBUTE = IdempotencyFilter.class.getName() + ".KEY";
+    private static final Set<String> METHODS = Set.of("POST", "PUT", "PATCH");
+    private static final int MAX_KEY_LENGTH = 255;
+    private final IdempotencyStore idempotencyStore;
+    private final long waitTimeout;
+    private final int maxBodySize;
+    private final int maxRequestSize;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore,
+                             @Value("${application.idempotency.wait-timeout:30000}") long waitTimeout,
+                             @Value("${application.idempotency.max-body-size:65536}") int maxBodySize,
+                             @Value("${application.idempotency.max-request-size:1048576}") int maxRequestSize){
+        this.idempotencyStore = idempotencyStore;
+        this.waitTimeout = TimeUnit.MILLISECONDS.toNanos(waitTimeout);
+        this.maxBodySize = maxBodySize;
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if(isAsyncDispatch(request)){
+            try{
+                filterChain.doFilter(request, response);
+            }catch (IOException | ServletException | RuntimeException exception){
+                String key = (String) request.getAttribute(KEY_ATTRIBUTE);
+                if(key != null) idempotencyStore.abandon(key);
+                throw exception;
+            }
+            finish(request, WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class));
+            return;
+        }
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY);
+        if(idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH){
+            writeError(response, HttpStatus.BAD_REQUEST, "Invalid " + IDEMPOTENCY_KEY + " header");
+            return;
+        }
+        if(!isMultipart(request) && !isImage(request)){
+            if(request.getContentLengthLong() > maxRequestSize){
+                writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large for an " + IDEMPOTENCY_KEY);
+                return;
+            }
+            byte[] body = request.getInputStream().readNBytes(maxRequestSize + 1);
+            if(body.length > maxRequestSize){
+                writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large for an " + IDEMPOTENCY_KEY);
+                return;
+            }
+            request = new CachedBodyRequest(request, body);
+        }
+        String key = scopedKey(request, idempotencyKey);
+        long deadline = System.nanoTime() + waitTimeout;
+        while(true){
+            CompletableFuture<IdempotentResponse> owner = idempotencyStore.claim(key, deadline);
+            if(owner == null) break;
+            IdempotentResponse stored = await(owner, deadline);
+            if(stored != null){
+                replay(response, stored);
+                return;
+            }
+            if(System.nanoTime() >= deadline){
+                writeError(response, HttpStatus.CONFLICT, "A request with this " + IDEMPOTENCY_KEY + " is still in progress");
+                return;
+            }
+        }
+        request.setAttribute(KEY_ATTRIBUTE, key);
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try{
+            filterChain.doFilter(request, wrapper);
+        }catch (IOException | ServletException | RuntimeException exception){
+            idempotencyStore.abandon(key);
+            throw exception;
+        }
+        finish(request, wrapper);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(IDEMPOTENCY_KEY) == null || !METHODS.contains(request.getMethod());
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    private void finish(HttpServletRequest request, ContentCachingResponseWrapper wrapper) throws IOException {
+        if(wrapper == null || isAsyncStarted(request)) return;
+        String key = (String) request.getAttribute(KEY_ATTRIBUTE);
+        if(key != null){
+            if(wrapper.getStatus() < 500 && wrapper.getContentSize() <= maxBodySize){
+                idempotencyStore.complete(key, new IdempotentResponse(wrapper.getStatus(), wrapper.getContentType(),
+                        wrapper.getHeader(LOCATION), wrapper.getContentAsByteArray()));
+            }else {
+                idempotencyStore.abandon(key);
+            }
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private IdempotentResponse await(CompletableFuture<IdempotentResponse> owner, long deadline){
+        try{
+            return owner.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }catch (TimeoutException | ExecutionException exception){
+            return null;
+        }catch (InterruptedException exception){
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotentResponse stored) throws IOException {
+        response.setStatus(stored.getStatus());
+        if(stored.getContentType() != null) response.setContentType(stored.getContentType());
+        if(stored.getLocation() != null) response.setHeader(LOCATION, stored.getLocation());
+        response.setHeader(IDEMPOTENCY_KEY + "-Replayed", "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String reason){
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setStatus(status.value());
+        writeResponse(response, HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .reason(reason)
+                .status(status)
+                .statusCode(status.value())
+                .build());
+    }
+
+    /**
+     * Hashes the method, path, authenticated user and body with the client's key. Multipart bodies are hashed
+     * part by part, because the container parses them from its own stream; their parts can be read repeatedly.
+     * Image bodies are left unread for ImageStorage to stream to disk, so only their type and length are hashed.
+     */
+    static String scopedKey(HttpServletRequest request, String idempotencyKey) throws IOException, ServletException {
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + ' ' + request.getRequestURI() + '\n' + principal() + '\n').getBytes(StandardCharsets.UTF_8));
+            if(isMultipart(request)){
+                for(Part part : request.getParts()){
+                    digest.update((part.getName() + '\n' + part.getSize() + '\n').getBytes(StandardCharsets.UTF_8));
+                    try(InputStream content = part.getInputStream()){
+                        digest.update(content.readAllBytes());
+                    }
+                }
+            }else if(isImage(request)){
+                digest.update((request.getContentType() + '\n' + request.getContentLengthLong()).getBytes(StandardCharsets.UTF_8));
+            }else {
+                digest.update(request.getInputStream().readAllBytes());
+            }
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(idempotencyKey.getBytes(StandardCharsets.UTF_8)));
+        }catch (NoSuchAlgorithmException exception){
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static String principal(){
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if(authentication == null || authentication instanceof AnonymousAuthenticationToken || !authentication.isAuthenticated()) return "";
+        if(authentication.getPrincipal() instanceof UserDTO user) return "user:" + user.getId();
+        return authentication.getName();
+    }
+
+    private static boolean isMultipart(HttpServletRequest request){
+        return request.getContentType() != null && request.getContentType().toLowerCase().startsWith("multipart/");
+    }
+
+    private static boolean isImage(HttpServletRequest request){
+        return request.getContentType() != null && request.getContentType().toLowerCase().startsWith("image/");
+    }
+
+    /**
+     * Holds the body read for the key, so the controller can read it again.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body){
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new IllegalStateException("The body is already read, so there is nothing to read without blocking");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.vladimirpandurov.invoice_manager01.form;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * Fields left out of the request are not changed. An empty string clears an optional field.
+ */
+@Data
+public class UpdateProfileForm {
+
+    @NotNull(message = "version cannot be empty")
+    private Integer version;
+    @Size(max = 50, message = "first name cannot be longer than 50 characters")
+    @Pattern(regexp = ".*\\S.*", message = "first name cannot be empty")
+    private String firstName;
+    @Size(max = 50, message = "last name cannot be longer than 50 characters")
+    @Pattern(regexp = ".*\\S.*", message = "last name cannot be empty")
+    private String lastName;
+    @Size(max = 255, message = "address cannot be longer than 255 characters")
+    private String address;
+    @Size(max = 30, message = "phone cannot be longer than 30 characters")
+    private String phone;
+    @Size(max = 50, message = "title cannot be longer than 50 characters")
+    private String title;
+    @Size(max = 255, message = "bio cannot be longer than 255 characters")
+    private String bio;
+
+}
@@ -1,6 +1,5 @@
 package com.vladimirpandurov.invoice_manager01.handler;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,9 +12,10 @@ import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.time.LocalDateTime;
 
+import static com.vladimirpandurov.invoice_manager01.utils.ResponseUtils.writeResponse;
+
 @Component
 @Slf4j
 public class CustomAuthenticationEntryPoint implements AuthenticationEntryPoint {
@@ -29,9 +29,6 @@ public class CustomAuthenticationEntryPoint implements AuthenticationEntryPoint
                 .build();
         response.setContentType(MediaType.APPLICATION_JSON_VALUE);
         response.setStatus(HttpStatus.UNAUTHORIZED.value());
-        OutputStream out = response.getOutputStream();
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.writeValue(out, httpResponse);
-        out.flush();
+        writeResponse(response, httpResponse);
     }
 }
@@ -0,0 +1,98 @@
+package com.vladimirpandurov.invoice_manager01.provider;
+
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_JDBC;
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_TRANSACTION_MANAGER;
+import static com.vladimirpandurov.invoice_manager01.query.InvoiceQuery.*;
+
+/**
+ * Hands out invoice numbers per sequence key (a tenant or a customer) from blocks reserved in the database.
+ * Only a block refill takes the row lock; every other allocation is an atomic increment in memory. Numbers of
+ * a block that was not used up before a crash are skipped, never reissued. A refill is a single upsert, so
+ * concurrent first use of a sequence cannot deadlock on the gap lock of a missing row.
+ */
+@Component
+@Slf4j
+public class InvoiceNumberProvider {
+
+    public static final String DEFAULT_SEQUENCE = "default";
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final int blockSize;
+    private final String defaultFormat;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private final Map<String, Object> refillLocks = new ConcurrentHashMap<>();
+
+    public InvoiceNumberProvider(@Qualifier(TENANT_JDBC) NamedParameterJdbcTemplate jdbc,
+                                 @Qualifier(TENANT_TRANSACTION_MANAGER) PlatformTransactionManager transactionManager,
+                                 @Value("${application.invoice.number-block-size:100}") int blockSize,
+                                 @Value("${application.invoice.number-format:INV-%08d}") String defaultFormat){
+        this.jdbc = jdbc;
+        // A reservation commits on its own; rolling it back with a caller's transaction would reissue the block
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+        this.defaultFormat = defaultFormat;
+    }
+
+    public String nextInvoiceNumber(String sequenceKey){
+        // Every tenant has its own sequences table, so blocks are held per tenant
+        String blockKey = TenantContext.getTenantId() + ":" + sequenceKey;
+        while(true){
+            Block block = blocks.get(blockKey);
+            if(block != null){
+                long number = block.next.getAndIncrement();
+                if(number < block.end) return String.format(block.format, number);
+            }
+            refill(blockKey, sequenceKey, block);
+        }
+    }
+
+    private void refill(String blockKey, String sequenceKey, Block exhausted){
+        synchronized (refillLocks.computeIfAbsent(blockKey, key -> new Object())){
+            if(blocks.get(blockKey) != exhausted) return;
+            blocks.put(blockKey, reserveBlock(sequenceKey));
+        }
+    }
+
+    private Block reserveBlock(String sequenceKey){
+        try{
+            return transactionTemplate.execute(status -> {
+                jdbc.update(RESERVE_INVOICE_SEQUENCE_BLOCK_QUERY, Map.of("sequenceKey", sequenceKey, "blockSize", blockSize, "format", defaultFormat));
+                Map<String, Object> sequence = jdbc.queryForMap(SELECT_INVOICE_SEQUENCE_QUERY, Map.of("sequenceKey", sequenceKey));
+                long start = ((Number) sequence.get("next_value")).longValue() - blockSize;
+                log.info("Reserved invoice numbers {} to {} for {}", start, start + blockSize - 1, sequenceKey);
+                return new Block(start, start + blockSize, (String) sequence.get("format"));
+            });
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("Unable to allocate an invoice number. Please try again.");
+        }
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+        private final String format;
+
+        private Block(long start, long end, String format){
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.format = format;
+        }
+    }
+}
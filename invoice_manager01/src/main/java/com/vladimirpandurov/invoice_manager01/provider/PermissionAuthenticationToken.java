@@ -0,0 +1,20 @@
+package com.vladimirpandurov.invoice_manager01.provider;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.Permission;
+import lombok.Getter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+@Getter
+public class PermissionAuthenticationToken extends UsernamePasswordAuthenticationToken {
+
+    private final long permissionMask;
+
+    public PermissionAuthenticationToken(Object principal, long permissionMask){
+        super(principal, null, Permission.getAuthorities(permissionMask));
+        this.permissionMask = permissionMask;
+    }
+
+    public boolean hasPermission(Permission permission){
+        return permission.isGranted(this.permissionMask);
+    }
+}
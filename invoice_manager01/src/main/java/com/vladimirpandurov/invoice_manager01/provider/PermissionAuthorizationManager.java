@@ -0,0 +1,32 @@
+package com.vladimirpandurov.invoice_manager01.provider;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.Permission;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.function.Supplier;
+
+public class PermissionAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private final Permission permission;
+
+    private PermissionAuthorizationManager(Permission permission){
+        this.permission = permission;
+    }
+
+    public static PermissionAuthorizationManager hasPermission(Permission permission){
+        return new PermissionAuthorizationManager(permission);
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        Authentication current = authentication.get();
+        if(current instanceof PermissionAuthenticationToken token){
+            return new AuthorizationDecision(token.isAuthenticated() && token.hasPermission(permission));
+        }
+        return new AuthorizationDecision(current != null && current.isAuthenticated() &&
+                current.getAuthorities().stream().anyMatch(authority -> permission.getAuthority().equals(authority.getAuthority())));
+    }
+}
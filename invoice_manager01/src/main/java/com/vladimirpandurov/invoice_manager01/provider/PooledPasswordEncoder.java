@@ -0,0 +1,45 @@
+package com.vladimirpandurov.invoice_manager01.provider;
+
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs every BCrypt hash on a pool sized to the CPU count. The calling request thread waits for the hash but does
+ * its database work itself, so logins are only queued for the CPU-bound part and never for I/O.
+ */
+public class PooledPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final Executor executor;
+
+    public PooledPasswordEncoder(int strength, Executor executor){
+        super(strength);
+        this.executor = executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return onPool(() -> super.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return onPool(() -> super.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> T onPool(Supplier<T> hash){
+        try{
+            return CompletableFuture.supplyAsync(hash, executor).join();
+        }catch (TaskRejectedException exception){
+            throw new ApiException("The server is busy. Please try again.");
+        }catch (CompletionException exception){
+            if(exception.getCause() instanceof RuntimeException cause) throw cause;
+            throw exception;
+        }
+    }
+}
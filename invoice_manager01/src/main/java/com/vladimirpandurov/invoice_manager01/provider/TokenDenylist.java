@@ -0,0 +1,71 @@
+package com.vladimirpandurov.invoice_manager01.provider;
+
+import com.vladimirpandurov.invoice_manager01.utils.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * In-memory revocation list keyed by token id. The Bloom filter answers the common "not revoked" case
+ * without touching the map; entries are dropped once the token they cover has expired.
+ */
+@Component
+@Slf4j
+public class TokenDenylist {
+
+    private static final long EXPECTED_REVOCATIONS = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    private static final long PURGE_INTERVAL = 60_000;
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<String, SubjectRevocation> revokedSubjects = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter = new BloomFilter(EXPECTED_REVOCATIONS, FALSE_POSITIVE_RATE);
+
+    public synchronized boolean revoke(String tokenId, Date expiresAt){
+        boolean revoked = revokedTokens.putIfAbsent(tokenId, expiresAt.getTime()) == null;
+        if(revoked) filter.put(tokenId);
+        return revoked;
+    }
+
+    /**
+     * Revokes every token of the subject issued up to and including the given millisecond.
+     */
+    public void revokeAllIssuedBefore(String subject, Date issuedBefore, long maxTokenLifetime){
+        revokedSubjects.put(subject, new SubjectRevocation(issuedBefore.getTime(), issuedBefore.getTime() + maxTokenLifetime));
+    }
+
+    public boolean isRevoked(String tokenId){
+        return tokenId != null && filter.mightContain(tokenId) && revokedTokens.containsKey(tokenId);
+    }
+
+    public boolean isRevoked(String subject, long issuedAtMillis){
+        if(revokedSubjects.isEmpty()) return false;
+        SubjectRevocation revocation = revokedSubjects.get(subject);
+        return revocation != null && issuedAtMillis <= revocation.issuedBefore();
+    }
+
+    @Scheduled(fixedDelay = PURGE_INTERVAL)
+    public void purgeExpired(){
+        long now = currentTimeMillis();
+        int before = revokedTokens.size();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+        revokedSubjects.values().removeIf(revocation -> revocation.expiresAt() < now);
+        if(revokedTokens.size() != before){
+            rebuildFilter();
+            log.info("Purged {} expired token revocations, {} remaining", before - revokedTokens.size(), revokedTokens.size());
+        }
+    }
+
+    private synchronized void rebuildFilter(){
+        BloomFilter rebuilt = new BloomFilter(Math.max(EXPECTED_REVOCATIONS, revokedTokens.size() * 2L), FALSE_POSITIVE_RATE);
+        revokedTokens.keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+    }
+
+    private record SubjectRevocation(long issuedBefore, long expiresAt) {}
+}
@@ -1,115 +1,156 @@
 package com.vladimirpandurov.invoice_manager01.provider;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.InvalidClaimException;
-import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.vladimirpandurov.invoice_manager01.domain.UserPrincipal;
-import com.vladimirpandurov.invoice_manager01.service.UserService;
+import com.vladimirpandurov.invoice_manager01.enumeration.Permission;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 import static java.lang.System.currentTimeMillis;
-import static java.util.Arrays.stream;
 
 @Component
 @RequiredArgsConstructor
 public class TokenProvider {
 
-    private final UserService userService;
+    private final TokenDenylist tokenDenylist;
     public static final String AUTHORITIES = "authorities";
+    public static final String PERMISSIONS = "permissions";
+    public static final String TOKEN_TYPE = "token_type";
+    public static final String TENANT = "tenant";
+    // The standard iat claim has whole seconds, too coarse to tell tokens issued around a revocation apart
+    public static final String ISSUED_AT_MILLIS = "iat_ms";
+    private static final String ACCESS_TOKEN = "access";
+    private static final String REFRESH_TOKEN = "refresh";
     private static final String GET_ARRAYS_LLC = "GET_ARRAYS_LLC";
     private static final String CUSTOMER_MANAGEMENT_SERVICE = "CUSTOMER_MANAGEMENT_SERVICE";
     private static final long ACCESS_TOKEN_EXPIRATION_TIME = 1_800_000;
     private static final long REFRESH_TOKEN_EXPIRATION_TIME = 432_000_000;
     @Value("$jwt.secret")
     private String secret;
+    private JWTVerifier verifier;
+
+    @PostConstruct
+    public void init(){
+        this.verifier = JWT.require(Algorithm.HMAC512(secret)).withIssuer(GET_ARRAYS_LLC).build();
+    }
 
     public String createAccessToken(UserPrincipal userPrincipal){
-        return JWT.create().withIssuer(GET_ARRAYS_LLC)
+        long now = currentTimeMillis();
+        JWTCreator.Builder builder = JWT.create().withIssuer(GET_ARRAYS_LLC)
                 .withAudience(CUSTOMER_MANAGEMENT_SERVICE)
-                .withIssuedAt(new Date())
+                .withIssuedAt(new Date(now))
+                .withClaim(ISSUED_AT_MILLIS, now)
+                .withJWTId(UUID.randomUUID().toString())
                 .withSubject(userPrincipal.getUsername())
-                .withArrayClaim(AUTHORITIES, getClaimsFromUser(userPrincipal))
-                .withExpiresAt(new Date(currentTimeMillis() + ACCESS_TOKEN_EXPIRATION_TIME))
+                .withClaim(TOKEN_TYPE, ACCESS_TOKEN)
+                .withClaim(PERMISSIONS, userPrincipal.getPermissionMask());
+        if(userPrincipal.getTenantId() != null) builder.withClaim(TENANT, userPrincipal.getTenantId());
+        return builder.withExpiresAt(new Date(now + ACCESS_TOKEN_EXPIRATION_TIME))
                 .sign(Algorithm.HMAC512(secret.getBytes()));
     }
 
     public String createRefreshToken(UserPrincipal userPrincipal){
+        long now = currentTimeMillis();
         return JWT.create().withIssuer(GET_ARRAYS_LLC).withAudience(CUSTOMER_MANAGEMENT_SERVICE)
-                .withIssuedAt(new Date()).withSubject(userPrincipal.getUsername())
-                .withExpiresAt(new Date(currentTimeMillis() + REFRESH_TOKEN_EXPIRATION_TIME))
+                .withIssuedAt(new Date(now)).withClaim(ISSUED_AT_MILLIS, now).withJWTId(UUID.randomUUID().toString())
+                .withSubject(userPrincipal.getUsername()).withClaim(TOKEN_TYPE, REFRESH_TOKEN)
+                .withExpiresAt(new Date(now + REFRESH_TOKEN_EXPIRATION_TIME))
                 .sign(Algorithm.HMAC512(secret.getBytes()));
     }
 
-    public List<GrantedAuthority>getAuthorities(String token){
-        String[] claims = getClaimsFromToken(token);
-        return stream(claims).map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+    public String rotateRefreshToken(String token, HttpServletRequest request){
+        return rotateRefreshToken(verify(token, request));
     }
 
-    public Authentication getAuthentication(String email, List<GrantedAuthority> authorities, HttpServletRequest request){
-        UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(userService.getUserByEmail(email), null, authorities);
-        usernamePasswordAuthenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-        return usernamePasswordAuthenticationToken;
+    public String rotateRefreshToken(DecodedJWT refreshToken){
+        if(!REFRESH_TOKEN.equals(refreshToken.getClaim(TOKEN_TYPE).asString()) || refreshToken.getId() == null ||
+                tokenDenylist.isRevoked(refreshToken.getSubject(), getIssuedAtMillis(refreshToken))){
+            throw new ApiException("Refresh Token missing or invalid");
+        }
+        if(!tokenDenylist.revoke(refreshToken.getId(), refreshToken.getExpiresAt())){
+            tokenDenylist.revokeAllIssuedBefore(refreshToken.getSubject(), new Date(), REFRESH_TOKEN_EXPIRATION_TIME);
+            throw new ApiException("Refresh token has already been used. Please log in again");
+        }
+        return refreshToken.getSubject();
     }
 
-    public String getSubject(String token, HttpServletRequest request){
+    public void revokeTokens(String token, HttpServletRequest request){
+        revokeTokens(verify(token, request));
+    }
+
+    public void revokeTokens(DecodedJWT accessToken){
+        if(accessToken.getId() != null) tokenDenylist.revoke(accessToken.getId(), accessToken.getExpiresAt());
+        tokenDenylist.revokeAllIssuedBefore(accessToken.getSubject(), new Date(), REFRESH_TOKEN_EXPIRATION_TIME);
+    }
+
+    /**
+     * Verifies the signature, issuer and expiry of a token once; the claims are then read from the result.
+     */
+    public DecodedJWT verify(String token){
+        return verifier.verify(token);
+    }
+
+    /**
+     * As {@link #verify(String)}, leaving the reason of an expired or invalid token on the request for the error
+     * handlers.
+     */
+    public DecodedJWT verify(String token, HttpServletRequest request){
         try{
-            return getJWTVerifier().verify(token).getSubject();
+            return verify(token);
         }catch (TokenExpiredException exception){
             request.setAttribute("expiredMessage", exception.getMessage());
             throw exception;
         }catch (InvalidClaimException exception){
             request.setAttribute("invalidClaim", exception.getMessage());
             throw exception;
-        }catch (Exception exception){
-            throw exception;
         }
     }
 
-    public boolean isTokenValid(String email, String token){
-        JWTVerifier verifier = getJWTVerifier();
-        return StringUtils.isNotEmpty(email) && !isTokenExpired(verifier, token);
-    }
-
-    private boolean isTokenExpired(JWTVerifier verifier, String token){
-        Date expiration = verifier.verify(token).getExpiresAt();
-        return expiration.before(new Date());
+    public long getPermissions(DecodedJWT token){
+        Claim permissions = token.getClaim(PERMISSIONS);
+        return permissions.isMissing() ? Permission.toMask(token.getClaim(AUTHORITIES).asArray(String.class)) : permissions.asLong();
     }
 
-
-
-    private String[] getClaimsFromToken(String token){
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier.verify(token).getClaim(AUTHORITIES).asArray(String.class);
+    /**
+     * The tenant the access token was issued for, or null for users outside any tenant.
+     */
+    public Long getTenantId(DecodedJWT token){
+        Claim tenant = token.getClaim(TENANT);
+        return tenant.isMissing() || tenant.isNull() ? null : tenant.asLong();
     }
 
-    private JWTVerifier getJWTVerifier() {
-        JWTVerifier verifier;
-        try{
-            Algorithm algorithm = Algorithm.HMAC512(secret);
-            verifier = JWT.require(algorithm).withIssuer(GET_ARRAYS_LLC).build();
-        }catch (JWTVerificationException exception) {
-            throw new JWTVerificationException("Token cannot be verified");
-        }
-        return verifier;
+    /**
+     * True for a verified access token that is neither revoked itself nor issued before its subject's revocation.
+     */
+    public boolean isAccessTokenActive(DecodedJWT token){
+        return StringUtils.isNotEmpty(token.getSubject()) &&
+                !REFRESH_TOKEN.equals(token.getClaim(TOKEN_TYPE).asString()) &&
+                !tokenDenylist.isRevoked(token.getId()) &&
+                !tokenDenylist.isRevoked(token.getSubject(), getIssuedAtMillis(token));
     }
 
-    private String[] getClaimsFromUser(UserPrincipal userPrincipal) {
-        return userPrincipal.getAuthorities().stream().map(GrantedAuthority::getAuthority).toArray(String[]::new);
+    /**
+     * Issue time in milliseconds. Tokens from before the millisecond claim count as issued at the end of their
+     * second, so a revocation in that second still covers them.
+     */
+    private static long getIssuedAtMillis(DecodedJWT token){
+        Claim issuedAtMillis = token.getClaim(ISSUED_AT_MILLIS);
+        if(!issuedAtMillis.isMissing() && !issuedAtMillis.isNull()) return issuedAtMillis.asLong();
+        return token.getIssuedAt() == null ? Long.MIN_VALUE : token.getIssuedAt().getTime() + 999;
     }
 }
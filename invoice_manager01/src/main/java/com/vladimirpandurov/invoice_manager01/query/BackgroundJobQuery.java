@@ -0,0 +1,10 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+public class BackgroundJobQuery {
+
+    public static final String ABANDON_STALE_BACKGROUND_JOB_QUERY = "UPDATE BackgroundJobs SET status = 'ABANDONED', running_key = NULL WHERE running_key = :runningKey AND updated_at < :staleBefore";
+    public static final String INSERT_BACKGROUND_JOB_QUERY = "INSERT INTO BackgroundJobs (type, tenant_id, running_key) VALUES (:type, :tenantId, :runningKey)";
+    public static final String UPDATE_BACKGROUND_JOB_PROGRESS_QUERY = "UPDATE BackgroundJobs SET processed = :processed, updated_at = CURRENT_TIMESTAMP(3) WHERE id = :id AND status = 'RUNNING'";
+    public static final String FINISH_BACKGROUND_JOB_QUERY = "UPDATE BackgroundJobs SET status = :status, processed = :processed, message = :message, running_key = NULL, updated_at = CURRENT_TIMESTAMP(3) WHERE id = :id";
+    public static final String SELECT_BACKGROUND_JOB_QUERY = "SELECT id, type, status, processed, message, started_at, updated_at FROM BackgroundJobs WHERE id = :id AND COALESCE(tenant_id, 0) = :tenantId";
+}
@@ -0,0 +1,9 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+public class CacheQuery {
+
+    public static final String INSERT_ENTITY_CHANGE_QUERY = "INSERT INTO EntityChanges (entity, entity_id) VALUES (:entity, :entityId)";
+    public static final String SELECT_MAX_ENTITY_CHANGE_ID_QUERY = "SELECT COALESCE(MAX(id), 0) FROM EntityChanges";
+    public static final String SELECT_ENTITY_CHANGES_AFTER_QUERY = "SELECT id, entity, entity_id, created_at, created_at < TIMESTAMPADD(SECOND, :settleSeconds, CURRENT_TIMESTAMP(3)) AS settled FROM EntityChanges WHERE id > :cursor ORDER BY id LIMIT :size";
+    public static final String DELETE_ENTITY_CHANGES_BEFORE_QUERY = "DELETE FROM EntityChanges WHERE created_at < TIMESTAMPADD(MINUTE, :retentionMinutes, CURRENT_TIMESTAMP(3))";
+}
@@ -0,0 +1,9 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+public class EventQuery {
+
+    // Events published before the user is known, such as failed logins, are attached to the user by email
+    public static final String INSERT_EVENT_QUERY = "INSERT INTO Events (user_id, email, type, description, ip_address, device, created_at) VALUES (COALESCE(:userId, (SELECT id FROM Users WHERE email = :email)), :email, :type, :description, :ipAddress, :device, :createdAt)";
+    public static final String SELECT_RECENT_EMAILS_BY_TYPE_QUERY = "SELECT DISTINCT email FROM (SELECT email FROM Events WHERE type = :type AND email IS NOT NULL ORDER BY id DESC LIMIT :window) recent LIMIT :size";
+    public static final String SELECT_EVENTS_BY_USER_ID_QUERY = "SELECT id, type, description, ip_address, device, created_at FROM Events WHERE user_id = :userId AND id < :beforeId ORDER BY id DESC LIMIT :size";
+}
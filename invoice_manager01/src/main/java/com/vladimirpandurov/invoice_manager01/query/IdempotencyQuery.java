@@ -0,0 +1,11 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+public class IdempotencyQuery {
+
+    public static final String DELETE_EXPIRED_IDEMPOTENCY_KEY_QUERY = "DELETE FROM IdempotencyKeys WHERE key_hash = :keyHash AND expires_at < :now";
+    public static final String INSERT_IDEMPOTENCY_KEY_QUERY = "INSERT INTO IdempotencyKeys (key_hash, expires_at) VALUES (:keyHash, :expiresAt)";
+    public static final String SELECT_IDEMPOTENCY_KEY_QUERY = "SELECT status, response_status, content_type, location, body FROM IdempotencyKeys WHERE key_hash = :keyHash";
+    public static final String COMPLETE_IDEMPOTENCY_KEY_QUERY = "UPDATE IdempotencyKeys SET status = 'COMPLETED', response_status = :status, content_type = :contentType, location = :location, body = :body, expires_at = :expiresAt WHERE key_hash = :keyHash";
+    public static final String DELETE_IDEMPOTENCY_KEY_QUERY = "DELETE FROM IdempotencyKeys WHERE key_hash = :keyHash";
+    public static final String DELETE_EXPIRED_IDEMPOTENCY_KEYS_QUERY = "DELETE FROM IdempotencyKeys WHERE expires_at < :now";
+}
@@ -0,0 +1,82 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.enumeration.InvoiceSort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles an {@link InvoiceFilter} to SQL. Only the presence of each criterion shapes the statement, never its
+ * value, so there are at most 2^7 shapes per sort order; each is built once and cached.
+ * <p>
+ * The page of ids is found in a subquery that the IX_Invoices_*_Issued and IX_Invoices_*_Total indexes cover for
+ * the common shapes, and only those ids are joined back to fetch full rows. InvoiceFilterQueryTests checks the
+ * plans.
+ */
+public class InvoiceFilterQuery {
+
+    public static final String INVOICE_COLUMNS = "i.id, i.invoice_number, i.customer_id, i.status, i.issued_at, i.due_at, i.currency, i.subtotal, i.tax, i.total, i.amount_paid";
+    private static final int STATUS = 1;
+    private static final int CUSTOMER = 1 << 1;
+    private static final int ISSUED_FROM = 1 << 2;
+    private static final int ISSUED_TO = 1 << 3;
+    private static final int MIN_TOTAL = 1 << 4;
+    private static final int MAX_TOTAL = 1 << 5;
+    private static final int CURSOR = 1 << 6;
+    private static final int SORTS = InvoiceSort.values().length;
+    private static final Map<Integer, String> SHAPES = new ConcurrentHashMap<>();
+
+    public static String getSql(InvoiceFilter filter){
+        int shape = getShape(filter);
+        InvoiceSort sort = filter.getSort();
+        return SHAPES.computeIfAbsent(shape * SORTS + sort.ordinal(), key -> compile(shape, sort));
+    }
+
+    public static MapSqlParameterSource getParameters(InvoiceFilter filter){
+        InvoiceCursor cursor = filter.getCursor();
+        return new MapSqlParameterSource()
+                .addValue("status", filter.getStatus())
+                .addValue("customerId", filter.getCustomerId())
+                .addValue("issuedFrom", filter.getIssuedFrom())
+                .addValue("issuedTo", filter.getIssuedTo())
+                .addValue("minTotal", filter.getMinTotal())
+                .addValue("maxTotal", filter.getMaxTotal())
+                .addValue("cursorKey", cursor == null ? null : filter.getSort().toParameter(cursor.key()))
+                .addValue("cursorId", cursor == null ? null : cursor.id())
+                .addValue("size", filter.getSize());
+    }
+
+    private static int getShape(InvoiceFilter filter){
+        int shape = 0;
+        if(filter.getStatus() != null) shape |= STATUS;
+        if(filter.getCustomerId() != null) shape |= CUSTOMER;
+        if(filter.getIssuedFrom() != null) shape |= ISSUED_FROM;
+        if(filter.getIssuedTo() != null) shape |= ISSUED_TO;
+        if(filter.getMinTotal() != null) shape |= MIN_TOTAL;
+        if(filter.getMaxTotal() != null) shape |= MAX_TOTAL;
+        if(filter.getCursor() != null) shape |= CURSOR;
+        return shape;
+    }
+
+    private static String compile(int shape, InvoiceSort sort){
+        String column = sort.getColumn();
+        String direction = sort.isDescending() ? " DESC" : " ASC";
+        String after = sort.isDescending() ? " < " : " > ";
+        StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        if((shape & STATUS) != 0) where.add("status = :status");
+        if((shape & CUSTOMER) != 0) where.add("customer_id = :customerId");
+        if((shape & ISSUED_FROM) != 0) where.add("issued_at >= :issuedFrom");
+        if((shape & ISSUED_TO) != 0) where.add("issued_at <= :issuedTo");
+        if((shape & MIN_TOTAL) != 0) where.add("total >= :minTotal");
+        if((shape & MAX_TOTAL) != 0) where.add("total <= :maxTotal");
+        // Expanded rather than a row comparison so MySQL can still use the index range
+        if((shape & CURSOR) != 0) where.add("(" + column + after + ":cursorKey OR (" + column + " = :cursorKey AND id" + after + ":cursorId))");
+        return "SELECT " + INVOICE_COLUMNS + " FROM Invoices i JOIN (SELECT id FROM Invoices" + where +
+                " ORDER BY " + column + direction + ", id" + direction + " LIMIT :size) page ON page.id = i.id" +
+                " ORDER BY i." + column + direction + ", i.id" + direction;
+    }
+}
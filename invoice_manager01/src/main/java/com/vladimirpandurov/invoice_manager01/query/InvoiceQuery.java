@@ -0,0 +1,29 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+import static com.vladimirpandurov.invoice_manager01.query.InvoiceFilterQuery.INVOICE_COLUMNS;
+
+public class InvoiceQuery {
+
+    // Creates the sequence on first use or advances it, holding the row lock either way until the reservation commits
+    public static final String RESERVE_INVOICE_SEQUENCE_BLOCK_QUERY = "INSERT INTO InvoiceNumberSequences (sequence_key, next_value, format) VALUES (:sequenceKey, 1 + :blockSize, :format) ON DUPLICATE KEY UPDATE next_value = next_value + :blockSize";
+    public static final String SELECT_INVOICE_SEQUENCE_QUERY = "SELECT next_value, format FROM InvoiceNumberSequences WHERE sequence_key = :sequenceKey";
+    public static final String SELECT_INVOICE_LINES_BY_TAX_RATE_QUERY = "SELECT il.id, il.invoice_id, il.quantity_milli, il.unit_price, il.discount_bp, il.line_total, il.line_tax FROM InvoiceLines il JOIN Invoices i ON i.id = il.invoice_id WHERE il.tax_rate_bp = ? AND i.status <> 'PAID' ORDER BY il.invoice_id, il.id";
+    public static final String UPDATE_INVOICE_LINE_TOTALS_QUERY = "UPDATE InvoiceLines SET tax_rate_bp = ?, line_total = ?, line_tax = ? WHERE id = ?";
+    public static final String INVOICE_FULL_COLUMNS = INVOICE_COLUMNS + ", i.template_id, i.billing_period";
+    public static final String SELECT_INVOICE_BY_ID_QUERY = "SELECT " + INVOICE_FULL_COLUMNS + " FROM Invoices i WHERE i.id = :id";
+    public static final String SELECT_INVOICES_ISSUED_BETWEEN_QUERY = "SELECT " + INVOICE_FULL_COLUMNS + " FROM Invoices i WHERE i.issued_at BETWEEN :from AND :to ORDER BY i.issued_at, i.id LIMIT :size";
+    public static final String SELECT_INVOICES_ISSUED_BETWEEN_AFTER_QUERY = "SELECT " + INVOICE_FULL_COLUMNS + " FROM Invoices i WHERE i.issued_at BETWEEN :from AND :to AND (i.issued_at > :cursorKey OR (i.issued_at = :cursorKey AND i.id > :cursorId)) ORDER BY i.issued_at, i.id LIMIT :size";
+    public static final String SELECT_ARCHIVABLE_INVOICES_QUERY = "SELECT " + INVOICE_FULL_COLUMNS + " FROM Invoices i WHERE i.status = 'PAID' AND i.issued_at < :cutoff ORDER BY i.issued_at LIMIT :size FOR UPDATE SKIP LOCKED";
+    public static final String SELECT_INVOICE_LINES_BY_INVOICE_IDS_QUERY = "SELECT id, invoice_id, description, quantity_milli, unit_price, discount_bp, tax_rate_bp, line_total, line_tax FROM InvoiceLines WHERE invoice_id IN (:invoiceIds) ORDER BY invoice_id, id";
+    public static final String DELETE_INVOICES_BY_IDS_QUERY = "DELETE FROM Invoices WHERE id IN (:invoiceIds)";
+    public static final String ANALYZE_INVOICES_TABLE_QUERY = "ANALYZE TABLE Invoices";
+    public static final String SELECT_INVOICES_TABLE_SIZE_QUERY = "SELECT table_rows, data_length + index_length FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices'";
+    public static final String SELECT_OPEN_INVOICES_FOR_RECONCILIATION_QUERY = "SELECT i.id, i.invoice_number, i.customer_id, c.name, i.currency, i.total - i.amount_paid FROM Invoices i JOIN Customers c ON c.id = i.customer_id WHERE i.status NOT IN ('PAID', 'CANCELLED') AND i.total > i.amount_paid ORDER BY i.customer_id";
+    // Every update of an invoice bumps its version, which is also its ETag
+    public static final String SELECT_INVOICE_VERSION_QUERY = "SELECT version FROM Invoices WHERE id = :id";
+    public static final String SELECT_APPLIED_PAYMENT_KEYS_QUERY = "SELECT payment_key FROM AppliedPayments WHERE payment_key IN (:paymentKeys)";
+    public static final String INSERT_APPLIED_PAYMENT_QUERY = "INSERT INTO AppliedPayments (payment_key, invoice_id, amount) VALUES (?, ?, ?)";
+    // The status is set first, so it still sees the amount paid before this payment
+    public static final String APPLY_PAYMENT_QUERY = "UPDATE Invoices SET status = CASE WHEN amount_paid + ? = total THEN 'PAID' ELSE status END, amount_paid = amount_paid + ?, version = version + 1 WHERE id = ? AND status NOT IN ('PAID', 'CANCELLED') AND total - amount_paid >= ?";
+    public static final String ADJUST_INVOICE_TOTALS_QUERY = "UPDATE Invoices SET subtotal = subtotal + ?, tax = tax + ?, total = total + ?, version = version + 1 WHERE id = ?";
+}
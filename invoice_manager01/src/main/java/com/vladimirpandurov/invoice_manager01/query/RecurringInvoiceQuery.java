@@ -0,0 +1,21 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+public class RecurringInvoiceQuery {
+
+    public static final String INSERT_RUN_QUERY = "INSERT INTO RecurringInvoiceRuns (run_date, partitions) VALUES (:runDate, :partitions)";
+    public static final String CLAIM_RUN_QUERY = "UPDATE RecurringInvoiceRuns SET status = 'RUNNING', updated_at = NOW() WHERE run_date = :runDate AND (status = 'FAILED' OR (status = 'RUNNING' AND updated_at < :staleBefore))";
+    public static final String SELECT_RUN_BY_DATE_QUERY = "SELECT id, partitions FROM RecurringInvoiceRuns WHERE run_date = :runDate";
+    public static final String UPDATE_RUN_STATUS_QUERY = "UPDATE RecurringInvoiceRuns SET status = :status, updated_at = NOW() WHERE id = :runId";
+    public static final String TOUCH_RUN_QUERY = "UPDATE RecurringInvoiceRuns SET updated_at = NOW() WHERE id = :runId";
+    public static final String SELECT_TEMPLATE_ID_RANGE_QUERY = "SELECT COALESCE(MIN(id), 1), COALESCE(MAX(id), 0) FROM RecurringInvoiceTemplates";
+    public static final String INSERT_CHECKPOINT_QUERY = "INSERT IGNORE INTO RecurringInvoiceCheckpoints (run_id, partition_number, last_template_id, end_template_id) VALUES (:runId, :partition, :lastTemplateId, :endTemplateId)";
+    public static final String SELECT_OPEN_CHECKPOINTS_QUERY = "SELECT partition_number, last_template_id, end_template_id FROM RecurringInvoiceCheckpoints WHERE run_id = :runId AND completed = FALSE ORDER BY partition_number";
+    public static final String UPDATE_CHECKPOINT_QUERY = "UPDATE RecurringInvoiceCheckpoints SET last_template_id = :lastTemplateId, invoices_created = invoices_created + :created, completed = :completed WHERE run_id = :runId AND partition_number = :partition";
+    public static final String SELECT_DUE_TEMPLATES_QUERY = "SELECT id, customer_id, currency, interval_months, due_days, next_run_date FROM RecurringInvoiceTemplates WHERE id > :lastTemplateId AND id <= :endTemplateId AND active = TRUE AND next_run_date <= :runDate ORDER BY id LIMIT :size";
+    public static final String SELECT_TEMPLATE_LINES_QUERY = "SELECT template_id, description, quantity_milli, unit_price, discount_bp, tax_rate_bp FROM RecurringInvoiceTemplateLines WHERE template_id IN (:templateIds) ORDER BY template_id, id";
+    public static final String SELECT_INVOICED_PERIODS_QUERY = "SELECT template_id, billing_period FROM Invoices WHERE template_id IN (:templateIds) AND billing_period BETWEEN :firstPeriod AND :runDate";
+    public static final String INSERT_INVOICE_QUERY = "INSERT INTO Invoices (invoice_number, customer_id, status, issued_at, due_at, currency, subtotal, tax, total, template_id, billing_period) VALUES (:invoiceNumber, :customerId, 'PENDING', :issuedAt, :dueAt, :currency, :subtotal, :tax, :total, :templateId, :billingPeriod)";
+    public static final String INSERT_INVOICE_LINE_QUERY = "INSERT INTO InvoiceLines (invoice_id, description, quantity_milli, unit_price, discount_bp, tax_rate_bp, line_total, line_tax) VALUES (:invoiceId, :description, :quantity, :unitPrice, :discount, :taxRate, :lineTotal, :lineTax)";
+    public static final String ADVANCE_TEMPLATE_QUERY = "UPDATE RecurringInvoiceTemplates SET next_run_date = :nextRunDate WHERE id = :id AND next_run_date = :previousRunDate";
+    public static final String SELECT_OLDEST_DUE_DATE_QUERY = "SELECT MIN(next_run_date) FROM RecurringInvoiceTemplates WHERE active = TRUE AND next_run_date <= :runDate";
+}
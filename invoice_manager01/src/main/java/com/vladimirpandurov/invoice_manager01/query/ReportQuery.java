@@ -0,0 +1,8 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+public class ReportQuery {
+
+    public static final String SELECT_CUSTOMER_ID_RANGE_QUERY = "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM Customers";
+    public static final String SELECT_OPEN_INVOICES_BY_CUSTOMER_RANGE_QUERY = "SELECT i.customer_id, c.name, i.currency, DATEDIFF(?, i.due_at), i.total - i.amount_paid FROM Invoices i JOIN Customers c ON c.id = i.customer_id WHERE i.customer_id BETWEEN ? AND ? AND i.status NOT IN ('PAID', 'CANCELLED') AND i.total > i.amount_paid ORDER BY i.customer_id, i.currency";
+    public static final String SELECT_OUTSTANDING_BY_CURRENCY_QUERY = "SELECT currency, COUNT(*), SUM(total - amount_paid) FROM Invoices WHERE status NOT IN ('PAID', 'CANCELLED') AND total > amount_paid GROUP BY currency ORDER BY currency";
+}
@@ -0,0 +1,12 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+public class TenantQuery {
+
+    public static final String TENANT_COLUMNS = "id, name, shard, status";
+    public static final String SELECT_TENANTS_QUERY = "SELECT " + TENANT_COLUMNS + " FROM Tenants ORDER BY id";
+    public static final String SELECT_TENANT_BY_ID_QUERY = "SELECT " + TENANT_COLUMNS + " FROM Tenants WHERE id = :id";
+    public static final String UPDATE_TENANT_STATUS_QUERY = "UPDATE Tenants SET status = :status WHERE id = :id AND status = :expectedStatus";
+    public static final String UPDATE_TENANT_SHARD_QUERY = "UPDATE Tenants SET shard = :shard, status = :status WHERE id = :id";
+    public static final String COUNT_DATABASES_BY_NAME_QUERY = "SELECT COUNT(*) FROM information_schema.SCHEMATA WHERE UPPER(SCHEMA_NAME) = UPPER(?)";
+    public static final String CREATE_DATABASE_QUERY = "CREATE SCHEMA ";
+}
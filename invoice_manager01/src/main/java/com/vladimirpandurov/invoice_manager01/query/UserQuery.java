@@ -2,21 +2,40 @@ package com.vladimirpandurov.invoice_manager01.query;
 
 public class UserQuery {
 
+    /** Column order is read by position in the matching row mapper; keep the two in step. */
+    public static final String USER_AUTH_COLUMNS = "id, email, password, enabled, non_locked, using_mfa";
+    public static final String USER_PROFILE_COLUMNS = "id, first_name, last_name, email, address, phone, title, bio, image_url, enabled, non_locked, using_mfa, created_at, version, tenant_id";
+    public static final String USER_PROFILE_JOIN_COLUMNS = "u.id, u.first_name, u.last_name, u.email, u.address, u.phone, u.title, u.bio, u.image_url, u.enabled, u.non_locked, u.using_mfa, u.created_at, u.version, u.tenant_id";
+    public static final String USER_LISTING_COLUMNS = "id, first_name, last_name, email, image_url, enabled";
+
     public static final String INSERT_USER_QUERY = "INSERT INTO Users (first_name, last_name, email, password) VALUES (:firstName, :lastName, :email, :password)";
     public static final String COUNT_USER_EMAIL_QUERY = "SELECT COUNT(*) FROM Users WHERE email = :email";
+    public static final String COUNT_USERS_QUERY = "SELECT COUNT(*) FROM Users";
+    public static final String SELECT_USER_EMAILS_QUERY = "SELECT email FROM Users";
+    public static final String SELECT_USER_EMAIL_BY_ID_QUERY = "SELECT email FROM Users WHERE id = :id";
     public static final String INSERT_ACCOUNT_VERIFICATION_URL_QUERY = "INSERT INTO AccountVerifications (user_id, url) VALUES (:userId, :url)";
-    public static final String SELECT_USER_BY_EMAIL_QUERY = "SELECT * FROM Users WHERE email = :email";
+    public static final String SELECT_USER_BY_EMAIL_QUERY = "SELECT " + USER_PROFILE_COLUMNS + " FROM Users WHERE email = :email";
+    public static final String SELECT_USER_CREDENTIALS_BY_EMAIL_QUERY = "SELECT " + USER_AUTH_COLUMNS + " FROM Users WHERE email = :email";
+    public static final String SELECT_USERS_QUERY = "SELECT " + USER_LISTING_COLUMNS + " FROM Users ORDER BY id LIMIT :size OFFSET :offset";
     public static final String DELETE_VERIFICATION_CODE_BY_USER_ID = "DELETE FROM TwoFactorVerifications WHERE user_id = :id";
     public static final String INSERT_VERIFICATION_CODE_QUERY = "INSERT INTO TwoFactorVerifications (user_id, code, expiration_data) VALUES (:user_id, :code, :expirationDate)";
-    public static final String SELECT_USER_BY_USER_CODE_QUERY = "SELECT * FROM Users WHERE id = (SELECT user_id FROM TwoFactorVerifications WHERE code = :code)";
-    public static final String DELETE_CODE_BY_CODE = "DELETE FROM TwoFactorVerifications WHERE code = :code";
-    public static final String SELECT_CODE_EXPIRATION_QUERY = "SELECT expiration_data < NOW() AS is_expired FROM TwoFactorVerifications WHERE code = :code";
     public static final String INSERT_PASSWORD_VERIFICATION_QUERY = "INSERT INTO ResetPasswordVerifications (user_id, url, expiration_data) VALUES (:user_id, :url, :expiration_data)";
     public static final String DELETE_PASSWORD_VERIFICATION_BY_USER_ID_QUERY = "DELETE FROM ResetPasswordVerifications WHERE user_id = :user_id";
-    public static final String SELECT_USER_BY_PASSWORD_URL_QUERY = "SEELCT * FROM Users where id = (SELECT user_id FROM ResetPasswordVerifications WHERE url = :url)";
-    public static final String SELECT_EXPIRATION_BY_URL = "SELECT expiration_data < NOW() AS is_expired FROM ResetPasswordVerifications WHERE url = :url";
-    public static final String UPDATE_USER_PASSWORD_BY_URL_QUERY = "UPDATE Users SET password = :password WHERE id = (SELECT user_id FROM ResetPasswordVerifications WHERE url = :url)";
-    public static final String DELETE_VERIFICATION_BY_URL_QUERY = "DELETE FROM ResetPasswordVerifications WHERE url = :url";
-    public static final String SELECT_USER_BY_ACCOUNT_URL_QUERY = "SELECT * FROM Users WHERE id = (SELECT user_id FROM AccountVerifications WHERE url = :url)";
-    public static final String UPDATE_USER_ENABLED_QUERY = "UPDATE Users SET enabled = :enabled WHERE id = :id";
+    public static final String SELECT_USER_BY_ID_QUERY = "SELECT " + USER_PROFILE_COLUMNS + " FROM Users WHERE id = :id";
+    public static final String UPDATE_USER_PREFIX_QUERY = "UPDATE Users SET ";
+    public static final String UPDATE_USER_VERSION_SUFFIX_QUERY = "version = version + 1 WHERE id = :id AND version = :version";
+    public static final String SELECT_USER_IMAGE_FOR_UPDATE_QUERY = "SELECT image_url FROM Users WHERE id = :id FOR UPDATE";
+    public static final String COUNT_USERS_BY_IMAGE_QUERY = "SELECT COUNT(*) FROM Users WHERE image_url LIKE :pattern";
+    // Every change a client can see bumps the version, which is also the ETag of the profile
+    public static final String UPDATE_USER_IMAGE_QUERY = "UPDATE Users SET image_url = :imageUrl, version = version + 1 WHERE id = :id";
+    public static final String UPDATE_USER_ENABLED_QUERY = "UPDATE Users SET enabled = :enabled, version = version + 1 WHERE id = :id";
+    public static final String INCREMENT_USER_VERSION_QUERY = "UPDATE Users SET version = version + 1 WHERE id = :id";
+    public static final String UPDATE_USER_PASSWORD_QUERY = "UPDATE Users SET password = :password WHERE id = :id";
+    public static final String SELECT_PASSWORD_VERIFICATION_QUERY = "SELECT " + USER_PROFILE_JOIN_COLUMNS + ", v.id AS verification_id, v.expiration_data < NOW() AS is_expired FROM ResetPasswordVerifications v JOIN Users u ON u.id = v.user_id WHERE v.url = :key";
+    public static final String SELECT_PASSWORD_VERIFICATION_FOR_UPDATE_QUERY = SELECT_PASSWORD_VERIFICATION_QUERY + " FOR UPDATE";
+    public static final String SELECT_ACCOUNT_VERIFICATION_FOR_UPDATE_QUERY = "SELECT " + USER_PROFILE_JOIN_COLUMNS + ", v.id AS verification_id, FALSE AS is_expired FROM AccountVerifications v JOIN Users u ON u.id = v.user_id WHERE v.url = :key FOR UPDATE";
+    public static final String SELECT_CODE_VERIFICATION_FOR_UPDATE_QUERY = "SELECT " + USER_PROFILE_JOIN_COLUMNS + ", v.id AS verification_id, v.expiration_data < NOW() AS is_expired FROM TwoFactorVerifications v JOIN Users u ON u.id = v.user_id WHERE v.code = :key AND u.email = :email FOR UPDATE";
+    public static final String DELETE_PASSWORD_VERIFICATION_BY_ID_QUERY = "DELETE FROM ResetPasswordVerifications WHERE id = :id";
+    public static final String DELETE_ACCOUNT_VERIFICATION_BY_ID_QUERY = "DELETE FROM AccountVerifications WHERE id = :id";
+    public static final String DELETE_CODE_VERIFICATION_BY_ID_QUERY = "DELETE FROM TwoFactorVerifications WHERE id = :id";
 }
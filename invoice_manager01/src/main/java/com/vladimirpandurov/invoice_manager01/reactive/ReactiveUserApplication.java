@@ -0,0 +1,159 @@
+package com.vladimirpandurov.invoice_manager01.reactive;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.vladimirpandurov.invoice_manager01.provider.TokenDenylist;
+import com.vladimirpandurov.invoice_manager01.provider.TokenProvider;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.codec.CodecsAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.HttpHandlerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.ReactiveWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.error.ErrorWebFluxAutoConfiguration;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+
+import static com.vladimirpandurov.invoice_manager01.InvoiceManager01Application.STRENGTH;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Non-blocking variant of the {@code /user/**} API: Reactor Netty, WebFlux functional routes and R2DBC, on the
+ * query constants and the {@link TokenProvider} of the servlet application. It runs as a process of its own, reads
+ * {@code reactive.yml} instead of {@code application.yml} and uses the database the servlet application migrates.
+ * <p>
+ * It serves registration, login with and without MFA, the verification and password reset flows, token refresh,
+ * logout and the profile read. Profile updates, events and images stay on the servlet application, and so do
+ * audit events: logins through this variant are not recorded in Events. Users are not cached either, so every
+ * profile read queries the database.
+ * <p>
+ * Nothing here is a component or a configuration class: the servlet application scans this package too, and must
+ * not pick up a second web stack. The beans are declared on this class, which only this application registers.
+ */
+@ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, JacksonAutoConfiguration.class, CodecsAutoConfiguration.class,
+        ValidationAutoConfiguration.class, R2dbcAutoConfiguration.class, ReactiveWebServerFactoryAutoConfiguration.class,
+        WebFluxAutoConfiguration.class, HttpHandlerAutoConfiguration.class, ErrorWebFluxAutoConfiguration.class})
+@EnableScheduling
+public class ReactiveUserApplication {
+
+    public static void main(String[] args) {
+        run(args);
+    }
+
+    public static ConfigurableApplicationContext run(String... args){
+        SpringApplication application = new SpringApplication(ReactiveUserApplication.class);
+        application.setWebApplicationType(WebApplicationType.REACTIVE);
+        application.setDefaultProperties(Map.of("spring.config.name", "reactive"));
+        return application.run(args);
+    }
+
+    @Bean
+    public Module blackbirdModule(){
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public CodecCustomizer binaryCodecs(Jackson2ObjectMapperBuilder builder){
+        ObjectMapper smileMapper = builder.createXmlMapper(false).factory(new SmileFactory()).build();
+        ObjectMapper cborMapper = builder.createXmlMapper(false).factory(new CBORFactory()).build();
+        return configurer -> {
+            configurer.customCodecs().register(new Jackson2SmileEncoder(smileMapper));
+            configurer.customCodecs().register(new Jackson2SmileDecoder(smileMapper));
+            configurer.customCodecs().register(new Jackson2CborEncoder(cborMapper));
+            configurer.customCodecs().register(new Jackson2CborDecoder(cborMapper));
+        };
+    }
+
+    /**
+     * The reactive counterpart of the password hashing executor: as many threads as cores, a bounded queue, and a
+     * rejected hash once the queue is full.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler passwordHashingScheduler(@Value("${application.password-hashing.threads:0}") int threads,
+                                              @Value("${application.password-hashing.queue-capacity:256}") int queueCapacity){
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Schedulers.newBoundedElastic(poolSize, queueCapacity, "password-hashing");
+    }
+
+    @Bean
+    public BCryptPasswordEncoder encoder(){
+        return new BCryptPasswordEncoder(STRENGTH);
+    }
+
+    @Bean
+    public TokenDenylist tokenDenylist(){
+        return new TokenDenylist();
+    }
+
+    @Bean
+    public TokenProvider tokenProvider(TokenDenylist tokenDenylist){
+        return new TokenProvider(tokenDenylist);
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory){
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator(ConnectionFactory connectionFactory){
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    @Bean
+    public ReactiveUserRepository reactiveUserRepository(DatabaseClient databaseClient, TransactionalOperator transactionalOperator){
+        return new ReactiveUserRepository(databaseClient, transactionalOperator);
+    }
+
+    @Bean
+    public ReactiveUserHandler reactiveUserHandler(ReactiveUserRepository userRepository, TokenProvider tokenProvider, BCryptPasswordEncoder encoder,
+                                                   Scheduler passwordHashingScheduler, Validator validator){
+        return new ReactiveUserHandler(userRepository, tokenProvider, encoder, passwordHashingScheduler, validator);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> userRoutes(ReactiveUserHandler handler){
+        return route()
+                .path("/user", user -> user
+                        .POST("/register", handler::register)
+                        .POST("/login", handler::login)
+                        .GET("/verify/code/{email}/{code}", handler::verifyCode)
+                        .GET("/profile", handler::profile)
+                        .GET("/resetpassword/{email}", handler::resetPassword)
+                        .GET("/verify/password/{key}", handler::verifyPasswordUrl)
+                        .POST("/resetpassword/{key}/{password}/{confirmPassword}", handler::resetPasswordWithUrl)
+                        .GET("/verify/account/{key}", handler::verifyAccount)
+                        .GET("/refresh/token", handler::refreshToken)
+                        .POST("/logout", handler::logout))
+                .filter(handler::handleErrors)
+                .build();
+    }
+}
@@ -0,0 +1,257 @@
+package com.vladimirpandurov.invoice_manager01.reactive;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.domain.UserPrincipal;
+import com.vladimirpandurov.invoice_manager01.dto.TokenData;
+import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import com.vladimirpandurov.invoice_manager01.dto.UserData;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.form.LoginForm;
+import com.vladimirpandurov.invoice_manager01.provider.TokenProvider;
+import com.vladimirpandurov.invoice_manager01.utils.ETagUtils;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
+import static com.vladimirpandurov.invoice_manager01.dtomapper.UserDTOMapper.fromUser;
+import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.ACCOUNT;
+import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.PASSWORD;
+import static com.vladimirpandurov.invoice_manager01.utils.ExceptionUtils.getErrorMessage;
+import static com.vladimirpandurov.invoice_manager01.utils.ExceptionUtils.isClientError;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
+/**
+ * Handlers of the reactive user API. They answer with the envelopes, messages and status codes of
+ * {@code UserResource}, so a client cannot tell which variant served it. BCrypt, the only CPU-heavy step, runs on
+ * the bounded hashing scheduler; everything else runs on the event loop and never blocks it.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveUserHandler {
+
+    private static final String TOKEN_PREFIX = "Bearer ";
+    private final ReactiveUserRepository userRepository;
+    private final TokenProvider tokenProvider;
+    private final BCryptPasswordEncoder encoder;
+    private final Scheduler passwordHashingScheduler;
+    private final Validator validator;
+
+    public Mono<ServerResponse> register(ServerRequest request){
+        return request.bodyToMono(User.class).map(this::validate)
+                .flatMap(user -> userRepository.isEmailRegistered(user.getEmail().trim().toLowerCase())
+                        .flatMap(registered -> registered ? Mono.error(new ApiException("Email already in use. Please use a different email and try again"))
+                                : hash(() -> encoder.encode(user.getPassword())))
+                        .flatMap(passwordHash -> userRepository.create(user, passwordHash, getVerificationUrl(request, UUID.randomUUID().toString(), ACCOUNT.getType()))
+                                .onErrorMap(exception -> !(exception instanceof ApiException), exception -> new ApiException("An error occurred. Please try again"))))
+                .flatMap(this::toUserDTO)
+                .flatMap(user -> ServerResponse.created(getUri(request, user.getId())).bodyValue(response(new UserData(user), "User created")));
+    }
+
+    public Mono<ServerResponse> login(ServerRequest request){
+        return request.bodyToMono(LoginForm.class).map(this::validate)
+                .flatMap(form -> authenticate(form.getEmail(), form.getPassword()))
+                .flatMap(principal -> principal.getUser().isUsingMfa() ? sendVerificationCode(principal.getUser())
+                        : userRepository.getUserByEmail(principal.getUsername()).flatMap(this::toUserPrincipal).flatMap(this::sendResponse));
+    }
+
+    public Mono<ServerResponse> verifyCode(ServerRequest request){
+        return userRepository.verifyCode(request.pathVariable("email"), request.pathVariable("code"))
+                .flatMap(this::toUserPrincipal)
+                .flatMap(this::sendResponse);
+    }
+
+    public Mono<ServerResponse> profile(ServerRequest request){
+        return authenticate(request)
+                .flatMap(token -> userRepository.getUserByEmail(token.getSubject()))
+                .flatMap(user -> {
+                    String eTag = ETagUtils.of(USER, user.getId(), user.getVersion());
+                    if(ETagUtils.matches(request.headers().firstHeader(IF_NONE_MATCH), eTag)){
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate()).build();
+                    }
+                    return toUserDTO(user).flatMap(userDTO -> ServerResponse.ok().eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate())
+                            .bodyValue(response(new UserData(userDTO), "Profile Retrieved")));
+                });
+    }
+
+    public Mono<ServerResponse> resetPassword(ServerRequest request){
+        return userRepository.resetPassword(request.pathVariable("email"), getVerificationUrl(request, UUID.randomUUID().toString(), PASSWORD.getType()))
+                .then(ok(null, "Email sent. Please check your email to reset your password."));
+    }
+
+    public Mono<ServerResponse> verifyPasswordUrl(ServerRequest request){
+        return userRepository.verifyPasswordKey(getVerificationUrl(request, request.pathVariable("key"), PASSWORD.getType()))
+                .flatMap(this::toUserDTO)
+                .flatMap(user -> ok(new UserData(user), "Please enter a new password"));
+    }
+
+    public Mono<ServerResponse> resetPasswordWithUrl(ServerRequest request){
+        String password = request.pathVariable("password");
+        if(!password.equals(request.pathVariable("confirmPassword"))) return Mono.error(new ApiException("Passwords don't match. Please try again."));
+        return hash(() -> encoder.encode(password))
+                .flatMap(passwordHash -> userRepository.renewPassword(getVerificationUrl(request, request.pathVariable("key"), PASSWORD.getType()), passwordHash))
+                .then(ok(null, "Password reset successfully"));
+    }
+
+    public Mono<ServerResponse> verifyAccount(ServerRequest request){
+        return userRepository.verifyAccountKey(getVerificationUrl(request, request.pathVariable("key"), ACCOUNT.getType()))
+                .flatMap(user -> ok(null, user.isEnabled() ? "Account already verified" : "Account verified"));
+    }
+
+    public Mono<ServerResponse> refreshToken(ServerRequest request){
+        String header = request.headers().firstHeader(AUTHORIZATION);
+        if(header == null || !header.startsWith(TOKEN_PREFIX)){
+            return error(HttpStatus.BAD_REQUEST, "Refresh Token missing or invalid");
+        }
+        return Mono.fromCallable(() -> tokenProvider.rotateRefreshToken(tokenProvider.verify(header.substring(TOKEN_PREFIX.length()))))
+                .flatMap(userRepository::getUserByEmail)
+                .flatMap(this::toUserPrincipal)
+                .flatMap(principal -> ok(new TokenData(principal.getUser(), tokenProvider.createAccessToken(principal), tokenProvider.createRefreshToken(principal)),
+                        "Token refreshed"));
+    }
+
+    public Mono<ServerResponse> logout(ServerRequest request){
+        return authenticate(request)
+                .doOnNext(tokenProvider::revokeTokens)
+                .then(ok(null, "Logged out"));
+    }
+
+    /**
+     * Maps failures to the responses {@code UserResource}, {@code HandleException} and the security entry point
+     * give for them.
+     */
+    public Mono<ServerResponse> handleErrors(ServerRequest request, HandlerFunction<ServerResponse> next){
+        return next.handle(request).onErrorResume(exception -> {
+            if(exception instanceof AuthenticationCredentialsNotFoundException){
+                return error(HttpStatus.UNAUTHORIZED, "You need to log in to access this resource");
+            }
+            if(exception instanceof ResponseStatusException statusException){
+                return error(HttpStatus.valueOf(statusException.getStatusCode().value()), statusException.getReason());
+            }
+            if(exception instanceof Exception clientError && isClientError(clientError)){
+                return error(HttpStatus.BAD_REQUEST, clientError.getMessage());
+            }
+            log.error(exception.getMessage(), exception);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "An error occurred. Please try again.");
+        });
+    }
+
+    /**
+     * The checks of the servlet login, in the order DaoAuthenticationProvider runs them.
+     */
+    private Mono<UserPrincipal> authenticate(String email, String password){
+        return userRepository.getCredentials(email)
+                .switchIfEmpty(Mono.error(() -> new BadCredentialsException("Bad credentials")))
+                .flatMap(user -> {
+                    if(!user.isNotLocked()) return Mono.error(new LockedException("User account is locked"));
+                    if(!user.isEnabled()) return Mono.error(new DisabledException("User is disabled"));
+                    return hash(() -> encoder.matches(password, user.getPassword()))
+                            .flatMap(matches -> matches ? toUserPrincipal(user) : Mono.error(new BadCredentialsException("Bad credentials")));
+                })
+                .onErrorMap(exception -> new ApiException(exception instanceof Exception cause ? getErrorMessage(cause) : exception.getMessage()));
+    }
+
+    /**
+     * A verified access token that is still active, or the error the servlet chain answers without one.
+     */
+    private Mono<DecodedJWT> authenticate(ServerRequest request){
+        String header = request.headers().firstHeader(AUTHORIZATION);
+        if(header == null || !header.startsWith(TOKEN_PREFIX)) return Mono.error(new AuthenticationCredentialsNotFoundException("No access token"));
+        return Mono.fromCallable(() -> tokenProvider.verify(header.substring(TOKEN_PREFIX.length())))
+                .filter(tokenProvider::isAccessTokenActive)
+                .switchIfEmpty(Mono.error(() -> new AuthenticationCredentialsNotFoundException("Access token revoked")));
+    }
+
+    /**
+     * A full scheduler queue answers like {@code PooledPasswordEncoder} does.
+     */
+    private <T> Mono<T> hash(Callable<T> hash){
+        return Mono.fromCallable(hash).subscribeOn(passwordHashingScheduler)
+                .onErrorMap(RejectedExecutionException.class, exception -> new ApiException("The server is busy. Please try again."));
+    }
+
+    private Mono<ServerResponse> sendResponse(UserPrincipal principal){
+        return ok(new TokenData(principal.getUser(), tokenProvider.createAccessToken(principal), tokenProvider.createRefreshToken(principal)), "Login Success");
+    }
+
+    private Mono<ServerResponse> sendVerificationCode(UserDTO user){
+        return userRepository.sendVerificationCode(user.getId()).then(ok(new UserData(user), "Verification code sent"));
+    }
+
+    private Mono<UserPrincipal> toUserPrincipal(User user){
+        return userRepository.getRoleByUserId(user.getId()).map(role -> new UserPrincipal(user, role));
+    }
+
+    private Mono<UserDTO> toUserDTO(User user){
+        return userRepository.getRoleByUserId(user.getId()).map(role -> fromUser(user, role));
+    }
+
+    private <T> T validate(T body){
+        Set<ConstraintViolation<T>> violations = validator.validate(body);
+        if(violations.isEmpty()) return body;
+        throw new ApiException(violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.joining(",")));
+    }
+
+    private static Mono<ServerResponse> ok(Object data, String message){
+        return ServerResponse.ok().bodyValue(response(data, message));
+    }
+
+    private static HttpResponse response(Object data, String message){
+        return HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(data)
+                .message(message)
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build();
+    }
+
+    private static Mono<ServerResponse> error(HttpStatus status, String reason){
+        return ServerResponse.status(status).bodyValue(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .reason(reason)
+                .status(status)
+                .statusCode(status.value())
+                .build()
+        );
+    }
+
+    private static URI getUri(ServerRequest request, Long userId){
+        return getContextPath(request).path("/user/get/" + userId).build().toUri();
+    }
+
+    private static String getVerificationUrl(ServerRequest request, String key, String type){
+        return getContextPath(request).path("/user/verify/" + type + "/" + key).toUriString();
+    }
+
+    private static UriComponentsBuilder getContextPath(ServerRequest request){
+        return UriComponentsBuilder.fromUri(request.uri()).replacePath(request.requestPath().contextPath().value()).replaceQuery(null);
+    }
+}
@@ -0,0 +1,153 @@
+package com.vladimirpandurov.invoice_manager01.reactive;
+
+import com.vladimirpandurov.invoice_manager01.domain.Role;
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.enumeration.VerificationType;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.reactive.UserRowReader.Verification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
+import static com.vladimirpandurov.invoice_manager01.cache.RegisteredEmailFilter.REGISTERED_EMAIL;
+import static com.vladimirpandurov.invoice_manager01.enumeration.RoleType.ROLE_USER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.ACCOUNT;
+import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.CODE;
+import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.PASSWORD;
+import static com.vladimirpandurov.invoice_manager01.query.CacheQuery.INSERT_ENTITY_CHANGE_QUERY;
+import static com.vladimirpandurov.invoice_manager01.query.RoleQuery.INSERT_ROLE_TO_USER_QUERY;
+import static com.vladimirpandurov.invoice_manager01.query.RoleQuery.SELECT_ROLE_BY_NAME_QUERY;
+import static com.vladimirpandurov.invoice_manager01.query.RoleQuery.SELECT_ROLE_BY_USER_ID_QUERY;
+import static com.vladimirpandurov.invoice_manager01.query.UserQuery.*;
+import static com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.UserRepositoryImpl.getDeleteQuery;
+import static com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.UserRepositoryImpl.getExpiredMessage;
+import static com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.UserRepositoryImpl.getInvalidMessage;
+import static com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.UserRepositoryImpl.getSelectForUpdateQuery;
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
+
+/**
+ * Non-blocking counterpart of {@code UserRepositoryImpl} for the reactive user API, on the same query constants.
+ * Writes are published on the EntityChanges table like the JDBC repository does, so servlet nodes sharing the
+ * database evict their user caches and add new emails to their registered-email filters.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveUserRepository {
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    public Mono<Boolean> isEmailRegistered(String email){
+        return databaseClient.sql(COUNT_USER_EMAIL_QUERY).bind("email", email)
+                .map(row -> row.get(0, Long.class)).one()
+                .map(count -> count > 0);
+    }
+
+    /**
+     * Inserts the user, its role, the account verification and the change records in one transaction.
+     */
+    public Mono<User> create(User user, String passwordHash, String verificationUrl){
+        Mono<User> create = databaseClient.sql(INSERT_USER_QUERY)
+                .bind("firstName", user.getFirstName())
+                .bind("lastName", user.getLastName())
+                .bind("email", user.getEmail())
+                .bind("password", passwordHash)
+                .filter((statement, next) -> next.execute(statement.returnGeneratedValues("id")))
+                .map(row -> ((Number) row.get(0)).longValue()).one()
+                .flatMap(id -> databaseClient.sql(SELECT_ROLE_BY_NAME_QUERY).bind("name", ROLE_USER.name()).map(UserRowReader::role).one()
+                        .switchIfEmpty(Mono.error(() -> new ApiException("No role found by name: " + ROLE_USER.name())))
+                        .flatMap(role -> databaseClient.sql(INSERT_ROLE_TO_USER_QUERY).bind("userId", id).bind("roleId", role.getId()).then())
+                        .then(databaseClient.sql(INSERT_ACCOUNT_VERIFICATION_URL_QUERY).bind("userId", id).bind("url", verificationUrl).then())
+                        .then(publish(USER, id))
+                        .then(publish(REGISTERED_EMAIL, id))
+                        .then(Mono.fromSupplier(() -> {
+                            user.setId(id);
+                            user.setEnabled(true);
+                            user.setNotLocked(true);
+                            return user;
+                        })));
+        return transactionalOperator.transactional(create);
+    }
+
+    public Mono<User> getCredentials(String email){
+        return databaseClient.sql(SELECT_USER_CREDENTIALS_BY_EMAIL_QUERY).bind("email", email).map(UserRowReader::credentials).one();
+    }
+
+    public Mono<User> getUserByEmail(String email){
+        return databaseClient.sql(SELECT_USER_BY_EMAIL_QUERY).bind("email", email).map(UserRowReader::profile).one()
+                .switchIfEmpty(Mono.error(() -> new ApiException("No user found by email: " + email)));
+    }
+
+    public Mono<Role> getRoleByUserId(Long userId){
+        return databaseClient.sql(SELECT_ROLE_BY_USER_ID_QUERY).bind("userId", userId).map(UserRowReader::role).one()
+                .switchIfEmpty(Mono.error(() -> new ApiException("No role found by user id: " + userId)));
+    }
+
+    public Mono<Void> sendVerificationCode(Long userId){
+        String verificationCode = randomAlphabetic(8).toUpperCase();
+        Mono<Void> send = databaseClient.sql(DELETE_VERIFICATION_CODE_BY_USER_ID).bind("id", userId).then()
+                .then(databaseClient.sql(INSERT_VERIFICATION_CODE_QUERY).bind("user_id", userId).bind("code", verificationCode)
+                        .bind("expirationDate", LocalDateTime.now().plusDays(1)).then())
+                .doOnSuccess(done -> log.info("Verification Code: " + verificationCode));
+        return transactionalOperator.transactional(send);
+    }
+
+    public Mono<User> verifyCode(String email, String code){
+        return consumeVerification(CODE, code, email, verified -> Mono.empty());
+    }
+
+    public Mono<Void> resetPassword(String email, String verificationUrl){
+        return databaseClient.sql(SELECT_USER_BY_EMAIL_QUERY).bind("email", email).map(UserRowReader::profile).one()
+                .switchIfEmpty(Mono.error(() -> new ApiException("There is no account for this email address.")))
+                .flatMap(user -> transactionalOperator.transactional(
+                        databaseClient.sql(DELETE_PASSWORD_VERIFICATION_BY_USER_ID_QUERY).bind("user_id", user.getId()).then()
+                                .then(databaseClient.sql(INSERT_PASSWORD_VERIFICATION_QUERY).bind("user_id", user.getId()).bind("url", verificationUrl)
+                                        .bind("expiration_data", LocalDateTime.now().plusDays(1)).then())))
+                .doOnSuccess(done -> log.info("Verificatoin URL: {}", verificationUrl));
+    }
+
+    public Mono<User> verifyPasswordKey(String verificationUrl){
+        return databaseClient.sql(SELECT_PASSWORD_VERIFICATION_QUERY).bind("key", verificationUrl).map(UserRowReader::verification).one()
+                .switchIfEmpty(Mono.error(() -> new ApiException(getInvalidMessage(PASSWORD))))
+                .flatMap(verification -> verification.expired() ? Mono.error(new ApiException(getExpiredMessage(PASSWORD))) : Mono.just(verification.user()));
+    }
+
+    public Mono<User> renewPassword(String verificationUrl, String passwordHash){
+        return consumeVerification(PASSWORD, verificationUrl, null, verified ->
+                databaseClient.sql(UPDATE_USER_PASSWORD_QUERY).bind("password", passwordHash).bind("id", verified.getId()).then());
+    }
+
+    public Mono<User> verifyAccountKey(String verificationUrl){
+        return consumeVerification(ACCOUNT, verificationUrl, null, verified ->
+                databaseClient.sql(UPDATE_USER_ENABLED_QUERY).bind("enabled", true).bind("id", verified.getId()).then()
+                        .then(publish(USER, verified.getId())));
+    }
+
+    /**
+     * The reactive form of {@code UserRepositoryImpl.consumeVerification}: the locking read, the delete of the key
+     * and the flow's own update share a transaction. An expired key is deleted too, so the error is raised only
+     * once that transaction has committed.
+     */
+    private Mono<User> consumeVerification(VerificationType type, String key, String email, Function<User, Mono<Void>> onVerified){
+        GenericExecuteSpec select = databaseClient.sql(getSelectForUpdateQuery(type)).bind("key", key);
+        if(email != null) select = select.bind("email", email);
+        Mono<Verification> consume = select.map(UserRowReader::verification).one()
+                .flatMap(verification -> databaseClient.sql(getDeleteQuery(type)).bind("id", verification.id()).then()
+                        .then(verification.expired() ? Mono.empty() : onVerified.apply(verification.user()))
+                        .thenReturn(verification));
+        return transactionalOperator.transactional(consume)
+                .switchIfEmpty(Mono.error(() -> new ApiException(getInvalidMessage(type))))
+                .flatMap(verification -> verification.expired() ? Mono.error(new ApiException(getExpiredMessage(type))) : Mono.just(verification.user()));
+    }
+
+    private Mono<Void> publish(String entity, Long id){
+        return databaseClient.sql(INSERT_ENTITY_CHANGE_QUERY).bind("entity", entity).bind("entityId", id).then();
+    }
+}
@@ -0,0 +1,95 @@
+package com.vladimirpandurov.invoice_manager01.reactive;
+
+import com.vladimirpandurov.invoice_manager01.domain.Role;
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.enumeration.Permission;
+import io.r2dbc.spi.Readable;
+
+import java.time.LocalDateTime;
+
+import static com.vladimirpandurov.invoice_manager01.rowmapper.UserProfileRowMapper.COLUMN_COUNT;
+
+/**
+ * The R2DBC counterparts of the JDBC row mappers, reading the same projections of {@code UserQuery} and
+ * {@code RoleQuery} by position. R2DBC counts columns from zero.
+ */
+public class UserRowReader {
+
+    private static final int VERIFICATION_ID = COLUMN_COUNT;
+    private static final int VERIFICATION_EXPIRED = COLUMN_COUNT + 1;
+
+    /**
+     * Reads {@code UserQuery.USER_PROFILE_COLUMNS}, in the order of {@code UserProfileRowMapper}.
+     */
+    public static User profile(Readable row){
+        return User.builder()
+                .id(number(row, 0))
+                .firstName(row.get(1, String.class))
+                .lastName(row.get(2, String.class))
+                .email(row.get(3, String.class))
+                .address(row.get(4, String.class))
+                .phone(row.get(5, String.class))
+                .title(row.get(6, String.class))
+                .bio(row.get(7, String.class))
+                .imageUrl(row.get(8, String.class))
+                .enabled(flag(row, 9))
+                .isNotLocked(flag(row, 10))
+                .isUsingMfa(flag(row, 11))
+                .createdAt(row.get(12, LocalDateTime.class))
+                .version(number(row, 13).intValue())
+                .tenantId(number(row, 14))
+                .build();
+    }
+
+    /**
+     * Reads {@code UserQuery.USER_AUTH_COLUMNS}, in the order of {@code UserAuthRowMapper}.
+     */
+    public static User credentials(Readable row){
+        return User.builder()
+                .id(number(row, 0))
+                .email(row.get(1, String.class))
+                .password(row.get(2, String.class))
+                .enabled(flag(row, 3))
+                .isNotLocked(flag(row, 4))
+                .isUsingMfa(flag(row, 5))
+                .build();
+    }
+
+    /**
+     * Reads the profile and the two columns the verification queries append to it.
+     */
+    public static Verification verification(Readable row){
+        return new Verification(number(row, VERIFICATION_ID), flag(row, VERIFICATION_EXPIRED), profile(row));
+    }
+
+    /**
+     * Reads {@code id, name, permission}, the projection every role query selects.
+     */
+    public static Role role(Readable row){
+        String permission = row.get(2, String.class);
+        return Role.builder()
+                .id(number(row, 0))
+                .name(row.get(1, String.class))
+                .permission(permission)
+                .permissionMask(Permission.toMask(permission))
+                .build();
+    }
+
+    /**
+     * MySQL hands out unsigned columns as the next wider type, so every number is read as such and narrowed here.
+     */
+    private static Long number(Readable row, int index){
+        Object value = row.get(index);
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    /**
+     * MySQL hands out BOOLEAN columns as TINYINT and comparisons as BIGINT, H2 both as BOOLEAN.
+     */
+    private static boolean flag(Readable row, int index){
+        Object value = row.get(index);
+        return value instanceof Number number ? number.intValue() != 0 : Boolean.TRUE.equals(value);
+    }
+
+    public record Verification(long id, boolean expired, User user) {}
+}
@@ -0,0 +1,121 @@
+package com.vladimirpandurov.invoice_manager01.reconciliation;
+
+import com.vladimirpandurov.invoice_manager01.domain.StatementLine;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Comma separated statements with a header row naming the columns in any order: amount, currency and reference
+ * are required, date (ISO), payer and transaction, the bank's id of the payment, are optional. Amounts use a dot
+ * as decimal separator; negative amounts are outgoing payments. Quoted fields may contain commas and doubled
+ * quotes but no line breaks.
+ */
+@Component
+public class CsvStatementParser implements StatementParser {
+
+    public static final String FORMAT = "csv";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public String getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public void parse(Reader reader, LineHandler handler) throws IOException {
+        BufferedReader lines = new BufferedReader(reader, BUFFER_SIZE);
+        String header = lines.readLine();
+        if(header == null) throw new ApiException("The statement is empty");
+        List<String> names = new ArrayList<>();
+        split(header.replace("\uFEFF", ""), names);
+        names.replaceAll(name -> name.trim().toLowerCase());
+        int amount = column(names, "amount");
+        int currency = column(names, "currency");
+        int reference = column(names, "reference");
+        int date = names.indexOf("date");
+        int payer = names.indexOf("payer");
+        int transaction = names.indexOf("transaction");
+        List<String> fields = new ArrayList<>(names.size());
+        long lineNumber = 1;
+        String text;
+        while((text = lines.readLine()) != null){
+            lineNumber++;
+            if(text.isBlank()) continue;
+            fields.clear();
+            split(text, fields);
+            if(fields.size() < names.size()){
+                handler.reject(lineNumber, text, "Expected " + names.size() + " fields but found " + fields.size());
+                continue;
+            }
+            try{
+                String currencyCode = fields.get(currency).trim().toUpperCase();
+                handler.accept(new StatementLine(lineNumber, date < 0 ? null : toDate(fields.get(date)),
+                        toMinorUnits(fields.get(amount), currencyCode), currencyCode,
+                        fields.get(reference).trim(), payer < 0 ? null : fields.get(payer).trim(),
+                        transaction < 0 ? null : fields.get(transaction).trim()));
+            }catch (IllegalArgumentException exception){
+                handler.reject(lineNumber, text, exception.getMessage());
+            }
+        }
+    }
+
+    private static int column(List<String> names, String name){
+        int column = names.indexOf(name);
+        if(column < 0) throw new ApiException("The statement has no " + name + " column");
+        return column;
+    }
+
+    private static LocalDate toDate(String value){
+        if(value.isBlank()) return null;
+        try{
+            return LocalDate.parse(value.trim());
+        }catch (DateTimeParseException exception){
+            throw new IllegalArgumentException("Invalid date: " + value);
+        }
+    }
+
+    private static long toMinorUnits(String value, String currencyCode){
+        int digits;
+        try{
+            digits = Math.max(0, Currency.getInstance(currencyCode).getDefaultFractionDigits());
+        }catch (IllegalArgumentException exception){
+            throw new IllegalArgumentException("Unknown currency: " + currencyCode);
+        }
+        try{
+            return new BigDecimal(value.trim()).movePointRight(digits).longValueExact();
+        }catch (NumberFormatException | ArithmeticException exception){
+            throw new IllegalArgumentException("Invalid amount for " + currencyCode + ": " + value);
+        }
+    }
+
+    private static void split(String text, List<String> fields){
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(quoted){
+                if(c != '"') field.append(c);
+                else if(i + 1 < text.length() && text.charAt(i + 1) == '"') field.append(text.charAt(++i));
+                else quoted = false;
+            }else if(c == '"'){
+                quoted = true;
+            }else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            }else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+}
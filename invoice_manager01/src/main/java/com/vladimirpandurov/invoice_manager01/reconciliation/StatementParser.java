@@ -0,0 +1,23 @@
+package com.vladimirpandurov.invoice_manager01.reconciliation;
+
+import com.vladimirpandurov.invoice_manager01.domain.StatementLine;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads bank statements of one format. A parser hands over each line as soon as it is read and keeps nothing
+ * of earlier lines, so a statement of any size is reconciled in bounded memory. Every parser bean is offered
+ * under its format name.
+ */
+public interface StatementParser {
+
+    String getFormat();
+
+    void parse(Reader reader, LineHandler handler) throws IOException;
+
+    interface LineHandler {
+        void accept(StatementLine line);
+        void reject(long lineNumber, String text, String reason);
+    }
+}
@@ -0,0 +1,14 @@
+package com.vladimirpandurov.invoice_manager01.repository;
+
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobStatus;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobType;
+
+import java.time.LocalDateTime;
+
+public interface BackgroundJobRepository {
+    Long start(JobType type, Long tenantId, LocalDateTime staleBefore);
+    void updateProgress(Long id, long processed);
+    void finish(Long id, JobStatus status, long processed, String message);
+    JobData get(Long id, Long tenantId);
+}
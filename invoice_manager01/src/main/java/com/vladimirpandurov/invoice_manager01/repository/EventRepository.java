@@ -0,0 +1,13 @@
+package com.vladimirpandurov.invoice_manager01.repository;
+
+import com.vladimirpandurov.invoice_manager01.audit.AuditEvent;
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
+import com.vladimirpandurov.invoice_manager01.enumeration.EventType;
+
+import java.util.Collection;
+
+public interface EventRepository {
+    void addEvents(AuditEvent[] events, int count);
+    Collection<UserEvent> getEventsByUserId(Long userId, Long beforeId, int size);
+    Collection<String> getRecentEmails(EventType type, int size);
+}
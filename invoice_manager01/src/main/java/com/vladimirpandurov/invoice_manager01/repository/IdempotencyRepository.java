@@ -0,0 +1,15 @@
+package com.vladimirpandurov.invoice_manager01.repository;
+
+import com.vladimirpandurov.invoice_manager01.domain.IdempotentResponse;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IdempotencyRepository {
+    boolean claim(String keyHash, LocalDateTime expiresAt);
+    Optional<IdempotentResponse> getCompleted(String keyHash);
+    boolean exists(String keyHash);
+    void complete(String keyHash, IdempotentResponse response, LocalDateTime expiresAt);
+    void release(String keyHash);
+    int deleteExpired();
+}
@@ -0,0 +1,32 @@
+package com.vladimirpandurov.invoice_manager01.repository;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLineChunk;
+import com.vladimirpandurov.invoice_manager01.domain.OpenInvoiceIndex;
+import com.vladimirpandurov.invoice_manager01.domain.PaymentChunk;
+import com.vladimirpandurov.invoice_manager01.domain.TableSize;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface InvoiceRepository<T extends Invoice> {
+    void streamLinesByTaxRate(int taxRate, InvoiceLineChunk chunk, Consumer<InvoiceLineChunk> chunkHandler);
+    void updateLineTotals(InvoiceLineChunk chunk, int taxRate);
+    void adjustInvoiceTotals(long[] invoiceIds, long[] subtotalDeltas, long[] taxDeltas, int count);
+    Collection<T> getInvoices(InvoiceFilter filter);
+    T get(Long id);
+    Integer getVersion(Long id);
+    boolean isArchived(Long id);
+    List<T> getInvoicesIssuedBetween(LocalDate from, LocalDate to, InvoiceCursor cursor, int size);
+    List<T> lockArchivableInvoices(LocalDate cutoff, int size);
+    void deleteInvoices(List<Long> invoiceIds);
+    TableSize getTableSize();
+    void streamOpenInvoices(OpenInvoiceIndex index);
+    Set<String> getAppliedPaymentKeys(Collection<String> paymentKeys);
+    int[] applyPayments(PaymentChunk chunk);
+}
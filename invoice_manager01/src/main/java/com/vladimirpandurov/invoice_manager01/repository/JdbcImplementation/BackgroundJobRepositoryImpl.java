@@ -0,0 +1,75 @@
+package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
+
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobStatus;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobType;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.BackgroundJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.vladimirpandurov.invoice_manager01.query.BackgroundJobQuery.*;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class BackgroundJobRepositoryImpl implements BackgroundJobRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * The running key is unique while a job runs, so a second start of the same job on any instance fails. A
+     * holder that stopped reporting before {@code staleBefore} is marked abandoned and gives the key up.
+     */
+    @Override
+    public Long start(JobType type, Long tenantId, LocalDateTime staleBefore) {
+        String runningKey = type.name() + ":" + (tenantId == null ? 0 : tenantId);
+        jdbc.update(ABANDON_STALE_BACKGROUND_JOB_QUERY, Map.of("runningKey", runningKey, "staleBefore", staleBefore));
+        try{
+            KeyHolder holder = new GeneratedKeyHolder();
+            jdbc.update(INSERT_BACKGROUND_JOB_QUERY, new MapSqlParameterSource()
+                    .addValue("type", type.name())
+                    .addValue("tenantId", tenantId)
+                    .addValue("runningKey", runningKey), holder, new String[]{"id"});
+            return Objects.requireNonNull(holder.getKey()).longValue();
+        }catch (DuplicateKeyException exception){
+            throw new ApiException("This job is already running. Please try again later.");
+        }
+    }
+
+    @Override
+    public void updateProgress(Long id, long processed) {
+        jdbc.update(UPDATE_BACKGROUND_JOB_PROGRESS_QUERY, Map.of("id", id, "processed", processed));
+    }
+
+    @Override
+    public void finish(Long id, JobStatus status, long processed, String message) {
+        jdbc.update(FINISH_BACKGROUND_JOB_QUERY, new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("status", status.name())
+                .addValue("processed", processed)
+                .addValue("message", message));
+    }
+
+    @Override
+    public JobData get(Long id, Long tenantId) {
+        try{
+            return jdbc.queryForObject(SELECT_BACKGROUND_JOB_QUERY, Map.of("id", id, "tenantId", tenantId == null ? 0 : tenantId), (rs, rowNum) ->
+                    new JobData(rs.getLong(1), JobType.valueOf(rs.getString(2)), JobStatus.valueOf(rs.getString(3)), rs.getLong(4), rs.getString(5),
+                            rs.getTimestamp(6).toLocalDateTime(), rs.getTimestamp(7).toLocalDateTime()));
+        }catch (EmptyResultDataAccessException exception){
+            throw new ApiException("No job found by id: " + id);
+        }
+    }
+}
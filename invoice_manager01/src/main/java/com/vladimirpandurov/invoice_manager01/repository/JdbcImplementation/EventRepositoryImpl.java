@@ -0,0 +1,69 @@
+package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
+
+import com.vladimirpandurov.invoice_manager01.audit.AuditEvent;
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
+import com.vladimirpandurov.invoice_manager01.enumeration.EventType;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.EventRepository;
+import com.vladimirpandurov.invoice_manager01.rowmapper.UserEventRowMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Map;
+
+import static com.vladimirpandurov.invoice_manager01.query.EventQuery.*;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class EventRepositoryImpl implements EventRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public void addEvents(AuditEvent[] events, int count) {
+        SqlParameterSource[] parameters = new SqlParameterSource[count];
+        for(int i = 0; i < count; i++){
+            AuditEvent event = events[i];
+            parameters[i] = new MapSqlParameterSource()
+                    .addValue("userId", event.getUserId())
+                    .addValue("email", event.getEmail())
+                    .addValue("type", event.getType().name())
+                    .addValue("description", event.getType().getDescription())
+                    .addValue("ipAddress", event.getIpAddress())
+                    .addValue("device", event.getDevice())
+                    .addValue("createdAt", new Timestamp(event.getCreatedAt()));
+        }
+        jdbc.batchUpdate(INSERT_EVENT_QUERY, parameters);
+    }
+
+    @Override
+    public Collection<UserEvent> getEventsByUserId(Long userId, Long beforeId, int size) {
+        try{
+            return jdbc.query(SELECT_EVENTS_BY_USER_ID_QUERY, Map.of("userId", userId, "beforeId", beforeId, "size", size), new UserEventRowMapper());
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
+    }
+
+    /**
+     * Distinct emails of the latest events of a type, looking back over at most {@code size * 20} events so the
+     * newest-first scan of the primary key stays short.
+     */
+    @Override
+    public Collection<String> getRecentEmails(EventType type, int size) {
+        try{
+            return jdbc.queryForList(SELECT_RECENT_EMAILS_BY_TYPE_QUERY, Map.of("type", type.name(), "window", size * 20, "size", size), String.class);
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.IdempotentResponse;
+import com.vladimirpandurov.invoice_manager01.repository.IdempotencyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.vladimirpandurov.invoice_manager01.query.IdempotencyQuery.*;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyRepositoryImpl implements IdempotencyRepository {
+
+    private static final String COMPLETED = "COMPLETED";
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public boolean claim(String keyHash, LocalDateTime expiresAt) {
+        jdbc.update(DELETE_EXPIRED_IDEMPOTENCY_KEY_QUERY, Map.of("keyHash", keyHash, "now", LocalDateTime.now()));
+        try{
+            jdbc.update(INSERT_IDEMPOTENCY_KEY_QUERY, Map.of("keyHash", keyHash, "expiresAt", expiresAt));
+            return true;
+        }catch (DuplicateKeyException exception){
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<IdempotentResponse> getCompleted(String keyHash) {
+        List<IdempotentResponse> responses = jdbc.query(SELECT_IDEMPOTENCY_KEY_QUERY, Map.of("keyHash", keyHash), (rs, rowNum) ->
+                COMPLETED.equals(rs.getString("status"))
+                        ? new IdempotentResponse(rs.getInt("response_status"), rs.getString("content_type"), rs.getString("location"), rs.getBytes("body"))
+                        : null);
+        return responses.isEmpty() ? Optional.empty() : Optional.ofNullable(responses.get(0));
+    }
+
+    @Override
+    public boolean exists(String keyHash) {
+        return !jdbc.queryForList(SELECT_IDEMPOTENCY_KEY_QUERY, Map.of("keyHash", keyHash)).isEmpty();
+    }
+
+    @Override
+    public void complete(String keyHash, IdempotentResponse response, LocalDateTime expiresAt) {
+        jdbc.update(COMPLETE_IDEMPOTENCY_KEY_QUERY, new MapSqlParameterSource()
+                .addValue("keyHash", keyHash)
+                .addValue("status", response.getStatus())
+                .addValue("contentType", response.getContentType())
+                .addValue("location", response.getLocation())
+                .addValue("body", response.getBody())
+                .addValue("expiresAt", expiresAt));
+    }
+
+    @Override
+    public void release(String keyHash) {
+        jdbc.update(DELETE_IDEMPOTENCY_KEY_QUERY, Map.of("keyHash", keyHash));
+    }
+
+    @Override
+    public int deleteExpired() {
+        return jdbc.update(DELETE_EXPIRED_IDEMPOTENCY_KEYS_QUERY, Map.of("now", LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,289 @@
+package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLine;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLineChunk;
+import com.vladimirpandurov.invoice_manager01.domain.OpenInvoiceIndex;
+import com.vladimirpandurov.invoice_manager01.domain.PaymentChunk;
+import com.vladimirpandurov.invoice_manager01.domain.TableSize;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.query.InvoiceFilterQuery;
+import com.vladimirpandurov.invoice_manager01.repository.InvoiceRepository;
+import com.vladimirpandurov.invoice_manager01.rowmapper.InvoiceRowMapper;
+import com.vladimirpandurov.invoice_manager01.storage.InvoiceArchive;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_JDBC;
+import static com.vladimirpandurov.invoice_manager01.query.InvoiceQuery.*;
+import static com.vladimirpandurov.invoice_manager01.utils.StreamingQueryUtils.prepareStreaming;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceRepositoryImpl implements InvoiceRepository<Invoice> {
+
+    private static final InvoiceRowMapper INVOICE_ROW_MAPPER = new InvoiceRowMapper();
+    private static final int TEMPLATE_ID_COLUMN = InvoiceRowMapper.COLUMN_COUNT + 1;
+    private static final int BILLING_PERIOD_COLUMN = InvoiceRowMapper.COLUMN_COUNT + 2;
+    @Qualifier(TENANT_JDBC)
+    private final NamedParameterJdbcTemplate jdbc;
+    private final InvoiceArchive invoiceArchive;
+
+    @Override
+    public void streamLinesByTaxRate(int taxRate, InvoiceLineChunk chunk, Consumer<InvoiceLineChunk> chunkHandler) {
+        chunk.clear();
+        jdbc.getJdbcOperations().query(connection -> {
+            PreparedStatement statement = prepareStreaming(connection, SELECT_INVOICE_LINES_BY_TAX_RATE_QUERY);
+            statement.setInt(1, taxRate);
+            return statement;
+        }, (ResultSet resultSet) -> {
+            chunk.add(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3), resultSet.getLong(4),
+                    resultSet.getInt(5), resultSet.getLong(6), resultSet.getLong(7));
+            if(chunk.isFull()){
+                chunkHandler.accept(chunk);
+                chunk.clear();
+            }
+        });
+        if(chunk.size() > 0) chunkHandler.accept(chunk);
+    }
+
+    @Override
+    public void updateLineTotals(InvoiceLineChunk chunk, int taxRate) {
+        jdbc.getJdbcOperations().batchUpdate(UPDATE_INVOICE_LINE_TOTALS_QUERY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setInt(1, taxRate);
+                statement.setLong(2, chunk.lineTotals[i]);
+                statement.setLong(3, chunk.lineTaxes[i]);
+                statement.setLong(4, chunk.lineIds[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+    }
+
+    @Override
+    public void adjustInvoiceTotals(long[] invoiceIds, long[] subtotalDeltas, long[] taxDeltas, int count) {
+        jdbc.getJdbcOperations().batchUpdate(ADJUST_INVOICE_TOTALS_QUERY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, subtotalDeltas[i]);
+                statement.setLong(2, taxDeltas[i]);
+                statement.setLong(3, subtotalDeltas[i] + taxDeltas[i]);
+                statement.setLong(4, invoiceIds[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+
+    @Override
+    public Collection<Invoice> getInvoices(InvoiceFilter filter) {
+        try{
+            return jdbc.query(InvoiceFilterQuery.getSql(filter), InvoiceFilterQuery.getParameters(filter), INVOICE_ROW_MAPPER);
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
+    }
+
+    /**
+     * Reads through to the archive when the invoice is no longer in the hot table.
+     */
+    @Override
+    public Invoice get(Long id) {
+        Invoice invoice;
+        try{
+            invoice = jdbc.query(SELECT_INVOICE_BY_ID_QUERY, Map.of("id", id), InvoiceRepositoryImpl::mapFullInvoice).stream().findFirst().orElse(null);
+            if(invoice != null) addLines(List.of(invoice));
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
+        if(invoice == null) invoice = invoiceArchive.find(id);
+        if(invoice == null) throw new ApiException("No invoice found by id: " + id);
+        return invoice;
+    }
+
+    /**
+     * Version of an invoice in the hot table, or null for an archived or unknown invoice.
+     */
+    @Override
+    public Integer getVersion(Long id) {
+        try{
+            return jdbc.query(SELECT_INVOICE_VERSION_QUERY, Map.of("id", id), (resultSet, rowNum) -> resultSet.getInt(1)).stream().findFirst().orElse(null);
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
+    }
+
+    @Override
+    public boolean isArchived(Long id) {
+        return invoiceArchive.find(id) != null;
+    }
+
+    /**
+     * One page of the range in issue date and id order, after the cursor when there is one. When the page can
+     * reach into the archive, a page is read from both stores with the same cursor and the first {@code size} rows
+     * of the merge are kept. A row present in both, left by an interrupted archival, is taken from the hot table.
+     */
+    @Override
+    public List<Invoice> getInvoicesIssuedBetween(LocalDate from, LocalDate to, InvoiceCursor cursor, int size) {
+        List<Invoice> invoices;
+        try{
+            invoices = cursor == null
+                    ? jdbc.query(SELECT_INVOICES_ISSUED_BETWEEN_QUERY, Map.of("from", from, "to", to, "size", size), InvoiceRepositoryImpl::mapFullInvoice)
+                    : jdbc.query(SELECT_INVOICES_ISSUED_BETWEEN_AFTER_QUERY, Map.of("from", from, "to", to, "cursorKey", LocalDate.ofEpochDay(cursor.key()),
+                            "cursorId", cursor.id(), "size", size), InvoiceRepositoryImpl::mapFullInvoice);
+            addLines(invoices);
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
+        LocalDate archivedUntil = invoiceArchive.getMaxIssuedAt();
+        if(archivedUntil == null || from.isAfter(archivedUntil) || (cursor != null && cursor.key() > archivedUntil.toEpochDay())) return invoices;
+        Set<Long> hotIds = invoices.stream().map(Invoice::getId).collect(Collectors.toSet());
+        List<Invoice> merged = new ArrayList<>(invoices);
+        for(Invoice archived : invoiceArchive.findIssuedBetween(from, to, cursor, size)){
+            if(!hotIds.contains(archived.getId())) merged.add(archived);
+        }
+        merged.sort(Comparator.comparing(Invoice::getIssuedAt).thenComparing(Invoice::getId));
+        return merged.size() > size ? new ArrayList<>(merged.subList(0, size)) : merged;
+    }
+
+    @Override
+    public List<Invoice> lockArchivableInvoices(LocalDate cutoff, int size) {
+        List<Invoice> invoices = jdbc.query(SELECT_ARCHIVABLE_INVOICES_QUERY, Map.of("cutoff", cutoff, "size", size), InvoiceRepositoryImpl::mapFullInvoice);
+        addLines(invoices);
+        return invoices;
+    }
+
+    @Override
+    public void deleteInvoices(List<Long> invoiceIds) {
+        jdbc.update(DELETE_INVOICES_BY_IDS_QUERY, Map.of("invoiceIds", invoiceIds));
+    }
+
+    /**
+     * Refreshes the sampled statistics first; information_schema otherwise serves cached figures.
+     */
+    @Override
+    public TableSize getTableSize() {
+        jdbc.getJdbcOperations().execute(ANALYZE_INVOICES_TABLE_QUERY);
+        return jdbc.getJdbcOperations().queryForObject(SELECT_INVOICES_TABLE_SIZE_QUERY, (resultSet, rowNum) -> new TableSize(resultSet.getLong(1), resultSet.getLong(2)));
+    }
+
+    @Override
+    public void streamOpenInvoices(OpenInvoiceIndex index) {
+        jdbc.getJdbcOperations().query(connection -> {
+            return prepareStreaming(connection, SELECT_OPEN_INVOICES_FOR_RECONCILIATION_QUERY);
+        }, (ResultSet resultSet) -> index.add(resultSet.getLong(1), resultSet.getString(2), resultSet.getLong(3),
+                resultSet.getString(4), resultSet.getString(5), resultSet.getLong(6)));
+    }
+
+    @Override
+    public Set<String> getAppliedPaymentKeys(Collection<String> paymentKeys) {
+        if(paymentKeys.isEmpty()) return new HashSet<>();
+        return new HashSet<>(jdbc.queryForList(SELECT_APPLIED_PAYMENT_KEYS_QUERY, Map.of("paymentKeys", paymentKeys), String.class));
+    }
+
+    /**
+     * Applies the payments and records the ones that took in AppliedPayments, in the caller's transaction. A
+     * payment recorded meanwhile by a concurrent reconciliation fails the unique key and so the whole chunk.
+     */
+    @Override
+    public int[] applyPayments(PaymentChunk chunk) {
+        int[] counts = jdbc.getJdbcOperations().batchUpdate(APPLY_PAYMENT_QUERY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, chunk.amounts[i]);
+                statement.setLong(2, chunk.amounts[i]);
+                statement.setLong(3, chunk.invoiceIds[i]);
+                statement.setLong(4, chunk.amounts[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+        int[] applied = IntStream.range(0, counts.length).filter(i -> counts[i] != 0).toArray();
+        if(applied.length == 0) return counts;
+        jdbc.getJdbcOperations().batchUpdate(INSERT_APPLIED_PAYMENT_QUERY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setString(1, chunk.paymentKeys[applied[i]]);
+                statement.setLong(2, chunk.invoiceIds[applied[i]]);
+                statement.setLong(3, chunk.amounts[applied[i]]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return applied.length;
+            }
+        });
+        return counts;
+    }
+
+    private void addLines(List<Invoice> invoices){
+        if(invoices.isEmpty()) return;
+        Map<Long, Invoice> byId = new HashMap<>();
+        for(Invoice invoice : invoices){
+            invoice.setLines(new ArrayList<>());
+            byId.put(invoice.getId(), invoice);
+        }
+        jdbc.query(SELECT_INVOICE_LINES_BY_INVOICE_IDS_QUERY, Map.of("invoiceIds", byId.keySet()), (ResultSet resultSet) -> {
+            InvoiceLine line = InvoiceLine.builder()
+                    .id(resultSet.getLong(1))
+                    .invoiceId(resultSet.getLong(2))
+                    .description(resultSet.getString(3))
+                    .quantity(resultSet.getLong(4))
+                    .unitPrice(resultSet.getLong(5))
+                    .discount(resultSet.getInt(6))
+                    .taxRate(resultSet.getInt(7))
+                    .lineTotal(resultSet.getLong(8))
+                    .lineTax(resultSet.getLong(9))
+                    .build();
+            byId.get(line.getInvoiceId()).getLines().add(line);
+        });
+    }
+
+    private static Invoice mapFullInvoice(ResultSet resultSet, int rowNum) throws SQLException {
+        Invoice invoice = INVOICE_ROW_MAPPER.mapRow(resultSet, rowNum);
+        long templateId = resultSet.getLong(TEMPLATE_ID_COLUMN);
+        invoice.setTemplateId(resultSet.wasNull() ? null : templateId);
+        Date billingPeriod = resultSet.getDate(BILLING_PERIOD_COLUMN);
+        invoice.setBillingPeriod(billingPeriod == null ? null : billingPeriod.toLocalDate());
+        return invoice;
+    }
+}
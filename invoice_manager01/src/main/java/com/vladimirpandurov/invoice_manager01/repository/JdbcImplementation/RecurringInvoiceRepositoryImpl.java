@@ -0,0 +1,154 @@
+package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLine;
+import com.vladimirpandurov.invoice_manager01.domain.RecurringInvoiceRun;
+import com.vladimirpandurov.invoice_manager01.domain.RecurringInvoiceTemplate;
+import com.vladimirpandurov.invoice_manager01.repository.RecurringInvoiceRepository;
+import com.vladimirpandurov.invoice_manager01.rowmapper.InvoiceLineRowMapper;
+import com.vladimirpandurov.invoice_manager01.rowmapper.RecurringInvoiceTemplateRowMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_JDBC;
+import static com.vladimirpandurov.invoice_manager01.query.RecurringInvoiceQuery.*;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class RecurringInvoiceRepositoryImpl implements RecurringInvoiceRepository {
+
+    @Qualifier(TENANT_JDBC)
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * Starts the run of a day, or takes over one that failed or whose owner stopped updating it. Returns
+     * null when the run is complete or still owned by another instance. Partitions split the template ids
+     * into contiguous ranges, so each one is a primary key range scan; the last range is open-ended for
+     * templates created during the run. A resumed run keeps the ranges it started with.
+     */
+    @Override
+    public RecurringInvoiceRun claimRun(LocalDate runDate, int partitions, LocalDateTime staleBefore) {
+        try{
+            jdbc.update(INSERT_RUN_QUERY, Map.of("runDate", runDate, "partitions", partitions));
+        }catch (DuplicateKeyException exception){
+            if(jdbc.update(CLAIM_RUN_QUERY, Map.of("runDate", runDate, "staleBefore", staleBefore)) == 0) return null;
+        }
+        RecurringInvoiceRun run = jdbc.queryForObject(SELECT_RUN_BY_DATE_QUERY, Map.of("runDate", runDate), (rs, rowNum) ->
+                RecurringInvoiceRun.builder().id(rs.getLong("id")).runDate(runDate).partitions(rs.getInt("partitions")).build());
+        long[] ids = jdbc.queryForObject(SELECT_TEMPLATE_ID_RANGE_QUERY, Map.of(), (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long span = Math.max(1, (ids[1] - ids[0] + run.getPartitions()) / run.getPartitions());
+        SqlParameterSource[] parameters = new SqlParameterSource[run.getPartitions()];
+        for(int partition = 0; partition < run.getPartitions(); partition++){
+            long last = ids[0] - 1 + partition * span;
+            parameters[partition] = new MapSqlParameterSource().addValue("runId", run.getId()).addValue("partition", partition)
+                    .addValue("lastTemplateId", last)
+                    .addValue("endTemplateId", partition == run.getPartitions() - 1 ? Long.MAX_VALUE : last + span);
+        }
+        jdbc.batchUpdate(INSERT_CHECKPOINT_QUERY, parameters);
+        run.setCheckpoints(jdbc.query(SELECT_OPEN_CHECKPOINTS_QUERY, Map.of("runId", run.getId()), (rs, rowNum) ->
+                new RecurringInvoiceRun.Checkpoint(rs.getInt(1), rs.getLong(2), rs.getLong(3))));
+        return run;
+    }
+
+    @Override
+    public void finishRun(Long runId, String status) {
+        jdbc.update(UPDATE_RUN_STATUS_QUERY, Map.of("runId", runId, "status", status));
+    }
+
+    @Override
+    public void saveCheckpoint(Long runId, int partition, long lastTemplateId, int created, boolean completed) {
+        jdbc.update(UPDATE_CHECKPOINT_QUERY, Map.of("runId", runId, "partition", partition, "lastTemplateId", lastTemplateId,
+                "created", created, "completed", completed));
+        jdbc.update(TOUCH_RUN_QUERY, Map.of("runId", runId));
+    }
+
+    @Override
+    public List<RecurringInvoiceTemplate> getDueTemplates(LocalDate runDate, long lastTemplateId, long endTemplateId, int size) {
+        List<RecurringInvoiceTemplate> templates = jdbc.query(SELECT_DUE_TEMPLATES_QUERY, Map.of("runDate", runDate, "lastTemplateId", lastTemplateId,
+                "endTemplateId", endTemplateId, "size", size), new RecurringInvoiceTemplateRowMapper());
+        if(templates.isEmpty()) return templates;
+        Map<Long, RecurringInvoiceTemplate> byId = templates.stream().collect(Collectors.toMap(RecurringInvoiceTemplate::getId, Function.identity()));
+        InvoiceLineRowMapper lineRowMapper = new InvoiceLineRowMapper();
+        jdbc.query(SELECT_TEMPLATE_LINES_QUERY, Map.of("templateIds", byId.keySet()), rs -> {
+            byId.get(rs.getLong("template_id")).getLines().add(lineRowMapper.mapRow(rs, 0));
+        });
+        return templates;
+    }
+
+    @Override
+    public Map<Long, Set<LocalDate>> getInvoicedPeriods(Collection<RecurringInvoiceTemplate> templates, LocalDate runDate) {
+        Set<Long> templateIds = templates.stream().map(RecurringInvoiceTemplate::getId).collect(Collectors.toSet());
+        LocalDate firstPeriod = templates.stream().map(RecurringInvoiceTemplate::getNextRunDate).min(Comparator.naturalOrder()).orElse(runDate);
+        Map<Long, Set<LocalDate>> invoiced = new HashMap<>();
+        jdbc.query(SELECT_INVOICED_PERIODS_QUERY, Map.of("templateIds", templateIds, "firstPeriod", firstPeriod, "runDate", runDate), rs -> {
+            invoiced.computeIfAbsent(rs.getLong("template_id"), id -> new HashSet<>()).add(rs.getDate("billing_period").toLocalDate());
+        });
+        return invoiced;
+    }
+
+    @Override
+    public void createInvoices(List<Invoice> invoices) {
+        if(invoices.isEmpty()) return;
+        SqlParameterSource[] invoiceParameters = invoices.stream().map(invoice -> new MapSqlParameterSource()
+                .addValue("invoiceNumber", invoice.getInvoiceNumber())
+                .addValue("customerId", invoice.getCustomerId())
+                .addValue("issuedAt", Date.valueOf(invoice.getIssuedAt()))
+                .addValue("dueAt", Date.valueOf(invoice.getDueAt()))
+                .addValue("currency", invoice.getCurrency())
+                .addValue("subtotal", invoice.getSubtotal())
+                .addValue("tax", invoice.getTax())
+                .addValue("total", invoice.getTotal())
+                .addValue("templateId", invoice.getTemplateId())
+                .addValue("billingPeriod", Date.valueOf(invoice.getBillingPeriod()))).toArray(SqlParameterSource[]::new);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(INSERT_INVOICE_QUERY, invoiceParameters, keyHolder, new String[]{"id"});
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<SqlParameterSource> lineParameters = new ArrayList<>();
+        for(int i = 0; i < invoices.size(); i++){
+            long invoiceId = ((Number) keys.get(i).values().iterator().next()).longValue();
+            for(InvoiceLine line : invoices.get(i).getLines()){
+                lineParameters.add(new MapSqlParameterSource()
+                        .addValue("invoiceId", invoiceId)
+                        .addValue("description", line.getDescription())
+                        .addValue("quantity", line.getQuantity())
+                        .addValue("unitPrice", line.getUnitPrice())
+                        .addValue("discount", line.getDiscount())
+                        .addValue("taxRate", line.getTaxRate())
+                        .addValue("lineTotal", line.getLineTotal())
+                        .addValue("lineTax", line.getLineTax()));
+            }
+        }
+        jdbc.batchUpdate(INSERT_INVOICE_LINE_QUERY, lineParameters.toArray(SqlParameterSource[]::new));
+    }
+
+    @Override
+    public void advanceTemplates(Collection<RecurringInvoiceTemplate> templates, LocalDate runDate) {
+        jdbc.batchUpdate(ADVANCE_TEMPLATE_QUERY, templates.stream().map(template -> new MapSqlParameterSource()
+                .addValue("id", template.getId())
+                .addValue("previousRunDate", Date.valueOf(template.getNextRunDate()))
+                .addValue("nextRunDate", Date.valueOf(template.getNextRunDateAfter(runDate))))
+                .toArray(SqlParameterSource[]::new));
+    }
+
+    @Override
+    public LocalDate getOldestDueDate(LocalDate runDate) {
+        Date oldest = jdbc.queryForObject(SELECT_OLDEST_DUE_DATE_QUERY, Map.of("runDate", runDate), Date.class);
+        return oldest == null ? null : oldest.toLocalDate();
+    }
+}
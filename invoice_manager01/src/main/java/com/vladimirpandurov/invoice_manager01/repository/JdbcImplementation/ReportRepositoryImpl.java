@@ -0,0 +1,53 @@
+package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.AgingSegment;
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+import com.vladimirpandurov.invoice_manager01.repository.ReportRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_JDBC;
+import static com.vladimirpandurov.invoice_manager01.query.ReportQuery.*;
+import static com.vladimirpandurov.invoice_manager01.utils.StreamingQueryUtils.prepareStreaming;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class ReportRepositoryImpl implements ReportRepository {
+
+    @Qualifier(TENANT_JDBC)
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public long[] getCustomerIdRange() {
+        return jdbc.queryForObject(SELECT_CUSTOMER_ID_RANGE_QUERY, Map.of(), (resultSet, rowNum) ->
+                new long[]{resultSet.getLong("min_id"), resultSet.getLong("max_id")});
+    }
+
+    @Override
+    public void streamOpenInvoices(long fromCustomerId, long toCustomerId, LocalDate asOf, AgingSegment segment) {
+        jdbc.getJdbcOperations().query(connection -> {
+            PreparedStatement statement = prepareStreaming(connection, SELECT_OPEN_INVOICES_BY_CUSTOMER_RANGE_QUERY);
+            statement.setDate(1, Date.valueOf(asOf));
+            statement.setLong(2, fromCustomerId);
+            statement.setLong(3, toCustomerId);
+            return statement;
+        }, (ResultSet resultSet) -> segment.add(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3), resultSet.getInt(4), resultSet.getLong(5)));
+    }
+
+    @Override
+    public List<Outstanding> getOutstandingByCurrency() {
+        return jdbc.query(SELECT_OUTSTANDING_BY_CURRENCY_QUERY, Map.of(), (resultSet, rowNum) ->
+                new Outstanding(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3)));
+    }
+}
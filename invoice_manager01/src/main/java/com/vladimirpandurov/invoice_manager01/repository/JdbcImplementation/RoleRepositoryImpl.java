@@ -1,5 +1,7 @@
 package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
 
+import com.vladimirpandurov.invoice_manager01.audit.AuditEventPublisher;
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus;
 import com.vladimirpandurov.invoice_manager01.domain.Role;
 import com.vladimirpandurov.invoice_manager01.exception.ApiException;
 import com.vladimirpandurov.invoice_manager01.repository.RoleRepository;
@@ -9,12 +11,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.EventType.ROLE_UPDATE;
 import static com.vladimirpandurov.invoice_manager01.query.RoleQuery.*;
+import static com.vladimirpandurov.invoice_manager01.query.UserQuery.INCREMENT_USER_VERSION_QUERY;
 
 @Repository
 @RequiredArgsConstructor
@@ -22,6 +28,9 @@ import static com.vladimirpandurov.invoice_manager01.query.RoleQuery.*;
 public class RoleRepositoryImpl implements RoleRepository<Role> {
 
     private final NamedParameterJdbcTemplate jdbc;
+    private final CacheInvalidationBus invalidationBus;
+    private final AuditEventPublisher auditEventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public Role create(Role data) {
@@ -30,7 +39,12 @@ public class RoleRepositoryImpl implements RoleRepository<Role> {
 
     @Override
     public Collection<Role> list(int page, int pageSize) {
-        return null;
+        try{
+            return jdbc.query(SELECT_ROLES_QUERY, Map.of("size", pageSize, "offset", page * pageSize), new RoleRowMapper());
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
     }
 
     @Override
@@ -53,7 +67,10 @@ public class RoleRepositoryImpl implements RoleRepository<Role> {
         log.info("Adding role {} to user id: {}", roleName, userId);
         try{
             Role role = jdbc.queryForObject(SELECT_ROLE_BY_NAME_QUERY, Map.of("name", roleName), new RoleRowMapper());
-            jdbc.update(INSERT_ROLE_TO_USER_QUERY, Map.of("userId", userId, "roleId", Objects.requireNonNull(role).getId()));
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbc.update(INSERT_ROLE_TO_USER_QUERY, Map.of("userId", userId, "roleId", Objects.requireNonNull(role).getId()));
+                invalidationBus.publish(USER, userId);
+            });
         }catch (EmptyResultDataAccessException exception){
             throw new ApiException("No role found by name: " + roleName);
         }catch (Exception exception){
@@ -80,6 +97,16 @@ public class RoleRepositoryImpl implements RoleRepository<Role> {
 
     @Override
     public void updateUserRole(Long userId, String roleName) {
-
+        log.info("Updating role for user id: {}", userId);
+        try{
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbc.update(UPDATE_USER_ROLE_QUERY, Map.of("roleName", roleName, "userId", userId));
+                jdbc.update(INCREMENT_USER_VERSION_QUERY, Map.of("id", userId));
+                invalidationBus.publish(USER, userId);
+            });
+            auditEventPublisher.publish(ROLE_UPDATE, userId, null);
+        }catch (Exception exception){
+            throw new ApiException("An error occurred. Please try again.");
+        }
     }
 }
@@ -0,0 +1,50 @@
+package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.TenantRepository;
+import com.vladimirpandurov.invoice_manager01.rowmapper.TenantRowMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.vladimirpandurov.invoice_manager01.query.TenantQuery.*;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class TenantRepositoryImpl implements TenantRepository {
+
+    private static final TenantRowMapper TENANT_ROW_MAPPER = new TenantRowMapper();
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public List<Tenant> list() {
+        return jdbc.query(SELECT_TENANTS_QUERY, TENANT_ROW_MAPPER);
+    }
+
+    @Override
+    public Tenant get(Long id) {
+        try{
+            return jdbc.queryForObject(SELECT_TENANT_BY_ID_QUERY, Map.of("id", id), TENANT_ROW_MAPPER);
+        }catch (EmptyResultDataAccessException exception){
+            throw new ApiException("No tenant found by id: " + id);
+        }
+    }
+
+    @Override
+    public boolean updateStatus(Long id, TenantStatus expectedStatus, TenantStatus status) {
+        return jdbc.update(UPDATE_TENANT_STATUS_QUERY, Map.of("id", id, "expectedStatus", expectedStatus.name(), "status", status.name())) == 1;
+    }
+
+    @Override
+    public void updateShard(Long id, String shard, TenantStatus status) {
+        jdbc.update(UPDATE_TENANT_SHARD_QUERY, Map.of("id", id, "shard", shard, "status", status.name()));
+    }
+}
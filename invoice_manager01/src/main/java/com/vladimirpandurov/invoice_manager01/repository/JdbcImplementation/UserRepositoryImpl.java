@@ -1,5 +1,9 @@
 package com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation;
 
+import com.vladimirpandurov.invoice_manager01.audit.AuditEventPublisher;
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus;
+import com.vladimirpandurov.invoice_manager01.cache.RegisteredEmailFilter;
+import com.vladimirpandurov.invoice_manager01.configuration.StatementCountingDataSource;
 import com.vladimirpandurov.invoice_manager01.domain.User;
 import com.vladimirpandurov.invoice_manager01.domain.UserPrincipal;
 import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
@@ -7,10 +11,15 @@ import com.vladimirpandurov.invoice_manager01.enumeration.VerificationType;
 import com.vladimirpandurov.invoice_manager01.exception.ApiException;
 import com.vladimirpandurov.invoice_manager01.repository.RoleRepository;
 import com.vladimirpandurov.invoice_manager01.repository.UserRepository;
-import com.vladimirpandurov.invoice_manager01.rowmapper.UserRowMapper;
+import com.vladimirpandurov.invoice_manager01.rowmapper.UserAuthRowMapper;
+import com.vladimirpandurov.invoice_manager01.rowmapper.UserListingRowMapper;
+import com.vladimirpandurov.invoice_manager01.rowmapper.UserProfileRowMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
@@ -21,12 +30,23 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
+import static com.vladimirpandurov.invoice_manager01.cache.RegisteredEmailFilter.REGISTERED_EMAIL;
+import static com.vladimirpandurov.invoice_manager01.enumeration.EventType.MFA_VERIFIED;
+import static com.vladimirpandurov.invoice_manager01.enumeration.EventType.PASSWORD_RESET_REQUEST;
+import static com.vladimirpandurov.invoice_manager01.enumeration.EventType.PASSWORD_UPDATE;
 import static com.vladimirpandurov.invoice_manager01.enumeration.RoleType.ROLE_USER;
 import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.ACCOUNT;
+import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.CODE;
 import static com.vladimirpandurov.invoice_manager01.enumeration.VerificationType.PASSWORD;
 import static com.vladimirpandurov.invoice_manager01.query.UserQuery.*;
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
@@ -40,23 +60,37 @@ import static org.apache.commons.lang3.time.DateUtils.addDays;
 public class UserRepositoryImpl implements UserRepository<User>, UserDetailsService {
 
     private static final String DATA_FORMAT = "yyyy-MM-dd hh:mm:ss";
+    private static final UserAuthRowMapper USER_AUTH_ROW_MAPPER = new UserAuthRowMapper();
+    private static final UserProfileRowMapper USER_PROFILE_ROW_MAPPER = new UserProfileRowMapper();
+    private static final UserListingRowMapper USER_LISTING_ROW_MAPPER = new UserListingRowMapper();
+    private static final int VERIFICATION_ID_COLUMN = UserProfileRowMapper.COLUMN_COUNT + 1;
+    private static final int VERIFICATION_EXPIRED_COLUMN = UserProfileRowMapper.COLUMN_COUNT + 2;
+    private static final String PROFILE_CONFLICT_MESSAGE = "Your profile was changed by another request. Please reload it and try again.";
     private final NamedParameterJdbcTemplate jdbc;
     private final RoleRepository roleRepository;
     private final BCryptPasswordEncoder encoder;
+    private final CacheInvalidationBus invalidationBus;
+    private final RegisteredEmailFilter emailFilter;
+    private final AuditEventPublisher auditEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
     @Override
     public User create(User user) {
         //Check the email is unique
-        if(getEmailCount(user.getEmail().trim().toLowerCase()) > 0) throw new ApiException("Email already in use. Please use a different email and try again");
+        if(emailFilter.mightBeRegistered(user.getEmail()) && getEmailCount(user.getEmail().trim().toLowerCase()) > 0) throw new ApiException("Email already in use. Please use a different email and try again");
         //save new user
         try{
-            KeyHolder holder = new GeneratedKeyHolder();
-            SqlParameterSource parameters = getSqlParameterSource(user);
-            jdbc.update(INSERT_USER_QUERY, parameters, holder);
-            user.setId(Objects.requireNonNull(holder.getKey()).longValue());
-            roleRepository.addRoleToUser(user.getId(), ROLE_USER.name());
             String verificationUrl = getVerificationUrl(UUID.randomUUID().toString(), ACCOUNT.getType());
-            jdbc.update(INSERT_ACCOUNT_VERIFICATION_URL_QUERY, Map.of("userId", user.getId(), "url", verificationUrl));
+            transactionTemplate.executeWithoutResult(status -> {
+                KeyHolder holder = new GeneratedKeyHolder();
+                SqlParameterSource parameters = getSqlParameterSource(user);
+                jdbc.update(INSERT_USER_QUERY, parameters, holder);
+                user.setId(Objects.requireNonNull(holder.getKey()).longValue());
+                roleRepository.addRoleToUser(user.getId(), ROLE_USER.name());
+                jdbc.update(INSERT_ACCOUNT_VERIFICATION_URL_QUERY, Map.of("userId", user.getId(), "url", verificationUrl));
+                invalidationBus.publish(REGISTERED_EMAIL, user.getId());
+            });
             //emailService.sendVerificationUrl(user.getFirstName(), user.getEmail(), verificationUrl, ACCOUNT.getType())
             user.setEnabled(true);
             user.setNotLocked(true);
@@ -68,17 +102,58 @@ public class UserRepositoryImpl implements UserRepository<User>, UserDetailsServ
 
     @Override
     public Collection<User> list(int page, int pageSize) {
-        return null;
+        try{
+            return jdbc.query(SELECT_USERS_QUERY, Map.of("size", pageSize, "offset", page * pageSize), USER_LISTING_ROW_MAPPER);
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
     }
 
     @Override
     public User get(Long id) {
-        return null;
+        try{
+            return jdbc.queryForObject(SELECT_USER_BY_ID_QUERY, Map.of("id", id), USER_PROFILE_ROW_MAPPER);
+        }catch (EmptyResultDataAccessException exception){
+            throw new ApiException("No User found by id: " + id);
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
     }
 
+    /**
+     * Writes only the profile fields that are set in {@code data} and differ from the stored row. The update
+     * is guarded by the version the client read, so a concurrent edit fails instead of being overwritten.
+     */
     @Override
     public User update(User data) {
-        return null;
+        User current = get(data.getId());
+        if(current.getVersion() != data.getVersion()) throw new OptimisticLockingFailureException(PROFILE_CONFLICT_MESSAGE);
+        MapSqlParameterSource parameters = new MapSqlParameterSource().addValue("id", data.getId()).addValue("version", data.getVersion());
+        StringBuilder query = new StringBuilder(UPDATE_USER_PREFIX_QUERY);
+        addChange(query, parameters, "first_name", current.getFirstName(), data.getFirstName(), current::setFirstName);
+        addChange(query, parameters, "last_name", current.getLastName(), data.getLastName(), current::setLastName);
+        addChange(query, parameters, "address", current.getAddress(), data.getAddress(), current::setAddress);
+        addChange(query, parameters, "phone", current.getPhone(), data.getPhone(), current::setPhone);
+        addChange(query, parameters, "title", current.getTitle(), data.getTitle(), current::setTitle);
+        addChange(query, parameters, "bio", current.getBio(), data.getBio(), current::setBio);
+        if(query.length() == UPDATE_USER_PREFIX_QUERY.length()) return current;
+        try{
+            transactionTemplate.executeWithoutResult(status -> {
+                if(jdbc.update(query.append(UPDATE_USER_VERSION_SUFFIX_QUERY).toString(), parameters) == 0){
+                    throw new OptimisticLockingFailureException(PROFILE_CONFLICT_MESSAGE);
+                }
+                invalidationBus.publish(USER, current.getId());
+            });
+            current.setVersion(current.getVersion() + 1);
+            return current;
+        }catch (OptimisticLockingFailureException exception){
+            throw exception;
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }
     }
 
     @Override
@@ -88,10 +163,15 @@ public class UserRepositoryImpl implements UserRepository<User>, UserDetailsServ
 
     @Override
     public User getUserByEmail(String email) {
+        return getUserByEmail(SELECT_USER_BY_EMAIL_QUERY, email, USER_PROFILE_ROW_MAPPER);
+    }
+
+    private User getUserByEmail(String query, String email, RowMapper<User> rowMapper) {
+        if(!emailFilter.mightBeRegistered(email)) throw new ApiException("No user found by email: " + email);
         try{
-            User user = jdbc.queryForObject(SELECT_USER_BY_EMAIL_QUERY, Map.of("email", email), new UserRowMapper());
-            return user;
+            return jdbc.queryForObject(query, Map.of("email", email), rowMapper);
         }catch (EmptyResultDataAccessException exception){
+            emailFilter.recordFalsePositive();
             throw new ApiException("No user found by email: " + email);
         }catch (Exception exception){
             throw new ApiException("An error occurred. Please try again.");
@@ -115,32 +195,25 @@ public class UserRepositoryImpl implements UserRepository<User>, UserDetailsServ
 
     @Override
     public User verifyCode(String email, String code) {
-        if(isVerificationCodeExpired(code)) throw new ApiException("This code has expired. Please login again.");
-        try{
-            User userByCode = jdbc.queryForObject(SELECT_USER_BY_USER_CODE_QUERY, Map.of("code", code), new UserRowMapper());
-            User userByEmail = jdbc.queryForObject(SELECT_USER_BY_EMAIL_QUERY, Map.of("email", email), new UserRowMapper());
-            if(userByCode.getEmail().equalsIgnoreCase(userByEmail.getEmail())){
-                jdbc.update(DELETE_CODE_BY_CODE, Map.of("code", code));
-                return userByCode;
-            }else {
-                throw new ApiException("Code is invalid. Please try again");
-            }
-        }catch (EmptyResultDataAccessException exception){
-            throw new ApiException("Unable to find record");
-        }catch (Exception exception){
-            throw new ApiException("An error occurred. Please try again.");
-        }
+        User user = consumeVerification(CODE, code, email, verified -> {});
+        auditEventPublisher.publish(MFA_VERIFIED, user.getId(), user.getEmail());
+        return user;
     }
 
     @Override
     public void resetPassword(String email) {
-        if(getEmailCount(email.trim().toLowerCase()) <= 0) throw new ApiException("There is no account for this email address.");
+        if(!emailFilter.mightBeRegistered(email)) throw new ApiException("There is no account for this email address.");
+        if(getEmailCount(email.trim().toLowerCase()) <= 0){
+            emailFilter.recordFalsePositive();
+            throw new ApiException("There is no account for this email address.");
+        }
         try{
             String expirationDate = format(addDays(new Date(), 1), DATA_FORMAT);
             User user = getUserByEmail(email);
             String verificationUrl = getVerificationUrl(UUID.randomUUID().toString(), PASSWORD.getType());
             jdbc.update(DELETE_PASSWORD_VERIFICATION_BY_USER_ID_QUERY, Map.of("user_id", user.getId()));
             jdbc.update(INSERT_PASSWORD_VERIFICATION_QUERY, Map.of("user_id", user.getId(), "url", verificationUrl, "expiration_data", expirationDate));
+            auditEventPublisher.publish(PASSWORD_RESET_REQUEST, user.getId(), user.getEmail());
             //send email with url to user
             log.info("Verificatoin URL: {}", verificationUrl);
         }catch (Exception exception){
@@ -150,13 +223,16 @@ public class UserRepositoryImpl implements UserRepository<User>, UserDetailsServ
 
     @Override
     public User verifyPasswordKey(String key) {
-        if(isLinkExpired(key, PASSWORD)) throw new ApiException("This link has expired. Please reset your password again");
         try{
-            User user = jdbc.queryForObject(SELECT_USER_BY_PASSWORD_URL_QUERY, Map.of("url", getVerificationUrl(key, PASSWORD.getType())), new UserRowMapper());
-            return user;
+            Verification verification = jdbc.queryForObject(SELECT_PASSWORD_VERIFICATION_QUERY, Map.of("key", getVerificationUrl(key, PASSWORD.getType())), this::mapVerification);
+            if(verification.expired()) throw new ApiException(getExpiredMessage(PASSWORD));
+            return verification.user();
         }catch (EmptyResultDataAccessException exception){
-            throw new ApiException("This link is not valid. Please reset your password again");
+            throw new ApiException(getInvalidMessage(PASSWORD));
+        }catch (ApiException exception){
+            throw exception;
         }catch (Exception exception){
+            log.error(exception.getMessage());
             throw new ApiException("An error occurred. Please try again");
         }
     }
@@ -164,31 +240,57 @@ public class UserRepositoryImpl implements UserRepository<User>, UserDetailsServ
     @Override
     public void renewPassword(String key, String password, String confirmPassword) {
         if(!password.equals(confirmPassword)) throw new ApiException("Passwords don't match. Please try again.");
-        try{
-            jdbc.update(UPDATE_USER_PASSWORD_BY_URL_QUERY, Map.of("password", encoder.encode(password), "url", getVerificationUrl(key, PASSWORD.getType())));
-            jdbc.update(DELETE_VERIFICATION_BY_URL_QUERY, Map.of("url", getVerificationUrl(key, PASSWORD.getType())));
-        }catch (Exception exception){
-            throw new ApiException("An error occurred. Please try again.");
-        }
+        String encodedPassword = encoder.encode(password);
+        User user = consumeVerification(PASSWORD, getVerificationUrl(key, PASSWORD.getType()), null, verified ->
+                jdbc.update(UPDATE_USER_PASSWORD_QUERY, Map.of("password", encodedPassword, "id", verified.getId())));
+        auditEventPublisher.publish(PASSWORD_UPDATE, user.getId(), user.getEmail());
     }
 
     @Override
     public User verifyAccountKey(String key) {
+        return consumeVerification(ACCOUNT, getVerificationUrl(key, ACCOUNT.getType()), null, verified -> {
+            jdbc.update(UPDATE_USER_ENABLED_QUERY, Map.of("enabled", true, "id", verified.getId()));
+            invalidationBus.publish(USER, verified.getId());
+        });
+    }
+
+    @Override
+    public String updateImage(Long id, String imageUrl) {
         try{
-            User user = jdbc.queryForObject(SELECT_USER_BY_ACCOUNT_URL_QUERY, Map.of("url", getVerificationUrl(key, ACCOUNT.getType())), new UserRowMapper());
-            jdbc.update(UPDATE_USER_ENABLED_QUERY, Map.of("enabled", true, "id", user.getId()));
-            return user;
-        }catch (EmptyResultDataAccessException exception){
-            throw new ApiException("This link is not valid");
+            return transactionTemplate.execute(status -> {
+                String previous = jdbc.query(SELECT_USER_IMAGE_FOR_UPDATE_QUERY, Map.of("id", id), rs -> rs.next() ? rs.getString(1) : null);
+                jdbc.update(UPDATE_USER_IMAGE_QUERY, Map.of("imageUrl", imageUrl, "id", id));
+                invalidationBus.publish(USER, id);
+                return previous;
+            });
         }catch (Exception exception){
             log.error(exception.getMessage());
-            throw new ApiException("An error occurred. Please try again");
+            throw new ApiException("An error occurred. Please try again.");
         }
     }
 
+    /**
+     * Images are content-addressed and shared by users who uploaded the same file. Matches both relative
+     * paths and the absolute URLs stored before them.
+     */
+    @Override
+    public boolean isImageInUse(String imageName) {
+        Integer users = jdbc.queryForObject(COUNT_USERS_BY_IMAGE_QUERY, Map.of("pattern", "%/" + imageName), Integer.class);
+        return users != null && users > 0;
+    }
+
+    private static void addChange(StringBuilder query, MapSqlParameterSource parameters, String column, String current, String value, Consumer<String> setter){
+        if(value == null) return;
+        String newValue = value.isBlank() ? null : value.trim();
+        if(Objects.equals(current, newValue)) return;
+        query.append(column).append(" = :").append(column).append(", ");
+        parameters.addValue(column, newValue);
+        setter.accept(newValue);
+    }
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = getUserByEmail(email);
+        User user = getUserByEmail(SELECT_USER_CREDENTIALS_BY_EMAIL_QUERY, email, USER_AUTH_ROW_MAPPER);
         if(user == null){
             throw new UsernameNotFoundException("User not found in the database");
         }else {
@@ -197,31 +299,82 @@ public class UserRepositoryImpl implements UserRepository<User>, UserDetailsServ
         }
     }
 
-    private Boolean isLinkExpired(String key, VerificationType password){
+    /**
+     * Validates, expires and consumes a verification key of any type in one transaction: a locking read that
+     * joins the key to its user, the flow's own update and the delete of the key. Concurrent requests with the
+     * same key serialize on the row lock, so only one of them can consume it. An expired key is deleted too.
+     */
+    private User consumeVerification(VerificationType type, String key, String email, Consumer<User> onVerified){
+        long start = System.nanoTime();
+        long statements = StatementCountingDataSource.count();
+        String outcome = "error";
         try{
-            return jdbc.queryForObject(SELECT_EXPIRATION_BY_URL, Map.of("url", getVerificationUrl(key, password.getType())), Boolean.class);
-        }catch (EmptyResultDataAccessException exception){
-            throw new ApiException("This is not valid. Please reset your password again.");
+            Verification verification = transactionTemplate.execute(status -> {
+                List<Verification> verifications = jdbc.query(getSelectForUpdateQuery(type),
+                        new MapSqlParameterSource().addValue("key", key).addValue("email", email), this::mapVerification);
+                if(verifications.isEmpty()) return null;
+                Verification found = verifications.get(0);
+                jdbc.update(getDeleteQuery(type), Map.of("id", found.id()));
+                if(!found.expired()) onVerified.accept(found.user());
+                return found;
+            });
+            outcome = verification == null ? "invalid" : verification.expired() ? "expired" : "verified";
+            if(verification == null) throw new ApiException(getInvalidMessage(type));
+            if(verification.expired()) throw new ApiException(getExpiredMessage(type));
+            return verification.user();
+        }catch (ApiException exception){
+            throw exception;
         }catch (Exception exception){
-            throw new ApiException("An error occurred. Please try again");
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred. Please try again.");
+        }finally {
+            meterRegistry.timer("verification.consume", "type", type.getType(), "outcome", outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            meterRegistry.summary("verification.statements", "type", type.getType(), "outcome", outcome).record(StatementCountingDataSource.count() - statements);
         }
     }
 
-    private Boolean isVerificationCodeExpired(String code){
-        try{
-            return jdbc.queryForObject(SELECT_CODE_EXPIRATION_QUERY, Map.of("code", code), Boolean.class);
-        }catch (EmptyResultDataAccessException exception){
-            throw new ApiException("This code is not valid. Please login again.");
-        }catch (Exception exception){
-            log.info(exception.getMessage());
-            throw new ApiException("An error occurred. Please try again.");
-        }
+    private Verification mapVerification(ResultSet rs, int rowNum) throws SQLException {
+        return new Verification(rs.getLong(VERIFICATION_ID_COLUMN), rs.getBoolean(VERIFICATION_EXPIRED_COLUMN), USER_PROFILE_ROW_MAPPER.mapRow(rs, rowNum));
+    }
+
+    public static String getSelectForUpdateQuery(VerificationType type){
+        return switch (type) {
+            case ACCOUNT -> SELECT_ACCOUNT_VERIFICATION_FOR_UPDATE_QUERY;
+            case PASSWORD -> SELECT_PASSWORD_VERIFICATION_FOR_UPDATE_QUERY;
+            case CODE -> SELECT_CODE_VERIFICATION_FOR_UPDATE_QUERY;
+        };
+    }
+
+    public static String getDeleteQuery(VerificationType type){
+        return switch (type) {
+            case ACCOUNT -> DELETE_ACCOUNT_VERIFICATION_BY_ID_QUERY;
+            case PASSWORD -> DELETE_PASSWORD_VERIFICATION_BY_ID_QUERY;
+            case CODE -> DELETE_CODE_VERIFICATION_BY_ID_QUERY;
+        };
+    }
+
+    public static String getInvalidMessage(VerificationType type){
+        return switch (type) {
+            case ACCOUNT -> "This link is not valid";
+            case PASSWORD -> "This link is not valid. Please reset your password again";
+            case CODE -> "Code is invalid. Please try again";
+        };
+    }
+
+    public static String getExpiredMessage(VerificationType type){
+        return switch (type) {
+            case ACCOUNT -> "This link has expired";
+            case PASSWORD -> "This link has expired. Please reset your password again";
+            case CODE -> "This code has expired. Please login again.";
+        };
     }
 
     private Integer getEmailCount(String email){
         return jdbc.queryForObject(COUNT_USER_EMAIL_QUERY, Map.of("email", email), Integer.class);
     }
 
+    private record Verification(long id, boolean expired, User user) {}
+
     private SqlParameterSource getSqlParameterSource(User user){
         return new MapSqlParameterSource()
                 .addValue("firstName", user.getFirstName())
@@ -0,0 +1,23 @@
+package com.vladimirpandurov.invoice_manager01.repository;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.RecurringInvoiceRun;
+import com.vladimirpandurov.invoice_manager01.domain.RecurringInvoiceTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface RecurringInvoiceRepository {
+    RecurringInvoiceRun claimRun(LocalDate runDate, int partitions, LocalDateTime staleBefore);
+    void finishRun(Long runId, String status);
+    void saveCheckpoint(Long runId, int partition, long lastTemplateId, int created, boolean completed);
+    List<RecurringInvoiceTemplate> getDueTemplates(LocalDate runDate, long lastTemplateId, long endTemplateId, int size);
+    Map<Long, Set<LocalDate>> getInvoicedPeriods(Collection<RecurringInvoiceTemplate> templates, LocalDate runDate);
+    void createInvoices(List<Invoice> invoices);
+    void advanceTemplates(Collection<RecurringInvoiceTemplate> templates, LocalDate runDate);
+    LocalDate getOldestDueDate(LocalDate runDate);
+}
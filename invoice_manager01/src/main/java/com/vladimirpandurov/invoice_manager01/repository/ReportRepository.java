@@ -0,0 +1,13 @@
+package com.vladimirpandurov.invoice_manager01.repository;
+
+import com.vladimirpandurov.invoice_manager01.domain.AgingSegment;
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ReportRepository {
+    long[] getCustomerIdRange();
+    void streamOpenInvoices(long fromCustomerId, long toCustomerId, LocalDate asOf, AgingSegment segment);
+    List<Outstanding> getOutstandingByCurrency();
+}
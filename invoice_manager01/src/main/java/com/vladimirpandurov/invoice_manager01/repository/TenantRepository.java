@@ -0,0 +1,13 @@
+package com.vladimirpandurov.invoice_manager01.repository;
+
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus;
+
+import java.util.List;
+
+public interface TenantRepository {
+    List<Tenant> list();
+    Tenant get(Long id);
+    boolean updateStatus(Long id, TenantStatus expectedStatus, TenantStatus status);
+    void updateShard(Long id, String shard, TenantStatus status);
+}
@@ -28,4 +28,7 @@ public interface UserRepository<T extends User>{
     void renewPassword(String key, String password, String confirmPassword);
 
     T verifyAccountKey(String key);
+
+    String updateImage(Long id, String imageUrl);
+    boolean isImageInUse(String imageName);
 }
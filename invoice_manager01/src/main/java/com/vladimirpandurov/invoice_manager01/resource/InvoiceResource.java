@@ -0,0 +1,210 @@
+package com.vladimirpandurov.invoice_manager01.resource;
+
+import com.vladimirpandurov.invoice_manager01.batch.BackgroundJobRunner;
+import com.vladimirpandurov.invoice_manager01.batch.InvoiceArchiveJob;
+import com.vladimirpandurov.invoice_manager01.batch.RecurringInvoiceJob;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.dto.InvoiceData;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.dto.ReconciliationData;
+import com.vladimirpandurov.invoice_manager01.enumeration.InvoiceSort;
+import com.vladimirpandurov.invoice_manager01.reconciliation.CsvStatementParser;
+import com.vladimirpandurov.invoice_manager01.service.InvoiceService;
+import com.vladimirpandurov.invoice_manager01.service.ReconciliationService;
+import com.vladimirpandurov.invoice_manager01.utils.ETagUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
+@RestController
+@RequestMapping(path = "/invoice")
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceResource {
+
+    private final InvoiceService invoiceService;
+    private final RecurringInvoiceJob recurringInvoiceJob;
+    private final InvoiceArchiveJob invoiceArchiveJob;
+    private final ReconciliationService reconciliationService;
+    private final BackgroundJobRunner jobRunner;
+
+    @GetMapping
+    public ResponseEntity<HttpResponse> getInvoices(@RequestParam(value = "status", required = false) String status,
+                                                    @RequestParam(value = "customerId", required = false) Long customerId,
+                                                    @RequestParam(value = "issuedFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issuedFrom,
+                                                    @RequestParam(value = "issuedTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issuedTo,
+                                                    @RequestParam(value = "minTotal", required = false) Long minTotal,
+                                                    @RequestParam(value = "maxTotal", required = false) Long maxTotal,
+                                                    @RequestParam(value = "sort", defaultValue = "ISSUED_AT_DESC") InvoiceSort sort,
+                                                    @RequestParam(value = "cursor", required = false) String cursor,
+                                                    @RequestParam(value = "size", defaultValue = "20") int size){
+        InvoiceFilter filter = InvoiceFilter.builder()
+                .status(status)
+                .customerId(customerId)
+                .issuedFrom(issuedFrom)
+                .issuedTo(issuedTo)
+                .minTotal(minTotal)
+                .maxTotal(maxTotal)
+                .sort(sort)
+                .cursor(cursor == null ? null : InvoiceCursor.decode(cursor, sort))
+                .size(size)
+                .build();
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(invoiceService.getInvoices(filter))
+                .message("Invoices retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<HttpResponse> getInvoice(@PathVariable("id") Long id, @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch){
+        // Taken before the invoice is read, so a concurrent update can only make the tag older than the body
+        String eTag = invoiceService.getInvoiceETag(id);
+        if(eTag == null){
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    HttpResponse.builder()
+                    .timeStamp(LocalDateTime.now().toString())
+                    .reason("No invoice found by id: " + id)
+                    .status(HttpStatus.NOT_FOUND)
+                    .statusCode(HttpStatus.NOT_FOUND.value())
+                    .build()
+            );
+        }
+        if(ETagUtils.matches(ifNoneMatch, eTag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate()).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate()).body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(new InvoiceData(invoiceService.getInvoice(id)))
+                .message("Invoice retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @GetMapping("/issued")
+    public ResponseEntity<HttpResponse> getInvoicesIssuedBetween(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                 @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                                                 @RequestParam(value = "size", defaultValue = "100") int size){
+        InvoiceCursor after = cursor == null ? null : InvoiceCursor.decode(cursor, InvoiceSort.ISSUED_AT_ASC);
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(invoiceService.getInvoicesIssuedBetween(from, to, after, size))
+                .message("Invoices retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @PostMapping("/recalculate/tax")
+    public ResponseEntity<HttpResponse> recalculateTax(@RequestParam("fromRate") int fromRate, @RequestParam("toRate") int toRate){
+        JobData job = invoiceService.recalculateTaxRate(fromRate, toRate);
+        return ResponseEntity.accepted().location(getJobUri(job)).body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(job)
+                .message("Tax recalculation started")
+                .status(HttpStatus.ACCEPTED)
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .build()
+        );
+    }
+
+    @GetMapping("/job/{id}")
+    public ResponseEntity<HttpResponse> getJob(@PathVariable("id") Long id){
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(jobRunner.getJob(id))
+                .message("Job retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @PostMapping("/recurring/run")
+    public ResponseEntity<HttpResponse> runRecurringInvoices(){
+        JobData job = recurringInvoiceJob.submit(LocalDate.now());
+        return ResponseEntity.accepted().location(getJobUri(job)).body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(job)
+                .message("Recurring invoice run started")
+                .status(HttpStatus.ACCEPTED)
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .build()
+        );
+    }
+
+    @PostMapping("/archive/run")
+    public ResponseEntity<HttpResponse> runArchive(){
+        JobData job = invoiceArchiveJob.submit(LocalDate.now());
+        return ResponseEntity.accepted().location(getJobUri(job)).body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(job)
+                .message("Invoice archive run started")
+                .status(HttpStatus.ACCEPTED)
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .build()
+        );
+    }
+
+    @PostMapping("/reconcile")
+    public ResponseEntity<HttpResponse> reconcile(@RequestParam(value = "format", defaultValue = CsvStatementParser.FORMAT) String format,
+                                                  HttpServletRequest request) throws IOException {
+        ReconciliationData reconciliation = reconciliationService.reconcile(format, request.getInputStream());
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(reconciliation)
+                .message("Statement reconciled")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @GetMapping(value = "/reconcile/report/{name}", produces = "text/csv")
+    public ResponseEntity<Resource> getReconciliationReport(@PathVariable("name") String name){
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(name).build().toString())
+                .body(new FileSystemResource(reconciliationService.getReport(name)));
+    }
+
+    private static URI getJobUri(JobData job){
+        return ServletUriComponentsBuilder.fromCurrentContextPath().path("/invoice/job/{id}").buildAndExpand(job.getId()).toUri();
+    }
+}
@@ -0,0 +1,59 @@
+package com.vladimirpandurov.invoice_manager01.resource;
+
+import com.vladimirpandurov.invoice_manager01.domain.AgingReport;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.service.ReportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping(path = "/report")
+@RequiredArgsConstructor
+@Slf4j
+public class ReportResource {
+
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    private final ReportService reportService;
+
+    @GetMapping(value = "/aging", produces = "text/csv")
+    public ResponseEntity<StreamingResponseBody> agingReport(@RequestParam(value = "asOf", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf){
+        LocalDate date = asOf == null ? LocalDate.now() : asOf;
+        AgingReport report = reportService.getAgingReport(date);
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+            report.writeCsv(writer);
+        };
+        return ResponseEntity.ok()
+                .contentType(TEXT_CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("aging-" + date + ".csv").build().toString())
+                .body(body);
+    }
+
+    @GetMapping("/aging/progress")
+    public ResponseEntity<HttpResponse> agingReportProgress(){
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(reportService.getAgingReportProgress())
+                .message("Aging report progress retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package com.vladimirpandurov.invoice_manager01.resource;
+
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.service.TenantService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping(path = "/tenant")
+@RequiredArgsConstructor
+@Slf4j
+public class TenantResource {
+
+    private final TenantService tenantService;
+
+    @GetMapping("/list")
+    public ResponseEntity<HttpResponse> getTenants(){
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(Map.of("tenants", tenantService.getTenants()))
+                .message("Tenants retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @PostMapping("/{id}/move")
+    public ResponseEntity<HttpResponse> moveTenant(@PathVariable("id") Long id, @RequestParam("shard") String shard){
+        JobData job = tenantService.moveTenant(id, shard);
+        return ResponseEntity.accepted().location(getJobUri(job)).body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(job)
+                .message("Move of tenant " + id + " to shard " + shard + " started")
+                .status(HttpStatus.ACCEPTED)
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .build()
+        );
+    }
+
+    @GetMapping("/job/{id}")
+    public ResponseEntity<HttpResponse> getJob(@PathVariable("id") Long id){
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(tenantService.getJob(id))
+                .message("Job retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @GetMapping("/outstanding")
+    public ResponseEntity<HttpResponse> getOutstanding(){
+        Map<String, List<Outstanding>> outstandingByTenant = tenantService.getOutstandingByTenant();
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(Map.of("tenants", outstandingByTenant, "totals", tenantService.getOutstandingTotals(outstandingByTenant)))
+                .message("Outstanding amounts retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    private static URI getJobUri(JobData job){
+        return ServletUriComponentsBuilder.fromCurrentContextPath().path("/tenant/job/{id}").buildAndExpand(job.getId()).toUri();
+    }
+}
@@ -1,20 +1,31 @@
 package com.vladimirpandurov.invoice_manager01.resource;
 
+import com.vladimirpandurov.invoice_manager01.audit.AuditEventPublisher;
 import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
 import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
 import com.vladimirpandurov.invoice_manager01.domain.UserPrincipal;
+import com.vladimirpandurov.invoice_manager01.dto.EventsData;
+import com.vladimirpandurov.invoice_manager01.dto.ImageData;
+import com.vladimirpandurov.invoice_manager01.dto.TokenData;
 import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import com.vladimirpandurov.invoice_manager01.dto.UserData;
 import com.vladimirpandurov.invoice_manager01.dtomapper.UserDTOMapper;
 import com.vladimirpandurov.invoice_manager01.exception.ApiException;
 import com.vladimirpandurov.invoice_manager01.form.LoginForm;
+import com.vladimirpandurov.invoice_manager01.form.UpdateProfileForm;
 import com.vladimirpandurov.invoice_manager01.provider.TokenProvider;
+import com.vladimirpandurov.invoice_manager01.service.EventService;
 import com.vladimirpandurov.invoice_manager01.service.RoleService;
 import com.vladimirpandurov.invoice_manager01.service.UserService;
+import com.vladimirpandurov.invoice_manager01.storage.ImageStorage;
+import com.vladimirpandurov.invoice_manager01.utils.ETagUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -24,12 +35,19 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.security.auth.callback.LanguageCallback;
+import java.io.IOException;
 import java.net.URI;
 import java.time.LocalDateTime;
-import java.util.Map;
+import java.util.Collection;
 
-import static com.vladimirpandurov.invoice_manager01.utils.ExceptionUtils.processError;
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.EventType.*;
+import static com.vladimirpandurov.invoice_manager01.utils.ExceptionUtils.getErrorMessage;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.MediaType.IMAGE_GIF_VALUE;
+import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
+import static org.springframework.http.MediaType.IMAGE_PNG_VALUE;
 import static org.springframework.security.authentication.UsernamePasswordAuthenticationToken.unauthenticated;
 
 @RestController
@@ -42,6 +60,9 @@ public class UserResource {
     private final RoleService roleService;
     private final AuthenticationManager authenticationManager;
     private final TokenProvider tokenProvider;
+    private final EventService eventService;
+    private final AuditEventPublisher auditEventPublisher;
+    private final ImageStorage imageStorage;
     private final HttpServletRequest request;
     private final HttpServletResponse response;
     private static final String TOKEN_PREFIX = "Bearer ";
@@ -52,7 +73,7 @@ public class UserResource {
         return ResponseEntity.created(getUri(userDTO.getId())).body(
                 HttpResponse.builder()
                 .timeStamp(LocalDateTime.now().toString())
-                .data(Map.of("user", userDTO))
+                .data(new UserData(userDTO))
                 .status(HttpStatus.OK)
                 .statusCode(HttpStatus.OK.value())
                 .message("User created")
@@ -63,7 +84,8 @@ public class UserResource {
     public ResponseEntity<HttpResponse> login(@RequestBody @Valid LoginForm loginForm){
         Authentication authentication = authenticate(loginForm.getEmail(), loginForm.getPassword());
         UserDTO user = getAuthenticatedUser(authentication);
-        return user.isUsingMfa() ? sendVerificationCode(user) : sendResponse(user);
+        auditEventPublisher.publish(user.isUsingMfa() ? MFA_CHALLENGE : LOGIN_ATTEMPT_SUCCESS, user.getId(), user.getEmail());
+        return user.isUsingMfa() ? sendVerificationCode(user) : sendResponse(userService.getUserByEmail(user.getEmail()));
     }
     @GetMapping("/verify/code/{email}/{code}")
     public ResponseEntity<HttpResponse> verifyCode(@PathVariable("email") String email, @PathVariable("code") String code){
@@ -71,13 +93,17 @@ public class UserResource {
         return sendResponse(user);
     }
     @GetMapping("/profile")
-    public ResponseEntity<HttpResponse> profile(Authentication authentication){
-        UserDTO user = userService.getUserByEmail(authentication.getName());
-        log.info(authentication.getName());
-        return ResponseEntity.ok().body(
+    public ResponseEntity<HttpResponse> profile(Authentication authentication, @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch){
+        UserDTO principal = (UserDTO) authentication.getPrincipal();
+        String eTag = ETagUtils.of(USER, principal.getId(), principal.getVersion());
+        if(ETagUtils.matches(ifNoneMatch, eTag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate()).build();
+        }
+        UserDTO user = userService.getUserByEmail(principal.getEmail());
+        return ResponseEntity.ok().eTag(ETagUtils.of(USER, user.getId(), user.getVersion())).cacheControl(CacheControl.noCache().cachePrivate()).body(
                 HttpResponse.builder()
                 .timeStamp(LocalDateTime.now().toString())
-                .data(Map.of("user", user))
+                .data(new UserData(user))
                 .message("Profile Retrieved")
                 .status(HttpStatus.OK)
                 .statusCode(HttpStatus.OK.value())
@@ -102,7 +128,7 @@ public class UserResource {
         return ResponseEntity.ok().body(
                 HttpResponse.builder()
                 .timeStamp(LocalDateTime.now().toString())
-                .data(Map.of("user", user))
+                .data(new UserData(user))
                 .message("Please enter a new password")
                 .status(HttpStatus.OK)
                 .statusCode(HttpStatus.OK.value())
@@ -134,21 +160,23 @@ public class UserResource {
         );
     }
 
+    @GetMapping("/refresh/token")
     public ResponseEntity<HttpResponse> refreshToken(HttpServletRequest request){
-        if(isHeaderAndTokenValid(request)){
+        if(isHeaderPresent(request)){
             String token = request.getHeader(AUTHORIZATION).substring(TOKEN_PREFIX.length());
-            UserDTO user = userService.getUserByEmail(tokenProvider.getSubject(token, request));
+            UserDTO user = userService.getUserByEmail(tokenProvider.rotateRefreshToken(token, request));
+            UserPrincipal userPrincipal = getUserPrincipal(user);
             return ResponseEntity.ok().body(
                     HttpResponse.builder()
                     .timeStamp(LocalDateTime.now().toString())
-                    .data(Map.of("user", user, "access_token", tokenProvider.createAccessToken(getUserPrincipal(user)), "refresh_token", token))
+                    .data(new TokenData(user, tokenProvider.createAccessToken(userPrincipal), tokenProvider.createRefreshToken(userPrincipal)))
                     .message("Token refreshed")
                     .status(HttpStatus.OK)
                     .statusCode(HttpStatus.OK.value())
                     .build()
             );
         }else {
-            return ResponseEntity.ok().body(
+            return ResponseEntity.badRequest().body(
                     HttpResponse.builder()
                     .timeStamp(LocalDateTime.now().toString())
                     .reason("Refresh Token missing or invalid")
@@ -159,6 +187,71 @@ public class UserResource {
         }
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<HttpResponse> logout(HttpServletRequest request){
+        tokenProvider.revokeTokens(request.getHeader(AUTHORIZATION).substring(TOKEN_PREFIX.length()), request);
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .message("Logged out")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @GetMapping("/events")
+    public ResponseEntity<HttpResponse> events(Authentication authentication, @RequestParam(value = "beforeId", required = false) Long beforeId,
+                                               @RequestParam(value = "size", defaultValue = "20") int size){
+        UserDTO user = (UserDTO) authentication.getPrincipal();
+        Collection<UserEvent> events = eventService.getEventsByUserId(user.getId(), beforeId, size);
+        Long nextCursor = events.stream().map(UserEvent::getId).min(Long::compare).orElse(null);
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(new EventsData(events, nextCursor))
+                .message("Events retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @PatchMapping("/profile")
+    public ResponseEntity<HttpResponse> updateProfile(Authentication authentication, @RequestBody @Valid UpdateProfileForm form){
+        UserDTO user = userService.updateProfile((UserDTO) authentication.getPrincipal(), form);
+        return ResponseEntity.ok().eTag(ETagUtils.of(USER, user.getId(), user.getVersion())).cacheControl(CacheControl.noCache().cachePrivate()).body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(new UserData(user))
+                .message("Profile updated")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @PutMapping(value = "/image", consumes = {IMAGE_PNG_VALUE, IMAGE_JPEG_VALUE, IMAGE_GIF_VALUE})
+    public ResponseEntity<HttpResponse> updateImage(Authentication authentication) throws IOException {
+        UserDTO user = (UserDTO) authentication.getPrincipal();
+        String imageName = imageStorage.store(request.getInputStream(), request.getContentLengthLong());
+        userService.updateImage(user, imageName);
+        return ResponseEntity.ok().body(
+                HttpResponse.builder()
+                .timeStamp(LocalDateTime.now().toString())
+                .data(new ImageData(ImageStorage.getImagePath(imageName), ImageStorage.getImagePath(ImageStorage.getThumbnailName(imageName))))
+                .message("Profile image updated")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build()
+        );
+    }
+
+    @GetMapping("/image/{name}")
+    public void image(@PathVariable("name") String name) throws IOException {
+        imageStorage.serve(name, request, response);
+    }
+
     @RequestMapping("/error")
     public ResponseEntity<HttpResponse> handleError(HttpServletRequest request){
         return ResponseEntity.badRequest().body(
@@ -177,12 +270,11 @@ public class UserResource {
     }
 
     private ResponseEntity<HttpResponse> sendResponse(UserDTO user){
+        UserPrincipal userPrincipal = getUserPrincipal(user);
         return ResponseEntity.ok().body(
                 HttpResponse.builder()
                 .timeStamp(LocalDateTime.now().toString())
-                .data(Map.of("user", user,
-                        "access_token", tokenProvider.createAccessToken(getUserPrincipal(user)),
-                        "refresh_token", tokenProvider.createRefreshToken(getUserPrincipal(user))))
+                .data(new TokenData(user, tokenProvider.createAccessToken(userPrincipal), tokenProvider.createRefreshToken(userPrincipal)))
                 .message("Login Success")
                 .status(HttpStatus.OK)
                 .statusCode(HttpStatus.OK.value())
@@ -195,7 +287,7 @@ public class UserResource {
         return ResponseEntity.ok().body(
                 HttpResponse.builder()
                 .timeStamp(LocalDateTime.now().toString())
-                .data(Map.of("user", user))
+                .data(new UserData(user))
                 .message("Verification code sent")
                 .status(HttpStatus.OK)
                 .statusCode(HttpStatus.OK.value())
@@ -208,6 +300,9 @@ public class UserResource {
                 this.roleService.getRoleByUserId(user.getId()));
     }
 
+    /**
+     * The user as authentication loaded it: id, email and account flags, without the profile.
+     */
     private UserDTO getAuthenticatedUser(Authentication authentication){
         return ((UserPrincipal) authentication.getPrincipal()).getUser();
     }
@@ -217,16 +312,14 @@ public class UserResource {
             Authentication authentication = authenticationManager.authenticate(unauthenticated(email, password));
             return authentication;
         }catch (Exception exception){
-            processError(request, response, exception);
-            throw new ApiException(exception.getMessage());
+            auditEventPublisher.publish(LOGIN_ATTEMPT_FAILURE, null, email);
+            throw new ApiException(getErrorMessage(exception));
         }
     }
 
-    private boolean isHeaderAndTokenValid(HttpServletRequest request){
+    private boolean isHeaderPresent(HttpServletRequest request){
         return (request.getHeader(AUTHORIZATION) != null) &&
-                (request.getHeader(AUTHORIZATION).startsWith(TOKEN_PREFIX)) &&
-                (tokenProvider.isTokenValid(tokenProvider.getSubject(request.getHeader(AUTHORIZATION).substring(TOKEN_PREFIX.length()), request),
-        request.getHeader(AUTHORIZATION).substring(TOKEN_PREFIX.length())));
+                (request.getHeader(AUTHORIZATION).startsWith(TOKEN_PREFIX));
     }
 
 }
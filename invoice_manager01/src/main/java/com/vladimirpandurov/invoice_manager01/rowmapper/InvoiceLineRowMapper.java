@@ -0,0 +1,21 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLine;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class InvoiceLineRowMapper implements RowMapper<InvoiceLine> {
+
+    @Override
+    public InvoiceLine mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return InvoiceLine.builder()
+                .description(rs.getString("description"))
+                .quantity(rs.getLong("quantity_milli"))
+                .unitPrice(rs.getLong("unit_price"))
+                .discount(rs.getInt("discount_bp"))
+                .taxRate(rs.getInt("tax_rate_bp"))
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads {@code InvoiceFilterQuery.INVOICE_COLUMNS} by position. Queries may append their own columns after these,
+ * starting at {@link #COLUMN_COUNT} + 1.
+ */
+public class InvoiceRowMapper implements RowMapper<Invoice> {
+
+    public static final int COLUMN_COUNT = 11;
+    private static final int ID = 1;
+    private static final int INVOICE_NUMBER = 2;
+    private static final int CUSTOMER_ID = 3;
+    private static final int STATUS = 4;
+    private static final int ISSUED_AT = 5;
+    private static final int DUE_AT = 6;
+    private static final int CURRENCY = 7;
+    private static final int SUBTOTAL = 8;
+    private static final int TAX = 9;
+    private static final int TOTAL = 10;
+    private static final int AMOUNT_PAID = 11;
+
+    @Override
+    public Invoice mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return Invoice.builder()
+                .id(rs.getLong(ID))
+                .invoiceNumber(rs.getString(INVOICE_NUMBER))
+                .customerId(rs.getLong(CUSTOMER_ID))
+                .status(rs.getString(STATUS))
+                .issuedAt(rs.getDate(ISSUED_AT).toLocalDate())
+                .dueAt(rs.getDate(DUE_AT).toLocalDate())
+                .currency(rs.getString(CURRENCY))
+                .subtotal(rs.getLong(SUBTOTAL))
+                .tax(rs.getLong(TAX))
+                .total(rs.getLong(TOTAL))
+                .amountPaid(rs.getLong(AMOUNT_PAID))
+                .build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.RecurringInvoiceTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+public class RecurringInvoiceTemplateRowMapper implements RowMapper<RecurringInvoiceTemplate> {
+
+    @Override
+    public RecurringInvoiceTemplate mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return RecurringInvoiceTemplate.builder()
+                .id(rs.getLong("id"))
+                .customerId(rs.getLong("customer_id"))
+                .currency(rs.getString("currency"))
+                .intervalMonths(rs.getInt("interval_months"))
+                .dueDays(rs.getInt("due_days"))
+                .nextRunDate(rs.getDate("next_run_date").toLocalDate())
+                .lines(new ArrayList<>())
+                .build();
+    }
+}
@@ -1,20 +1,30 @@
 package com.vladimirpandurov.invoice_manager01.rowmapper;
 
 import com.vladimirpandurov.invoice_manager01.domain.Role;
+import com.vladimirpandurov.invoice_manager01.enumeration.Permission;
 import org.springframework.jdbc.core.RowMapper;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 
+/**
+ * Reads {@code id, name, permission} by position, the projection every role query selects.
+ */
 public class RoleRowMapper implements RowMapper<Role> {
 
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int PERMISSION = 3;
+
     @Override
     public Role mapRow(ResultSet rs, int rowNum) throws SQLException {
+        String permission = rs.getString(PERMISSION);
         return Role.builder()
-                .id(rs.getLong("id"))
-                .name(rs.getString("name"))
-                .permission(rs.getString("permission"))
+                .id(rs.getLong(ID))
+                .name(rs.getString(NAME))
+                .permission(permission)
+                .permissionMask(Permission.toMask(permission))
                 .build();
     }
 }
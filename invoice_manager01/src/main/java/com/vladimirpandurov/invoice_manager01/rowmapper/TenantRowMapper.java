@@ -0,0 +1,29 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads {@code TenantQuery.TENANT_COLUMNS} by position.
+ */
+public class TenantRowMapper implements RowMapper<Tenant> {
+
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int SHARD = 3;
+    private static final int STATUS = 4;
+
+    @Override
+    public Tenant mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return Tenant.builder()
+                .id(rs.getLong(ID))
+                .name(rs.getString(NAME))
+                .shard(rs.getString(SHARD))
+                .status(TenantStatus.valueOf(rs.getString(STATUS)))
+                .build();
+    }
+}
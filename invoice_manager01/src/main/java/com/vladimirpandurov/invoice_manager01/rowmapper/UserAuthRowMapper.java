@@ -0,0 +1,33 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads {@code UserQuery.USER_AUTH_COLUMNS} by position: just what authentication needs. A login that answers
+ * with tokens loads the profile on its own.
+ */
+public class UserAuthRowMapper implements RowMapper<User> {
+
+    private static final int ID = 1;
+    private static final int EMAIL = 2;
+    private static final int PASSWORD = 3;
+    private static final int ENABLED = 4;
+    private static final int NON_LOCKED = 5;
+    private static final int USING_MFA = 6;
+
+    @Override
+    public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return User.builder()
+                .id(rs.getLong(ID))
+                .email(rs.getString(EMAIL))
+                .password(rs.getString(PASSWORD))
+                .enabled(rs.getBoolean(ENABLED))
+                .isNotLocked(rs.getBoolean(NON_LOCKED))
+                .isUsingMfa(rs.getBoolean(USING_MFA))
+                .build();
+    }
+}
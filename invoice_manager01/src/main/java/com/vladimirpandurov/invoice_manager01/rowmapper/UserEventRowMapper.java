@@ -0,0 +1,23 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
+import com.vladimirpandurov.invoice_manager01.enumeration.EventType;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class UserEventRowMapper implements RowMapper<UserEvent> {
+
+    @Override
+    public UserEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return UserEvent.builder()
+                .id(rs.getLong("id"))
+                .type(EventType.valueOf(rs.getString("type")))
+                .description(rs.getString("description"))
+                .ipAddress(rs.getString("ip_address"))
+                .device(rs.getString("device"))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .build();
+    }
+}
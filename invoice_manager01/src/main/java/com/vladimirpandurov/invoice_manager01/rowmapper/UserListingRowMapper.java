@@ -0,0 +1,32 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads {@code UserQuery.USER_LISTING_COLUMNS} by position: the narrow row shown in user lists.
+ */
+public class UserListingRowMapper implements RowMapper<User> {
+
+    private static final int ID = 1;
+    private static final int FIRST_NAME = 2;
+    private static final int LAST_NAME = 3;
+    private static final int EMAIL = 4;
+    private static final int IMAGE_URL = 5;
+    private static final int ENABLED = 6;
+
+    @Override
+    public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return User.builder()
+                .id(rs.getLong(ID))
+                .firstName(rs.getString(FIRST_NAME))
+                .lastName(rs.getString(LAST_NAME))
+                .email(rs.getString(EMAIL))
+                .imageUrl(rs.getString(IMAGE_URL))
+                .enabled(rs.getBoolean(ENABLED))
+                .build();
+    }
+}
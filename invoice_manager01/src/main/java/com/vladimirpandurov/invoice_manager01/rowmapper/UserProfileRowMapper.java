@@ -0,0 +1,52 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads {@code UserQuery.USER_PROFILE_COLUMNS} by position: every column except the password hash. Queries
+ * may append their own columns after these, starting at {@link #COLUMN_COUNT} + 1.
+ */
+public class UserProfileRowMapper implements RowMapper<User> {
+
+    public static final int COLUMN_COUNT = 15;
+    private static final int ID = 1;
+    private static final int FIRST_NAME = 2;
+    private static final int LAST_NAME = 3;
+    private static final int EMAIL = 4;
+    private static final int ADDRESS = 5;
+    private static final int PHONE = 6;
+    private static final int TITLE = 7;
+    private static final int BIO = 8;
+    private static final int IMAGE_URL = 9;
+    private static final int ENABLED = 10;
+    private static final int NON_LOCKED = 11;
+    private static final int USING_MFA = 12;
+    private static final int CREATED_AT = 13;
+    private static final int VERSION = 14;
+    private static final int TENANT_ID = 15;
+
+    @Override
+    public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return User.builder()
+                .id(rs.getLong(ID))
+                .firstName(rs.getString(FIRST_NAME))
+                .lastName(rs.getString(LAST_NAME))
+                .email(rs.getString(EMAIL))
+                .address(rs.getString(ADDRESS))
+                .phone(rs.getString(PHONE))
+                .title(rs.getString(TITLE))
+                .bio(rs.getString(BIO))
+                .imageUrl(rs.getString(IMAGE_URL))
+                .enabled(rs.getBoolean(ENABLED))
+                .isNotLocked(rs.getBoolean(NON_LOCKED))
+                .isUsingMfa(rs.getBoolean(USING_MFA))
+                .createdAt(rs.getTimestamp(CREATED_AT).toLocalDateTime())
+                .version(rs.getInt(VERSION))
+                .tenantId(rs.getObject(TENANT_ID, Long.class))
+                .build();
+    }
+}
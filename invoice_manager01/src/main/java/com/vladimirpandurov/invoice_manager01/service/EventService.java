@@ -0,0 +1,11 @@
+package com.vladimirpandurov.invoice_manager01.service;
+
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
+
+import java.util.Collection;
+
+public interface EventService {
+
+    Collection<UserEvent> getEventsByUserId(Long userId, Long beforeId, int size);
+
+}
@@ -0,0 +1,19 @@
+package com.vladimirpandurov.invoice_manager01.service;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.dto.InvoicesData;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+
+import java.time.LocalDate;
+
+public interface InvoiceService {
+
+    JobData recalculateTaxRate(int fromRate, int toRate);
+    InvoicesData getInvoices(InvoiceFilter filter);
+    Invoice getInvoice(Long id);
+    String getInvoiceETag(Long id);
+    InvoicesData getInvoicesIssuedBetween(LocalDate from, LocalDate to, InvoiceCursor cursor, int size);
+
+}
@@ -0,0 +1,13 @@
+package com.vladimirpandurov.invoice_manager01.service;
+
+import com.vladimirpandurov.invoice_manager01.dto.ReconciliationData;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public interface ReconciliationService {
+
+    ReconciliationData reconcile(String format, InputStream statement);
+    Path getReport(String name);
+
+}
@@ -0,0 +1,13 @@
+package com.vladimirpandurov.invoice_manager01.service;
+
+import com.vladimirpandurov.invoice_manager01.domain.AgingReport;
+import com.vladimirpandurov.invoice_manager01.dto.ReportProgressData;
+
+import java.time.LocalDate;
+
+public interface ReportService {
+
+    AgingReport getAgingReport(LocalDate asOf);
+    ReportProgressData getAgingReportProgress();
+
+}
@@ -0,0 +1,18 @@
+package com.vladimirpandurov.invoice_manager01.service;
+
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+
+import java.util.List;
+import java.util.Map;
+
+public interface TenantService {
+
+    List<Tenant> getTenants();
+    JobData moveTenant(Long tenantId, String shard);
+    JobData getJob(Long id);
+    Map<String, List<Outstanding>> getOutstandingByTenant();
+    List<Outstanding> getOutstandingTotals(Map<String, List<Outstanding>> outstandingByTenant);
+
+}
@@ -2,6 +2,7 @@ package com.vladimirpandurov.invoice_manager01.service;
 
 import com.vladimirpandurov.invoice_manager01.domain.User;
 import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import com.vladimirpandurov.invoice_manager01.form.UpdateProfileForm;
 
 public interface UserService {
 
@@ -20,4 +21,8 @@ public interface UserService {
     void renewPassword(String key, String password, String confirmPassword);
 
     UserDTO verifyAccount(String key);
+
+    void updateImage(UserDTO user, String imageName);
+
+    UserDTO updateProfile(UserDTO user, UpdateProfileForm form);
 }
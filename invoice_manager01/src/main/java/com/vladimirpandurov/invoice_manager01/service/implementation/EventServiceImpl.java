@@ -0,0 +1,24 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.UserEvent;
+import com.vladimirpandurov.invoice_manager01.repository.EventRepository;
+import com.vladimirpandurov.invoice_manager01.service.EventService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EventServiceImpl implements EventService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private final EventRepository eventRepository;
+
+    @Override
+    public Collection<UserEvent> getEventsByUserId(Long userId, Long beforeId, int size) {
+        return this.eventRepository.getEventsByUserId(userId, beforeId == null ? Long.MAX_VALUE : beforeId, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+    }
+}
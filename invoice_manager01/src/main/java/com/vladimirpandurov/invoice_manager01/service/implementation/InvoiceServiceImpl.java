@@ -0,0 +1,147 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.batch.BackgroundJobRunner;
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLineChunk;
+import com.vladimirpandurov.invoice_manager01.dto.InvoicesData;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.InvoiceRepository;
+import com.vladimirpandurov.invoice_manager01.service.InvoiceService;
+import com.vladimirpandurov.invoice_manager01.utils.ETagUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_TRANSACTION_TEMPLATE;
+import static com.vladimirpandurov.invoice_manager01.enumeration.InvoiceSort.ISSUED_AT_ASC;
+import static com.vladimirpandurov.invoice_manager01.enumeration.JobType.TAX_RECALCULATION;
+import static com.vladimirpandurov.invoice_manager01.utils.MoneyMath.BASIS_POINTS;
+import static com.vladimirpandurov.invoice_manager01.utils.MoneyMath.lineTotal;
+import static com.vladimirpandurov.invoice_manager01.utils.MoneyMath.tax;
+
+@Service
+@Slf4j
+public class InvoiceServiceImpl implements InvoiceService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_RANGE_DAYS = 366;
+    private static final String INVOICE = "invoice";
+    private static final String ARCHIVED_VERSION = "archived";
+    private final InvoiceRepository<Invoice> invoiceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BackgroundJobRunner jobRunner;
+    private final int chunkSize;
+    private final RoundingMode roundingMode;
+
+    public InvoiceServiceImpl(InvoiceRepository<Invoice> invoiceRepository, @Qualifier(TENANT_TRANSACTION_TEMPLATE) TransactionTemplate transactionTemplate,
+                              BackgroundJobRunner jobRunner,
+                              @Value("${application.invoice.recalculation-chunk-size:5000}") int chunkSize,
+                              @Value("${application.invoice.rounding-mode:HALF_EVEN}") RoundingMode roundingMode){
+        this.invoiceRepository = invoiceRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jobRunner = jobRunner;
+        this.chunkSize = chunkSize;
+        this.roundingMode = roundingMode;
+    }
+
+    /**
+     * Moves every line of an unpaid invoice from one tax rate to another. Each chunk updates its lines and the
+     * totals of their invoices in one transaction, and updated lines no longer match, so an interrupted run can
+     * simply be started again. Runs as a background job; the returned handle reports the lines processed.
+     */
+    @Override
+    public JobData recalculateTaxRate(int fromRate, int toRate) {
+        if(fromRate == toRate || toRate < 0 || toRate > BASIS_POINTS) throw new ApiException("Invalid tax rate. Please try again.");
+        return jobRunner.submit(TAX_RECALCULATION, progress ->
+                "Recalculated " + recalculateTaxRate(fromRate, toRate, progress) + " lines from tax rate " + fromRate + " to " + toRate);
+    }
+
+    long recalculateTaxRate(int fromRate, int toRate, AtomicLong progress) {
+        InvoiceLineChunk chunk = new InvoiceLineChunk(chunkSize);
+        long[] invoiceIds = new long[chunkSize];
+        long[] subtotalDeltas = new long[chunkSize];
+        long[] taxDeltas = new long[chunkSize];
+        long[] processed = new long[1];
+        long start = System.nanoTime();
+        invoiceRepository.streamLinesByTaxRate(fromRate, chunk, lines -> {
+            int invoices = recalculate(lines, toRate, invoiceIds, subtotalDeltas, taxDeltas);
+            transactionTemplate.executeWithoutResult(status -> {
+                invoiceRepository.updateLineTotals(lines, toRate);
+                invoiceRepository.adjustInvoiceTotals(invoiceIds, subtotalDeltas, taxDeltas, invoices);
+            });
+            processed[0] += lines.size();
+            progress.set(processed[0]);
+        });
+        log.info("Recalculated {} invoice lines from tax rate {} to {} in {} ms", processed[0], fromRate, toRate, (System.nanoTime() - start) / 1_000_000);
+        return processed[0];
+    }
+
+    @Override
+    public InvoicesData getInvoices(InvoiceFilter filter) {
+        if(filter.getSize() < 1 || filter.getSize() > MAX_PAGE_SIZE) throw new ApiException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        if(filter.getStatus() != null) filter.setStatus(filter.getStatus().trim().toUpperCase());
+        List<Invoice> invoices = new ArrayList<>(invoiceRepository.getInvoices(filter));
+        String nextCursor = invoices.size() < filter.getSize() ? null : InvoiceCursor.after(filter.getSort(), invoices.get(invoices.size() - 1)).encode();
+        return new InvoicesData(invoices, nextCursor);
+    }
+
+    @Override
+    public Invoice getInvoice(Long id) {
+        return invoiceRepository.get(id);
+    }
+
+    /**
+     * Archived invoices no longer change, so they share one tag per invoice. Null when neither the hot table nor
+     * the archive has the invoice.
+     */
+    @Override
+    public String getInvoiceETag(Long id) {
+        Integer version = invoiceRepository.getVersion(id);
+        if(version != null) return ETagUtils.of(INVOICE, id, version);
+        return invoiceRepository.isArchived(id) ? ETagUtils.of(INVOICE, id, ARCHIVED_VERSION) : null;
+    }
+
+    @Override
+    public InvoicesData getInvoicesIssuedBetween(LocalDate from, LocalDate to, InvoiceCursor cursor, int size) {
+        if(to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) throw new ApiException("The date range must span 1 to " + MAX_RANGE_DAYS + " days");
+        if(size < 1 || size > MAX_PAGE_SIZE) throw new ApiException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        List<Invoice> invoices = invoiceRepository.getInvoicesIssuedBetween(from, to, cursor, size);
+        String nextCursor = invoices.size() < size ? null : InvoiceCursor.after(ISSUED_AT_ASC, invoices.get(invoices.size() - 1)).encode();
+        return new InvoicesData(invoices, nextCursor);
+    }
+
+    /**
+     * Recomputes the lines in place and collects the per-invoice change of subtotal and tax. Lines arrive
+     * ordered by invoice, so each invoice occupies one run of the chunk.
+     */
+    private int recalculate(InvoiceLineChunk lines, int taxRate, long[] invoiceIds, long[] subtotalDeltas, long[] taxDeltas){
+        int invoices = -1;
+        for(int i = 0; i < lines.size(); i++){
+            long total = lineTotal(lines.quantities[i], lines.unitPrices[i], lines.discounts[i], roundingMode);
+            long lineTax = tax(total, taxRate, roundingMode);
+            if(invoices < 0 || invoiceIds[invoices] != lines.invoiceIds[i]){
+                invoices++;
+                invoiceIds[invoices] = lines.invoiceIds[i];
+                subtotalDeltas[invoices] = 0;
+                taxDeltas[invoices] = 0;
+            }
+            subtotalDeltas[invoices] += total - lines.lineTotals[i];
+            taxDeltas[invoices] += lineTax - lines.lineTaxes[i];
+            lines.lineTotals[i] = total;
+            lines.lineTaxes[i] = lineTax;
+        }
+        return invoices + 1;
+    }
+}
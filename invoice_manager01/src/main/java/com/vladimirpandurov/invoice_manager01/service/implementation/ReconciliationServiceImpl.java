@@ -0,0 +1,314 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.OpenInvoiceIndex;
+import com.vladimirpandurov.invoice_manager01.domain.PaymentChunk;
+import com.vladimirpandurov.invoice_manager01.domain.StatementLine;
+import com.vladimirpandurov.invoice_manager01.dto.ReconciliationData;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.reconciliation.StatementParser;
+import com.vladimirpandurov.invoice_manager01.repository.InvoiceRepository;
+import com.vladimirpandurov.invoice_manager01.service.ReconciliationService;
+import com.vladimirpandurov.invoice_manager01.storage.ReconciliationReportStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.ShardingConfig.TENANT_TRANSACTION_TEMPLATE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Matches the incoming payments of bank statements to open invoices. The open invoices are read once, in one
+ * streaming query, into an {@link OpenInvoiceIndex}; the statement then streams through its parser and every
+ * line is matched in memory. Payments are written in batches of one transaction each, and lines that cannot be
+ * applied are written to the exception report as they are found, so memory grows with the number of open
+ * invoices and not with the statement.
+ * <p>
+ * A line matches exactly when a word of its reference is the number of an open invoice in its currency and it
+ * pays the open amount; paying less is a partial payment. Otherwise it matches fuzzily when exactly one invoice
+ * open for the same amount and currency either belongs to the payer or has a number one typo away from a word of
+ * the reference.
+ * <p>
+ * Every applied payment is recorded under its {@link StatementLine#paymentKey()} in the transaction that applies
+ * it, and lines are matched a chunk at a time after dropping the ones already recorded, so reading a statement
+ * again, after a failure or by mistake, applies only what was not applied before.
+ */
+@Service
+@Slf4j
+public class ReconciliationServiceImpl implements ReconciliationService {
+
+    private static final String REPORT_HEADER = "line,date,amount,currency,reference,payer,reason\n";
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[\\s,;:/]+");
+    private static final int MIN_MATCH_LENGTH = 4;
+    private static final int AMBIGUOUS = -2;
+    private final InvoiceRepository<Invoice> invoiceRepository;
+    private final Map<String, StatementParser> parsers;
+    private final ReconciliationReportStorage reportStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Timer reconciliationTimer;
+
+    private enum MatchType {
+        EXACT, FUZZY, PARTIAL
+    }
+
+    public ReconciliationServiceImpl(InvoiceRepository<Invoice> invoiceRepository, List<StatementParser> parsers,
+                                     ReconciliationReportStorage reportStorage,
+                                     @Qualifier(TENANT_TRANSACTION_TEMPLATE) TransactionTemplate transactionTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${application.reconciliation.chunk-size:1000}") int chunkSize){
+        this.invoiceRepository = invoiceRepository;
+        this.parsers = parsers.stream().collect(Collectors.toMap(StatementParser::getFormat, Function.identity()));
+        this.reportStorage = reportStorage;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.reconciliationTimer = Timer.builder("invoice.reconciliation").register(meterRegistry);
+    }
+
+    @Override
+    public ReconciliationData reconcile(String format, InputStream statement) {
+        StatementParser parser = parsers.get(format.toLowerCase());
+        if(parser == null) throw new ApiException("Unsupported statement format: " + format + ". Supported formats: " + parsers.keySet());
+        long start = System.nanoTime();
+        OpenInvoiceIndex index = new OpenInvoiceIndex();
+        invoiceRepository.streamOpenInvoices(index);
+        String reportName = reportStorage.newReportName();
+        Path report = reportStorage.resolve(reportName);
+        Run run;
+        boolean completed = false;
+        try(Writer writer = Files.newBufferedWriter(report, UTF_8)){
+            writer.write(REPORT_HEADER);
+            run = new Run(index, writer);
+            parser.parse(new InputStreamReader(statement, UTF_8), run);
+            run.finish();
+            completed = true;
+        }catch (IOException | UncheckedIOException exception){
+            log.error(exception.getMessage());
+            throw new ApiException("Unable to read the statement. Please try again.");
+        }finally {
+            if(!completed) deleteQuietly(report);
+        }
+        long elapsed = System.nanoTime() - start;
+        reconciliationTimer.record(Duration.ofNanos(elapsed));
+        log.info("Reconciled {} statement lines against {} open invoices in {} ms: {} exact, {} fuzzy, {} partial, {} exceptions, {} ignored, {} already applied",
+                run.lines, index.size(), elapsed / 1_000_000, run.exact, run.fuzzy, run.partial, run.exceptions, run.ignored, run.alreadyApplied);
+        return new ReconciliationData(run.lines, run.exact, run.fuzzy, run.partial, run.exceptions, run.ignored, run.alreadyApplied,
+                index.size(), elapsed / 1_000_000, reportName);
+    }
+
+    @Override
+    public Path getReport(String name) {
+        return reportStorage.get(name);
+    }
+
+    private static void deleteQuietly(Path report){
+        try{
+            Files.deleteIfExists(report);
+        }catch (IOException exception){
+            log.warn("Could not delete report {}: {}", report, exception.getMessage());
+        }
+    }
+
+    /**
+     * True when the strings are equal or one insertion, deletion or substitution apart.
+     */
+    static boolean withinOneEdit(String a, String b){
+        if(Math.abs(a.length() - b.length()) > 1) return false;
+        String shorter = a.length() <= b.length() ? a : b;
+        String longer = shorter == a ? b : a;
+        int i = 0;
+        while(i < shorter.length() && shorter.charAt(i) == longer.charAt(i)) i++;
+        if(i == shorter.length()) return true;
+        int offset = shorter.length() == longer.length() ? 1 : 0;
+        return shorter.regionMatches(i + offset, longer, i + 1, shorter.length() - i - offset);
+    }
+
+    private static boolean isPayer(String payer, String customerName){
+        if(payer.length() < MIN_MATCH_LENGTH || customerName.length() < MIN_MATCH_LENGTH) return false;
+        return payer.contains(customerName) || customerName.contains(payer);
+    }
+
+    private static String escape(String value){
+        if(value == null) return "";
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * State of one reconciliation: the index, the lines waiting to be matched, the pending chunk of payments and
+     * the counters.
+     */
+    private class Run implements StatementParser.LineHandler {
+
+        private final OpenInvoiceIndex index;
+        private final Writer writer;
+        private final PaymentChunk chunk = new PaymentChunk(chunkSize);
+        private final MatchType[] matchTypes = new MatchType[chunkSize];
+        private final List<StatementLine> pending = new ArrayList<>(chunkSize);
+        private long lines;
+        private long exact;
+        private long fuzzy;
+        private long partial;
+        private long exceptions;
+        private long ignored;
+        private long alreadyApplied;
+
+        private Run(OpenInvoiceIndex index, Writer writer){
+            this.index = index;
+            this.writer = writer;
+        }
+
+        @Override
+        public void accept(StatementLine line) {
+            lines++;
+            if(line.amount() <= 0){
+                ignored++;
+                return;
+            }
+            pending.add(line);
+            if(pending.size() == chunkSize) match();
+        }
+
+        @Override
+        public void reject(long lineNumber, String text, String reason) {
+            lines++;
+            exceptions++;
+            write(lineNumber + ",,,," + escape(text) + ",," + escape("Unreadable line: " + reason) + "\n");
+        }
+
+        private void finish(){
+            match();
+        }
+
+        /**
+         * Matches the pending lines whose payments are not recorded yet and applies them. A payment repeated
+         * within the chunk is skipped like one recorded by an earlier run; earlier chunks are applied by now.
+         */
+        private void match(){
+            if(pending.isEmpty()) return;
+            Map<String, StatementLine> keyed = new LinkedHashMap<>();
+            for(StatementLine line : pending){
+                if(keyed.putIfAbsent(line.paymentKey(), line) != null) alreadyApplied++;
+            }
+            Set<String> applied = invoiceRepository.getAppliedPaymentKeys(keyed.keySet());
+            for(Map.Entry<String, StatementLine> entry : keyed.entrySet()){
+                if(applied.contains(entry.getKey())) alreadyApplied++;
+                else match(entry.getValue(), entry.getKey());
+            }
+            pending.clear();
+            flush();
+        }
+
+        private void match(StatementLine line, String paymentKey){
+            String[] words = WORD_SEPARATORS.split(line.reference());
+            int row = findByReference(line, words);
+            if(row >= 0){
+                long open = index.openAmount(row);
+                if(!index.currency(row).equals(line.currency())) report(line, "Invoice " + index.invoiceId(row) + " is billed in " + index.currency(row));
+                else if(open == 0) report(line, "Invoice " + index.invoiceId(row) + " is already paid");
+                else if(line.amount() > open) report(line, "Exceeds the open amount of invoice " + index.invoiceId(row));
+                else pay(row, line, paymentKey, line.amount() == open ? MatchType.EXACT : MatchType.PARTIAL);
+                return;
+            }
+            row = findByAmount(line, words);
+            if(row >= 0) pay(row, line, paymentKey, MatchType.FUZZY);
+            else report(line, row == AMBIGUOUS ? "Matches several open invoices" : "No matching open invoice");
+        }
+
+        private int findByReference(StatementLine line, String[] words){
+            int row = index.findByReference(OpenInvoiceIndex.normalize(line.reference()));
+            for(int i = 0; row < 0 && i < words.length; i++) row = index.findByReference(OpenInvoiceIndex.normalize(words[i]));
+            return row;
+        }
+
+        private int findByAmount(StatementLine line, String[] words){
+            String payer = OpenInvoiceIndex.normalize(line.payer());
+            int match = -1;
+            for(int row = index.firstWithAmount(line.currency(), line.amount()); row >= 0; row = index.nextWithAmount(row)){
+                if(index.openAmount(row) != line.amount()) continue;
+                if(!isPayer(payer, index.customerName(row)) && !nearReference(words, index.reference(row))) continue;
+                if(match >= 0) return AMBIGUOUS;
+                match = row;
+            }
+            return match;
+        }
+
+        private boolean nearReference(String[] words, String reference){
+            for(String word : words){
+                String normalized = OpenInvoiceIndex.normalize(word);
+                if(normalized.length() >= MIN_MATCH_LENGTH && withinOneEdit(normalized, reference)) return true;
+            }
+            return false;
+        }
+
+        private void pay(int row, StatementLine line, String paymentKey, MatchType matchType){
+            index.pay(row, line.amount());
+            matchTypes[chunk.size()] = matchType;
+            chunk.add(index.invoiceId(row), line.amount(), line, paymentKey);
+            if(chunk.isFull()) flush();
+        }
+
+        private void flush(){
+            if(chunk.size() == 0) return;
+            int[] counts;
+            try{
+                counts = transactionTemplate.execute(status -> invoiceRepository.applyPayments(chunk));
+            }catch (Exception exception){
+                log.error(exception.getMessage());
+                throw new ApiException("Unable to apply payments from line " + chunk.lines[0].lineNumber() + " on. Earlier lines were applied and are skipped when the statement is reconciled again.");
+            }
+            for(int i = 0; i < chunk.size(); i++){
+                // The invoice was paid or changed by someone else since the index was built
+                if(counts == null || counts[i] == 0){
+                    report(chunk.lines[i], "Invoice " + chunk.invoiceIds[i] + " changed during reconciliation");
+                    continue;
+                }
+                switch (matchTypes[i]) {
+                    case EXACT -> exact++;
+                    case FUZZY -> fuzzy++;
+                    case PARTIAL -> partial++;
+                }
+            }
+            chunk.clear();
+        }
+
+        private void report(StatementLine line, String reason){
+            exceptions++;
+            int digits = Math.max(0, Currency.getInstance(line.currency()).getDefaultFractionDigits());
+            write(line.lineNumber() + "," + (line.bookedAt() == null ? "" : line.bookedAt()) + ","
+                    + BigDecimal.valueOf(line.amount(), digits).toPlainString() + "," + line.currency() + ","
+                    + escape(line.reference()) + "," + escape(line.payer()) + "," + escape(reason) + "\n");
+        }
+
+        private void write(String row){
+            try{
+                writer.write(row);
+            }catch (IOException exception){
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.AgingReport;
+import com.vladimirpandurov.invoice_manager01.domain.AgingSegment;
+import com.vladimirpandurov.invoice_manager01.dto.ReportProgressData;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.ReportRepository;
+import com.vladimirpandurov.invoice_manager01.service.ReportService;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds aging reports by splitting the customer id space into ranges that are each streamed on their own
+ * connection. Parallelism is capped below the connection pool size so request traffic keeps a few
+ * connections while a report runs.
+ */
+@Service
+@Slf4j
+public class ReportServiceImpl implements ReportService {
+
+    private static final int RANGES_PER_THREAD = 4;
+    private final ReportRepository reportRepository;
+    private final ForkJoinPool pool;
+    private final AtomicReference<Progress> progress = new AtomicReference<>();
+
+    public ReportServiceImpl(ReportRepository reportRepository,
+                             @Value("${application.report.parallelism:0}") int parallelism,
+                             @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize){
+        this.reportRepository = reportRepository;
+        int threads = parallelism > 0 ? parallelism : Math.min(Runtime.getRuntime().availableProcessors(), connectionPoolSize - 2);
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    @Override
+    public AgingReport getAgingReport(LocalDate asOf) {
+        long[] idRange = reportRepository.getCustomerIdRange();
+        long span = Math.max(1, (idRange[1] - idRange[0] + 1) / ((long) pool.getParallelism() * RANGES_PER_THREAD));
+        int ranges = (int) ((idRange[1] - idRange[0] + span) / span);
+        Progress current = new Progress(ranges);
+        Progress previous = progress.get();
+        if((previous != null && previous.running) || !progress.compareAndSet(previous, current)) throw new ApiException("An aging report is already running. Please try again later.");
+        try{
+            AgingReport report = pool.invoke(new AgingTask(TenantContext.getTenantId(), idRange, span, 0, ranges - 1, asOf, current));
+            log.info("Aging report as of {} covered {} invoices in {} ranges in {} ms", asOf, report.getInvoices(), ranges, current.elapsedMillis());
+            return report;
+        }catch (ApiException exception){
+            throw exception;
+        }catch (Exception exception){
+            log.error(exception.getMessage());
+            throw new ApiException("An error occurred while building the aging report. Please try again.");
+        }finally {
+            current.running = false;
+        }
+    }
+
+    @Override
+    public ReportProgressData getAgingReportProgress() {
+        Progress current = progress.get();
+        if(current == null) return new ReportProgressData(false, 0, 0, 0, 0);
+        return new ReportProgressData(current.running, current.completed.get(), current.ranges, current.invoices.get(), current.elapsedMillis());
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        pool.shutdownNow();
+    }
+
+    /**
+     * Splits by range number, so every leaf is exactly one of the ranges that progress is reported against.
+     */
+    private class AgingTask extends RecursiveTask<AgingReport> {
+        private final Long tenantId;
+        private final long[] idRange;
+        private final long span;
+        private final int firstRange;
+        private final int lastRange;
+        private final LocalDate asOf;
+        private final Progress progress;
+
+        private AgingTask(Long tenantId, long[] idRange, long span, int firstRange, int lastRange, LocalDate asOf, Progress progress){
+            this.tenantId = tenantId;
+            this.idRange = idRange;
+            this.span = span;
+            this.firstRange = firstRange;
+            this.lastRange = lastRange;
+            this.asOf = asOf;
+            this.progress = progress;
+        }
+
+        @Override
+        protected AgingReport compute() {
+            if(firstRange == lastRange){
+                long from = idRange[0] + firstRange * span;
+                long to = Math.min(idRange[1], from + span - 1);
+                AgingSegment segment = new AgingSegment();
+                TenantContext.runAs(tenantId, () -> reportRepository.streamOpenInvoices(from, to, asOf, segment));
+                progress.rangeCompleted(segment.invoices());
+                return new AgingReport(asOf, segment);
+            }
+            int middle = (firstRange + lastRange) >>> 1;
+            AgingTask left = new AgingTask(tenantId, idRange, span, firstRange, middle, asOf, progress);
+            left.fork();
+            AgingReport right = new AgingTask(tenantId, idRange, span, middle + 1, lastRange, asOf, progress).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private static class Progress {
+        private final int ranges;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicLong invoices = new AtomicLong();
+        private final long startedAt = System.nanoTime();
+        private volatile boolean running = true;
+
+        private Progress(int ranges){
+            this.ranges = ranges;
+        }
+
+        private void rangeCompleted(long rangeInvoices){
+            long scanned = invoices.addAndGet(rangeInvoices);
+            int done = completed.incrementAndGet();
+            if(done * 10 / ranges != (done - 1) * 10 / ranges){
+                log.info("Aging report {}% done: {}/{} ranges, {} invoices, {} ms", done * 100 / ranges, done, ranges, scanned, elapsedMillis());
+            }
+        }
+
+        private long elapsedMillis(){
+            return (System.nanoTime() - startedAt) / 1_000_000;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.vladimirpandurov.invoice_manager01.service.implementation;
 
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationListener;
+import com.vladimirpandurov.invoice_manager01.cache.LocalCache;
 import com.vladimirpandurov.invoice_manager01.domain.Role;
 import com.vladimirpandurov.invoice_manager01.repository.RoleRepository;
 import com.vladimirpandurov.invoice_manager01.service.RoleService;
@@ -7,15 +9,25 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class RoleServiceImpl implements RoleService {
+public class RoleServiceImpl implements RoleService, CacheInvalidationListener {
 
+    private static final int ROLE_CACHE_SIZE = 10_000;
+    private static final long ROLE_CACHE_TIME_TO_LIVE = 300_000;
     private final RoleRepository roleRepository;
+    private final LocalCache<Long, Role> roleCache = new LocalCache<>(ROLE_CACHE_SIZE, ROLE_CACHE_TIME_TO_LIVE);
 
     @Override
     public Role getRoleByUserId(Long userId) {
-        return this.roleRepository.getRoleByUserId(userId);
+        return roleCache.get(userId, this.roleRepository::getRoleByUserId);
+    }
+
+    @Override
+    public void invalidate(String entity, Long id) {
+        if(USER.equals(entity)) roleCache.remove(id);
     }
 }
@@ -0,0 +1,72 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.batch.BackgroundJobRunner;
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.repository.ReportRepository;
+import com.vladimirpandurov.invoice_manager01.service.TenantService;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantDirectory;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantFanOut;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantMover;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.vladimirpandurov.invoice_manager01.enumeration.JobType.TENANT_MOVE;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TenantServiceImpl implements TenantService {
+
+    private final TenantDirectory tenantDirectory;
+    private final TenantMover tenantMover;
+    private final BackgroundJobRunner jobRunner;
+    private final TenantFanOut tenantFanOut;
+    private final ReportRepository reportRepository;
+
+    @Override
+    public List<Tenant> getTenants() {
+        return tenantDirectory.getTenants();
+    }
+
+    /**
+     * Moves run as background jobs outside any tenant, so one move runs at a time and its handle reads the same
+     * whichever tenant the administrator belongs to.
+     */
+    @Override
+    public JobData moveTenant(Long tenantId, String shard) {
+        tenantMover.checkMove(tenantId, shard);
+        return TenantContext.callAs(null, () -> jobRunner.submit(TENANT_MOVE, progress ->
+                "Moved tenant " + tenantId + " to shard " + shard + " with " + tenantMover.move(tenantId, shard, progress) + " rows copied"));
+    }
+
+    @Override
+    public JobData getJob(Long id) {
+        return TenantContext.callAs(null, () -> jobRunner.getJob(id));
+    }
+
+    @Override
+    public Map<String, List<Outstanding>> getOutstandingByTenant() {
+        List<Map.Entry<String, List<Outstanding>>> results = tenantFanOut.query(tenant ->
+                Map.entry(tenant == null ? "default" : tenant.getName(), reportRepository.getOutstandingByCurrency()));
+        Map<String, List<Outstanding>> outstandingByTenant = new LinkedHashMap<>();
+        results.forEach(result -> outstandingByTenant.put(result.getKey(), result.getValue()));
+        return outstandingByTenant;
+    }
+
+    @Override
+    public List<Outstanding> getOutstandingTotals(Map<String, List<Outstanding>> outstandingByTenant) {
+        Map<String, Outstanding> totals = new TreeMap<>();
+        outstandingByTenant.values().forEach(outstanding -> outstanding.forEach(row -> totals.merge(row.currency(), row, Outstanding::merge)));
+        return new ArrayList<>(totals.values());
+    }
+}
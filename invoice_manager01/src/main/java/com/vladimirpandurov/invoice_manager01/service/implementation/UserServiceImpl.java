@@ -1,25 +1,35 @@
 package com.vladimirpandurov.invoice_manager01.service.implementation;
 
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationListener;
+import com.vladimirpandurov.invoice_manager01.cache.LocalCache;
 import com.vladimirpandurov.invoice_manager01.domain.Role;
 import com.vladimirpandurov.invoice_manager01.domain.User;
 import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
 import com.vladimirpandurov.invoice_manager01.dtomapper.UserDTOMapper;
+import com.vladimirpandurov.invoice_manager01.form.UpdateProfileForm;
 import com.vladimirpandurov.invoice_manager01.repository.RoleRepository;
 import com.vladimirpandurov.invoice_manager01.repository.UserRepository;
 import com.vladimirpandurov.invoice_manager01.service.UserService;
+import com.vladimirpandurov.invoice_manager01.storage.ImageStorage;
+import com.vladimirpandurov.invoice_manager01.storage.ImageSweeper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
 import static com.vladimirpandurov.invoice_manager01.dtomapper.UserDTOMapper.fromUser;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class UserServiceImpl implements UserService {
+public class UserServiceImpl implements UserService, CacheInvalidationListener {
 
+    private static final int USER_CACHE_SIZE = 10_000;
+    private static final long USER_CACHE_TIME_TO_LIVE = 300_000;
     private final UserRepository<User> userRepository;
     private final RoleRepository<Role> roleRepository;
+    private final ImageSweeper imageSweeper;
+    private final LocalCache<String, UserDTO> userCache = new LocalCache<>(USER_CACHE_SIZE, USER_CACHE_TIME_TO_LIVE, UserDTO::getId);
 
     @Override
     public UserDTO createUser(User user) {
@@ -28,7 +38,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public UserDTO getUserByEmail(String email) {
-        return mapToUserDTO(userRepository.getUserByEmail(email));
+        return userCache.get(email.trim().toLowerCase(), key -> mapToUserDTO(userRepository.getUserByEmail(email)));
     }
 
     @Override
@@ -61,6 +71,32 @@ public class UserServiceImpl implements UserService {
         return mapToUserDTO(this.userRepository.verifyAccountKey(key));
     }
 
+    @Override
+    public void updateImage(UserDTO user, String imageName) {
+        String previous = ImageStorage.getImageName(userRepository.updateImage(user.getId(), ImageStorage.getImagePath(imageName)));
+        if(previous != null && !previous.equals(imageName)) imageSweeper.schedule(previous);
+    }
+
+    @Override
+    public UserDTO updateProfile(UserDTO user, UpdateProfileForm form) {
+        User changes = User.builder()
+                .id(user.getId())
+                .version(form.getVersion())
+                .firstName(form.getFirstName())
+                .lastName(form.getLastName())
+                .address(form.getAddress())
+                .phone(form.getPhone())
+                .title(form.getTitle())
+                .bio(form.getBio())
+                .build();
+        return mapToUserDTO(this.userRepository.update(changes));
+    }
+
+    @Override
+    public void invalidate(String entity, Long id) {
+        if(USER.equals(entity)) userCache.removeByIndex(id);
+    }
+
     private UserDTO mapToUserDTO(User user){
         return fromUser(user, roleRepository.getRoleByUserId(user.getId()));
     }
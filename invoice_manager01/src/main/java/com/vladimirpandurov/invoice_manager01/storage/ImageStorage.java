@@ -0,0 +1,342 @@
+package com.vladimirpandurov.invoice_manager01.storage;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.ImageType;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.utils.ETagUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.AsyncConfig.THUMBNAIL_EXECUTOR;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.springframework.http.HttpHeaders.*;
+
+/**
+ * Stores profile images on local disk under the SHA-256 of their content. Uploads are streamed to disk
+ * through a fixed buffer, so heap use does not grow with image size or the number of concurrent uploads.
+ * Names never change content, which lets clients cache them forever. Files are served with Tomcat sendfile
+ * when the connector supports it, and with {@link FileChannel#transferTo} otherwise.
+ */
+@Component
+@Slf4j
+public class ImageStorage {
+
+    public static final String IMAGE_PATH = "/user/image/";
+    public static final int THUMBNAIL_SIZE = 128;
+    private static final String THUMBNAIL_SUFFIX = "-thumb";
+    private static final String THUMBNAIL_FORMAT = "png";
+    private static final String DELETING_SUFFIX = ".deleting";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final Pattern NAME = Pattern.compile("([0-9a-f]{64})(" + THUMBNAIL_SUFFIX + ")?\\.(png|jpg|gif)");
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private final Path directory;
+    private final long maxSize;
+    private final Executor thumbnailExecutor;
+
+    public ImageStorage(@Value("${application.image.storage-path:${user.home}/invoice_manager/images}") String directory,
+                        @Value("${application.image.max-size:5242880}") long maxSize,
+                        @Qualifier(THUMBNAIL_EXECUTOR) Executor thumbnailExecutor){
+        this.directory = Paths.get(directory);
+        this.maxSize = maxSize;
+        this.thumbnailExecutor = thumbnailExecutor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Streams an uploaded image to disk and returns its content-addressed name. The thumbnail is generated
+     * in the background.
+     */
+    public String store(InputStream input, long contentLength){
+        if(contentLength > maxSize) throw new ApiException("The image may not be larger than " + maxSize / 1024 + " KB");
+        Path upload = null;
+        try{
+            upload = Files.createTempFile(directory, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ImageType type;
+            try(ReadableByteChannel in = Channels.newChannel(input); FileChannel out = FileChannel.open(upload, WRITE)){
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                long size = 0;
+                while(in.read(buffer) != -1){
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if(size > maxSize) throw new ApiException("The image may not be larger than " + maxSize / 1024 + " KB");
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while(buffer.hasRemaining()) out.write(buffer);
+                    buffer.clear();
+                }
+                ByteBuffer header = ByteBuffer.allocate(ImageType.HEADER_LENGTH);
+                out.read(header, 0);
+                type = ImageType.fromHeader(header.array());
+            }
+            if(type == null) throw new ApiException("Only PNG, JPEG and GIF images are supported");
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path image = directory.resolve(hash + "." + type.getExtension());
+            try{
+                // Reusing a stored image refreshes its modification time, so ImageSweeper keeps it for this upload
+                Files.setLastModifiedTime(image, FileTime.from(Instant.now()));
+            }catch (NoSuchFileException exception){
+                Files.move(upload, image, ATOMIC_MOVE);
+            }
+            scheduleThumbnail(image, directory.resolve(hash + THUMBNAIL_SUFFIX + "." + THUMBNAIL_FORMAT));
+            return image.getFileName().toString();
+        }catch (ApiException exception){
+            throw exception;
+        }catch (IOException | NoSuchAlgorithmException exception){
+            log.error(exception.getMessage());
+            throw new ApiException("Unable to store the image. Please try again.");
+        }finally {
+            deleteQuietly(upload);
+        }
+    }
+
+    public static String getThumbnailName(String imageName){
+        Matcher matcher = NAME.matcher(imageName);
+        return matcher.matches() ? matcher.group(1) + THUMBNAIL_SUFFIX + "." + THUMBNAIL_FORMAT : null;
+    }
+
+    /**
+     * The path stored for an image, relative to the context path so it does not depend on the Host header.
+     */
+    public static String getImagePath(String imageName){
+        return IMAGE_PATH + imageName;
+    }
+
+    /**
+     * The image name at the end of a stored path or URL, or null when it does not point to a stored image.
+     */
+    public static String getImageName(String imageUrl){
+        if(imageUrl == null) return null;
+        String name = imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
+        Matcher matcher = NAME.matcher(name);
+        return matcher.matches() && matcher.group(2) == null ? name : null;
+    }
+
+    /**
+     * Deletes an image and its thumbnail unless it was stored again within the grace period or is still in use.
+     * The image is moved aside first, so an upload of the same content from then on writes a copy of its own
+     * instead of reusing the one being deleted; an upload that reused it earlier has refreshed its modification
+     * time. Returns false when the image is kept.
+     */
+    public boolean deleteIfUnused(String imageName, Duration grace, Predicate<String> inUse){
+        if(getImageName(imageName) == null) return true;
+        Path image = directory.resolve(imageName);
+        Path aside = directory.resolve(imageName + DELETING_SUFFIX);
+        try{
+            Files.move(image, aside, ATOMIC_MOVE);
+        }catch (NoSuchFileException exception){
+            return true;
+        }catch (IOException exception){
+            log.warn("Unable to delete {}: {}", image, exception.getMessage());
+            return false;
+        }
+        try{
+            if(Files.getLastModifiedTime(aside).toInstant().isAfter(Instant.now().minus(grace)) || inUse.test(imageName)){
+                Files.move(aside, image, ATOMIC_MOVE, REPLACE_EXISTING);
+                return false;
+            }
+        }catch (IOException exception){
+            log.warn("Unable to restore {}: {}", image, exception.getMessage());
+            return false;
+        }
+        deleteQuietly(aside);
+        if(!Files.exists(image)) deleteQuietly(directory.resolve(getThumbnailName(imageName)));
+        return true;
+    }
+
+    /**
+     * Writes an image or a single byte range of it. A request for several ranges is answered with the whole
+     * image and status 200, which RFC 9110 allows in place of multipart/byteranges. A thumbnail that is not generated yet is answered with the
+     * original image, without the long-lived cache header.
+     */
+    public void serve(String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Matcher matcher = NAME.matcher(name);
+        if(!matcher.matches()){
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path file = directory.resolve(name);
+        boolean cacheable = true;
+        if(matcher.group(2) != null && !Files.exists(file)){
+            file = findOriginal(matcher.group(1));
+            cacheable = false;
+        }
+        if(file == null || !Files.exists(file)){
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String eTag = "\"" + matcher.group(1) + (cacheable && matcher.group(2) != null ? THUMBNAIL_SUFFIX : "") + "\"";
+        response.setHeader(ETAG, eTag);
+        response.setHeader(CACHE_CONTROL, cacheable ? IMMUTABLE : "no-cache");
+        response.setHeader(ACCEPT_RANGES, "bytes");
+        if(ETagUtils.matches(request.getHeader(IF_NONE_MATCH), eTag)){
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        String fileName = file.getFileName().toString();
+        response.setContentType(ImageType.fromExtension(fileName.substring(fileName.lastIndexOf('.') + 1)).getContentType());
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(RANGE);
+        if(range != null && !range.contains(",")){
+            long[] bounds = parseRange(range, length);
+            if(bounds == null){
+                response.setHeader(CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setContentLengthLong(end - start + 1);
+        if("HEAD".equals(request.getMethod())) return;
+        if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))){
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try(FileChannel channel = FileChannel.open(file, READ)){
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while(position <= end){
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+
+    /**
+     * Parses a single "bytes=" range. Returns null when it cannot be satisfied.
+     */
+    private static long[] parseRange(String range, long length){
+        Matcher matcher = BYTE_RANGE.matcher(range.trim());
+        if(!matcher.matches()) return null;
+        String first = matcher.group(1);
+        String last = matcher.group(2);
+        try{
+            if(first.isEmpty()){
+                if(last.isEmpty()) return null;
+                long suffix = Long.parseLong(last);
+                return suffix == 0 ? null : new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            return start >= length || start > end ? null : new long[]{start, end};
+        }catch (NumberFormatException exception){
+            return null;
+        }
+    }
+
+    private Path findOriginal(String hash){
+        for(ImageType type : ImageType.values()){
+            Path original = directory.resolve(hash + "." + type.getExtension());
+            if(Files.exists(original)) return original;
+        }
+        return null;
+    }
+
+    private void scheduleThumbnail(Path image, Path thumbnail){
+        if(Files.exists(thumbnail)) return;
+        try{
+            thumbnailExecutor.execute(() -> createThumbnail(image, thumbnail));
+        }catch (RejectedExecutionException exception){
+            log.warn("Thumbnail queue is full, skipping {}", thumbnail.getFileName());
+        }
+    }
+
+    /**
+     * Decodes the image with source subsampling so a large upload never needs a full-size raster, then scales
+     * it to fit {@link #THUMBNAIL_SIZE}.
+     */
+    private void createThumbnail(Path image, Path thumbnail){
+        Path temporary = null;
+        try(ImageInputStream input = ImageIO.createImageInputStream(image.toFile())){
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if(!readers.hasNext()) return;
+            ImageReader reader = readers.next();
+            BufferedImage source;
+            try{
+                reader.setInput(input, true, true);
+                int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (THUMBNAIL_SIZE * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                source = reader.read(0, param);
+            }finally {
+                reader.dispose();
+            }
+            double scale = Math.min(1.0, (double) THUMBNAIL_SIZE / Math.max(source.getWidth(), source.getHeight()));
+            int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+            BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = target.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+            graphics.dispose();
+            temporary = Files.createTempFile(directory, "thumbnail-", ".tmp");
+            ImageIO.write(target, THUMBNAIL_FORMAT, temporary.toFile());
+            Files.move(temporary, thumbnail, ATOMIC_MOVE, REPLACE_EXISTING);
+        }catch (Exception exception){
+            log.error("Unable to create thumbnail for {}: {}", image.getFileName(), exception.getMessage());
+        }finally {
+            deleteQuietly(temporary);
+        }
+    }
+
+    private static void deleteQuietly(Path path){
+        if(path == null) return;
+        try{
+            Files.deleteIfExists(path);
+        }catch (IOException exception){
+            log.warn("Unable to delete {}: {}", path, exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.vladimirpandurov.invoice_manager01.storage;
+
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deletes replaced profile images once no user refers to them. Images are shared by content, so an upload of the
+ * same file can reuse an image between the reference check and the delete of the update that replaced it. Deletes
+ * therefore wait for the grace period and check the references again, see {@link ImageStorage#deleteIfUnused}.
+ * Candidates are held in memory: an image replaced just before a restart stays on disk.
+ */
+@Component
+@Slf4j
+public class ImageSweeper {
+
+    private final ImageStorage imageStorage;
+    private final UserRepository<User> userRepository;
+    private final Duration grace;
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+
+    public ImageSweeper(ImageStorage imageStorage, UserRepository<User> userRepository,
+                        @Value("${application.image.delete-grace:PT10M}") Duration grace){
+        this.imageStorage = imageStorage;
+        this.userRepository = userRepository;
+        this.grace = grace;
+    }
+
+    public void schedule(String imageName){
+        candidates.put(imageName, System.nanoTime());
+    }
+
+    @Scheduled(fixedDelayString = "${application.image.sweep-interval:60000}")
+    public void sweep(){
+        long due = System.nanoTime() - grace.toNanos();
+        candidates.forEach((imageName, scheduledAt) -> {
+            if(scheduledAt - due > 0) return;
+            try{
+                if(!imageStorage.deleteIfUnused(imageName, grace, userRepository::isImageInUse)) log.debug("Keeping image {}, it is in use again", imageName);
+                candidates.remove(imageName, scheduledAt);
+            }catch (RuntimeException exception){
+                log.warn("Unable to sweep image {}: {}", imageName, exception.getMessage());
+            }
+        });
+    }
+}
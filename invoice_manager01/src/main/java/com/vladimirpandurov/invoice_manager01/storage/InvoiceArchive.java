@@ -0,0 +1,412 @@
+package com.vladimirpandurov.invoice_manager01.storage;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLine;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Archive of closed invoices in compressed, column-oriented segment files on local disk. A segment holds one
+ * archival chunk ordered by id, cut into blocks of {@link #BLOCK_ROWS} invoices. Inside a block every column is
+ * stored contiguously (ids as deltas, dates as epoch days, lines after the invoices) and the block is deflated on
+ * its own. The segment ends with a sparse index of one entry per block, holding its id and issue-date bounds, so
+ * a lookup inflates only the blocks that can match. Segments are memory-mapped once and never change.
+ * <p>
+ * Segments are written to a temporary file, forced to disk and renamed into place before the rows are deleted
+ * from MySQL; a crash in between leaves rows in both stores, and readers keep the first copy of an id. Every
+ * instance must see the same directory, and picks up segments written by the others on the next refresh.
+ * <p>
+ * Invoice ids are only unique within a tenant, so segment names start with the tenant that wrote them and
+ * lookups only read segments of the current tenant. Segments written without a tenant have no such prefix.
+ */
+@Component
+@Slf4j
+public class InvoiceArchive {
+
+    public static final int BLOCK_ROWS = 1024;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String SEGMENT_PREFIX = "invoices-";
+    private static final int MAGIC = 0x494E5641;
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = 20;
+    private static final int INDEX_ENTRY_SIZE = 44;
+    private static final long NO_TEMPLATE = 0;
+    private static final int NO_BILLING_PERIOD = Integer.MIN_VALUE;
+    private final Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    public InvoiceArchive(@Value("${application.archive.storage-path:${user.home}/invoice_manager/archive}") String directory){
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)){
+            for(Path file : files) Files.deleteIfExists(file);
+        }
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${application.archive.refresh-interval:60000}", initialDelayString = "${application.archive.refresh-interval:60000}")
+    public void refresh(){
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)){
+            for(Path file : files){
+                if(!loaded.add(file.getFileName().toString())) continue;
+                try{
+                    segments.add(open(file));
+                }catch (UncheckedIOException exception){
+                    loaded.remove(file.getFileName().toString());
+                    log.error("Skipping archive segment {}: {}", file, exception.getMessage());
+                }
+            }
+        }catch (IOException exception){
+            log.error("Could not refresh the invoice archive: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Writes the invoices, with their lines, as one durable segment and returns its path.
+     */
+    public Path write(List<Invoice> invoices) throws IOException {
+        List<Invoice> sorted = new ArrayList<>(invoices);
+        sorted.sort(Comparator.comparing(Invoice::getId));
+        Path temp = directory.resolve(getOwner() + SEGMENT_PREFIX + sorted.get(0).getId() + "-" + System.nanoTime() + TEMP_SUFFIX);
+        int blocks = (sorted.size() + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_SIZE);
+        try(FileChannel channel = FileChannel.open(temp, CREATE_NEW, WRITE)){
+            long offset = 0;
+            for(int from = 0; from < sorted.size(); from += BLOCK_ROWS){
+                List<Invoice> block = sorted.subList(from, Math.min(from + BLOCK_ROWS, sorted.size()));
+                byte[] raw = encode(block);
+                byte[] compressed = deflate(raw);
+                writeFully(channel, ByteBuffer.wrap(compressed));
+                index.putLong(block.get(0).getId()).putLong(block.get(block.size() - 1).getId())
+                        .putInt(minIssued(block)).putInt(maxIssued(block))
+                        .putLong(offset).putInt(compressed.length).putInt(raw.length).putInt(block.size());
+                offset += compressed.length;
+            }
+            writeFully(channel, index.flip());
+            writeFully(channel, ByteBuffer.allocate(FOOTER_SIZE).putInt(VERSION).putInt(blocks).putLong(offset).putInt(MAGIC).flip());
+            channel.force(true);
+        }catch (IOException | RuntimeException exception){
+            Files.deleteIfExists(temp);
+            throw exception;
+        }
+        Path segment = directory.resolve(temp.getFileName().toString().replace(TEMP_SUFFIX, SEGMENT_SUFFIX));
+        Files.move(temp, segment, ATOMIC_MOVE);
+        if(loaded.add(segment.getFileName().toString())) segments.add(open(segment));
+        return segment;
+    }
+
+    /**
+     * Removes a segment whose rows could not be deleted from MySQL, so they are not stored twice.
+     */
+    public void discard(Path segment){
+        segments.removeIf(candidate -> candidate.path.equals(segment));
+        loaded.remove(segment.getFileName().toString());
+        try{
+            Files.deleteIfExists(segment);
+        }catch (IOException exception){
+            log.error("Could not discard archive segment {}: {}", segment, exception.getMessage());
+        }
+    }
+
+    public Invoice find(long id){
+        String owner = getOwner();
+        for(Segment segment : segments){
+            if(!segment.owner.equals(owner) || id < segment.minId || id > segment.maxId) continue;
+            for(int block = 0; block < segment.blocks; block++){
+                if(id < segment.firstIds[block] || id > segment.lastIds[block]) continue;
+                for(Invoice invoice : segment.read(block)){
+                    if(invoice.getId() == id) return invoice;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Up to {@code size} invoices issued in the range, in issue date and id order, starting after the cursor when
+     * there is one.
+     */
+    public List<Invoice> findIssuedBetween(LocalDate from, LocalDate to, InvoiceCursor cursor, int size){
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        Map<Long, Invoice> invoices = new LinkedHashMap<>();
+        String owner = getOwner();
+        for(Segment segment : segments){
+            if(!segment.owner.equals(owner) || last < segment.minIssued || first > segment.maxIssued) continue;
+            for(int block = 0; block < segment.blocks; block++){
+                if(last < segment.minIssuedByBlock[block] || first > segment.maxIssuedByBlock[block]) continue;
+                for(Invoice invoice : segment.read(block)){
+                    long day = invoice.getIssuedAt().toEpochDay();
+                    if(day < first || day > last || !isAfter(day, invoice.getId(), cursor)) continue;
+                    invoices.putIfAbsent(invoice.getId(), invoice);
+                }
+            }
+        }
+        return invoices.values().stream()
+                .sorted(Comparator.comparing(Invoice::getIssuedAt).thenComparing(Invoice::getId))
+                .limit(size)
+                .toList();
+    }
+
+    /**
+     * The latest issue date held in the archive, or null when it is empty. Ranges that start after it never
+     * need to touch the archive.
+     */
+    public LocalDate getMaxIssuedAt(){
+        int max = Integer.MIN_VALUE;
+        String owner = getOwner();
+        for(Segment segment : segments){
+            if(segment.owner.equals(owner)) max = Math.max(max, segment.maxIssued);
+        }
+        return max == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(max);
+    }
+
+    private static boolean isAfter(long day, long id, InvoiceCursor cursor){
+        return cursor == null || day > cursor.key() || (day == cursor.key() && id > cursor.id());
+    }
+
+    private static String getOwner(){
+        Long tenantId = TenantContext.getTenantId();
+        return tenantId == null ? "" : "tenant" + tenantId + "-";
+    }
+
+    private Segment open(Path file){
+        try(FileChannel channel = FileChannel.open(file, READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int footer = buffer.limit() - FOOTER_SIZE;
+            if(footer < 0 || buffer.getInt(footer + 16) != MAGIC || buffer.getInt(footer) != VERSION){
+                throw new IOException("Not an invoice archive segment: " + file);
+            }
+            return new Segment(file, buffer, buffer.getInt(footer + 4), (int) buffer.getLong(footer + 8));
+        }catch (IOException exception){
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static byte[] encode(List<Invoice> invoices) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(invoices.size());
+        long previousId = 0;
+        for(Invoice invoice : invoices){
+            out.writeLong(invoice.getId() - previousId);
+            previousId = invoice.getId();
+        }
+        for(Invoice invoice : invoices) out.writeUTF(invoice.getInvoiceNumber());
+        for(Invoice invoice : invoices) out.writeLong(invoice.getCustomerId());
+        for(Invoice invoice : invoices) out.writeUTF(invoice.getStatus());
+        for(Invoice invoice : invoices) out.writeInt((int) invoice.getIssuedAt().toEpochDay());
+        for(Invoice invoice : invoices) out.writeInt((int) invoice.getDueAt().toEpochDay());
+        for(Invoice invoice : invoices) out.writeUTF(invoice.getCurrency());
+        for(Invoice invoice : invoices) out.writeLong(invoice.getSubtotal());
+        for(Invoice invoice : invoices) out.writeLong(invoice.getTax());
+        for(Invoice invoice : invoices) out.writeLong(invoice.getTotal());
+        for(Invoice invoice : invoices) out.writeLong(invoice.getAmountPaid());
+        for(Invoice invoice : invoices) out.writeLong(invoice.getTemplateId() == null ? NO_TEMPLATE : invoice.getTemplateId());
+        for(Invoice invoice : invoices) out.writeInt(invoice.getBillingPeriod() == null ? NO_BILLING_PERIOD : (int) invoice.getBillingPeriod().toEpochDay());
+        List<InvoiceLine> lines = new ArrayList<>();
+        for(Invoice invoice : invoices){
+            List<InvoiceLine> invoiceLines = invoice.getLines() == null ? List.of() : invoice.getLines();
+            out.writeInt(invoiceLines.size());
+            lines.addAll(invoiceLines);
+        }
+        for(InvoiceLine line : lines) out.writeLong(line.getId());
+        for(InvoiceLine line : lines) out.writeUTF(line.getDescription());
+        for(InvoiceLine line : lines) out.writeLong(line.getQuantity());
+        for(InvoiceLine line : lines) out.writeLong(line.getUnitPrice());
+        for(InvoiceLine line : lines) out.writeInt(line.getDiscount());
+        for(InvoiceLine line : lines) out.writeInt(line.getTaxRate());
+        for(InvoiceLine line : lines) out.writeLong(line.getLineTotal());
+        for(InvoiceLine line : lines) out.writeLong(line.getLineTax());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<Invoice> decode(byte[] raw) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        int rows = in.readInt();
+        List<Invoice> invoices = new ArrayList<>(rows);
+        long id = 0;
+        for(int i = 0; i < rows; i++){
+            id += in.readLong();
+            invoices.add(Invoice.builder().id(id).build());
+        }
+        for(Invoice invoice : invoices) invoice.setInvoiceNumber(in.readUTF());
+        for(Invoice invoice : invoices) invoice.setCustomerId(in.readLong());
+        for(Invoice invoice : invoices) invoice.setStatus(in.readUTF());
+        for(Invoice invoice : invoices) invoice.setIssuedAt(LocalDate.ofEpochDay(in.readInt()));
+        for(Invoice invoice : invoices) invoice.setDueAt(LocalDate.ofEpochDay(in.readInt()));
+        for(Invoice invoice : invoices) invoice.setCurrency(in.readUTF());
+        for(Invoice invoice : invoices) invoice.setSubtotal(in.readLong());
+        for(Invoice invoice : invoices) invoice.setTax(in.readLong());
+        for(Invoice invoice : invoices) invoice.setTotal(in.readLong());
+        for(Invoice invoice : invoices) invoice.setAmountPaid(in.readLong());
+        for(Invoice invoice : invoices){
+            long templateId = in.readLong();
+            invoice.setTemplateId(templateId == NO_TEMPLATE ? null : templateId);
+        }
+        for(Invoice invoice : invoices){
+            int billingPeriod = in.readInt();
+            invoice.setBillingPeriod(billingPeriod == NO_BILLING_PERIOD ? null : LocalDate.ofEpochDay(billingPeriod));
+        }
+        List<InvoiceLine> lines = new ArrayList<>();
+        for(Invoice invoice : invoices){
+            int count = in.readInt();
+            List<InvoiceLine> invoiceLines = new ArrayList<>(count);
+            for(int i = 0; i < count; i++){
+                InvoiceLine line = InvoiceLine.builder().invoiceId(invoice.getId()).build();
+                invoiceLines.add(line);
+                lines.add(line);
+            }
+            invoice.setLines(invoiceLines);
+        }
+        for(InvoiceLine line : lines) line.setId(in.readLong());
+        for(InvoiceLine line : lines) line.setDescription(in.readUTF());
+        for(InvoiceLine line : lines) line.setQuantity(in.readLong());
+        for(InvoiceLine line : lines) line.setUnitPrice(in.readLong());
+        for(InvoiceLine line : lines) line.setDiscount(in.readInt());
+        for(InvoiceLine line : lines) line.setTaxRate(in.readInt());
+        for(InvoiceLine line : lines) line.setLineTotal(in.readLong());
+        for(InvoiceLine line : lines) line.setLineTax(in.readLong());
+        return invoices;
+    }
+
+    private static byte[] deflate(byte[] raw) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try(DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)){
+            out.write(raw);
+        }finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static int minIssued(List<Invoice> invoices){
+        return invoices.stream().mapToInt(invoice -> (int) invoice.getIssuedAt().toEpochDay()).min().orElseThrow();
+    }
+
+    private static int maxIssued(List<Invoice> invoices){
+        return invoices.stream().mapToInt(invoice -> (int) invoice.getIssuedAt().toEpochDay()).max().orElseThrow();
+    }
+
+    /**
+     * A mapped segment and its sparse index, copied into arrays when the segment is opened.
+     */
+    private static class Segment {
+        private final Path path;
+        private final String owner;
+        private final MappedByteBuffer buffer;
+        private final int blocks;
+        private final long[] firstIds;
+        private final long[] lastIds;
+        private final int[] minIssuedByBlock;
+        private final int[] maxIssuedByBlock;
+        private final int[] offsets;
+        private final int[] compressedLengths;
+        private final int[] rawLengths;
+        private final long minId;
+        private final long maxId;
+        private final int minIssued;
+        private final int maxIssued;
+
+        private Segment(Path path, MappedByteBuffer buffer, int blocks, int indexOffset){
+            this.path = path;
+            String name = path.getFileName().toString();
+            this.owner = name.substring(0, Math.max(0, name.indexOf(SEGMENT_PREFIX)));
+            this.buffer = buffer;
+            this.blocks = blocks;
+            this.firstIds = new long[blocks];
+            this.lastIds = new long[blocks];
+            this.minIssuedByBlock = new int[blocks];
+            this.maxIssuedByBlock = new int[blocks];
+            this.offsets = new int[blocks];
+            this.compressedLengths = new int[blocks];
+            this.rawLengths = new int[blocks];
+            int minIssued = Integer.MAX_VALUE;
+            int maxIssued = Integer.MIN_VALUE;
+            for(int block = 0; block < blocks; block++){
+                int entry = indexOffset + block * INDEX_ENTRY_SIZE;
+                firstIds[block] = buffer.getLong(entry);
+                lastIds[block] = buffer.getLong(entry + 8);
+                minIssuedByBlock[block] = buffer.getInt(entry + 16);
+                maxIssuedByBlock[block] = buffer.getInt(entry + 20);
+                offsets[block] = (int) buffer.getLong(entry + 24);
+                compressedLengths[block] = buffer.getInt(entry + 32);
+                rawLengths[block] = buffer.getInt(entry + 36);
+                minIssued = Math.min(minIssued, minIssuedByBlock[block]);
+                maxIssued = Math.max(maxIssued, maxIssuedByBlock[block]);
+            }
+            this.minId = blocks == 0 ? Long.MAX_VALUE : firstIds[0];
+            this.maxId = blocks == 0 ? Long.MIN_VALUE : lastIds[blocks - 1];
+            this.minIssued = minIssued;
+            this.maxIssued = maxIssued;
+        }
+
+        private List<Invoice> read(int block){
+            Inflater inflater = new Inflater();
+            try{
+                inflater.setInput(buffer.slice(offsets[block], compressedLengths[block]));
+                byte[] raw = new byte[rawLengths[block]];
+                int length = 0;
+                while(length < raw.length && !inflater.finished()){
+                    int read = inflater.inflate(raw, length, raw.length - length);
+                    if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())) throw new DataFormatException("Truncated block");
+                    length += read;
+                }
+                return decode(raw);
+            }catch (DataFormatException | IOException exception){
+                throw new IllegalStateException("Corrupt archive segment " + path + ", block " + block, exception);
+            }finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.vladimirpandurov.invoice_manager01.storage;
+
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.tenant.TenantContext;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Exception reports of statement reconciliations, kept as CSV files on local disk. A report is written while its
+ * statement streams in, so it never has to fit in memory. Files carry the tenant as a prefix that is not part of
+ * the report name, so a tenant only ever finds its own reports.
+ */
+@Component
+@Slf4j
+public class ReconciliationReportStorage {
+
+    private static final Pattern NAME = Pattern.compile("reconciliation-[0-9a-f-]{36}\\.csv");
+    private final Path directory;
+
+    public ReconciliationReportStorage(@Value("${application.reconciliation.storage-path:${user.home}/invoice_manager/reconciliation}") String directory){
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+    }
+
+    public String newReportName(){
+        return "reconciliation-" + UUID.randomUUID() + ".csv";
+    }
+
+    public Path resolve(String name){
+        if(!NAME.matcher(name).matches()) throw new ApiException("No report found by name: " + name);
+        Long tenantId = TenantContext.getTenantId();
+        return directory.resolve((tenantId == null ? "" : "tenant" + tenantId + "-") + name);
+    }
+
+    public Path get(String name){
+        Path report = resolve(name);
+        if(!Files.isRegularFile(report)) throw new ApiException("No report found by name: " + name);
+        return report;
+    }
+}
@@ -0,0 +1,148 @@
+package com.vladimirpandurov.invoice_manager01.tenant;
+
+import com.vladimirpandurov.invoice_manager01.configuration.ShardingProperties;
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus.READ_ONLY;
+
+/**
+ * Owns one connection pool per shard and routes tenant data access to them. Every tenant has its own database on
+ * its shard, so queries stay free of tenant columns: a connection is taken from the tenant's shard and switched to
+ * the tenant's database, and the pool switches it back when it is returned. Connections of a READ_ONLY tenant are
+ * read-only, so MySQL itself rejects writes during the last pass of a move.
+ * <p>
+ * With sharding disabled every tenant query goes to the single application database, as before.
+ * The routing DataSource is deliberately not a bean: it has no meaning without a tenant, and health checks and
+ * other DataSource consumers must keep using the application database.
+ */
+@Component
+@Slf4j
+public class ShardRouter {
+
+    private final DataSource defaultDataSource;
+    private final TenantDirectory tenantDirectory;
+    private final String databasePrefix;
+    private final Map<String, HikariDataSource> shards = new LinkedHashMap<>();
+    private final DataSource routingDataSource = new RoutingDataSource();
+
+    public ShardRouter(DataSource defaultDataSource, TenantDirectory tenantDirectory, ShardingProperties properties, MeterRegistry meterRegistry){
+        this.defaultDataSource = defaultDataSource;
+        this.tenantDirectory = tenantDirectory;
+        this.databasePrefix = properties.getDatabasePrefix();
+        if(!properties.isEnabled()) return;
+        if(properties.getShards().isEmpty()) throw new IllegalStateException("Sharding is enabled but no shards are configured");
+        properties.getShards().forEach((name, shard) -> {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("shard-" + name);
+            config.setJdbcUrl(shard.getUrl());
+            config.setUsername(shard.getUsername());
+            config.setPassword(shard.getPassword());
+            config.setMaximumPoolSize(shard.getMaximumPoolSize());
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            shards.put(name, new HikariDataSource(config));
+        });
+        log.info("Routing tenant data over shards {}", shards.keySet());
+    }
+
+    /**
+     * DataSource of the current thread's tenant; see {@link TenantContext}.
+     */
+    public DataSource getRoutingDataSource(){
+        return this.routingDataSource;
+    }
+
+    public boolean isSharded(){
+        return !shards.isEmpty();
+    }
+
+    public Set<String> getShardNames(){
+        return shards.keySet();
+    }
+
+    public DataSource getShard(String shard){
+        DataSource dataSource = shards.get(shard);
+        if(dataSource == null) throw new ApiException("No shard found by name: " + shard);
+        return dataSource;
+    }
+
+    public String getDatabase(Long tenantId){
+        return databasePrefix + tenantId;
+    }
+
+    /**
+     * The tenant's database on the given shard, whatever the directory says; used to copy a tenant between shards.
+     */
+    public DataSource getTenantDataSource(String shard, Long tenantId){
+        String database = getDatabase(tenantId);
+        return new DelegatingDataSource(getShard(shard)) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return useDatabase(super.getConnection(), database);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void close(){
+        shards.values().forEach(HikariDataSource::close);
+    }
+
+    /**
+     * MySQL calls a database a catalog and ignores {@code setSchema}; databases that keep them as schemas, like the
+     * H2 of the tests, ignore {@code setCatalog} instead.
+     */
+    private static Connection useDatabase(Connection connection, String database) throws SQLException {
+        try{
+            connection.setCatalog(database);
+            connection.setSchema(database);
+            return connection;
+        }catch (SQLException exception){
+            connection.close();
+            throw exception;
+        }
+    }
+
+    private class RoutingDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if(shards.isEmpty()) return defaultDataSource.getConnection();
+            Long tenantId = TenantContext.getTenantId();
+            if(tenantId == null) throw new ApiException("No tenant selected. Tenant data needs a tenant.");
+            Tenant tenant = tenantDirectory.getTenant(tenantId);
+            Connection connection = useDatabase(getShard(tenant.getShard()).getConnection(), getDatabase(tenantId));
+            if(tenant.getStatus() == READ_ONLY){
+                try{
+                    connection.setReadOnly(true);
+                }catch (SQLException exception){
+                    connection.close();
+                    throw exception;
+                }
+            }
+            return connection;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Shard connections use the credentials of their pool");
+        }
+    }
+}
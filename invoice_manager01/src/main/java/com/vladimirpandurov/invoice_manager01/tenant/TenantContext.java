@@ -0,0 +1,48 @@
+package com.vladimirpandurov.invoice_manager01.tenant;
+
+import java.util.function.Supplier;
+
+/**
+ * The tenant whose database the current thread works on. Set from the access token for the length of a request;
+ * work handed to another thread must carry the tenant over itself, for example with {@link #callAs}.
+ */
+public class TenantContext {
+
+    private static final ThreadLocal<Long> TENANT_ID = new ThreadLocal<>();
+
+    public static Long getTenantId(){
+        return TENANT_ID.get();
+    }
+
+    public static void setTenantId(Long tenantId){
+        if(tenantId == null){
+            TENANT_ID.remove();
+        }else {
+            TENANT_ID.set(tenantId);
+        }
+    }
+
+    public static void clear(){
+        TENANT_ID.remove();
+    }
+
+    /**
+     * Runs the action as the given tenant and restores the previous one afterwards.
+     */
+    public static <T> T callAs(Long tenantId, Supplier<T> action){
+        Long previous = TENANT_ID.get();
+        setTenantId(tenantId);
+        try{
+            return action.get();
+        }finally {
+            setTenantId(previous);
+        }
+    }
+
+    public static void runAs(Long tenantId, Runnable action){
+        callAs(tenantId, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.vladimirpandurov.invoice_manager01.tenant;
+
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus;
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationListener;
+import com.vladimirpandurov.invoice_manager01.cache.LocalCache;
+import com.vladimirpandurov.invoice_manager01.configuration.ShardingProperties;
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Tenant-to-shard directory backed by the Tenants table. Every connection to tenant data looks its tenant up
+ * here, so entries are cached; changes are published on the {@link CacheInvalidationBus} and reach the other
+ * instances within one poll.
+ */
+@Component
+@Slf4j
+public class TenantDirectory implements CacheInvalidationListener {
+
+    public static final String TENANT = "tenant";
+    private static final int TENANT_CACHE_SIZE = 10_000;
+    private final TenantRepository tenantRepository;
+    private final CacheInvalidationBus invalidationBus;
+    private final TransactionTemplate transactionTemplate;
+    private final LocalCache<Long, Tenant> tenantCache;
+
+    public TenantDirectory(TenantRepository tenantRepository, CacheInvalidationBus invalidationBus, TransactionTemplate transactionTemplate,
+                           ShardingProperties properties){
+        this.tenantRepository = tenantRepository;
+        this.invalidationBus = invalidationBus;
+        this.transactionTemplate = transactionTemplate;
+        this.tenantCache = new LocalCache<>(TENANT_CACHE_SIZE, properties.getDirectoryTimeToLive().toMillis());
+    }
+
+    public Tenant getTenant(Long tenantId){
+        return tenantCache.get(tenantId, tenantRepository::get);
+    }
+
+    public List<Tenant> getTenants(){
+        return tenantRepository.list();
+    }
+
+    /**
+     * Changes the status and publishes the change in one transaction, so a change that cannot be published
+     * throws and leaves the status as it was.
+     */
+    public void changeStatus(Long tenantId, TenantStatus expectedStatus, TenantStatus status){
+        transactionTemplate.executeWithoutResult(transaction -> {
+            if(!tenantRepository.updateStatus(tenantId, expectedStatus, status)){
+                throw new ApiException("Tenant " + tenantId + " is not " + expectedStatus.name().toLowerCase() + ". Please try again later.");
+            }
+            invalidationBus.publish(TENANT, tenantId);
+        });
+    }
+
+    public void assignShard(Long tenantId, String shard, TenantStatus status){
+        transactionTemplate.executeWithoutResult(transaction -> {
+            tenantRepository.updateShard(tenantId, shard, status);
+            invalidationBus.publish(TENANT, tenantId);
+        });
+        log.info("Tenant {} is now {} on shard {}", tenantId, status, shard);
+    }
+
+    @Override
+    public void invalidate(String entity, Long id) {
+        if(TENANT.equals(entity)) tenantCache.remove(id);
+    }
+}
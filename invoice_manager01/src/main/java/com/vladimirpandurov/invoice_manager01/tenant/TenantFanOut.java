@@ -0,0 +1,85 @@
+package com.vladimirpandurov.invoice_manager01.tenant;
+
+import com.vladimirpandurov.invoice_manager01.configuration.ShardingProperties;
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.vladimirpandurov.invoice_manager01.configuration.AsyncConfig.TENANT_FAN_OUT_EXECUTOR;
+
+/**
+ * Runs work against every tenant. Cross-tenant queries run in parallel on a bounded pool, one task per tenant
+ * with that tenant selected, and fail as a whole when any tenant fails or exceeds the timeout: a merged result
+ * with a tenant silently missing would be wrong. Without sharding the work runs once against the single database,
+ * with no tenant.
+ */
+@Component
+@Slf4j
+public class TenantFanOut {
+
+    private final TenantDirectory tenantDirectory;
+    private final ShardRouter shardRouter;
+    private final ThreadPoolTaskExecutor executor;
+    private final Duration timeout;
+
+    public TenantFanOut(TenantDirectory tenantDirectory, ShardRouter shardRouter,
+                        @Qualifier(TENANT_FAN_OUT_EXECUTOR) ThreadPoolTaskExecutor executor, ShardingProperties properties){
+        this.tenantDirectory = tenantDirectory;
+        this.shardRouter = shardRouter;
+        this.executor = executor;
+        this.timeout = properties.getFanOutTimeout();
+    }
+
+    /**
+     * Runs the query for every tenant in parallel and returns the results in tenant order.
+     */
+    public <T> List<T> query(Function<Tenant, T> query){
+        if(!shardRouter.isSharded()) return Collections.singletonList(query.apply(null));
+        List<Tenant> tenants = tenantDirectory.getTenants();
+        List<CompletableFuture<T>> futures = new ArrayList<>(tenants.size());
+        for(Tenant tenant : tenants){
+            futures.add(CompletableFuture.supplyAsync(() -> TenantContext.callAs(tenant.getId(), () -> query.apply(tenant)), executor)
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+        List<T> results = new ArrayList<>(tenants.size());
+        for(int i = 0; i < futures.size(); i++){
+            try{
+                results.add(futures.get(i).join());
+            }catch (Exception exception){
+                futures.forEach(future -> future.cancel(true));
+                log.error("Query of tenant {} failed: {}", tenants.get(i).getId(), exception.getMessage());
+                throw new ApiException("Could not query tenant " + tenants.get(i).getName() + ". Please try again.");
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs the task for one tenant after the other. A tenant that fails is logged and skipped, so one broken
+     * shard does not hold back the scheduled work of the others.
+     */
+    public void forEachTenant(Runnable task){
+        if(!shardRouter.isSharded()){
+            task.run();
+            return;
+        }
+        for(Tenant tenant : tenantDirectory.getTenants()){
+            try{
+                TenantContext.runAs(tenant.getId(), task);
+            }catch (Exception exception){
+                log.error("Task failed for tenant {}: {}", tenant.getId(), exception.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.vladimirpandurov.invoice_manager01.tenant;
+
+import com.vladimirpandurov.invoice_manager01.configuration.ShardingProperties;
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus.ACTIVE;
+import static com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus.COPYING;
+import static com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus.READ_ONLY;
+import static com.vladimirpandurov.invoice_manager01.query.TenantQuery.COUNT_DATABASES_BY_NAME_QUERY;
+import static com.vladimirpandurov.invoice_manager01.query.TenantQuery.CREATE_DATABASE_QUERY;
+
+/**
+ * Moves a tenant's database to another shard while the tenant keeps working. The tables are copied in key order,
+ * chunk by chunk, while the tenant stays writable; further passes copy only what changed since, until a pass
+ * changes less than one chunk. Then the tenant turns READ_ONLY and the move waits out the grace period: the
+ * directory's time to live, after which no instance can still hold the tenant as writable even if it missed the
+ * invalidation, plus {@code move-grace} for writes that were already in flight. Final passes then run until one
+ * changes nothing, and only then does the directory point the tenant at the new shard. A status change that
+ * cannot be published aborts the move.
+ * <p>
+ * A pass compares each chunk of the source with the same key range of the target, inserting and updating parents
+ * before children and deleting children before parents, so it needs neither empty targets nor disabled foreign
+ * keys, and a failed move can simply be run again. The source database is left in place to be dropped by hand.
+ */
+@Component
+@Slf4j
+public class TenantMover {
+
+    private static final int MAX_COPY_PASSES = 3;
+    private static final int MAX_FINAL_PASSES = 5;
+    // Parents before children
+    private static final List<TableSpec> TABLES = List.of(
+            new TableSpec("Customers", List.of("id")),
+            new TableSpec("InvoiceNumberSequences", List.of("sequence_key")),
+            new TableSpec("Invoices", List.of("id")),
+            new TableSpec("InvoiceLines", List.of("id")),
+            new TableSpec("RecurringInvoiceTemplates", List.of("id")),
+            new TableSpec("RecurringInvoiceTemplateLines", List.of("id")),
+            new TableSpec("RecurringInvoiceRuns", List.of("id")),
+            new TableSpec("RecurringInvoiceCheckpoints", List.of("run_id", "partition_number")),
+            new TableSpec("AppliedPayments", List.of("id")));
+    private final ShardRouter shardRouter;
+    private final TenantDirectory tenantDirectory;
+    private final MeterRegistry meterRegistry;
+    private final ClassPathResource tenantSchema = new ClassPathResource("tenant-schema.sql");
+    private final int chunkSize;
+    private final Duration grace;
+
+    public TenantMover(ShardRouter shardRouter, TenantDirectory tenantDirectory, MeterRegistry meterRegistry, ShardingProperties properties){
+        this.shardRouter = shardRouter;
+        this.tenantDirectory = tenantDirectory;
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = properties.getMoveChunkSize();
+        this.grace = properties.getDirectoryTimeToLive().plus(properties.getMoveGrace());
+    }
+
+    /**
+     * Rejects a move that cannot start, so the caller learns of it before a job is queued.
+     */
+    public void checkMove(Long tenantId, String targetShard){
+        if(!shardRouter.isSharded()) throw new ApiException("Sharding is not enabled");
+        shardRouter.getShard(targetShard);
+        if(tenantDirectory.getTenant(tenantId).getShard().equals(targetShard)) throw new ApiException("Tenant " + tenantId + " is already on shard " + targetShard);
+    }
+
+    /**
+     * Moves the tenant to the target shard, adding the rows it changes to {@code progress}, and returns the number
+     * of rows copied.
+     */
+    public long move(Long tenantId, String targetShard, AtomicLong progress){
+        checkMove(tenantId, targetShard);
+        tenantDirectory.changeStatus(tenantId, ACTIVE, COPYING);
+        long start = System.nanoTime();
+        String sourceShard = null;
+        boolean moved = false;
+        try{
+            Tenant tenant = tenantDirectory.getTenant(tenantId);
+            sourceShard = tenant.getShard();
+            if(sourceShard.equals(targetShard)) throw new ApiException("Tenant " + tenantId + " is already on shard " + targetShard);
+            createDatabase(targetShard, tenantId);
+            NamedParameterJdbcTemplate source = new NamedParameterJdbcTemplate(shardRouter.getTenantDataSource(sourceShard, tenantId));
+            NamedParameterJdbcTemplate target = new NamedParameterJdbcTemplate(shardRouter.getTenantDataSource(targetShard, tenantId));
+            long copied = 0;
+            for(int pass = 1; pass <= MAX_COPY_PASSES; pass++){
+                SyncResult result = sync(source, target);
+                copied += result.changed();
+                progress.addAndGet(result.changed());
+                log.info("Tenant {} copy pass {} to shard {}: {} rows changed, {} deferred", tenantId, pass, targetShard, result.changed(), result.failed());
+                if(result.changed() < chunkSize) break;
+            }
+            tenantDirectory.changeStatus(tenantId, COPYING, READ_ONLY);
+            Thread.sleep(grace.toMillis());
+            // Until a pass finds nothing to change; rows that clashed with rows deleted later in a pass go in on the next
+            for(int pass = 1; ; pass++){
+                SyncResult result = sync(source, target);
+                copied += result.changed();
+                progress.addAndGet(result.changed());
+                log.info("Tenant {} final pass {} to shard {}: {} rows changed, {} deferred", tenantId, pass, targetShard, result.changed(), result.failed());
+                if(result.changed() == 0 && result.failed() == 0) break;
+                if(pass == MAX_FINAL_PASSES){
+                    throw new ApiException("Tenant " + tenantId + " still had " + result.changed() + " changed rows after " + pass + " read-only passes");
+                }
+            }
+            tenantDirectory.assignShard(tenantId, targetShard, ACTIVE);
+            moved = true;
+            log.info("Moved tenant {} from shard {} to {} with {} rows copied; database {} on shard {} can be dropped",
+                    tenantId, sourceShard, targetShard, copied, shardRouter.getDatabase(tenantId), sourceShard);
+            return copied;
+        }catch (InterruptedException exception){
+            Thread.currentThread().interrupt();
+            throw new ApiException("The move of tenant " + tenantId + " was interrupted");
+        }finally {
+            if(!moved) restore(tenantId, sourceShard);
+            Timer.builder("tenant.move").tag("outcome", moved ? "moved" : "failed").register(meterRegistry)
+                    .record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Puts a failed move's tenant back to work on its source shard. A failure here is logged rather than thrown,
+     * so it does not hide the failure of the move.
+     */
+    private void restore(Long tenantId, String sourceShard){
+        try{
+            if(sourceShard != null){
+                tenantDirectory.assignShard(tenantId, sourceShard, ACTIVE);
+            }else {
+                tenantDirectory.changeStatus(tenantId, COPYING, ACTIVE);
+            }
+        }catch (Exception exception){
+            log.error("Could not reactivate tenant {} after a failed move, its status must be reset by hand: {}", tenantId, exception.getMessage());
+        }
+    }
+
+    private void createDatabase(String shard, Long tenantId){
+        String database = shardRouter.getDatabase(tenantId);
+        JdbcTemplate jdbc = new JdbcTemplate(shardRouter.getShard(shard));
+        Integer existing = jdbc.queryForObject(COUNT_DATABASES_BY_NAME_QUERY, Integer.class, database);
+        if(existing != null && existing > 0) return;
+        jdbc.execute(CREATE_DATABASE_QUERY + database);
+        new ResourceDatabasePopulator(tenantSchema).execute(shardRouter.getTenantDataSource(shard, tenantId));
+        log.info("Created database {} on shard {}", database, shard);
+    }
+
+    private SyncResult sync(NamedParameterJdbcTemplate source, NamedParameterJdbcTemplate target){
+        Map<TableSpec, List<Map<String, Object>>> deletes = new LinkedHashMap<>();
+        long changed = 0;
+        long failed = 0;
+        for(TableSpec table : TABLES){
+            SyncResult result = syncTable(table, source, target, deletes);
+            changed += result.changed();
+            failed += result.failed();
+        }
+        for(int i = TABLES.size() - 1; i >= 0; i--){
+            TableSpec table = TABLES.get(i);
+            List<Map<String, Object>> keys = deletes.getOrDefault(table, List.of());
+            changed += keys.size();
+            failed += apply(target, table.deleteSql(), keys);
+        }
+        return new SyncResult(changed, failed);
+    }
+
+    /**
+     * Brings one table of the target in line with the source, one chunk of source keys at a time. Deletes are
+     * only collected, to run once the children have been synced too.
+     */
+    private SyncResult syncTable(TableSpec table, NamedParameterJdbcTemplate source, NamedParameterJdbcTemplate target,
+                                 Map<TableSpec, List<Map<String, Object>>> deletes){
+        long changed = 0;
+        long failed = 0;
+        List<Object> after = null;
+        while(true){
+            MapSqlParameterSource parameters = table.bind("after", after).addValue("size", chunkSize);
+            List<Map<String, Object>> rows = source.queryForList(table.selectChunkSql(after != null), parameters);
+            boolean lastChunk = rows.size() < chunkSize;
+            List<Object> last = rows.isEmpty() ? null : table.keyOf(rows.get(rows.size() - 1));
+            // The last chunk has no upper bound, so target rows beyond the end of the source are found too
+            parameters = table.bind("after", after).addValues(table.bind("last", last).getValues());
+            Map<List<Object>, Map<String, Object>> targetRows = target.queryForList(table.selectRangeSql(after != null, !lastChunk), parameters)
+                    .stream().collect(Collectors.toMap(table::keyOf, row -> row, (first, second) -> first, HashMap::new));
+            List<Map<String, Object>> inserts = new ArrayList<>();
+            List<Map<String, Object>> updates = new ArrayList<>();
+            for(Map<String, Object> row : rows){
+                Map<String, Object> current = targetRows.remove(table.keyOf(row));
+                if(current == null){
+                    inserts.add(row);
+                }else if(!Objects.equals(current, row)){
+                    updates.add(row);
+                }
+            }
+            for(Map<String, Object> extra : targetRows.values()) deletes.computeIfAbsent(table, key -> new ArrayList<>()).add(table.keyParameters(extra));
+            if(!inserts.isEmpty()) failed += apply(target, table.insertSql(inserts.get(0).keySet()), inserts);
+            if(!updates.isEmpty()) failed += apply(target, table.updateSql(updates.get(0).keySet()), updates);
+            changed += inserts.size() + updates.size();
+            if(lastChunk) return new SyncResult(changed, failed);
+            after = last;
+        }
+    }
+
+    /**
+     * Runs the statement for every row as one batch, and row by row if the batch hits a constraint. Returns the
+     * rows that could not be written; a pass that is still racing with writes picks them up next time.
+     */
+    private static long apply(NamedParameterJdbcTemplate target, String sql, List<Map<String, Object>> rows){
+        if(rows.isEmpty()) return 0;
+        SqlParameterSource[] batch = rows.stream().map(MapSqlParameterSource::new).toArray(SqlParameterSource[]::new);
+        try{
+            target.batchUpdate(sql, batch);
+            return 0;
+        }catch (DataIntegrityViolationException exception){
+            long failed = 0;
+            for(SqlParameterSource row : batch){
+                try{
+                    target.update(sql, row);
+                }catch (DuplicateKeyException duplicate){
+                    // Written by the batch before it failed
+                }catch (DataIntegrityViolationException violation){
+                    failed++;
+                }
+            }
+            return failed;
+        }
+    }
+
+    private record SyncResult(long changed, long failed) {}
+
+    private record TableSpec(String name, List<String> keys) {
+
+        private List<Object> keyOf(Map<String, Object> row){
+            List<Object> key = new ArrayList<>(keys.size());
+            for(String column : keys) key.add(row.get(column));
+            return key;
+        }
+
+        private Map<String, Object> keyParameters(Map<String, Object> row){
+            Map<String, Object> parameters = new HashMap<>();
+            for(String column : keys) parameters.put(column, row.get(column));
+            return parameters;
+        }
+
+        private MapSqlParameterSource bind(String prefix, List<Object> key){
+            MapSqlParameterSource parameters = new MapSqlParameterSource();
+            for(int i = 0; i < keys.size(); i++) parameters.addValue(prefix + i, key == null ? null : key.get(i));
+            return parameters;
+        }
+
+        private String selectChunkSql(boolean bounded){
+            return "SELECT * FROM " + name + (bounded ? " WHERE " + compare(">", "after") : "") + " ORDER BY " + String.join(", ", keys) + " LIMIT :size";
+        }
+
+        private String selectRangeSql(boolean lowerBound, boolean upperBound){
+            List<String> conditions = new ArrayList<>(2);
+            if(lowerBound) conditions.add(compare(">", "after"));
+            if(upperBound) conditions.add(compare("<=", "last"));
+            return "SELECT * FROM " + name + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+        }
+
+        private String insertSql(Iterable<String> columns){
+            List<String> names = new ArrayList<>();
+            columns.forEach(names::add);
+            return "INSERT INTO " + name + " (" + String.join(", ", names) + ") VALUES (:" + String.join(", :", names) + ")";
+        }
+
+        private String updateSql(Iterable<String> columns){
+            List<String> assignments = new ArrayList<>();
+            for(String column : columns){
+                if(keys.stream().noneMatch(column::equalsIgnoreCase)) assignments.add(column + " = :" + column);
+            }
+            return "UPDATE " + name + " SET " + String.join(", ", assignments) + " WHERE " + matchKey(columns);
+        }
+
+        private String deleteSql(){
+            return "DELETE FROM " + name + " WHERE " + matchKey(keys);
+        }
+
+        private String matchKey(Iterable<String> columns){
+            List<String> conditions = new ArrayList<>();
+            for(String column : columns){
+                if(keys.stream().anyMatch(column::equalsIgnoreCase)) conditions.add(column + " = :" + column);
+            }
+            return String.join(" AND ", conditions);
+        }
+
+        // Row values compare keys of several columns in key order
+        private String compare(String operator, String prefix){
+            List<String> parameters = new ArrayList<>(keys.size());
+            for(int i = 0; i < keys.size(); i++) parameters.add(":" + prefix + i);
+            return "(" + String.join(", ", keys) + ") " + operator + " (" + String.join(", ", parameters) + ")";
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.vladimirpandurov.invoice_manager01.tenant;
+
+import com.vladimirpandurov.invoice_manager01.domain.Tenant;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Brings every tenant database on the shards up to date at startup. Without sharding the tenant tables share the
+ * application database and Spring Boot's own Flyway run covers them.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.flyway.enabled", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class TenantSchemaMigrator {
+
+    public static final String TENANT_MIGRATIONS = "classpath:db/tenant-migration";
+    private final ShardRouter shardRouter;
+    private final TenantDirectory tenantDirectory;
+
+    @PostConstruct
+    public void migrateAll(){
+        if(!shardRouter.isSharded()) return;
+        for(Tenant tenant : tenantDirectory.getTenants()){
+            migrate(tenant.getShard(), tenant.getId());
+        }
+    }
+
+    public void migrate(String shard, Long tenantId){
+        int applied = Flyway.configure()
+                .dataSource(shardRouter.getTenantDataSource(shard, tenantId))
+                .locations(TENANT_MIGRATIONS)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .outOfOrder(true)
+                .load()
+                .migrate()
+                .migrationsExecuted;
+        if(applied > 0) log.info("Applied {} migrations to database {} on shard {}", applied, shardRouter.getDatabase(tenantId), shard);
+    }
+}
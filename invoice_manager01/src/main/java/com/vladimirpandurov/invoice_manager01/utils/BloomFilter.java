@@ -0,0 +1,77 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over strings. A negative answer from {@link #mightContain(String)} is exact,
+ * a positive answer has to be confirmed against the real data.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate){
+        long expected = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, (bits + 63) >>> 6);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount << 6;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) this.bitSize / expected * Math.log(2)));
+    }
+
+    public void put(String value){
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for(int i = 0; i < hashFunctions; i++){
+            setBit(Math.floorMod(hash1 + i * hash2, bitSize));
+        }
+    }
+
+    public boolean mightContain(String value){
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for(int i = 0; i < hashFunctions; i++){
+            long index = Math.floorMod(hash1 + i * hash2, bitSize);
+            if((words.get((int) (index >>> 6)) & (1L << index)) == 0) return false;
+        }
+        return true;
+    }
+
+    public double expectedFalsePositiveRate(long insertions){
+        return Math.pow(1 - Math.exp(-hashFunctions * (double) insertions / bitSize), hashFunctions);
+    }
+
+    public long bitSize(){
+        return this.bitSize;
+    }
+
+    private void setBit(long index){
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do{
+            current = words.get(word);
+            if((current & mask) != 0) return;
+        }while (!words.compareAndSet(word, current, current | mask));
+    }
+
+    private static long hash(String value){
+        long hash = 0xCBF29CE484222325L;
+        for(int i = 0; i < value.length(); i++){
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash){
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,31 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+/**
+ * Entity tags derived from the version columns, so every instance hands out the same tag for the same state.
+ */
+public class ETagUtils {
+
+    private static final String WEAK_PREFIX = "W/";
+
+    public static String of(String entity, Object id, Object version){
+        return "\"" + entity + "-" + id + "-" + version + "\"";
+    }
+
+    /**
+     * True when an {@code If-None-Match} header matches the tag: {@code *}, or a list containing the tag.
+     * The comparison is weak, as RFC 9110 prescribes for this header, so {@code W/} prefixes are ignored.
+     */
+    public static boolean matches(String ifNoneMatch, String eTag){
+        if(ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        String tag = stripWeak(eTag);
+        for(String candidate : ifNoneMatch.split(",")){
+            String trimmed = candidate.trim();
+            if(trimmed.equals("*") || stripWeak(trimmed).equals(tag)) return true;
+        }
+        return false;
+    }
+
+    private static String stripWeak(String eTag){
+        return eTag.startsWith(WEAK_PREFIX) ? eTag.substring(WEAK_PREFIX.length()) : eTag;
+    }
+}
@@ -2,7 +2,6 @@ package com.vladimirpandurov.invoice_manager01.utils;
 
 import com.auth0.jwt.exceptions.InvalidClaimException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
 import com.vladimirpandurov.invoice_manager01.exception.ApiException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,9 +12,9 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.LockedException;
 
-import java.io.OutputStream;
 import java.time.LocalDateTime;
 
+import static com.vladimirpandurov.invoice_manager01.utils.ResponseUtils.writeResponse;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
@@ -23,32 +22,30 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 @Slf4j
 public class ExceptionUtils {
 
+    private static final String GENERIC_ERROR_MESSAGE = "An error occurred. Please try again.";
+
     public static void processError(HttpServletRequest request, HttpServletResponse response, Exception exception){
-        if(exception instanceof ApiException ||
-        exception instanceof DisabledException ||
-        exception instanceof LockedException ||
-        exception instanceof BadCredentialsException ||
-        exception instanceof InvalidClaimException ||
-        exception instanceof TokenExpiredException){
+        if(isClientError(exception)){
             HttpResponse httpResponse = getHttpResponse(response, exception.getMessage(), BAD_REQUEST);
             writeResponse(response, httpResponse);
         }else {
-            HttpResponse httpResponse = getHttpResponse(response, "An error occurred. Please try again.", INTERNAL_SERVER_ERROR);
+            HttpResponse httpResponse = getHttpResponse(response, GENERIC_ERROR_MESSAGE, INTERNAL_SERVER_ERROR);
             writeResponse(response, httpResponse);
         }
 
     }
 
-    private static void writeResponse(HttpServletResponse response, HttpResponse httpResponse){
-        OutputStream out;
-        try{
-            out = response.getOutputStream();
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.writeValue(out, httpResponse);
-            out.flush();
-        }catch (Exception exception){
+    public static String getErrorMessage(Exception exception){
+        return isClientError(exception) ? exception.getMessage() : GENERIC_ERROR_MESSAGE;
+    }
 
-        }
+    public static boolean isClientError(Exception exception){
+        return exception instanceof ApiException ||
+                exception instanceof DisabledException ||
+                exception instanceof LockedException ||
+                exception instanceof BadCredentialsException ||
+                exception instanceof InvalidClaimException ||
+                exception instanceof TokenExpiredException;
     }
 
     private static HttpResponse getHttpResponse(HttpServletResponse response, String message, HttpStatus httpStatus){
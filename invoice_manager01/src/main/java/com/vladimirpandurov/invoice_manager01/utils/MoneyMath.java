@@ -0,0 +1,55 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import java.math.RoundingMode;
+
+/**
+ * Allocation-free arithmetic on amounts in currency minor units. Quantities are in thousandths, discounts and
+ * tax rates in basis points. Every operation rounds exactly once, with the same result as the equivalent
+ * {@code BigDecimal} computation, and throws {@link ArithmeticException} instead of overflowing.
+ */
+public class MoneyMath {
+
+    public static final long QUANTITY_SCALE = 1_000;
+    public static final long BASIS_POINTS = 10_000;
+
+    public static long lineTotal(long quantityMilli, long unitPrice, int discountBasisPoints, RoundingMode roundingMode){
+        long gross = Math.multiplyExact(quantityMilli, unitPrice);
+        return scale(gross, BASIS_POINTS - discountBasisPoints, QUANTITY_SCALE * BASIS_POINTS, roundingMode);
+    }
+
+    public static long tax(long amount, int rateBasisPoints, RoundingMode roundingMode){
+        return scale(amount, rateBasisPoints, BASIS_POINTS, roundingMode);
+    }
+
+    /**
+     * Returns {@code value * multiplier / divisor} rounded once. The value is split around the divisor so the
+     * intermediate product never needs more than 64 bits.
+     */
+    public static long scale(long value, long multiplier, long divisor, RoundingMode roundingMode){
+        long whole = Math.floorDiv(value, divisor);
+        long fraction = Math.floorMod(value, divisor);
+        long fractionProduct = Math.multiplyExact(fraction, multiplier);
+        long quotient = Math.addExact(Math.multiplyExact(whole, multiplier), Math.floorDiv(fractionProduct, divisor));
+        return round(quotient, Math.floorMod(fractionProduct, divisor), divisor, roundingMode);
+    }
+
+    /**
+     * Rounds {@code quotient + remainder / divisor} where {@code quotient} is the floor and
+     * {@code 0 <= remainder < divisor}.
+     */
+    private static long round(long quotient, long remainder, long divisor, RoundingMode roundingMode){
+        if(remainder == 0) return quotient;
+        boolean negative = quotient < 0;
+        int half = Long.compare(remainder, divisor - remainder);
+        return switch (roundingMode) {
+            case FLOOR -> quotient;
+            case CEILING -> quotient + 1;
+            case DOWN -> negative ? quotient + 1 : quotient;
+            case UP -> negative ? quotient : quotient + 1;
+            case HALF_UP -> half > 0 || (half == 0 && !negative) ? quotient + 1 : quotient;
+            case HALF_DOWN -> half > 0 || (half == 0 && negative) ? quotient + 1 : quotient;
+            case HALF_EVEN -> half > 0 || (half == 0 && (quotient & 1) != 0) ? quotient + 1 : quotient;
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+    }
+}
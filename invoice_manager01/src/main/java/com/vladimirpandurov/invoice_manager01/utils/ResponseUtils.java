@@ -0,0 +1,29 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Slf4j
+public class ResponseUtils {
+
+    private static final ObjectWriter HTTP_RESPONSE_WRITER = new ObjectMapper()
+            .registerModule(new BlackbirdModule())
+            .writerFor(HttpResponse.class);
+
+    public static void writeResponse(HttpServletResponse response, HttpResponse httpResponse){
+        try{
+            OutputStream out = response.getOutputStream();
+            HTTP_RESPONSE_WRITER.writeValue(out, httpResponse);
+            out.flush();
+        }catch (IOException exception){
+            log.error(exception.getMessage());
+        }
+    }
+}
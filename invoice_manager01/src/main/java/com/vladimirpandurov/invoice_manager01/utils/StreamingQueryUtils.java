@@ -0,0 +1,24 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Statements for reading large result sets row by row. Connector/J only streams with a fetch size of
+ * {@code Integer.MIN_VALUE}; other drivers, such as the H2 one the tests run on, reject a negative fetch size
+ * and page with a positive one instead.
+ */
+public class StreamingQueryUtils {
+
+    private static final String MYSQL = "MySQL";
+    private static final int MYSQL_STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    private static final int FETCH_SIZE = 1_000;
+
+    public static PreparedStatement prepareStreaming(Connection connection, String query) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(MYSQL.equals(connection.getMetaData().getDatabaseProductName()) ? MYSQL_STREAMING_FETCH_SIZE : FETCH_SIZE);
+        return statement;
+    }
+}
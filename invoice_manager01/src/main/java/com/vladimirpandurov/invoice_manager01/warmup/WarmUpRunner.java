@@ -0,0 +1,202 @@
+package com.vladimirpandurov.invoice_manager01.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.domain.Role;
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.domain.UserPrincipal;
+import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import com.vladimirpandurov.invoice_manager01.dto.UserData;
+import com.vladimirpandurov.invoice_manager01.provider.TokenProvider;
+import com.vladimirpandurov.invoice_manager01.repository.EventRepository;
+import com.vladimirpandurov.invoice_manager01.repository.RoleRepository;
+import com.vladimirpandurov.invoice_manager01.service.RoleService;
+import com.vladimirpandurov.invoice_manager01.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.vladimirpandurov.invoice_manager01.dtomapper.UserDTOMapper.fromUser;
+import static com.vladimirpandurov.invoice_manager01.enumeration.EventType.LOGIN_ATTEMPT_SUCCESS;
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.READ_USER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.RoleType.ROLE_USER;
+
+/**
+ * Primes the cold paths of a fresh node before it takes traffic. Spring Boot reports readiness only after every
+ * {@link ApplicationRunner} has returned, so the node stays REFUSING_TRAFFIC until this finishes. Steps run in
+ * order within one time budget; once the budget is spent the remaining steps are skipped, never the readiness.
+ * <p>
+ * The CPU-bound steps repeat synthetic work in batches until a batch is no longer faster than the best one so
+ * far, which is when the JIT has stopped paying off for that path.
+ */
+@Component
+@ConditionalOnProperty(name = "application.warmup.enabled", matchIfMissing = true)
+@Slf4j
+public class WarmUpRunner implements ApplicationRunner {
+
+    private static final String WARMUP_EMAIL = "warmup@localhost";
+    private static final String WARMUP_PASSWORD = "warm-up-password";
+    private static final double SETTLED_RATIO = 0.9;
+    private static final int SETTLED_BATCHES = 3;
+    private static final int MAX_BATCHES = 100;
+    private static final int ROLE_CATALOG_SIZE = 100;
+    private final DataSource dataSource;
+    private final RoleRepository<Role> roleRepository;
+    private final RoleService roleService;
+    private final EventRepository eventRepository;
+    private final UserService userService;
+    private final TokenProvider tokenProvider;
+    private final BCryptPasswordEncoder encoder;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration budget;
+    private final int hotUsers;
+
+    public WarmUpRunner(DataSource dataSource, RoleRepository<Role> roleRepository, RoleService roleService,
+                        EventRepository eventRepository, UserService userService, TokenProvider tokenProvider,
+                        BCryptPasswordEncoder encoder, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                        @Value("${application.warmup.budget:30s}") Duration budget,
+                        @Value("${application.warmup.hot-users:200}") int hotUsers){
+        this.dataSource = dataSource;
+        this.roleRepository = roleRepository;
+        this.roleService = roleService;
+        this.eventRepository = eventRepository;
+        this.userService = userService;
+        this.tokenProvider = tokenProvider;
+        this.encoder = encoder;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.budget = budget;
+        this.hotUsers = hotUsers;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        Map<String, Long> report = warmUp(start + budget.toNanos());
+        log.info("Warm-up finished in {} ms: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), report);
+    }
+
+    /**
+     * Runs the steps in order until the deadline and returns the milliseconds each step took, leaving out the
+     * skipped ones.
+     */
+    Map<String, Long> warmUp(long deadline){
+        Role role = Role.builder().name(ROLE_USER.name()).permission(READ_USER.getAuthority()).permissionMask(READ_USER.getMask()).build();
+        User user = User.builder().id(0L).firstName("Warm").lastName("Up").email(WARMUP_EMAIL).enabled(true).isNotLocked(true)
+                .createdAt(LocalDateTime.now()).build();
+        UserPrincipal principal = new UserPrincipal(user, role);
+        UserDTO userDTO = fromUser(user, role);
+        Map<String, Long> report = new LinkedHashMap<>();
+        step(report, "connection-pool", deadline, this::openPool);
+        step(report, "role-catalog", deadline, () -> roleRepository.list(0, ROLE_CATALOG_SIZE));
+        step(report, "hot-users", deadline, () -> loadHotUsers(deadline));
+        step(report, "token", deadline, () -> repeatUntilSettled(200, deadline,
+                () -> tokenProvider.getPermissions(tokenProvider.verify(tokenProvider.createAccessToken(principal)))));
+        step(report, "password", deadline, () -> {
+            String passwordHash = encoder.encode(WARMUP_PASSWORD);
+            repeatUntilSettled(1, deadline, () -> encoder.matches(WARMUP_PASSWORD, passwordHash));
+        });
+        step(report, "serialization", deadline, () -> repeatUntilSettled(500, deadline, () -> serialize(userDTO)));
+        return report;
+    }
+
+    private void step(Map<String, Long> report, String name, long deadline, Runnable step){
+        if(System.nanoTime() >= deadline){
+            log.warn("Warm-up budget of {} spent, skipping step {}", budget, name);
+            return;
+        }
+        long start = System.nanoTime();
+        try{
+            step.run();
+        }catch (Exception exception){
+            log.warn("Warm-up step {} failed: {}", name, exception.getMessage());
+        }
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("startup.warmup", "step", name).record(elapsed, TimeUnit.NANOSECONDS);
+        report.put(name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * Holds the pool's minimum number of connections at once so all of them are physically open, not just the
+     * first one.
+     */
+    private void openPool(){
+        int size = dataSource instanceof HikariDataSource hikari ? Math.max(hikari.getMinimumIdle(), 1) : 1;
+        List<Connection> connections = new ArrayList<>(size);
+        try{
+            for(int i = 0; i < size; i++) connections.add(dataSource.getConnection());
+        }catch (SQLException exception){
+            throw new IllegalStateException(exception.getMessage(), exception);
+        }finally {
+            connections.forEach(this::close);
+        }
+    }
+
+    private void loadHotUsers(long deadline){
+        for(String email : eventRepository.getRecentEmails(LOGIN_ATTEMPT_SUCCESS, hotUsers)){
+            if(System.nanoTime() >= deadline) return;
+            try{
+                roleService.getRoleByUserId(userService.getUserByEmail(email).getId());
+            }catch (Exception exception){
+                log.debug("Skipping warm-up of user {}: {}", email, exception.getMessage());
+            }
+        }
+    }
+
+    private void repeatUntilSettled(int batchSize, long deadline, Runnable operation){
+        long best = Long.MAX_VALUE;
+        int settled = 0;
+        for(int batch = 0; batch < MAX_BATCHES && settled < SETTLED_BATCHES && System.nanoTime() < deadline; batch++){
+            long start = System.nanoTime();
+            for(int i = 0; i < batchSize; i++) operation.run();
+            long elapsed = System.nanoTime() - start;
+            if(elapsed < best * SETTLED_RATIO){
+                settled = 0;
+            }else {
+                settled++;
+            }
+            best = Math.min(best, elapsed);
+        }
+    }
+
+    private void serialize(UserDTO userDTO){
+        try{
+            objectMapper.writeValueAsBytes(HttpResponse.builder()
+                    .timeStamp(LocalDateTime.now().toString())
+                    .data(new UserData(userDTO))
+                    .message("Warm-up")
+                    .status(HttpStatus.OK)
+                    .statusCode(HttpStatus.OK.value())
+                    .build());
+        }catch (Exception exception){
+            throw new IllegalStateException(exception.getMessage(), exception);
+        }
+    }
+
+    private void close(Connection connection){
+        try{
+            connection.close();
+        }catch (SQLException exception){
+            log.debug("Could not return warm-up connection: {}", exception.getMessage());
+        }
+    }
+}
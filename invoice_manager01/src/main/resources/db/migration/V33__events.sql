@@ -0,0 +1,21 @@
+-- Audit events of the authentication flows, read newest first per user through IX_Events_User_Id.
+CREATE TABLE IF NOT EXISTS Events
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id     BIGINT UNSIGNED DEFAULT NULL,
+    email       VARCHAR(100) DEFAULT NULL,
+    type        VARCHAR(50) NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    ip_address  VARCHAR(100) DEFAULT NULL,
+    device      VARCHAR(255) DEFAULT NULL,
+    created_at  DATETIME NOT NULL,
+    INDEX IX_Events_User_Id (user_id, id)
+);
+
+-- Databases that already had an Events table get the index here.
+SET @statement = IF(NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Events' AND index_name = 'IX_Events_User_Id'),
+    'CREATE INDEX IX_Events_User_Id ON Events (user_id, id)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
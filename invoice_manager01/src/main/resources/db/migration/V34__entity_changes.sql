@@ -0,0 +1,18 @@
+-- Changes to cached entities, polled by every node's CacheInvalidationBus from the last id it has seen.
+-- IX_EntityChanges_Created_At serves the purge of changes past their retention.
+CREATE TABLE IF NOT EXISTS EntityChanges
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    entity      VARCHAR(30) NOT NULL,
+    entity_id   BIGINT UNSIGNED NOT NULL,
+    created_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX IX_EntityChanges_Created_At (created_at)
+);
+
+-- Databases that already had an EntityChanges table get the index here.
+SET @statement = IF(NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'EntityChanges' AND index_name = 'IX_EntityChanges_Created_At'),
+    'CREATE INDEX IX_EntityChanges_Created_At ON EntityChanges (created_at)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,21 @@
+-- Background jobs, and the permission to start invoice jobs for the administrator roles.
+CREATE TABLE IF NOT EXISTS BackgroundJobs
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    type        VARCHAR(30) NOT NULL,
+    tenant_id   BIGINT UNSIGNED DEFAULT NULL,
+    status      VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    running_key VARCHAR(60) DEFAULT NULL,
+    processed   BIGINT NOT NULL DEFAULT 0,
+    message     VARCHAR(255) DEFAULT NULL,
+    started_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    updated_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    CONSTRAINT UQ_BackgroundJobs_Running_Key UNIQUE (running_key)
+);
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Roles'),
+    'UPDATE Roles SET permission = CONCAT(permission, '',MANAGE:INVOICE'') WHERE name IN (''ROLE_ADMIN'', ''ROLE_SYSADMIN'') AND permission NOT LIKE ''%MANAGE:INVOICE%''',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,20 @@
+-- Responses stored per scoped Idempotency-Key. IX_IdempotencyKeys_Expires_At serves the purge of expired keys.
+CREATE TABLE IF NOT EXISTS IdempotencyKeys
+(
+    key_hash        CHAR(64) NOT NULL PRIMARY KEY,
+    status          VARCHAR(20) NOT NULL DEFAULT 'IN_PROGRESS',
+    response_status INT DEFAULT NULL,
+    content_type    VARCHAR(100) DEFAULT NULL,
+    location        VARCHAR(255) DEFAULT NULL,
+    body            MEDIUMBLOB DEFAULT NULL,
+    expires_at      DATETIME NOT NULL,
+    INDEX IX_IdempotencyKeys_Expires_At (expires_at)
+);
+
+-- Databases that already had an IdempotencyKeys table get the index here.
+SET @statement = IF(NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'IdempotencyKeys' AND index_name = 'IX_IdempotencyKeys_Expires_At'),
+    'CREATE INDEX IX_IdempotencyKeys_Expires_At ON IdempotencyKeys (expires_at)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,9 @@
+-- Users.version guards profile updates and is read by every user query.
+-- Skipped on an empty database, where schema.sql creates the column.
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Users')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.COLUMNS WHERE table_schema = DATABASE() AND table_name = 'Users' AND column_name = 'version'),
+    'ALTER TABLE Users ADD COLUMN version INT UNSIGNED NOT NULL DEFAULT 0 AFTER image_url',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
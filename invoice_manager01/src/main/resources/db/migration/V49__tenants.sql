@@ -0,0 +1,27 @@
+-- The tenant directory, the tenant of each user, and the permission to manage tenants for the system
+-- administrator. CREATE TABLE IF NOT EXISTS alone does not reach databases whose Users table predates tenants.
+CREATE TABLE IF NOT EXISTS Tenants
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name        VARCHAR(100) NOT NULL,
+    shard       VARCHAR(50) NOT NULL,
+    status      VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    created_at  DATETIME DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT UQ_Tenants_Name UNIQUE (name)
+);
+
+-- Skipped on an empty database, where schema.sql creates the column.
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Users')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.COLUMNS WHERE table_schema = DATABASE() AND table_name = 'Users' AND column_name = 'tenant_id'),
+    'ALTER TABLE Users ADD COLUMN tenant_id BIGINT UNSIGNED DEFAULT NULL AFTER version, ADD FOREIGN KEY (tenant_id) REFERENCES Tenants (id) ON DELETE RESTRICT ON UPDATE CASCADE',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Roles'),
+    'UPDATE Roles SET permission = CONCAT(permission, '',MANAGE:TENANT'') WHERE name = ''ROLE_SYSADMIN'' AND permission NOT LIKE ''%MANAGE:TENANT%''',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,7 @@
+-- Counters invoice numbers are reserved from in blocks, one row per sequence key.
+CREATE TABLE IF NOT EXISTS InvoiceNumberSequences
+(
+    sequence_key VARCHAR(50) NOT NULL PRIMARY KEY,
+    next_value   BIGINT UNSIGNED NOT NULL DEFAULT 1,
+    format       VARCHAR(50) NOT NULL DEFAULT 'INV-%08d'
+);
@@ -0,0 +1,65 @@
+-- Customers, invoices and their lines. Created as tenant-schema.sql has them, indexes included: with out-of-order
+-- migrations this can run after V29 and V45, which skip a database without an Invoices table.
+CREATE TABLE IF NOT EXISTS Customers
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name        VARCHAR(100) NOT NULL,
+    email       VARCHAR(100) NOT NULL,
+    type        VARCHAR(20) NOT NULL DEFAULT 'INDIVIDUAL',
+    status      VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    address     VARCHAR(255) DEFAULT NULL,
+    phone       VARCHAR(30) DEFAULT NULL,
+    created_at  DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS Invoices
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    invoice_number  VARCHAR(50) NOT NULL,
+    customer_id     BIGINT UNSIGNED NOT NULL,
+    status          VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    issued_at       DATE NOT NULL,
+    due_at          DATE NOT NULL,
+    currency        CHAR(3) NOT NULL,
+    subtotal        BIGINT NOT NULL DEFAULT 0,
+    tax             BIGINT NOT NULL DEFAULT 0,
+    total           BIGINT NOT NULL DEFAULT 0,
+    amount_paid     BIGINT NOT NULL DEFAULT 0,
+    template_id     BIGINT UNSIGNED DEFAULT NULL,
+    billing_period  DATE DEFAULT NULL,
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    version         INT UNSIGNED NOT NULL DEFAULT 0,
+    FOREIGN KEY (customer_id) REFERENCES Customers (id) ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT UQ_Invoices_Invoice_Number UNIQUE (invoice_number),
+    CONSTRAINT UQ_Invoices_Template_Period UNIQUE (template_id, billing_period),
+    INDEX IX_Invoices_Customer_Currency (customer_id, currency, status),
+    INDEX IX_Invoices_Issued (issued_at, total),
+    INDEX IX_Invoices_Status_Issued (status, issued_at, total),
+    INDEX IX_Invoices_Customer_Issued (customer_id, issued_at, total, status),
+    INDEX IX_Invoices_Total (total, issued_at),
+    INDEX IX_Invoices_Status_Total (status, total, issued_at),
+    INDEX IX_Invoices_Customer_Total (customer_id, total, issued_at, status)
+);
+
+CREATE TABLE IF NOT EXISTS InvoiceLines
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    invoice_id      BIGINT UNSIGNED NOT NULL,
+    description     VARCHAR(255) NOT NULL,
+    quantity_milli  BIGINT NOT NULL,
+    unit_price      BIGINT NOT NULL,
+    discount_bp     INT NOT NULL DEFAULT 0,
+    tax_rate_bp     INT NOT NULL DEFAULT 0,
+    line_total      BIGINT NOT NULL,
+    line_tax        BIGINT NOT NULL,
+    FOREIGN KEY (invoice_id) REFERENCES Invoices (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    INDEX IX_InvoiceLines_Tax_Rate (tax_rate_bp, invoice_id, id)
+);
+
+-- Databases that already had InvoiceLines get the index of the tax recalculation here.
+SET @statement = IF(NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'InvoiceLines' AND index_name = 'IX_InvoiceLines_Tax_Rate'),
+    'CREATE INDEX IX_InvoiceLines_Tax_Rate ON InvoiceLines (tax_rate_bp, invoice_id, id)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,75 @@
+-- Recurring invoice templates, their runs and the checkpoints of each run's partitions. Created as
+-- tenant-schema.sql has them: with out-of-order migrations this can run after V38, which skips a database without
+-- a RecurringInvoiceCheckpoints table.
+CREATE TABLE IF NOT EXISTS RecurringInvoiceTemplates
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    customer_id     BIGINT UNSIGNED NOT NULL,
+    currency        CHAR(3) NOT NULL,
+    interval_months INT NOT NULL DEFAULT 1,
+    due_days        INT NOT NULL DEFAULT 30,
+    next_run_date   DATE NOT NULL,
+    active          BOOLEAN DEFAULT TRUE,
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (customer_id) REFERENCES Customers (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    INDEX IX_RecurringInvoiceTemplates_Next_Run (active, next_run_date)
+);
+
+CREATE TABLE IF NOT EXISTS RecurringInvoiceTemplateLines
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    template_id     BIGINT UNSIGNED NOT NULL,
+    description     VARCHAR(255) NOT NULL,
+    quantity_milli  BIGINT NOT NULL,
+    unit_price      BIGINT NOT NULL,
+    discount_bp     INT NOT NULL DEFAULT 0,
+    tax_rate_bp     INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (template_id) REFERENCES RecurringInvoiceTemplates (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS RecurringInvoiceRuns
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    run_date        DATE NOT NULL,
+    partitions      INT NOT NULL,
+    status          VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    started_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT UQ_RecurringInvoiceRuns_Run_Date UNIQUE (run_date)
+);
+
+CREATE TABLE IF NOT EXISTS RecurringInvoiceCheckpoints
+(
+    run_id              BIGINT UNSIGNED NOT NULL,
+    partition_number    INT NOT NULL,
+    last_template_id    BIGINT UNSIGNED NOT NULL DEFAULT 0,
+    end_template_id     BIGINT UNSIGNED NOT NULL DEFAULT 9223372036854775807,
+    invoices_created    BIGINT NOT NULL DEFAULT 0,
+    completed           BOOLEAN DEFAULT FALSE,
+    PRIMARY KEY (run_id, partition_number),
+    FOREIGN KEY (run_id) REFERENCES RecurringInvoiceRuns (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- Invoices created before recurring billing get the template and period they were generated for, unique so a
+-- rerun of a period cannot invoice a template twice.
+SET @statement = IF(NOT EXISTS(SELECT 1 FROM information_schema.COLUMNS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND column_name = 'template_id'),
+    'ALTER TABLE Invoices ADD COLUMN template_id BIGINT UNSIGNED DEFAULT NULL AFTER amount_paid, ADD COLUMN billing_period DATE DEFAULT NULL AFTER template_id',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'UQ_Invoices_Template_Period'),
+    'ALTER TABLE Invoices ADD CONSTRAINT UQ_Invoices_Template_Period UNIQUE (template_id, billing_period)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+-- Databases that already had RecurringInvoiceTemplates get the index of the due-template scan here.
+SET @statement = IF(NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'RecurringInvoiceTemplates' AND index_name = 'IX_RecurringInvoiceTemplates_Next_Run'),
+    'CREATE INDEX IX_RecurringInvoiceTemplates_Next_Run ON RecurringInvoiceTemplates (active, next_run_date)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,9 @@
+-- Invoices.version is bumped by every invoice update and serves as the ETag of the invoice.
+-- Skipped on an empty database, where tenant-schema.sql creates the column.
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.COLUMNS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND column_name = 'version'),
+    'ALTER TABLE Invoices ADD COLUMN version INT UNSIGNED NOT NULL DEFAULT 0',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
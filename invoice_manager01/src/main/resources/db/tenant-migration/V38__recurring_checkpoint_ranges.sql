@@ -0,0 +1,18 @@
+-- Recurring invoice partitions are id ranges ending at end_template_id instead of MOD(id, partitions) classes.
+-- Skipped on an empty database, where tenant-schema.sql creates the column.
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'RecurringInvoiceCheckpoints')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.COLUMNS WHERE table_schema = DATABASE() AND table_name = 'RecurringInvoiceCheckpoints' AND column_name = 'end_template_id'),
+    'ALTER TABLE RecurringInvoiceCheckpoints ADD COLUMN end_template_id BIGINT UNSIGNED NOT NULL DEFAULT 9223372036854775807 AFTER last_template_id',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+-- Checkpoints of unfinished runs still hold MOD positions. Dropping them lets the takeover of the run split it
+-- into ranges again; templates it already advanced are no longer due, so nothing is invoiced twice.
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'RecurringInvoiceCheckpoints'),
+    'DELETE c FROM RecurringInvoiceCheckpoints c JOIN RecurringInvoiceRuns r ON r.id = c.run_id WHERE r.status <> ''COMPLETED''',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,75 @@
+-- Indexes of the invoice listing (GET /invoice). Each serves one filter prefix and sort column, so the page of ids
+-- is read in index order and stops after LIMIT rows instead of sorting every match.
+--
+-- Write cost: every invoice insert maintains each secondary index, and so do updates of the indexed columns:
+-- status on payment, total on tax recalculation. issued_at and customer_id never change after insert. The entries
+-- are narrow (at most four fixed-size columns plus the id), invoices are written once per billing run or payment,
+-- and the listing is the read path of every invoice screen; without these it sorts every matching row per page.
+-- Kept to one index per prefix and sort column: customer indexes carry status last rather than having
+-- (customer_id, status, ...) twins, since a customer's invoices are few and the status check is made on the index
+-- entry. IX_Invoices_Customer_Status_Issued is dropped for that reason.
+-- Skipped on an empty database, where tenant-schema.sql creates the indexes.
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Customer_Status_Issued'),
+    'DROP INDEX IX_Invoices_Customer_Status_Issued ON Invoices',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+-- Recreated with status as a trailing column.
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Customer_Issued')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Customer_Issued' AND column_name = 'status'),
+    'DROP INDEX IX_Invoices_Customer_Issued ON Invoices',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Issued'),
+    'CREATE INDEX IX_Invoices_Issued ON Invoices (issued_at, total)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Status_Issued'),
+    'CREATE INDEX IX_Invoices_Status_Issued ON Invoices (status, issued_at, total)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Customer_Issued'),
+    'CREATE INDEX IX_Invoices_Customer_Issued ON Invoices (customer_id, issued_at, total, status)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Total'),
+    'CREATE INDEX IX_Invoices_Total ON Invoices (total, issued_at)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Status_Total'),
+    'CREATE INDEX IX_Invoices_Status_Total ON Invoices (status, total, issued_at)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @statement = IF(EXISTS(SELECT 1 FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = 'Invoices')
+        AND NOT EXISTS(SELECT 1 FROM information_schema.STATISTICS WHERE table_schema = DATABASE() AND table_name = 'Invoices' AND index_name = 'IX_Invoices_Customer_Total'),
+    'CREATE INDEX IX_Invoices_Customer_Total ON Invoices (customer_id, total, issued_at, status)',
+    'DO 0');
+PREPARE migration FROM @statement;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
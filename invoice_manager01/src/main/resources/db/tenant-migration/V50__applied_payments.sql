@@ -0,0 +1,10 @@
+-- Applied statement payments, so reconciling a statement again does not pay its lines twice.
+CREATE TABLE IF NOT EXISTS AppliedPayments
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    payment_key CHAR(64) NOT NULL,
+    invoice_id  BIGINT UNSIGNED NOT NULL,
+    amount      BIGINT NOT NULL,
+    applied_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    CONSTRAINT UQ_AppliedPayments_Payment_Key UNIQUE (payment_key)
+);
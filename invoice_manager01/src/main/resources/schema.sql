@@ -0,0 +1,136 @@
+-- Creates the schema of an empty database. Existing databases are brought up to date by the scripts in
+-- db/migration, so every change here needs a migration as well.
+
+-- Directory of tenants. Each tenant's customers and invoices live in their own database, named after the
+-- tenant id, on the shard given here; tenant-schema.sql creates its tables.
+CREATE TABLE IF NOT EXISTS Tenants
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name        VARCHAR(100) NOT NULL,
+    shard       VARCHAR(50) NOT NULL,
+    status      VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    created_at  DATETIME DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT UQ_Tenants_Name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS Users
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    first_name  VARCHAR(50) NOT NULL,
+    last_name   VARCHAR(50) NOT NULL,
+    email       VARCHAR(100) NOT NULL,
+    password    VARCHAR(255) DEFAULT NULL,
+    address     VARCHAR(255) DEFAULT NULL,
+    phone       VARCHAR(30) DEFAULT NULL,
+    title       VARCHAR(50) DEFAULT NULL,
+    bio         VARCHAR(255) DEFAULT NULL,
+    enabled     BOOLEAN DEFAULT FALSE,
+    non_locked  BOOLEAN DEFAULT TRUE,
+    using_mfa   BOOLEAN DEFAULT FALSE,
+    created_at  DATETIME DEFAULT CURRENT_TIMESTAMP,
+    image_url   VARCHAR(255) DEFAULT NULL,
+    version     INT UNSIGNED NOT NULL DEFAULT 0,
+    tenant_id   BIGINT UNSIGNED DEFAULT NULL,
+    FOREIGN KEY (tenant_id) REFERENCES Tenants (id) ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT UQ_Users_Email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS Roles
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name        VARCHAR(50) NOT NULL,
+    permission  VARCHAR(255) NOT NULL,
+    CONSTRAINT UQ_Roles_Name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS UserRoles
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id     BIGINT UNSIGNED NOT NULL,
+    role_id     BIGINT UNSIGNED NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES Users (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (role_id) REFERENCES Roles (id) ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT UQ_UserRoles_User_Id UNIQUE (user_id)
+);
+
+CREATE TABLE IF NOT EXISTS AccountVerifications
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id     BIGINT UNSIGNED NOT NULL,
+    url         VARCHAR(255) NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES Users (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT UQ_AccountVerifications_User_Id UNIQUE (user_id),
+    CONSTRAINT UQ_AccountVerifications_Url UNIQUE (url)
+);
+
+CREATE TABLE IF NOT EXISTS ResetPasswordVerifications
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id         BIGINT UNSIGNED NOT NULL,
+    url             VARCHAR(255) NOT NULL,
+    expiration_data DATETIME NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES Users (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT UQ_ResetPasswordVerifications_User_Id UNIQUE (user_id),
+    CONSTRAINT UQ_ResetPasswordVerifications_Url UNIQUE (url)
+);
+
+CREATE TABLE IF NOT EXISTS TwoFactorVerifications
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id         BIGINT UNSIGNED NOT NULL,
+    code            VARCHAR(10) NOT NULL,
+    expiration_data DATETIME NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES Users (id) ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT UQ_TwoFactorVerifications_User_Id UNIQUE (user_id),
+    CONSTRAINT UQ_TwoFactorVerifications_Code UNIQUE (code)
+);
+
+CREATE TABLE IF NOT EXISTS Events
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id     BIGINT UNSIGNED DEFAULT NULL,
+    email       VARCHAR(100) DEFAULT NULL,
+    type        VARCHAR(50) NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    ip_address  VARCHAR(100) DEFAULT NULL,
+    device      VARCHAR(255) DEFAULT NULL,
+    created_at  DATETIME NOT NULL,
+    INDEX IX_Events_User_Id (user_id, id)
+);
+
+CREATE TABLE IF NOT EXISTS EntityChanges
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    entity      VARCHAR(30) NOT NULL,
+    entity_id   BIGINT UNSIGNED NOT NULL,
+    created_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX IX_EntityChanges_Created_At (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS IdempotencyKeys
+(
+    key_hash        CHAR(64) NOT NULL PRIMARY KEY,
+    status          VARCHAR(20) NOT NULL DEFAULT 'IN_PROGRESS',
+    response_status INT DEFAULT NULL,
+    content_type    VARCHAR(100) DEFAULT NULL,
+    location        VARCHAR(255) DEFAULT NULL,
+    body            MEDIUMBLOB DEFAULT NULL,
+    expires_at      DATETIME NOT NULL,
+    INDEX IX_IdempotencyKeys_Expires_At (expires_at)
+);
+
+-- Long jobs started over HTTP. running_key is set only while a job runs, so one job per type and tenant runs
+-- at a time across instances.
+CREATE TABLE IF NOT EXISTS BackgroundJobs
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    type        VARCHAR(30) NOT NULL,
+    tenant_id   BIGINT UNSIGNED DEFAULT NULL,
+    status      VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    running_key VARCHAR(60) DEFAULT NULL,
+    processed   BIGINT NOT NULL DEFAULT 0,
+    message     VARCHAR(255) DEFAULT NULL,
+    started_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    updated_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    CONSTRAINT UQ_BackgroundJobs_Running_Key UNIQUE (running_key)
+);
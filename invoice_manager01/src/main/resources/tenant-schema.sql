@@ -0,0 +1,133 @@
+-- Tables of one tenant. Without sharding they live next to schema.sql in the single database.
+CREATE TABLE IF NOT EXISTS InvoiceNumberSequences
+(
+    sequence_key VARCHAR(50) NOT NULL PRIMARY KEY,
+    next_value   BIGINT UNSIGNED NOT NULL DEFAULT 1,
+    format       VARCHAR(50) NOT NULL DEFAULT 'INV-%08d'
+);
+
+CREATE TABLE IF NOT EXISTS Customers
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name        VARCHAR(100) NOT NULL,
+    email       VARCHAR(100) NOT NULL,
+    type        VARCHAR(20) NOT NULL DEFAULT 'INDIVIDUAL',
+    status      VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    address     VARCHAR(255) DEFAULT NULL,
+    phone       VARCHAR(30) DEFAULT NULL,
+    created_at  DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS Invoices
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    invoice_number  VARCHAR(50) NOT NULL,
+    customer_id     BIGINT UNSIGNED NOT NULL,
+    status          VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    issued_at       DATE NOT NULL,
+    due_at          DATE NOT NULL,
+    currency        CHAR(3) NOT NULL,
+    subtotal        BIGINT NOT NULL DEFAULT 0,
+    tax             BIGINT NOT NULL DEFAULT 0,
+    total           BIGINT NOT NULL DEFAULT 0,
+    amount_paid     BIGINT NOT NULL DEFAULT 0,
+    template_id     BIGINT UNSIGNED DEFAULT NULL,
+    billing_period  DATE DEFAULT NULL,
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    version         INT UNSIGNED NOT NULL DEFAULT 0,
+    FOREIGN KEY (customer_id) REFERENCES Customers (id) ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT UQ_Invoices_Invoice_Number UNIQUE (invoice_number),
+    CONSTRAINT UQ_Invoices_Template_Period UNIQUE (template_id, billing_period)
+);
+
+CREATE TABLE IF NOT EXISTS InvoiceLines
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    invoice_id      BIGINT UNSIGNED NOT NULL,
+    description     VARCHAR(255) NOT NULL,
+    quantity_milli  BIGINT NOT NULL,
+    unit_price      BIGINT NOT NULL,
+    discount_bp     INT NOT NULL DEFAULT 0,
+    tax_rate_bp     INT NOT NULL DEFAULT 0,
+    line_total      BIGINT NOT NULL,
+    line_tax        BIGINT NOT NULL,
+    FOREIGN KEY (invoice_id) REFERENCES Invoices (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX IX_InvoiceLines_Tax_Rate ON InvoiceLines (tax_rate_bp, invoice_id, id);
+
+CREATE INDEX IX_Invoices_Customer_Currency ON Invoices (customer_id, currency, status);
+
+-- Invoice listing: equality filters first, then the sort column, then the other range column. InnoDB appends
+-- the primary key, so each index also orders the id tie-breaker and covers the page-of-ids subquery. One index
+-- per filter prefix and sort column; the customer indexes carry status last instead of having status variants,
+-- since a customer's invoices are few and the status check is made on the index entry. See V45.
+CREATE INDEX IX_Invoices_Issued ON Invoices (issued_at, total);
+CREATE INDEX IX_Invoices_Status_Issued ON Invoices (status, issued_at, total);
+CREATE INDEX IX_Invoices_Customer_Issued ON Invoices (customer_id, issued_at, total, status);
+CREATE INDEX IX_Invoices_Total ON Invoices (total, issued_at);
+CREATE INDEX IX_Invoices_Status_Total ON Invoices (status, total, issued_at);
+CREATE INDEX IX_Invoices_Customer_Total ON Invoices (customer_id, total, issued_at, status);
+
+CREATE TABLE IF NOT EXISTS RecurringInvoiceTemplates
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    customer_id     BIGINT UNSIGNED NOT NULL,
+    currency        CHAR(3) NOT NULL,
+    interval_months INT NOT NULL DEFAULT 1,
+    due_days        INT NOT NULL DEFAULT 30,
+    next_run_date   DATE NOT NULL,
+    active          BOOLEAN DEFAULT TRUE,
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (customer_id) REFERENCES Customers (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX IX_RecurringInvoiceTemplates_Next_Run ON RecurringInvoiceTemplates (active, next_run_date);
+
+CREATE TABLE IF NOT EXISTS RecurringInvoiceTemplateLines
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    template_id     BIGINT UNSIGNED NOT NULL,
+    description     VARCHAR(255) NOT NULL,
+    quantity_milli  BIGINT NOT NULL,
+    unit_price      BIGINT NOT NULL,
+    discount_bp     INT NOT NULL DEFAULT 0,
+    tax_rate_bp     INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (template_id) REFERENCES RecurringInvoiceTemplates (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS RecurringInvoiceRuns
+(
+    id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    run_date        DATE NOT NULL,
+    partitions      INT NOT NULL,
+    status          VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    started_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT UQ_RecurringInvoiceRuns_Run_Date UNIQUE (run_date)
+);
+
+CREATE TABLE IF NOT EXISTS RecurringInvoiceCheckpoints
+(
+    run_id              BIGINT UNSIGNED NOT NULL,
+    partition_number    INT NOT NULL,
+    last_template_id    BIGINT UNSIGNED NOT NULL DEFAULT 0,
+    end_template_id     BIGINT UNSIGNED NOT NULL DEFAULT 9223372036854775807,
+    invoices_created    BIGINT NOT NULL DEFAULT 0,
+    completed           BOOLEAN DEFAULT FALSE,
+    PRIMARY KEY (run_id, partition_number),
+    FOREIGN KEY (run_id) REFERENCES RecurringInvoiceRuns (id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- One row per applied statement payment, written in the transaction that applies it, so a statement read again
+-- skips what it already paid. payment_key is the SHA-256 of the bank transaction id, or of the line number and
+-- content when the statement has none. No foreign key: archival deletes invoices, the record must stay.
+CREATE TABLE IF NOT EXISTS AppliedPayments
+(
+    id          BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    payment_key CHAR(64) NOT NULL,
+    invoice_id  BIGINT UNSIGNED NOT NULL,
+    amount      BIGINT NOT NULL,
+    applied_at  DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    CONSTRAINT UQ_AppliedPayments_Payment_Key UNIQUE (payment_key)
+);
@@ -0,0 +1,39 @@
+package com.vladimirpandurov.invoice_manager01;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Embedded H2 databases in MySQL mode, created from the scripts that create a real database, so tests run against
+ * the shipped tables and indexes rather than copies of them. Callers make the name unique per test.
+ */
+public final class TestDatabases {
+
+    private TestDatabases() {
+    }
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * An application database, created from schema.sql.
+     */
+    public static DriverManagerDataSource application(String name) {
+        return create(name, "schema.sql");
+    }
+
+    /**
+     * A tenant database, created from tenant-schema.sql.
+     */
+    public static DriverManagerDataSource tenant(String name) {
+        return create(name, "tenant-schema.sql");
+    }
+
+    private static DriverManagerDataSource create(String name, String script) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url(name));
+        new ResourceDatabasePopulator(new ClassPathResource(script)).execute(dataSource);
+        return dataSource;
+    }
+}
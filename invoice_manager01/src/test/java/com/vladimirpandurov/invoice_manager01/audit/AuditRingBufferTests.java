@@ -0,0 +1,37 @@
+package com.vladimirpandurov.invoice_manager01.audit;
+
+import com.vladimirpandurov.invoice_manager01.enumeration.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.vladimirpandurov.invoice_manager01.enumeration.EventType.LOGIN_ATTEMPT_FAILURE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class AuditRingBufferTests {
+
+    @Test
+    void publishWakesWaitingConsumer() {
+        AuditRingBuffer ringBuffer = new AuditRingBuffer(8, OverflowPolicy.DROP);
+        AuditEvent[] batch = {new AuditEvent()};
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            CompletableFuture.runAsync(() -> ringBuffer.publish(LOGIN_ATTEMPT_FAILURE, null, "user@example.com", null, null),
+                    CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+            while(ringBuffer.drainTo(batch, 0) == 0){
+                ringBuffer.awaitPublished(0);
+            }
+        });
+        assertEquals(0, ringBuffer.getLag());
+    }
+
+    @Test
+    void awaitReturnsAtOnceWhenEventIsPending() {
+        AuditRingBuffer ringBuffer = new AuditRingBuffer(8, OverflowPolicy.DROP);
+        ringBuffer.publish(LOGIN_ATTEMPT_FAILURE, null, "user@example.com", null, null);
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> ringBuffer.awaitPublished(0));
+        assertEquals(1, ringBuffer.getLag());
+    }
+}
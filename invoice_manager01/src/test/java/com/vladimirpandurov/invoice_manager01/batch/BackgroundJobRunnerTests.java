@@ -0,0 +1,83 @@
+package com.vladimirpandurov.invoice_manager01.batch;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import com.vladimirpandurov.invoice_manager01.dto.JobData;
+import com.vladimirpandurov.invoice_manager01.enumeration.JobStatus;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.BackgroundJobRepositoryImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static com.vladimirpandurov.invoice_manager01.enumeration.JobType.TAX_RECALCULATION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BackgroundJobRunnerTests {
+
+    private NamedParameterJdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new NamedParameterJdbcTemplate(TestDatabases.application("jobs" + System.nanoTime()));
+    }
+
+    @Test
+    void recordsResultOfCompletedJob() {
+        BackgroundJobRunner runner = runner(new SyncTaskExecutor());
+
+        JobData job = runner.submit(TAX_RECALCULATION, progress -> {
+            progress.set(42);
+            return "done";
+        });
+
+        JobData finished = runner.getJob(job.getId());
+        assertEquals(JobStatus.COMPLETED, finished.getStatus());
+        assertEquals(42, finished.getProcessed());
+        assertEquals("done", finished.getMessage());
+    }
+
+    @Test
+    void rejectsSecondRunWhileFirstIsRunning() throws Exception {
+        BackgroundJobRunner runner = runner(new SimpleAsyncTaskExecutor());
+        CountDownLatch release = new CountDownLatch(1);
+        JobData first = runner.submit(TAX_RECALCULATION, progress -> {
+            await(release);
+            return "done";
+        });
+
+        assertThrows(ApiException.class, () -> runner.submit(TAX_RECALCULATION, progress -> "done"));
+        release.countDown();
+        while(runner.getJob(first.getId()).getStatus() == JobStatus.RUNNING) Thread.sleep(10);
+        assertEquals(TAX_RECALCULATION, runner.submit(TAX_RECALCULATION, progress -> "again").getType());
+    }
+
+    @Test
+    void takesOverJobThatStoppedReporting() {
+        jdbc.update("INSERT INTO BackgroundJobs (type, running_key, updated_at) VALUES ('TAX_RECALCULATION', 'TAX_RECALCULATION:0', TIMESTAMPADD(HOUR, -1, CURRENT_TIMESTAMP(3)))", Map.of());
+
+        JobData job = runner(new SyncTaskExecutor()).submit(TAX_RECALCULATION, progress -> "done");
+
+        assertEquals(JobStatus.COMPLETED, runner(new SyncTaskExecutor()).getJob(job.getId()).getStatus());
+        assertEquals("ABANDONED", jdbc.queryForObject("SELECT status FROM BackgroundJobs WHERE id <> :id", Map.of("id", job.getId()), String.class));
+    }
+
+    private BackgroundJobRunner runner(TaskExecutor executor){
+        return new BackgroundJobRunner(new BackgroundJobRepositoryImpl(jdbc), executor, Duration.ofMinutes(2));
+    }
+
+    private static void await(CountDownLatch latch){
+        try{
+            latch.await();
+        }catch (InterruptedException exception){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
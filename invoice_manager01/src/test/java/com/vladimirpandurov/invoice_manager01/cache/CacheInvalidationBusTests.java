@@ -0,0 +1,108 @@
+package com.vladimirpandurov.invoice_manager01.cache;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus.USER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Two nodes, each with its own bus and user cache, sharing one embedded H2 database.
+ */
+class CacheInvalidationBusTests {
+
+    private NamedParameterJdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabases.application("bus" + System.nanoTime());
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new JdbcTransactionManager(dataSource));
+        nodeA = new Node(jdbc, 0);
+        nodeB = new Node(jdbc, 0);
+        nodeA.bus.poll();
+        nodeB.bus.poll();
+    }
+
+    @Test
+    void evictsChangedUserOnOtherNode() {
+        nodeA.cache.get("ada@example.com", key -> 1L);
+        nodeB.cache.get("ada@example.com", key -> 1L);
+
+        transactionTemplate.executeWithoutResult(status -> nodeA.bus.publish(USER, 1L));
+        assertEquals(1, nodeA.loads("ada@example.com"));
+        nodeB.bus.poll();
+
+        assertEquals(1, nodeB.loads("ada@example.com"));
+        assertEquals(List.of(1L), nodeB.invalidated);
+    }
+
+    @Test
+    void rolledBackChangeIsNeitherRecordedNorEvicted() {
+        nodeA.cache.get("ada@example.com", key -> 1L);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            nodeA.bus.publish(USER, 1L);
+            throw new IllegalStateException("write failed");
+        }));
+
+        assertEquals(List.of(), nodeA.invalidated);
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM EntityChanges", Map.of(), Integer.class));
+    }
+
+    @Test
+    void notifiesUnsettledChangeOnce() {
+        Node settling = new Node(jdbc, 60);
+        settling.bus.poll();
+        nodeA.bus.publish(USER, 1L);
+
+        settling.bus.poll();
+        settling.bus.poll();
+
+        assertEquals(List.of(1L), settling.invalidated);
+    }
+
+    private static class Node implements CacheInvalidationListener {
+
+        private final LocalCache<String, Long> cache = new LocalCache<>(100, 60_000, id -> id);
+        private final List<Long> invalidated = new ArrayList<>();
+        private final CacheInvalidationBus bus;
+        private int loads;
+
+        private Node(NamedParameterJdbcTemplate jdbc, int settleSeconds){
+            StaticListableBeanFactory listeners = new StaticListableBeanFactory();
+            listeners.addBean("node", this);
+            bus = new CacheInvalidationBus(jdbc, listeners.getBeanProvider(CacheInvalidationListener.class), new SimpleMeterRegistry(), 500, settleSeconds, 60);
+        }
+
+        @Override
+        public void invalidate(String entity, Long id) {
+            invalidated.add(id);
+            cache.removeByIndex(id);
+        }
+
+        private int loads(String email){
+            int before = loads;
+            cache.get(email, key -> {
+                loads++;
+                return 1L;
+            });
+            return loads - before;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.vladimirpandurov.invoice_manager01.cache;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.vladimirpandurov.invoice_manager01.cache.RegisteredEmailFilter.REGISTERED_EMAIL;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes, each with its own email filter and bus, sharing one embedded H2 database.
+ */
+class RegisteredEmailFilterTests {
+
+    private static final String INSERT_USER = "INSERT INTO Users (first_name, last_name, email) VALUES ('Grace', 'Hopper', :email)";
+    private NamedParameterJdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabases.application("emails" + System.nanoTime());
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+        jdbc.getJdbcTemplate().execute("INSERT INTO Users (first_name, last_name, email) VALUES ('Ada', 'Lovelace', 'ada@example.com')");
+        transactionTemplate = new TransactionTemplate(new JdbcTransactionManager(dataSource));
+        nodeA = new Node(jdbc);
+        nodeB = new Node(jdbc);
+    }
+
+    @Test
+    void registrationReachesFilterOfOtherNode() {
+        assertTrue(nodeB.filter.mightBeRegistered("ada@example.com"));
+        assertFalse(nodeB.filter.mightBeRegistered("grace@example.com"));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            KeyHolder holder = new GeneratedKeyHolder();
+            jdbc.update(INSERT_USER, new MapSqlParameterSource("email", "Grace@example.com"), holder);
+            nodeA.bus.publish(REGISTERED_EMAIL, holder.getKey().longValue());
+        });
+        assertTrue(nodeA.filter.mightBeRegistered("grace@example.com"));
+
+        nodeB.bus.poll();
+        assertTrue(nodeB.filter.mightBeRegistered("grace@example.com"));
+    }
+
+    @Test
+    void rolledBackRegistrationIsNotAdded() {
+        try{
+            transactionTemplate.executeWithoutResult(status -> {
+                KeyHolder holder = new GeneratedKeyHolder();
+                jdbc.update(INSERT_USER, new MapSqlParameterSource("email", "grace@example.com"), holder);
+                nodeA.bus.publish(REGISTERED_EMAIL, holder.getKey().longValue());
+                throw new IllegalStateException("role insert failed");
+            });
+        }catch (IllegalStateException expected){
+        }
+        nodeB.bus.poll();
+
+        assertFalse(nodeA.filter.mightBeRegistered("grace@example.com"));
+        assertFalse(nodeB.filter.mightBeRegistered("grace@example.com"));
+    }
+
+    private static class Node {
+
+        private final RegisteredEmailFilter filter;
+        private final CacheInvalidationBus bus;
+
+        private Node(NamedParameterJdbcTemplate jdbc){
+            filter = new RegisteredEmailFilter(jdbc, new SimpleMeterRegistry(), 1000, 0.01, 60_000);
+            StaticListableBeanFactory listeners = new StaticListableBeanFactory();
+            listeners.addBean("filter", filter);
+            bus = new CacheInvalidationBus(jdbc, listeners.getBeanProvider(CacheInvalidationListener.class), new SimpleMeterRegistry(), 500, 0, 60);
+            bus.poll();
+            filter.rebuild();
+        }
+    }
+}
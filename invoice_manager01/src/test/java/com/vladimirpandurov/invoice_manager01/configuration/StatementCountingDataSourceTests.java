@@ -0,0 +1,63 @@
+package com.vladimirpandurov.invoice_manager01.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StatementCountingDataSourceTests {
+
+    private HikariDataSource pool;
+    private StatementCountingDataSource dataSource;
+    private NamedParameterJdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:statements" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource = new StatementCountingDataSource(pool);
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+        jdbc.getJdbcTemplate().execute("CREATE TABLE Tokens (id BIGINT PRIMARY KEY)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void countsExecutionsAndCommitOfTheFlow() {
+        long before = StatementCountingDataSource.count();
+
+        new TransactionTemplate(new JdbcTransactionManager(dataSource)).executeWithoutResult(status -> {
+            jdbc.update("INSERT INTO Tokens (id) VALUES (1)", Map.of());
+            jdbc.queryForObject("SELECT COUNT(*) FROM Tokens", Map.of(), Integer.class);
+            jdbc.update("DELETE FROM Tokens WHERE id = :id", Map.of("id", 1));
+        });
+
+        assertEquals(4, StatementCountingDataSource.count() - before);
+    }
+
+    @Test
+    void countsOnlyTheCurrentThread() throws Exception {
+        long before = StatementCountingDataSource.count();
+        Thread other = new Thread(() -> jdbc.queryForObject("SELECT COUNT(*) FROM Tokens", Map.of(), Integer.class));
+        other.start();
+        other.join();
+
+        assertEquals(0, StatementCountingDataSource.count() - before);
+    }
+
+    @Test
+    void unwrapsToThePool() throws Exception {
+        assertSame(pool, dataSource.unwrap(HikariDataSource.class));
+    }
+}
@@ -0,0 +1,27 @@
+package com.vladimirpandurov.invoice_manager01.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecurringInvoiceTemplateTests {
+
+    @Test
+    void catchesUpEveryOverduePeriod() {
+        RecurringInvoiceTemplate template = RecurringInvoiceTemplate.builder().intervalMonths(1).nextRunDate(LocalDate.of(2024, 1, 15)).build();
+        LocalDate runDate = LocalDate.of(2024, 4, 1);
+        assertEquals(List.of(LocalDate.of(2024, 1, 15), LocalDate.of(2024, 2, 15), LocalDate.of(2024, 3, 15)), template.getDuePeriods(runDate));
+        assertEquals(LocalDate.of(2024, 4, 15), template.getNextRunDateAfter(runDate));
+    }
+
+    @Test
+    void notDueBeforeNextRunDate() {
+        RecurringInvoiceTemplate template = RecurringInvoiceTemplate.builder().intervalMonths(3).nextRunDate(LocalDate.of(2024, 5, 1)).build();
+        assertEquals(List.of(), template.getDuePeriods(LocalDate.of(2024, 4, 30)));
+        assertEquals(List.of(LocalDate.of(2024, 5, 1)), template.getDuePeriods(LocalDate.of(2024, 5, 1)));
+        assertEquals(LocalDate.of(2024, 8, 1), template.getNextRunDateAfter(LocalDate.of(2024, 5, 1)));
+    }
+}
@@ -0,0 +1,22 @@
+package com.vladimirpandurov.invoice_manager01.enumeration;
+
+import org.junit.jupiter.api.Test;
+
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.READ_USER;
+import static com.vladimirpandurov.invoice_manager01.enumeration.Permission.UPDATE_CUSTOMER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PermissionTests {
+
+    @Test
+    void parsesCommaSeparatedPermissions() {
+        assertEquals(READ_USER.getMask() | UPDATE_CUSTOMER.getMask(), Permission.toMask("READ:USER, UPDATE:CUSTOMER,"));
+        assertEquals(0, Permission.toMask((String) null));
+    }
+
+    @Test
+    void rejectsUnknownPermission() {
+        assertThrows(IllegalArgumentException.class, () -> Permission.toMask("READ:USER,READ:INVOICE"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.vladimirpandurov.invoice_manager01.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTests {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(3);
+    private final AtomicLong clock = new AtomicLong();
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 100, clock::get);
+
+    @Test
+    void shedsBeyondTheLimit() {
+        AdaptiveConcurrencyLimit small = new AdaptiveConcurrencyLimit(2, 1, 10, clock::get);
+        assertTrue(small.tryAcquire());
+        assertTrue(small.tryAcquire());
+        assertFalse(small.tryAcquire());
+        assertEquals(2, small.getInFlight());
+        assertEquals(1, small.getShed());
+    }
+
+    @Test
+    void growsByOnePerLimitOfResponsesWhileInUse() {
+        acquire(10);
+        for(int i = 0; i < 10; i++) releaseAndReacquire(FAST);
+        assertEquals(10, limit.getLimit());
+        releaseAndReacquire(FAST);
+        assertEquals(11, limit.getLimit());
+    }
+
+    @Test
+    void doesNotGrowWhileLessThanHalfIsInUse() {
+        for(int i = 0; i < 100; i++){
+            limit.tryAcquire();
+            limit.release(FAST, false);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void backsOffOncePerSlowLatency() {
+        limit.tryAcquire();
+        limit.release(FAST, false);
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        assertEquals(9, limit.getLimit());
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        assertEquals(9, limit.getLimit());
+        clock.addAndGet(SLOW);
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    void backsOffOnFailureDownToTheFloor() {
+        limit.tryAcquire();
+        limit.release(FAST, true);
+        assertEquals(9, limit.getLimit());
+        for(int i = 0; i < 20; i++){
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            limit.tryAcquire();
+            limit.release(FAST, true);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    void growsAgainOnceTheBaselineFollowsALastingSlowdown() {
+        for(int i = 0; i < 500; i++){
+            limit.tryAcquire();
+            limit.release(FAST, false);
+        }
+        for(int i = 0; i < 500; i++){
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            limit.tryAcquire();
+            limit.release(SLOW, false);
+        }
+        assertEquals(4, limit.getLimit());
+        acquire(4);
+        for(int i = 0; i < 5; i++) releaseAndReacquire(SLOW);
+        assertEquals(5, limit.getLimit());
+    }
+
+    private void acquire(int permits){
+        for(int i = 0; i < permits; i++) assertTrue(limit.tryAcquire());
+    }
+
+    private void releaseAndReacquire(long latencyNanos){
+        limit.release(latencyNanos, false);
+        assertTrue(limit.tryAcquire());
+    }
+}
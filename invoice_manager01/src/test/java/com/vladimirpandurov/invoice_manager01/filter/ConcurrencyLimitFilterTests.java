@@ -0,0 +1,26 @@
+package com.vladimirpandurov.invoice_manager01.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+class ConcurrencyLimitFilterTests {
+
+    @Test
+    void givesEveryAuthenticationRouteItsOwnLimit() {
+        assertEquals("/user/login", ConcurrencyLimitFilter.getRouteClass(new MockHttpServletRequest("POST", "/user/login")));
+        assertEquals("/user/refresh/token", ConcurrencyLimitFilter.getRouteClass(new MockHttpServletRequest("GET", "/user/refresh/token")));
+        assertEquals("/user/verify/", ConcurrencyLimitFilter.getRouteClass(new MockHttpServletRequest("GET", "/user/verify/account/key")));
+    }
+
+    @Test
+    void classifiesOtherRequestsByMethodOnly() {
+        MockHttpServletRequest bogusToken = new MockHttpServletRequest("POST", "/user/update");
+        bogusToken.addHeader(AUTHORIZATION, "Bearer forged");
+        assertEquals("write", ConcurrencyLimitFilter.getRouteClass(bogusToken));
+        assertEquals("read", ConcurrencyLimitFilter.getRouteClass(new MockHttpServletRequest("GET", "/user/profile")));
+        assertEquals("write", ConcurrencyLimitFilter.getRouteClass(new MockHttpServletRequest("PATCH", "/user/update")));
+    }
+}
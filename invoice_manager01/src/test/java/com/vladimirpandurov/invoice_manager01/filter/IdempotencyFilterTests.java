@@ -0,0 +1,169 @@
+package com.vladimirpandurov.invoice_manager01.filter;
+
+import com.vladimirpandurov.invoice_manager01.cache.IdempotencyStore;
+import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.vladimirpandurov.invoice_manager01.filter.IdempotencyFilter.IDEMPOTENCY_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyFilterTests {
+
+    private IdempotencyFilter filter;
+    private final AtomicInteger executions = new AtomicInteger();
+    private final FilterChain created = (request, response) -> {
+        executions.incrementAndGet();
+        ((HttpServletResponse) response).setStatus(201);
+        response.getOutputStream().write(request.getInputStream().readAllBytes());
+    };
+
+    @BeforeEach
+    void setUp() {
+        filter = new IdempotencyFilter(new IdempotencyStore(null, 100, 60_000, 60_000, false), 200, 65536, 1024);
+        authenticate(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void replaysRetryAfterTokenRefresh() throws Exception {
+        MockHttpServletResponse first = send(request("key-1", "Bearer old-token", "{\"amount\":10}"), created);
+        MockHttpServletResponse retry = send(request("key-1", "Bearer refreshed-token", "{\"amount\":10}"), created);
+
+        assertEquals(1, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertEquals("true", retry.getHeader(IDEMPOTENCY_KEY + "-Replayed"));
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyOrUserRunsAgain() throws Exception {
+        send(request("key-1", "Bearer token", "{\"amount\":10}"), created);
+        MockHttpServletResponse changedBody = send(request("key-1", "Bearer token", "{\"amount\":20}"), created);
+        authenticate(8L);
+        send(request("key-1", "Bearer token", "{\"amount\":10}"), created);
+
+        assertEquals(3, executions.get());
+        assertEquals("{\"amount\":20}", changedBody.getContentAsString());
+    }
+
+    @Test
+    void bodyStaysReadableForTheController() throws Exception {
+        MockHttpServletResponse response = send(request("key-1", "Bearer token", "{\"amount\":10}"), created);
+
+        assertEquals("{\"amount\":10}", response.getContentAsString());
+    }
+
+    @Test
+    void bufferedBodyRejectsNonBlockingReads() {
+        assertThrows(IllegalStateException.class, () -> send(request("key-1", "Bearer token", "{}"), (request, response) ->
+                request.getInputStream().setReadListener(null)));
+    }
+
+    @Test
+    void failedRequestReleasesKey() throws Exception {
+        assertThrows(IllegalStateException.class, () -> send(request("key-1", "Bearer token", "{}"), (request, response) -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(201, send(request("key-1", "Bearer token", "{}"), created).getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void failedAsyncDispatchReleasesKey() throws Exception {
+        MockHttpServletRequest request = request("key-1", "Bearer token", "{}");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        StandardServletAsyncWebRequest asyncWebRequest = new StandardServletAsyncWebRequest(request, response);
+        WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncWebRequest);
+        filter.doFilter(request, response, (servletRequest, servletResponse) -> asyncWebRequest.startAsync());
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertThrows(ServletException.class, () -> filter.doFilter(request, response, (servletRequest, servletResponse) -> {
+            throw new ServletException("async handler failed");
+        }));
+
+        long start = System.nanoTime();
+        MockHttpServletResponse retry = send(request("key-1", "Bearer token", "{}"), created);
+        assertEquals(201, retry.getStatus());
+        assertEquals(1, executions.get());
+        assertTrue(System.nanoTime() - start < 150_000_000L, "the retry must not wait for the abandoned key");
+    }
+
+    @Test
+    void rejectsBodyOverLimit() throws Exception {
+        MockHttpServletResponse response = send(request("key-1", "Bearer token", "x".repeat(2048)), created);
+
+        assertEquals(413, response.getStatus());
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void streamsImageBodiesUnbuffered() throws Exception {
+        byte[] image = new byte[4096];
+        image[4095] = 1;
+        FilterChain stored = (request, response) -> {
+            executions.incrementAndGet();
+            assertEquals(image.length, request.getInputStream().readAllBytes().length);
+            ((HttpServletResponse) response).setStatus(200);
+        };
+
+        MockHttpServletResponse first = send(imageRequest("key-1", image), stored);
+        MockHttpServletResponse retry = send(imageRequest("key-1", image), stored);
+
+        assertEquals(200, first.getStatus());
+        assertEquals(1, executions.get());
+        assertEquals("true", retry.getHeader(IDEMPOTENCY_KEY + "-Replayed"));
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String key, String authorization, String body){
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/invoice/create");
+        request.addHeader(IDEMPOTENCY_KEY, key);
+        request.addHeader("Authorization", authorization);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static MockHttpServletRequest imageRequest(String key, byte[] image){
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/user/image");
+        request.addHeader(IDEMPOTENCY_KEY, key);
+        request.setContentType("image/png");
+        request.setContent(image);
+        return request;
+    }
+
+    private static void authenticate(Long userId){
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+}
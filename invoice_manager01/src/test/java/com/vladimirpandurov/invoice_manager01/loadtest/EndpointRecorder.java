@@ -0,0 +1,62 @@
+package com.vladimirpandurov.invoice_manager01.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and outcome counters for one endpoint. Latencies are measured from the intended start
+ * time of the request, so a stalled server shows up in the tail instead of slowing down the load.
+ */
+public class EndpointRecorder {
+
+    private final ConcurrentHistogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+
+    public void record(long intendedStartNanos, boolean success, int bodyLength){
+        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos);
+        histogram.recordValue(Math.min(latency, histogram.getHighestTrackableValue()));
+        responseBytes.add(bodyLength);
+        if(!success) errors.increment();
+    }
+
+    public void drop(){
+        dropped.increment();
+    }
+
+    public void reset(){
+        histogram.reset();
+        errors.reset();
+        dropped.reset();
+        responseBytes.reset();
+    }
+
+    public Map<String, Object> report(double elapsedSeconds){
+        Histogram snapshot = histogram.copy();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", snapshot.getTotalCount());
+        report.put("errors", errors.sum());
+        report.put("dropped", dropped.sum());
+        report.put("throughputPerSecond", snapshot.getTotalCount() / elapsedSeconds);
+        report.put("meanResponseBytes", snapshot.getTotalCount() == 0 ? 0 : (double) responseBytes.sum() / snapshot.getTotalCount());
+        report.put("meanMicros", snapshot.getMean());
+        report.put("p50Micros", snapshot.getValueAtPercentile(50));
+        report.put("p90Micros", snapshot.getValueAtPercentile(90));
+        report.put("p99Micros", snapshot.getValueAtPercentile(99));
+        report.put("p999Micros", snapshot.getValueAtPercentile(99.9));
+        report.put("maxMicros", snapshot.getMaxValue());
+        ByteBuffer buffer = ByteBuffer.allocate(snapshot.getNeededByteBufferCapacity());
+        int length = snapshot.encodeIntoCompressedByteBuffer(buffer);
+        report.put("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+        return report;
+    }
+}
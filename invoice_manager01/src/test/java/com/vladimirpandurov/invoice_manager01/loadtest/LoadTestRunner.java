@@ -0,0 +1,305 @@
+package com.vladimirpandurov.invoice_manager01.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladimirpandurov.invoice_manager01.InvoiceManager01Application;
+import com.vladimirpandurov.invoice_manager01.loadtest.LoadTestSettings.Scenario;
+import com.vladimirpandurov.invoice_manager01.loadtest.LoadTestSettings.Server;
+import com.vladimirpandurov.invoice_manager01.reactive.ReactiveUserApplication;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator for the user API. Starts the application against an in-memory H2 database,
+ * seeds a user population, drives the configured request mix at a fixed arrival rate and writes a JSON report
+ * with per-endpoint HDR histograms and mean response sizes, plus the threads and database connections held
+ * during the run. The profile, profileSmile and profileCbor entries of the report compare the JSON, Smile and
+ * CBOR encodings of the same payload. Login concurrency is compared across commits by running a login-only mix
+ * at high arrival rates under different labels:
+ *
+ * <pre>mvn -Ploadtest test-compile exec:java -Dloadtest.mix=login=100 -Dloadtest.rate=400 -Dloadtest.maxInFlight=5000 -Dloadtest.label=$(git rev-parse --short HEAD)</pre>
+ *
+ * <pre>mvn -Ploadtest test-compile exec:java -Dloadtest.rate=200 -Dloadtest.duration=120 -Dloadtest.label=$(git rev-parse --short HEAD)</pre>
+ *
+ * The servlet and the reactive variant of the user API are compared by running the same settings against each,
+ * with {@code -Dloadtest.server=servlet} and {@code -Dloadtest.server=reactive}; both serve every scenario of the
+ * mix and both have ten connections. The reactive variant does not cache users, so the profile scenarios query the
+ * database there and not on the servlet side; the login scenarios are the fairer comparison:
+ *
+ * <pre>mvn -Ploadtest test-compile exec:java -Dloadtest.server=reactive -Dloadtest.mix=login=80,loginMfa=20 -Dloadtest.rate=800 -Dloadtest.maxInFlight=10000 -Dloadtest.label=reactive</pre>
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final String USER_EMAIL = "user%d@loadtest.local";
+    private static final int SEED_BATCH_SIZE = 5_000;
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final String CBOR = "application/cbor";
+    private static final String JDBC_URL = "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String SELECT_CODE_QUERY = "SELECT code FROM TwoFactorVerifications WHERE user_id = (SELECT id FROM Users WHERE email = ?)";
+    private final LoadTestSettings settings;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, EndpointRecorder> recorders = new LinkedHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong registrations = new AtomicLong();
+    private final List<String> accessTokens = new ArrayList<>();
+    private final ExecutorService clientExecutor = Executors.newFixedThreadPool(32);
+    private final HttpClient client = HttpClient.newBuilder().executor(clientExecutor).build();
+    // Reads the codes of MFA logins, so blocking JDBC stays off the HTTP client threads
+    private final ExecutorService databaseExecutor = Executors.newFixedThreadPool(4);
+    private JdbcTemplate jdbc;
+    private ResourceSampler resources;
+    private MeterRegistry meterRegistry;
+    private String baseUrl;
+
+    public LoadTestRunner(LoadTestSettings settings){
+        this.settings = settings;
+        for(Scenario scenario : Scenario.values()){
+            recorders.put(scenario.name(), new EndpointRecorder());
+        }
+        recorders.put("verifyCode", new EndpointRecorder());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = new LoadTestSettings();
+        LoadTestRunner runner = new LoadTestRunner(settings);
+        ConfigurableApplicationContext context = settings.getServer() == Server.reactive ? runner.startReactive() : runner.startServlet();
+        try{
+            runner.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            runner.seed(context.getBean(BCryptPasswordEncoder.class).encode(settings.getPassword()));
+            runner.openSessions();
+            runner.drive(settings.getWarmupSeconds());
+            runner.recorders.values().forEach(EndpointRecorder::reset);
+            runner.resources.reset();
+            long start = System.nanoTime();
+            runner.drive(settings.getDurationSeconds());
+            runner.writeReport((System.nanoTime() - start) / 1e9);
+            runner.resources.close();
+        }finally {
+            context.close();
+            System.exit(0);
+        }
+    }
+
+    private ConfigurableApplicationContext startServlet() throws SQLException {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(InvoiceManager01Application.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + JDBC_URL,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.sql.init.mode=always",
+                // The migrations are written for MySQL; schema.sql already creates the current schema
+                "--spring.flyway.enabled=false");
+        DataSource dataSource = context.getBean(DataSource.class);
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        jdbc = new JdbcTemplate(dataSource);
+        resources = new ResourceSampler(pool::getActiveConnections, pool::getThreadsAwaitingConnection);
+        meterRegistry = context.getBean(MeterRegistry.class);
+        return context;
+    }
+
+    /**
+     * The reactive application leaves the schema to the servlet one, so it is created here, on the same in-memory
+     * database, before the application connects to it. Its pool has Hikari's default size.
+     */
+    private ConfigurableApplicationContext startReactive(){
+        DataSource dataSource = new DriverManagerDataSource(JDBC_URL, "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        ConfigurableApplicationContext context = ReactiveUserApplication.run(
+                "--server.port=0",
+                "--spring.r2dbc.url=r2dbc:h2:mem:///loadtest?options=MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.r2dbc.username=sa",
+                "--spring.r2dbc.password=");
+        PoolMetrics pool = context.getBean(ConnectionPool.class).getMetrics().orElseThrow();
+        resources = new ResourceSampler(pool::acquiredSize, pool::pendingAcquireSize);
+        return context;
+    }
+
+    private void seed(String passwordHash){
+        long start = System.nanoTime();
+        jdbc.update("INSERT INTO Roles (name, permission) VALUES ('ROLE_USER', 'READ:USER,READ:CUSTOMER')");
+        for(int from = 0; from < settings.getUsers(); from += SEED_BATCH_SIZE){
+            int offset = from;
+            int size = Math.min(SEED_BATCH_SIZE, settings.getUsers() - from);
+            jdbc.batchUpdate("INSERT INTO Users (first_name, last_name, email, password, enabled, non_locked, using_mfa) VALUES (?, ?, ?, ?, TRUE, TRUE, ?)",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            int index = offset + i;
+                            ps.setString(1, "Load");
+                            ps.setString(2, "User" + index);
+                            ps.setString(3, email(index));
+                            ps.setString(4, passwordHash);
+                            ps.setBoolean(5, index < settings.getMfaUsers());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return size;
+                        }
+                    });
+        }
+        jdbc.update("INSERT INTO UserRoles (user_id, role_id) SELECT id, (SELECT id FROM Roles WHERE name = 'ROLE_USER') FROM Users");
+        log.info("Seeded {} users in {} ms", settings.getUsers(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void openSessions() throws Exception {
+        for(int i = 0; i < settings.getSessions(); i++){
+            HttpResponse<byte[]> response = client.send(loginRequest(settings.getMfaUsers() + i), HttpResponse.BodyHandlers.ofByteArray());
+            accessTokens.add(mapper.readTree(response.body()).path("data").path("access_token").asText());
+        }
+    }
+
+    private void drive(int seconds){
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / settings.getArrivalRate());
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for(long i = 0; ; i++){
+            long intendedStart = start + i * interval;
+            if(intendedStart >= end) break;
+            long wait = intendedStart - System.nanoTime();
+            if(wait > 0) LockSupport.parkNanos(wait);
+            Scenario scenario = pickScenario();
+            if(inFlight.get() >= settings.getMaxInFlight()){
+                recorders.get(scenario.name()).drop();
+                continue;
+            }
+            inFlight.incrementAndGet();
+            fire(scenario, intendedStart).whenComplete((result, exception) -> inFlight.decrementAndGet());
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while(inFlight.get() > 0 && System.nanoTime() < deadline){
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private CompletableFuture<?> fire(Scenario scenario, long intendedStart){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        EndpointRecorder recorder = recorders.get(scenario.name());
+        return switch (scenario) {
+            case register -> send(registerRequest(), recorder, intendedStart);
+            case login -> send(loginRequest(random.nextInt(settings.getMfaUsers(), settings.getUsers())), recorder, intendedStart);
+            case loginMfa -> {
+                int index = random.nextInt(settings.getMfaUsers());
+                yield send(loginRequest(index), recorder, intendedStart).thenComposeAsync(response -> response.statusCode() == 200 ? verifyCode(index) : CompletableFuture.completedFuture(response), databaseExecutor);
+            }
+            case profile -> send(profileRequest("application/json"), recorder, intendedStart);
+            case profileSmile -> send(profileRequest(SMILE), recorder, intendedStart);
+            case profileCbor -> send(profileRequest(CBOR), recorder, intendedStart);
+            case resetPassword -> send(HttpRequest.newBuilder(URI.create(baseUrl + "/user/resetpassword/" + email(random.nextInt(settings.getUsers())))).GET().build(), recorder, intendedStart);
+        };
+    }
+
+    private HttpRequest profileRequest(String mediaType){
+        String accessToken = accessTokens.get(ThreadLocalRandom.current().nextInt(accessTokens.size()));
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/user/profile"))
+                .header("Authorization", "Bearer " + accessToken).header("Accept", mediaType).GET().build();
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> verifyCode(int index){
+        String code = jdbc.queryForObject(SELECT_CODE_QUERY, String.class, email(index));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/user/verify/code/" + email(index) + "/" + code)).GET().build();
+        return send(request, recorders.get("verifyCode"), System.nanoTime());
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(HttpRequest request, EndpointRecorder recorder, long intendedStart){
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, exception) -> recorder.record(intendedStart, exception == null && response.statusCode() / 100 == 2,
+                        exception == null ? response.body().length : 0));
+    }
+
+    private HttpRequest loginRequest(int index){
+        return json("/user/login", Map.of("email", email(index), "password", settings.getPassword()));
+    }
+
+    private HttpRequest registerRequest(){
+        String email = "new" + registrations.incrementAndGet() + "-" + System.nanoTime() + "@loadtest.local";
+        return json("/user/register", Map.of("firstName", "New", "lastName", "User", "email", email, "password", settings.getPassword()));
+    }
+
+    private HttpRequest json(String path, Map<String, String> body){
+        try{
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
+                    .build();
+        }catch (Exception exception){
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private Scenario pickScenario(){
+        int total = settings.getMix().values().stream().mapToInt(Integer::intValue).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for(Map.Entry<Scenario, Integer> entry : settings.getMix().entrySet()){
+            pick -= entry.getValue();
+            if(pick < 0) return entry.getKey();
+        }
+        throw new IllegalStateException("Empty request mix");
+    }
+
+    private void writeReport(double elapsedSeconds) throws Exception {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        recorders.forEach((name, recorder) -> endpoints.put(name, recorder.report(elapsedSeconds)));
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", settings.getLabel());
+        report.put("finishedAt", Instant.now().toString());
+        report.put("settings", settings);
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("resources", resources.report());
+        if(meterRegistry != null) report.put("statementsPerVerification", statementsPerVerification());
+        report.put("endpoints", endpoints);
+        File file = new File(settings.getReport());
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        log.info("Load test report written to {}", file.getAbsolutePath());
+    }
+
+    /**
+     * Mean database round trips of each verification flow and outcome, from the statement-counting DataSource.
+     */
+    private Map<String, Object> statementsPerVerification(){
+        Map<String, Object> statements = new LinkedHashMap<>();
+        meterRegistry.find("verification.statements").summaries().forEach(summary -> statements.put(
+                summary.getId().getTag("type") + "/" + summary.getId().getTag("outcome"), summary.mean()));
+        return statements;
+    }
+
+    private static String email(int index){
+        return String.format(USER_EMAIL, index);
+    }
+}
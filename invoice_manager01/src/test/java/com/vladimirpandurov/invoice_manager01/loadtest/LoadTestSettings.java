@@ -0,0 +1,55 @@
+package com.vladimirpandurov.invoice_manager01.loadtest;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, read from {@code -Dloadtest.*} system properties.
+ */
+@Getter
+public class LoadTestSettings {
+
+    private final String label = System.getProperty("loadtest.label", "local");
+    private final Server server = Server.valueOf(System.getProperty("loadtest.server", "servlet"));
+    private final int users = Integer.getInteger("loadtest.users", 100_000);
+    private final int mfaUsers = Integer.getInteger("loadtest.mfaUsers", 10_000);
+    private final int sessions = Integer.getInteger("loadtest.sessions", 50);
+    private final double arrivalRate = Double.parseDouble(System.getProperty("loadtest.rate", "50"));
+    private final int durationSeconds = Integer.getInteger("loadtest.duration", 60);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup", 10);
+    private final int maxInFlight = Integer.getInteger("loadtest.maxInFlight", 2_000);
+    private final String password = System.getProperty("loadtest.password", "LoadTest#2024");
+    private final String report = System.getProperty("loadtest.report", "target/loadtest-report.json");
+    private final Map<Scenario, Integer> mix = parseMix(System.getProperty("loadtest.mix", "register=5,login=20,loginMfa=5,profile=45,profileSmile=10,profileCbor=10,resetPassword=5"));
+
+    /**
+     * The profile scenarios request the same payload as JSON, Smile and CBOR, so one run compares the codecs.
+     */
+    public LoadTestSettings(){
+        if(sessions > users - mfaUsers) throw new IllegalArgumentException("loadtest.sessions needs as many users without MFA");
+        if(mix.getOrDefault(Scenario.login, 0) > 0 && mfaUsers >= users) throw new IllegalArgumentException("The login scenario needs users without MFA");
+        if(mix.getOrDefault(Scenario.loginMfa, 0) > 0 && mfaUsers < 1) throw new IllegalArgumentException("The loginMfa scenario needs loadtest.mfaUsers > 0");
+    }
+
+    /**
+     * The variant of the user API under load: the servlet application or {@code ReactiveUserApplication}.
+     */
+    public enum Server {
+        servlet, reactive
+    }
+
+    public enum Scenario {
+        register, login, loginMfa, profile, profileSmile, profileCbor, resetPassword
+    }
+
+    private static Map<Scenario, Integer> parseMix(String mix){
+        Map<Scenario, Integer> weights = new LinkedHashMap<>();
+        for(String entry : mix.split(",")){
+            String[] pair = entry.trim().split("=");
+            weights.put(Scenario.valueOf(pair[0].trim()), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+}
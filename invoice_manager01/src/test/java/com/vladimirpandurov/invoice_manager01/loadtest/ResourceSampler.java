@@ -0,0 +1,66 @@
+package com.vladimirpandurov.invoice_manager01.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Samples the live JVM threads and the busy database connections while the load runs, so runs of different
+ * threading models can be compared on what they hold and not only on latency. The pool is read through two
+ * suppliers, so Hikari and the R2DBC pool are sampled alike.
+ */
+public class ResourceSampler {
+
+    private static final long INTERVAL_MILLIS = 100;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final IntSupplier activeConnections;
+    private final IntSupplier awaitingConnection;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private long samples;
+    private long threadSum;
+    private int threadMax;
+    private long connectionSum;
+    private int connectionMax;
+    private int connectionsWaitingMax;
+
+    public ResourceSampler(IntSupplier activeConnections, IntSupplier awaitingConnection){
+        this.activeConnections = activeConnections;
+        this.awaitingConnection = awaitingConnection;
+        scheduler.scheduleAtFixedRate(this::sample, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void reset(){
+        samples = threadSum = connectionSum = 0;
+        threadMax = connectionMax = connectionsWaitingMax = 0;
+    }
+
+    public synchronized Map<String, Object> report(){
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("threadsMean", samples == 0 ? 0 : (double) threadSum / samples);
+        report.put("threadsMax", threadMax);
+        report.put("activeConnectionsMean", samples == 0 ? 0 : (double) connectionSum / samples);
+        report.put("activeConnectionsMax", connectionMax);
+        report.put("awaitingConnectionMax", connectionsWaitingMax);
+        return report;
+    }
+
+    public void close(){
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void sample(){
+        int threadCount = threads.getThreadCount();
+        int active = activeConnections.getAsInt();
+        samples++;
+        threadSum += threadCount;
+        threadMax = Math.max(threadMax, threadCount);
+        connectionSum += active;
+        connectionMax = Math.max(connectionMax, active);
+        connectionsWaitingMax = Math.max(connectionsWaitingMax, awaitingConnection.getAsInt());
+    }
+}
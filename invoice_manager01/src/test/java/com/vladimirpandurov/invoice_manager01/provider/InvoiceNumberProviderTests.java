@@ -0,0 +1,81 @@
+package com.vladimirpandurov.invoice_manager01.provider;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Allocates numbers against an embedded H2 database in MySQL mode. The throughput test doubles as the benchmark:
+ * it prints allocations per second for many concurrent writers with blocks and with a counter update per number.
+ */
+class InvoiceNumberProviderTests {
+
+    private static final int WRITERS = 32;
+    private static final int NUMBERS_PER_WRITER = 500;
+    private DriverManagerDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = TestDatabases.tenant("numbers" + System.nanoTime());
+    }
+
+    @Test
+    void concurrentFirstUseHandsOutEveryNumberOnce() throws Exception {
+        List<String> numbers = allocateConcurrently(provider(100), "first-use");
+
+        assertEquals(WRITERS * NUMBERS_PER_WRITER, new HashSet<>(numbers).size());
+    }
+
+    @Test
+    void skipsUnusedBlockAfterRestart() {
+        assertEquals("INV-00000001", provider(10).nextInvoiceNumber("restart"));
+
+        assertEquals("INV-00000011", provider(10).nextInvoiceNumber("restart"));
+    }
+
+    @Test
+    void blocksOutperformCounterPerNumber() throws Exception {
+        long counter = throughput(provider(1), "counter");
+        long blocks = throughput(provider(100), "blocks");
+        System.out.printf("Invoice numbers per second with %d writers: counter per number %d, blocks of 100 %d%n", WRITERS, counter, blocks);
+    }
+
+    private long throughput(InvoiceNumberProvider provider, String sequenceKey) throws Exception {
+        long start = System.nanoTime();
+        Set<String> numbers = new HashSet<>(allocateConcurrently(provider, sequenceKey));
+        assertEquals(WRITERS * NUMBERS_PER_WRITER, numbers.size());
+        return numbers.size() * 1_000_000_000L / (System.nanoTime() - start);
+    }
+
+    private List<String> allocateConcurrently(InvoiceNumberProvider provider, String sequenceKey) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try{
+            Callable<List<String>> writer = () -> IntStream.range(0, NUMBERS_PER_WRITER).mapToObj(i -> provider.nextInvoiceNumber(sequenceKey)).toList();
+            List<Future<List<String>>> results = executor.invokeAll(IntStream.range(0, WRITERS).mapToObj(i -> writer).toList());
+            List<String> numbers = new ArrayList<>();
+            for(Future<List<String>> result : results) numbers.addAll(result.get());
+            return numbers;
+        }finally {
+            executor.shutdown();
+        }
+    }
+
+    private InvoiceNumberProvider provider(int blockSize){
+        return new InvoiceNumberProvider(new NamedParameterJdbcTemplate(dataSource), new JdbcTransactionManager(dataSource), blockSize, "INV-%08d");
+    }
+}
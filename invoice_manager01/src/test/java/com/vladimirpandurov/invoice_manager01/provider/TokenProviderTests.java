@@ -0,0 +1,86 @@
+package com.vladimirpandurov.invoice_manager01.provider;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.vladimirpandurov.invoice_manager01.domain.Role;
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import com.vladimirpandurov.invoice_manager01.domain.UserPrincipal;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenProviderTests {
+
+    private static final String EMAIL = "jane@example.com";
+    private static final long PERMISSION_MASK = 0b1011;
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+    private TokenDenylist tokenDenylist;
+    private TokenProvider tokenProvider;
+    private UserPrincipal principal;
+
+    @BeforeEach
+    void setUp() {
+        tokenDenylist = new TokenDenylist();
+        tokenProvider = new TokenProvider(tokenDenylist);
+        ReflectionTestUtils.setField(tokenProvider, "secret", "test-secret");
+        tokenProvider.init();
+        User user = User.builder().id(1L).email(EMAIL).enabled(true).isNotLocked(true).build();
+        principal = new UserPrincipal(user, Role.builder().name("ROLE_USER").permissionMask(PERMISSION_MASK).build());
+    }
+
+    @Test
+    void readsAllClaimsFromOneVerification() {
+        DecodedJWT token = tokenProvider.verify(tokenProvider.createAccessToken(principal), request);
+        assertTrue(tokenProvider.isAccessTokenActive(token));
+        assertEquals(EMAIL, token.getSubject());
+        assertEquals(PERMISSION_MASK, tokenProvider.getPermissions(token));
+        assertNull(tokenProvider.getTenantId(token));
+    }
+
+    @Test
+    void refreshTokenIsNotAnAccessToken() {
+        DecodedJWT token = tokenProvider.verify(tokenProvider.createRefreshToken(principal), request);
+        assertFalse(tokenProvider.isAccessTokenActive(token));
+    }
+
+    @Test
+    void revocationCoversTokensIssuedEarlierInTheSameSecond() {
+        DecodedJWT token = tokenProvider.verify(tokenProvider.createAccessToken(principal), request);
+        long issuedAt = token.getClaim(TokenProvider.ISSUED_AT_MILLIS).asLong();
+        tokenDenylist.revokeAllIssuedBefore(EMAIL, new Date(issuedAt), 60_000);
+        assertFalse(tokenProvider.isAccessTokenActive(token));
+    }
+
+    @Test
+    void tokensIssuedAfterRevocationStayActive() {
+        tokenDenylist.revokeAllIssuedBefore(EMAIL, new Date(System.currentTimeMillis() - 1), 60_000);
+        DecodedJWT token = tokenProvider.verify(tokenProvider.createAccessToken(principal), request);
+        assertTrue(tokenProvider.isAccessTokenActive(token));
+    }
+
+    @Test
+    void subjectRevocationIsMillisecondExact() {
+        tokenDenylist.revokeAllIssuedBefore(EMAIL, new Date(10_500), 60_000);
+        assertTrue(tokenDenylist.isRevoked(EMAIL, 10_000));
+        assertTrue(tokenDenylist.isRevoked(EMAIL, 10_500));
+        assertFalse(tokenDenylist.isRevoked(EMAIL, 10_501));
+        assertFalse(tokenDenylist.isRevoked("someone@example.com", 10_000));
+    }
+
+    @Test
+    void rotatedRefreshTokenCannotBeReused() {
+        String refreshToken = tokenProvider.createRefreshToken(principal);
+        assertEquals(EMAIL, tokenProvider.rotateRefreshToken(refreshToken, request));
+        assertThrows(ApiException.class, () -> tokenProvider.rotateRefreshToken(refreshToken, request));
+        assertTrue(tokenDenylist.isRevoked(EMAIL, System.currentTimeMillis() - 1));
+    }
+}
@@ -0,0 +1,88 @@
+package com.vladimirpandurov.invoice_manager01.query;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceFilter;
+import com.vladimirpandurov.invoice_manager01.enumeration.InvoiceSort;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks the plans of the listing shapes on an embedded H2 database built from tenant-schema.sql. H2 chooses an
+ * index by its longest matching prefix, so each shape is given the range criterion that only its intended index
+ * can serve; MySQL picks the same index for the sort alone, which H2 does not model because its secondary indexes
+ * do not end with the id.
+ */
+class InvoiceFilterQueryTests {
+
+    private static final Pattern INDEX = Pattern.compile("PUBLIC\\.(IX_INVOICES_\\w+)");
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    private static NamedParameterJdbcTemplate jdbc;
+
+    @BeforeAll
+    static void setUp() {
+        jdbc = new NamedParameterJdbcTemplate(TestDatabases.tenant("listing" + System.nanoTime()));
+        jdbc.update("INSERT INTO Customers (id, name, email) SELECT X, CONCAT('Customer ', X), CONCAT('c', X, '@example.com') FROM SYSTEM_RANGE(1, 200)", Map.of());
+        jdbc.update("INSERT INTO Invoices (id, invoice_number, customer_id, status, issued_at, due_at, currency, total) " +
+                "SELECT X, CONCAT('INV-', X), MOD(X, 200) + 1, CASEWHEN(MOD(X, 4) = 0, 'PAID', 'PENDING'), DATEADD(DAY, MOD(X, 700), DATE '2023-01-01'), " +
+                "DATEADD(DAY, MOD(X, 700) + 30, DATE '2023-01-01'), 'EUR', MOD(X * 7919, 1000000) FROM SYSTEM_RANGE(1, 20000)", Map.of());
+        jdbc.getJdbcTemplate().execute("ANALYZE");
+    }
+
+    @Test
+    void customerSortedByTotalUsesCustomerTotalIndex() {
+        assertEquals(Set.of("IX_INVOICES_CUSTOMER_TOTAL"), indexes(InvoiceFilter.builder().customerId(7L).minTotal(1_000L).sort(InvoiceSort.TOTAL_DESC).size(25).build()));
+    }
+
+    @Test
+    void customerSortedByIssueDateUsesCustomerIssuedIndex() {
+        assertEquals(Set.of("IX_INVOICES_CUSTOMER_ISSUED"), indexes(InvoiceFilter.builder().customerId(7L).issuedFrom(FROM).status("PAID").size(25).build()));
+    }
+
+    @Test
+    void statusShapesUseStatusIndexes() {
+        assertEquals(Set.of("IX_INVOICES_STATUS_ISSUED"), indexes(InvoiceFilter.builder().status("PAID").issuedFrom(FROM).size(25).build()));
+        assertEquals(Set.of("IX_INVOICES_STATUS_TOTAL"), indexes(InvoiceFilter.builder().status("PAID").minTotal(1_000L).sort(InvoiceSort.TOTAL_ASC).size(25).build()));
+    }
+
+    @Test
+    void rangeShapesUseSortIndexes() {
+        assertEquals(Set.of("IX_INVOICES_ISSUED"), indexes(InvoiceFilter.builder().issuedFrom(FROM).size(25).build()));
+        assertEquals(Set.of("IX_INVOICES_TOTAL"), indexes(InvoiceFilter.builder().minTotal(1_000L).sort(InvoiceSort.TOTAL_DESC).size(25).build()));
+    }
+
+    @Test
+    void cursorPageKeepsTheIndex() {
+        InvoiceFilter filter = InvoiceFilter.builder().customerId(7L).minTotal(1_000L).sort(InvoiceSort.TOTAL_DESC)
+                .cursor(new InvoiceCursor(InvoiceSort.TOTAL_DESC, 500_000, 1_234)).size(25).build();
+        assertEquals(Set.of("IX_INVOICES_CUSTOMER_TOTAL"), indexes(filter));
+    }
+
+    @Test
+    void filteredShapesNeverScanInvoices() {
+        String plan = explain(InvoiceFilter.builder().customerId(7L).sort(InvoiceSort.TOTAL_DESC).size(25).build());
+        assertFalse(plan.contains("INVOICES.tableScan"), plan);
+    }
+
+    private static Set<String> indexes(InvoiceFilter filter){
+        Matcher matcher = INDEX.matcher(explain(filter));
+        Set<String> indexes = new TreeSet<>();
+        while(matcher.find()) indexes.add(matcher.group(1));
+        return indexes;
+    }
+
+    private static String explain(InvoiceFilter filter){
+        return jdbc.queryForObject("EXPLAIN " + InvoiceFilterQuery.getSql(filter), InvoiceFilterQuery.getParameters(filter), String.class);
+    }
+}
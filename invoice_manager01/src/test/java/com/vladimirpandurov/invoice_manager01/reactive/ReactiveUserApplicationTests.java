@@ -0,0 +1,117 @@
+package com.vladimirpandurov.invoice_manager01.reactive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Runs the reactive user API on Reactor Netty against an embedded H2 database in MySQL mode, created from
+ * schema.sql through JDBC, and checks that it answers like the servlet API.
+ */
+class ReactiveUserApplicationTests {
+
+    private static final String EMAIL = "jane@example.com";
+    private static final String PASSWORD = "Secret#2024";
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbc;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        String database = "reactive" + System.nanoTime();
+        jdbc = new JdbcTemplate(TestDatabases.application(database));
+        jdbc.update("INSERT INTO Roles (name, permission) VALUES ('ROLE_USER', 'READ:USER,READ:CUSTOMER')");
+        context = ReactiveUserApplication.run(
+                "--server.port=0",
+                "--spring.r2dbc.url=r2dbc:h2:mem:///" + database + "?options=MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.r2dbc.username=sa",
+                "--spring.r2dbc.password=",
+                "--application.password-hashing.threads=2");
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + context.getEnvironment().getProperty("local.server.port")).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void registersLogsInAndReadsTheProfile() {
+        client.post().uri("/user/register").bodyValue(Map.of("firstName", "Jane", "lastName", "Doe", "email", EMAIL, "password", PASSWORD))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.data.user.email").isEqualTo(EMAIL).jsonPath("$.data.user.roleName").isEqualTo("ROLE_USER");
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM EntityChanges", Integer.class));
+
+        JsonNode login = client.post().uri("/user/login").bodyValue(Map.of("email", EMAIL, "password", PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        assertNotNull(login);
+        assertEquals("Login Success", login.path("message").asText());
+        String accessToken = login.path("data").path("access_token").asText();
+
+        String eTag = client.get().uri("/user/profile").header("Authorization", "Bearer " + accessToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.data.user.email").isEqualTo(EMAIL)
+                .returnResult().getResponseHeaders().getETag();
+        client.get().uri("/user/profile").header("Authorization", "Bearer " + accessToken).header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void answersLikeTheServletApiOnFailures() {
+        client.post().uri("/user/register").bodyValue(Map.of("firstName", "Jane", "lastName", "Doe", "email", EMAIL, "password", PASSWORD))
+                .exchange()
+                .expectStatus().isCreated();
+
+        client.post().uri("/user/login").bodyValue(Map.of("email", EMAIL, "password", "wrong"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.reason").isEqualTo("Bad credentials");
+        client.post().uri("/user/register").bodyValue(Map.of("firstName", "Jane", "lastName", "Doe", "email", EMAIL, "password", PASSWORD))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.reason").isEqualTo("Email already in use. Please use a different email and try again");
+        client.get().uri("/user/profile")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNAUTHORIZED);
+        client.get().uri("/user/verify/code/" + EMAIL + "/NOSUCHCODE")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.reason").isEqualTo("Code is invalid. Please try again");
+    }
+
+    @Test
+    void logsInWithAVerificationCode() {
+        client.post().uri("/user/register").bodyValue(Map.of("firstName", "Jane", "lastName", "Doe", "email", EMAIL, "password", PASSWORD))
+                .exchange()
+                .expectStatus().isCreated();
+        jdbc.update("UPDATE Users SET using_mfa = TRUE WHERE email = ?", EMAIL);
+
+        client.post().uri("/user/login").bodyValue(Map.of("email", EMAIL, "password", PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.message").isEqualTo("Verification code sent");
+        String code = jdbc.queryForObject("SELECT code FROM TwoFactorVerifications", String.class);
+
+        client.get().uri("/user/verify/code/" + EMAIL + "/" + code)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.message").isEqualTo("Login Success").jsonPath("$.data.access_token").isNotEmpty();
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM TwoFactorVerifications", Integer.class));
+    }
+}
@@ -0,0 +1,93 @@
+package com.vladimirpandurov.invoice_manager01.reconciliation;
+
+import com.vladimirpandurov.invoice_manager01.domain.StatementLine;
+import com.vladimirpandurov.invoice_manager01.exception.ApiException;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvStatementParserTests {
+
+    private final CsvStatementParser parser = new CsvStatementParser();
+    private final List<StatementLine> lines = new ArrayList<>();
+    private final List<String> rejects = new ArrayList<>();
+    private final StatementParser.LineHandler handler = new StatementParser.LineHandler() {
+        @Override
+        public void accept(StatementLine line) {
+            lines.add(line);
+        }
+
+        @Override
+        public void reject(long lineNumber, String text, String reason) {
+            rejects.add(lineNumber + ": " + reason);
+        }
+    };
+
+    @Test
+    void readsColumnsInAnyOrderWithQuotedFields() throws Exception {
+        parse("\uFEFFPayer,Reference,Amount,Date,Currency,Transaction\n" +
+                "\"Acme, Inc.\",\"INV-1001 \"\"May\"\"\",120.50,2024-05-02,eur,TX-1\n" +
+                "\n" +
+                "Globex,INV-1002,-3,,JPY,\n");
+
+        assertEquals(List.of(), rejects);
+        assertEquals(new StatementLine(2, LocalDate.of(2024, 5, 2), 12_050, "EUR", "INV-1001 \"May\"", "Acme, Inc.", "TX-1"), lines.get(0));
+        assertEquals(new StatementLine(4, null, -3, "JPY", "INV-1002", "Globex", ""), lines.get(1));
+        assertEquals(2, lines.size());
+    }
+
+    @Test
+    void leavesOptionalColumnsEmpty() throws Exception {
+        parse("amount,currency,reference\n10,USD,INV-1\n");
+
+        assertEquals(new StatementLine(2, null, 1_000, "USD", "INV-1", null, null), lines.get(0));
+    }
+
+    @Test
+    void rejectsUnreadableLinesAndGoesOn() throws Exception {
+        parse("amount,currency,reference,date\n" +
+                "10,USD\n" +
+                "1.005,USD,INV-1,\n" +
+                "10,XYZ,INV-1,\n" +
+                "ten,USD,INV-1,\n" +
+                "10,USD,INV-1,02.05.2024\n" +
+                "10,USD,INV-2,\n");
+
+        assertEquals(List.of("2: Expected 4 fields but found 2", "3: Invalid amount for USD: 1.005", "4: Unknown currency: XYZ",
+                "5: Invalid amount for USD: ten", "6: Invalid date: 02.05.2024"), rejects);
+        assertEquals(1, lines.size());
+        assertEquals("INV-2", lines.get(0).reference());
+    }
+
+    @Test
+    void refusesStatementsWithoutRequiredColumns() {
+        assertThrows(ApiException.class, () -> parse(""));
+        ApiException exception = assertThrows(ApiException.class, () -> parse("amount,reference\n10,INV-1\n"));
+        assertTrue(exception.getMessage().contains("currency"));
+    }
+
+    @Test
+    void keysPaymentsByTransactionWhenThereIsOne() {
+        StatementLine line = new StatementLine(2, null, 1_000, "USD", "INV-1", "Acme", "TX-1");
+
+        assertEquals(line.paymentKey(), new StatementLine(9, null, 1_000, "USD", "other", null, "TX-1").paymentKey());
+        assertNotEquals(line.paymentKey(), new StatementLine(2, null, 1_000, "USD", "INV-1", "Acme", "TX-2").paymentKey());
+        assertEquals(64, line.paymentKey().length());
+
+        StatementLine untracked = new StatementLine(2, null, 1_000, "USD", "INV-1", "Acme", null);
+        assertEquals(untracked.paymentKey(), new StatementLine(2, null, 1_000, "USD", "INV-1", "Acme", "").paymentKey());
+        assertNotEquals(untracked.paymentKey(), new StatementLine(3, null, 1_000, "USD", "INV-1", "Acme", null).paymentKey());
+    }
+
+    private void parse(String statement) throws Exception {
+        parser.parse(new StringReader(statement), handler);
+    }
+}
@@ -0,0 +1,143 @@
+package com.vladimirpandurov.invoice_manager01.rowmapper;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import com.vladimirpandurov.invoice_manager01.domain.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import static com.vladimirpandurov.invoice_manager01.query.UserQuery.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads each user projection through its positional row mapper on an embedded H2 database built from schema.sql.
+ * Doubles as the benchmark of the projections: it prints the bytes a row of each moves over the MySQL text
+ * protocol, where every value is a length-prefixed string, and the time to read and map a row. The row count is
+ * raised with {@code -Dbenchmark.users=100000}.
+ */
+class UserRowMapperTests {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 2_000);
+    private static final String EMAIL = "user1@example.com";
+    private static NamedParameterJdbcTemplate jdbc;
+
+    @BeforeAll
+    static void setUp() {
+        jdbc = new NamedParameterJdbcTemplate(TestDatabases.application("projections" + System.nanoTime()));
+        jdbc.update("INSERT INTO Users (first_name, last_name, email, password, address, phone, title, bio, image_url, enabled, using_mfa, version) " +
+                "SELECT CONCAT('First', X), CONCAT('Last', X), CONCAT('user', X, '@example.com'), " +
+                "'$2a$12$R9h/cIPz0gi.URNNX3kh2OPST9/PgBkqquzi.Ss7KIUgO2t0jWMUW', '1 Main Street, Springfield', '+1 555 0100', " +
+                "'Accountant', 'Handles the receivables of the northern region.', '/user/image/3f2a9c.png', TRUE, MOD(X, 2) = 0, 7 " +
+                "FROM SYSTEM_RANGE(1, " + USERS + ")", Map.of());
+    }
+
+    @Test
+    void authMapperReadsCredentialsAndFlags() {
+        User user = jdbc.queryForObject(SELECT_USER_CREDENTIALS_BY_EMAIL_QUERY, Map.of("email", EMAIL), new UserAuthRowMapper());
+
+        assertEquals(1L, user.getId());
+        assertEquals(EMAIL, user.getEmail());
+        assertTrue(user.getPassword().startsWith("$2a$12$"));
+        assertTrue(user.isEnabled());
+        assertTrue(user.isNotLocked());
+        assertFalse(user.isUsingMfa());
+        assertNull(user.getFirstName());
+    }
+
+    @Test
+    void profileMapperReadsEveryColumnButThePassword() {
+        User user = jdbc.queryForObject(SELECT_USER_BY_EMAIL_QUERY, Map.of("email", EMAIL), new UserProfileRowMapper());
+
+        assertEquals(1L, user.getId());
+        assertEquals("First1", user.getFirstName());
+        assertEquals("Last1", user.getLastName());
+        assertEquals(EMAIL, user.getEmail());
+        assertEquals("1 Main Street, Springfield", user.getAddress());
+        assertEquals("+1 555 0100", user.getPhone());
+        assertEquals("Accountant", user.getTitle());
+        assertEquals("Handles the receivables of the northern region.", user.getBio());
+        assertEquals("/user/image/3f2a9c.png", user.getImageUrl());
+        assertTrue(user.isEnabled());
+        assertTrue(user.isNotLocked());
+        assertFalse(user.isUsingMfa());
+        assertEquals(7, user.getVersion());
+        assertNull(user.getTenantId());
+        assertNull(user.getPassword());
+    }
+
+    @Test
+    void listingMapperReadsTheNarrowRow() {
+        List<User> users = jdbc.query(SELECT_USERS_QUERY, Map.of("size", 2, "offset", 1), new UserListingRowMapper());
+
+        assertEquals(2, users.size());
+        User user = users.get(0);
+        assertEquals(2L, user.getId());
+        assertEquals("First2", user.getFirstName());
+        assertEquals("Last2", user.getLastName());
+        assertEquals("user2@example.com", user.getEmail());
+        assertEquals("/user/image/3f2a9c.png", user.getImageUrl());
+        assertTrue(user.isEnabled());
+        assertNull(user.getAddress());
+    }
+
+    @Test
+    void comparesProjections() {
+        System.out.printf("user projections over %d rows:%n", USERS);
+        long auth = measure("auth (" + USER_AUTH_COLUMNS + ")", USER_AUTH_COLUMNS, new UserAuthRowMapper());
+        long profile = measure("profile", USER_PROFILE_COLUMNS, new UserProfileRowMapper());
+        measure("profile + password", USER_PROFILE_COLUMNS + ", password", (rs, rowNum) -> {
+            User user = new UserProfileRowMapper().mapRow(rs, rowNum);
+            user.setPassword(rs.getString(UserProfileRowMapper.COLUMN_COUNT + 1));
+            return user;
+        });
+        measure("listing (" + USER_LISTING_COLUMNS + ")", USER_LISTING_COLUMNS, new UserListingRowMapper());
+
+        assertTrue(auth < profile);
+    }
+
+    /**
+     * Prints the average row size and the read-and-map time of one projection, and returns the row size.
+     */
+    private static long measure(String name, String columns, RowMapper<User> mapper) {
+        String query = "SELECT " + columns + " FROM Users ORDER BY id";
+        long bytes = jdbc.query(query, Map.of(), rs -> {
+            long total = 0;
+            while(rs.next()) total += wireSize(rs);
+            return total;
+        });
+        // Warm-up pass, so the JIT has compiled the mapper before measuring
+        jdbc.query(query, Map.of(), mapper);
+        long start = System.nanoTime();
+        jdbc.query(query, Map.of(), mapper);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("  %-70s %4d bytes/row %6d ns/row%n", name, bytes / USERS, nanos / USERS);
+        return bytes / USERS;
+    }
+
+    /**
+     * The size of a row in a text protocol result set: a length byte and the text of each value, or a single byte
+     * for NULL. Values in this table are shorter than 251 bytes, so the length always fits one byte.
+     */
+    private static long wireSize(ResultSet rs) throws SQLException {
+        long size = 0;
+        for(int column = 1; column <= rs.getMetaData().getColumnCount(); column++){
+            String value = rs.getString(column);
+            if(value == null) size += 1;
+            // MySQL sends BOOLEAN, a TINYINT(1), as "0" or "1" where H2 has "FALSE" and "TRUE"
+            else if(rs.getMetaData().getColumnType(column) == Types.BOOLEAN) size += 2;
+            else size += 1 + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+}
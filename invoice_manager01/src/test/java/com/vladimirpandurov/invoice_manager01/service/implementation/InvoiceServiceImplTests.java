@@ -0,0 +1,84 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.InvoiceRepositoryImpl;
+import com.vladimirpandurov.invoice_manager01.storage.InvoiceArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs the invoice service on an embedded H2 database in MySQL mode. The tax recalculation doubles as the
+ * benchmark: the line count defaults to a size that suits the test run and is raised with
+ * {@code -Dbenchmark.taxLines=10000000}.
+ */
+class InvoiceServiceImplTests {
+
+    private static final int LINES = Integer.getInteger("benchmark.taxLines", 20_000);
+    private static final int LINES_PER_INVOICE = 10;
+
+    @TempDir
+    Path archiveDirectory;
+
+    @Test
+    void recalculatesEveryLineAndInvoiceTotal() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:tax" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("tenant-schema.sql")).execute(dataSource);
+        NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+        int invoices = LINES / LINES_PER_INVOICE;
+        jdbc.update("INSERT INTO Customers (id, name, email) VALUES (1, 'Customer', 'customer@example.com')", Map.of());
+        jdbc.update("INSERT INTO Invoices (id, invoice_number, customer_id, issued_at, due_at, currency, subtotal, tax, total) " +
+                "SELECT X, CONCAT('INV-', X), 1, CURRENT_DATE, CURRENT_DATE, 'EUR', 100000, 20000, 120000 FROM SYSTEM_RANGE(1, :invoices)", Map.of("invoices", invoices));
+        jdbc.update("INSERT INTO InvoiceLines (invoice_id, description, quantity_milli, unit_price, tax_rate_bp, line_total, line_tax) " +
+                "SELECT (X - 1) / " + LINES_PER_INVOICE + " + 1, 'Service', 1000, 10000, 2000, 10000, 2000 FROM SYSTEM_RANGE(1, :lines)", Map.of("lines", invoices * LINES_PER_INVOICE));
+        InvoiceServiceImpl invoiceService = new InvoiceServiceImpl(new InvoiceRepositoryImpl(jdbc, new InvoiceArchive(archiveDirectory.toString())),
+                new TransactionTemplate(new JdbcTransactionManager(dataSource)), null, 5_000, RoundingMode.HALF_EVEN);
+        AtomicLong progress = new AtomicLong();
+
+        long start = System.nanoTime();
+        long lines = invoiceService.recalculateTaxRate(2_000, 2_500, progress);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("Recalculated %d lines in %d ms, %d lines per second%n", lines, elapsed / 1_000_000, lines * 1_000_000_000L / elapsed);
+        assertEquals((long) invoices * LINES_PER_INVOICE, lines);
+        assertEquals(lines, progress.get());
+        assertEquals(lines * 2_500, jdbc.queryForObject("SELECT SUM(tax) FROM Invoices", Map.of(), Long.class));
+        assertEquals(lines * 12_500, jdbc.queryForObject("SELECT SUM(total) FROM Invoices", Map.of(), Long.class));
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM InvoiceLines WHERE tax_rate_bp = 2000", Map.of(), Integer.class));
+    }
+
+    @Test
+    void tagsHotAndArchivedInvoicesAndNoOthers() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:etag" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("tenant-schema.sql")).execute(dataSource);
+        NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+        jdbc.update("INSERT INTO Customers (id, name, email) VALUES (1, 'Customer', 'customer@example.com')", Map.of());
+        jdbc.update("INSERT INTO Invoices (id, invoice_number, customer_id, issued_at, due_at, currency, version) " +
+                "VALUES (1, 'INV-1', 1, CURRENT_DATE, CURRENT_DATE, 'EUR', 4)", Map.of());
+        InvoiceArchive archive = new InvoiceArchive(archiveDirectory.toString());
+        archive.init();
+        archive.write(List.of(Invoice.builder().id(2L).invoiceNumber("INV-2").customerId(1L).status("PAID")
+                .issuedAt(LocalDate.of(2020, 1, 1)).dueAt(LocalDate.of(2020, 1, 31)).currency("EUR").lines(List.of()).build()));
+        InvoiceServiceImpl invoiceService = new InvoiceServiceImpl(new InvoiceRepositoryImpl(jdbc, archive),
+                new TransactionTemplate(new JdbcTransactionManager(dataSource)), null, 5_000, RoundingMode.HALF_EVEN);
+
+        assertEquals("\"invoice-1-4\"", invoiceService.getInvoiceETag(1L));
+        assertEquals("\"invoice-2-archived\"", invoiceService.getInvoiceETag(2L));
+        assertNull(invoiceService.getInvoiceETag(3L));
+    }
+}
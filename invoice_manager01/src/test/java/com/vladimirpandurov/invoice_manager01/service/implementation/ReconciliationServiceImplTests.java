@@ -0,0 +1,157 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import com.vladimirpandurov.invoice_manager01.dto.ReconciliationData;
+import com.vladimirpandurov.invoice_manager01.reconciliation.CsvStatementParser;
+import com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.InvoiceRepositoryImpl;
+import com.vladimirpandurov.invoice_manager01.storage.InvoiceArchive;
+import com.vladimirpandurov.invoice_manager01.storage.ReconciliationReportStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reconciles statements against an embedded H2 database in MySQL mode. The chunk size is two so that matching,
+ * skipping and applying cross chunk boundaries.
+ */
+class ReconciliationServiceImplTests {
+
+    private static final String STATEMENT = "date,amount,currency,reference,payer\n" +
+            "2024-05-02,100.00,EUR,Payment INV-1001,Someone\n" +
+            "2024-05-02,50.00,EUR,INV-1002,Someone\n" +
+            "2024-05-03,300.00,EUR,Thank you,Globex Industries Ltd\n" +
+            "2024-05-03,400.00,EUR,INV-301,Someone\n" +
+            "2024-05-04,500.00,EUR,Invoice,Initech\n" +
+            "2024-05-04,-20.00,EUR,Bank fee,\n";
+
+    @TempDir
+    Path directory;
+    private NamedParameterJdbcTemplate jdbc;
+    private ReconciliationServiceImpl reconciliationService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DriverManagerDataSource dataSource = TestDatabases.tenant("reconciliation" + System.nanoTime());
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+        jdbc.update("INSERT INTO Customers (id, name, email) VALUES (1, 'Acme Corporation', 'acme@example.com'), " +
+                "(2, 'Globex Industries', 'globex@example.com'), (3, 'Initech', 'initech@example.com')", Map.of());
+        jdbc.update("INSERT INTO Invoices (id, invoice_number, customer_id, issued_at, due_at, currency, total) VALUES " +
+                "(1, 'INV-1001', 1, CURRENT_DATE, CURRENT_DATE, 'EUR', 10000), " +
+                "(2, 'INV-1002', 1, CURRENT_DATE, CURRENT_DATE, 'EUR', 20000), " +
+                "(3, 'INV-2001', 2, CURRENT_DATE, CURRENT_DATE, 'EUR', 30000), " +
+                "(4, 'INV-3001', 3, CURRENT_DATE, CURRENT_DATE, 'EUR', 40000), " +
+                "(5, 'INV-4001', 3, CURRENT_DATE, CURRENT_DATE, 'EUR', 50000), " +
+                "(6, 'INV-4002', 3, CURRENT_DATE, CURRENT_DATE, 'EUR', 50000)", Map.of());
+        ReconciliationReportStorage reportStorage = new ReconciliationReportStorage(directory.resolve("reports").toString());
+        reportStorage.init();
+        reconciliationService = new ReconciliationServiceImpl(new InvoiceRepositoryImpl(jdbc, new InvoiceArchive(directory.resolve("archive").toString())),
+                List.of(new CsvStatementParser()), reportStorage, new TransactionTemplate(new JdbcTransactionManager(dataSource)),
+                new SimpleMeterRegistry(), 2);
+    }
+
+    @Test
+    void matchesExactPartialAndFuzzyPaymentsAndReportsTheAmbiguousOne() throws Exception {
+        ReconciliationData result = reconcile(STATEMENT);
+
+        assertEquals(6, result.getLines());
+        assertEquals(1, result.getExactMatches());
+        assertEquals(1, result.getPartialPayments());
+        assertEquals(2, result.getFuzzyMatches());
+        assertEquals(1, result.getExceptions());
+        assertEquals(1, result.getIgnored());
+        assertEquals(0, result.getAlreadyApplied());
+        assertEquals(6, result.getOpenInvoices());
+        assertEquals("PAID", status(1));
+        assertEquals(5_000, amountPaid(2));
+        assertEquals("PAID", status(3));
+        assertEquals("PAID", status(4));
+        assertEquals(0, amountPaid(5) + amountPaid(6));
+        assertEquals(4, appliedPayments());
+        List<String> report = Files.readAllLines(reconciliationService.getReport(result.getReport()));
+        assertEquals(List.of("line,date,amount,currency,reference,payer,reason",
+                "6,2024-05-04,500.00,EUR,Invoice,Initech,Matches several open invoices"), report);
+    }
+
+    @Test
+    void skipsPaymentsAppliedByAnEarlierRun() throws Exception {
+        reconcile(STATEMENT);
+
+        ReconciliationData result = reconcile(STATEMENT);
+
+        assertEquals(4, result.getAlreadyApplied());
+        assertEquals(0, result.getExactMatches() + result.getPartialPayments() + result.getFuzzyMatches());
+        assertEquals(1, result.getExceptions());
+        assertEquals(5_000, amountPaid(2));
+        assertEquals(4, appliedPayments());
+    }
+
+    @Test
+    void appliesATransactionOnceAcrossLinesAndStatements() throws Exception {
+        String header = "amount,currency,reference,transaction\n";
+
+        ReconciliationData result = reconcile(header + "10.00,EUR,INV-1002,TX-1\n10.00,EUR,INV-1002,TX-2\n10.00,EUR,INV-1002,TX-1\n");
+        ReconciliationData overlapping = reconcile(header + "10.00,EUR,INV-1002,TX-2\n10.00,EUR,INV-1002,TX-3\n");
+
+        assertEquals(2, result.getPartialPayments());
+        assertEquals(1, result.getAlreadyApplied());
+        assertEquals(1, overlapping.getPartialPayments());
+        assertEquals(1, overlapping.getAlreadyApplied());
+        assertEquals(3_000, amountPaid(2));
+        assertEquals(3, appliedPayments());
+    }
+
+    @Test
+    void reportsPaymentsForInvoicesThatAreNotOpen() throws Exception {
+        jdbc.update("UPDATE Invoices SET status = 'CANCELLED' WHERE id = 1", Map.of());
+
+        ReconciliationData result = reconcile("amount,currency,reference\n100.00,EUR,INV-1001\n");
+
+        assertEquals(0, result.getExactMatches());
+        assertEquals(1, result.getExceptions());
+        assertEquals(0, appliedPayments());
+    }
+
+    @Test
+    void acceptsAtMostOneEdit() {
+        assertTrue(ReconciliationServiceImpl.withinOneEdit("INV3001", "INV3001"));
+        assertTrue(ReconciliationServiceImpl.withinOneEdit("INV3001", "INV3011"));
+        assertTrue(ReconciliationServiceImpl.withinOneEdit("INV301", "INV3001"));
+        assertTrue(ReconciliationServiceImpl.withinOneEdit("INV30011", "INV3001"));
+        assertTrue(ReconciliationServiceImpl.withinOneEdit("NV3001", "INV3001"));
+        assertFalse(ReconciliationServiceImpl.withinOneEdit("INV3010", "INV3001"));
+        assertFalse(ReconciliationServiceImpl.withinOneEdit("INV30", "INV3001"));
+        assertFalse(ReconciliationServiceImpl.withinOneEdit("INV3001XY", "INV3001"));
+    }
+
+    private ReconciliationData reconcile(String statement) {
+        return reconciliationService.reconcile("CSV", new ByteArrayInputStream(statement.getBytes(UTF_8)));
+    }
+
+    private String status(long invoiceId) {
+        return jdbc.queryForObject("SELECT status FROM Invoices WHERE id = :id", Map.of("id", invoiceId), String.class);
+    }
+
+    private long amountPaid(long invoiceId) {
+        return jdbc.queryForObject("SELECT amount_paid FROM Invoices WHERE id = :id", Map.of("id", invoiceId), Long.class);
+    }
+
+    private int appliedPayments() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM AppliedPayments", Map.of(), Integer.class);
+    }
+}
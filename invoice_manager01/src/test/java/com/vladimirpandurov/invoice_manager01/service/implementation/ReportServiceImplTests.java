@@ -0,0 +1,46 @@
+package com.vladimirpandurov.invoice_manager01.service.implementation;
+
+import com.vladimirpandurov.invoice_manager01.domain.AgingSegment;
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+import com.vladimirpandurov.invoice_manager01.dto.ReportProgressData;
+import com.vladimirpandurov.invoice_manager01.repository.ReportRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReportServiceImplTests {
+
+    @Test
+    void streamsEveryCustomerIdOnceAndReportsAllRanges() {
+        ConcurrentLinkedQueue<long[]> streamed = new ConcurrentLinkedQueue<>();
+        ReportRepository repository = new ReportRepository() {
+            @Override
+            public long[] getCustomerIdRange() {
+                return new long[]{7, 1_003};
+            }
+
+            @Override
+            public void streamOpenInvoices(long fromCustomerId, long toCustomerId, LocalDate asOf, AgingSegment segment) {
+                streamed.add(new long[]{fromCustomerId, toCustomerId});
+            }
+
+            @Override
+            public List<Outstanding> getOutstandingByCurrency() {
+                return List.of();
+            }
+        };
+        ReportServiceImpl reportService = new ReportServiceImpl(repository, 3, 10);
+
+        reportService.getAgingReport(LocalDate.now());
+
+        ReportProgressData progress = reportService.getAgingReportProgress();
+        assertEquals(progress.getRangesTotal(), progress.getRangesCompleted());
+        assertEquals(progress.getRangesTotal(), streamed.size());
+        assertEquals(1_003 - 7 + 1, streamed.stream().mapToLong(range -> range[1] - range[0] + 1).sum());
+        reportService.shutdown();
+    }
+}
@@ -0,0 +1,132 @@
+package com.vladimirpandurov.invoice_manager01.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageStorageTests {
+
+    private static final String NAME = "a".repeat(64) + ".png";
+    private static final byte[] CONTENT = "0123456789".getBytes();
+    private static final Duration GRACE = Duration.ofMinutes(10);
+
+    @TempDir
+    Path directory;
+    private ImageStorage storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = new ImageStorage(directory.toString(), 1024, Runnable::run);
+        Files.write(directory.resolve(NAME), CONTENT);
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        MockHttpServletResponse response = serve("Range", "bytes=2-4");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+        assertEquals("234", response.getContentAsString());
+    }
+
+    @Test
+    void answersMultipleRangesWithWholeImage() throws Exception {
+        MockHttpServletResponse response = serve("Range", "bytes=0-1,4-5");
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Content-Range"));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void notModifiedForAnyListedTag() throws Exception {
+        MockHttpServletResponse response = serve("If-None-Match", "\"other\", W/\"" + "a".repeat(64) + "\"");
+
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void deletesUnusedImageAndThumbnail() throws Exception {
+        Path thumbnail = directory.resolve(ImageStorage.getThumbnailName(NAME));
+        Files.write(thumbnail, CONTENT);
+        storedAgo(Duration.ofHours(1));
+
+        assertTrue(storage.deleteIfUnused(NAME, GRACE, name -> false));
+
+        assertFalse(Files.exists(directory.resolve(NAME)));
+        assertFalse(Files.exists(thumbnail));
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    void keepsImageInUseOrStoredWithinGrace() throws Exception {
+        assertFalse(storage.deleteIfUnused(NAME, GRACE, name -> false));
+        storedAgo(Duration.ofHours(1));
+        assertFalse(storage.deleteIfUnused(NAME, GRACE, name -> true));
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(directory.resolve(NAME)));
+        assertEquals(1, fileCount());
+    }
+
+    @Test
+    void keepsCopyStoredWhileDeleting() throws Exception {
+        Path thumbnail = directory.resolve(ImageStorage.getThumbnailName(NAME));
+        Files.write(thumbnail, CONTENT);
+        storedAgo(Duration.ofHours(1));
+
+        // An upload of the same content lands after the image was moved aside, and is referenced only after the check
+        assertTrue(storage.deleteIfUnused(NAME, GRACE, name -> {
+            try{
+                Files.write(directory.resolve(NAME), CONTENT);
+            }catch (IOException exception){
+                throw new UncheckedIOException(exception);
+            }
+            return false;
+        }));
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(directory.resolve(NAME)));
+        assertTrue(Files.exists(thumbnail));
+    }
+
+    @Test
+    void readsNameFromRelativePathAndLegacyUrl() {
+        assertEquals(NAME, ImageStorage.getImageName(ImageStorage.getImagePath(NAME)));
+        assertEquals(NAME, ImageStorage.getImageName("http://localhost:8080/user/image/" + NAME));
+        assertNull(ImageStorage.getImageName("https://example.com/avatar.png"));
+    }
+
+    private long fileCount() throws IOException {
+        try(Stream<Path> files = Files.list(directory)){
+            return files.count();
+        }
+    }
+
+    private void storedAgo(Duration age) throws IOException {
+        Files.setLastModifiedTime(directory.resolve(NAME), FileTime.from(Instant.now().minus(age)));
+    }
+
+    private MockHttpServletResponse serve(String header, String value) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/image/" + NAME);
+        request.addHeader(header, value);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        storage.serve(NAME, request, response);
+        return response;
+    }
+}
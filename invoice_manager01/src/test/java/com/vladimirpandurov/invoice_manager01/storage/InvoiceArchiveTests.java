@@ -0,0 +1,103 @@
+package com.vladimirpandurov.invoice_manager01.storage;
+
+import com.vladimirpandurov.invoice_manager01.domain.Invoice;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceCursor;
+import com.vladimirpandurov.invoice_manager01.domain.InvoiceLine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.vladimirpandurov.invoice_manager01.enumeration.InvoiceSort.ISSUED_AT_ASC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InvoiceArchiveTests {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int INVOICES = InvoiceArchive.BLOCK_ROWS * 2 + 100;
+
+    @TempDir
+    Path directory;
+    private InvoiceArchive archive;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        archive = new InvoiceArchive(directory.toString());
+        archive.init();
+    }
+
+    @Test
+    void readsBackEverySegmentFieldAfterReopening() throws Exception {
+        List<Invoice> invoices = invoices();
+        archive.write(invoices);
+
+        InvoiceArchive reopened = new InvoiceArchive(directory.toString());
+        reopened.init();
+
+        for(Invoice invoice : invoices) assertEquals(invoice, reopened.find(invoice.getId()));
+        assertNull(reopened.find(2));
+        assertEquals(FIRST_DAY.plusDays(INVOICES - 1), reopened.getMaxIssuedAt());
+    }
+
+    @Test
+    void pagesThroughTheIssueRangeAcrossBlocks() throws Exception {
+        List<Invoice> invoices = invoices();
+        archive.write(invoices);
+        LocalDate from = FIRST_DAY.plusDays(1000);
+        LocalDate to = FIRST_DAY.plusDays(1100);
+
+        List<Invoice> pages = new ArrayList<>();
+        InvoiceCursor cursor = null;
+        while(true){
+            List<Invoice> page = archive.findIssuedBetween(from, to, cursor, 30);
+            pages.addAll(page);
+            if(page.size() < 30) break;
+            cursor = InvoiceCursor.after(ISSUED_AT_ASC, page.get(page.size() - 1));
+        }
+
+        assertEquals(invoices.subList(1000, 1101), pages);
+    }
+
+    @Test
+    void discardRemovesTheSegment() throws Exception {
+        Path segment = archive.write(invoices());
+
+        archive.discard(segment);
+
+        assertFalse(Files.exists(segment));
+        assertNull(archive.find(1));
+        assertNull(archive.getMaxIssuedAt());
+    }
+
+    /**
+     * One invoice per day with sparse ids. Every third has no template or billing period, every other has no
+     * lines, the rest carry up to three lines.
+     */
+    private static List<Invoice> invoices(){
+        List<Invoice> invoices = new ArrayList<>();
+        long lineId = 1;
+        for(int i = 0; i < INVOICES; i++){
+            long id = 1 + i * 3L;
+            LocalDate issuedAt = FIRST_DAY.plusDays(i);
+            List<InvoiceLine> lines = new ArrayList<>();
+            for(int line = 0; i % 2 == 1 && line < 1 + i % 3; line++){
+                lines.add(InvoiceLine.builder().id(lineId++).invoiceId(id).description("Line " + line + " of " + id)
+                        .quantity(1_000 + line).unitPrice(2_500).discount(line * 100).taxRate(2_000)
+                        .lineTotal(2_500 + line).lineTax(500).build());
+            }
+            invoices.add(Invoice.builder().id(id).invoiceNumber("INV-" + id).customerId(7L + i % 5)
+                    .status(i % 4 == 0 ? "PAID" : "VOID").issuedAt(issuedAt).dueAt(issuedAt.plusDays(30))
+                    .currency("EUR").subtotal(10_000 + i).tax(2_000).total(12_000 + i).amountPaid(12_000 + i)
+                    .templateId(i % 3 == 0 ? null : 40L + i).billingPeriod(i % 3 == 0 ? null : issuedAt.withDayOfMonth(1))
+                    .lines(lines).build());
+        }
+        return invoices;
+    }
+}
@@ -0,0 +1,200 @@
+package com.vladimirpandurov.invoice_manager01.tenant;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationBus;
+import com.vladimirpandurov.invoice_manager01.cache.CacheInvalidationListener;
+import com.vladimirpandurov.invoice_manager01.configuration.ShardingProperties;
+import com.vladimirpandurov.invoice_manager01.domain.Outstanding;
+import com.vladimirpandurov.invoice_manager01.enumeration.TenantStatus;
+import com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.TenantRepositoryImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the routing, the move and the fan-out against embedded H2 databases, one per shard. H2 keeps a tenant's
+ * database as a schema of the shard, so acme and initech share shard a. H2 also ignores read-only connections,
+ * so the READ_ONLY phase is checked through the directory and the final passes rather than rejected writes.
+ */
+class TenantShardingTests {
+
+    private static final String H2_OPTIONS = ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final Duration GRACE = Duration.ofSeconds(1);
+    private ShardRouter shardRouter;
+    private TenantDirectory tenantDirectory;
+    private TenantMover tenantMover;
+    private TenantFanOut tenantFanOut;
+    private ThreadPoolTaskExecutor executor;
+    private NamedParameterJdbcTemplate tenantJdbc;
+
+    @BeforeEach
+    void setUp() {
+        String run = String.valueOf(System.nanoTime());
+        DriverManagerDataSource global = TestDatabases.application("global" + run);
+        NamedParameterJdbcTemplate globalJdbc = new NamedParameterJdbcTemplate(global);
+        globalJdbc.getJdbcTemplate().update("INSERT INTO Tenants (id, name, shard) VALUES (1, 'acme', 'a'), (2, 'globex', 'b'), (3, 'initech', 'a')");
+
+        ShardingProperties properties = new ShardingProperties();
+        properties.setEnabled(true);
+        // Upper case, as H2 folds the unquoted names the mover creates schemas with
+        properties.setDatabasePrefix("TENANT_");
+        properties.setDirectoryTimeToLive(GRACE);
+        properties.setMoveChunkSize(2);
+        properties.setMoveGrace(Duration.ZERO);
+        for(String name : List.of("a", "b", "c")){
+            ShardingProperties.Shard shard = new ShardingProperties.Shard();
+            shard.setUrl("jdbc:h2:mem:shard_" + name + run + H2_OPTIONS);
+            shard.setUsername("sa");
+            shard.setPassword("");
+            shard.setMaximumPoolSize(4);
+            properties.getShards().put(name, shard);
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory listeners = new StaticListableBeanFactory();
+        CacheInvalidationBus invalidationBus = new CacheInvalidationBus(globalJdbc, listeners.getBeanProvider(CacheInvalidationListener.class), meterRegistry, 500, 0, 60);
+        tenantDirectory = new TenantDirectory(new TenantRepositoryImpl(globalJdbc), invalidationBus,
+                new TransactionTemplate(new JdbcTransactionManager(global)), properties);
+        listeners.addBean("tenantDirectory", tenantDirectory);
+        shardRouter = new ShardRouter(global, tenantDirectory, properties, meterRegistry);
+        tenantMover = new TenantMover(shardRouter, tenantDirectory, meterRegistry, properties);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(3);
+        executor.initialize();
+        tenantFanOut = new TenantFanOut(tenantDirectory, shardRouter, executor, properties);
+        tenantJdbc = new NamedParameterJdbcTemplate(shardRouter.getRoutingDataSource());
+
+        createDatabase("a", 1L);
+        createDatabase("b", 2L);
+        createDatabase("a", 3L);
+        TenantContext.runAs(1L, () -> addInvoices(5, "EUR", 1_000));
+        TenantContext.runAs(2L, () -> addInvoices(3, "EUR", 500));
+        TenantContext.runAs(3L, () -> addInvoices(2, "EUR", 250));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        shardRouter.close();
+    }
+
+    @Test
+    void routesEveryTenantToItsOwnDatabase() {
+        assertEquals(5, countInvoices(1L));
+        assertEquals(3, countInvoices(2L));
+        assertEquals(2, countInvoices(3L));
+    }
+
+    @Test
+    void movesTenantToAnotherShard() {
+        AtomicLong progress = new AtomicLong();
+        long copied = tenantMover.move(1L, "c", progress);
+
+        assertEquals("c", tenantDirectory.getTenant(1L).getShard());
+        assertEquals(TenantStatus.ACTIVE, tenantDirectory.getTenant(1L).getStatus());
+        assertEquals(copied, progress.get());
+        assertEquals(5, countInvoices(1L));
+        assertEquals(5, countRows("c", 1L, "InvoiceLines"));
+        TenantContext.runAs(1L, () -> addInvoices(1, "EUR", 1_000));
+        assertEquals(6, countInvoices(1L));
+        // The tenant left on the same shard is untouched
+        assertEquals(2, countInvoices(3L));
+    }
+
+    @Test
+    void copiesWritesMadeWhileCopying() throws Exception {
+        AtomicBoolean stopped = new AtomicBoolean();
+        Future<Integer> writer = executor.submit(() -> {
+            int written = 0;
+            // Stops once the tenant is read-only; a write started just before is covered by the grace period
+            while(!stopped.get() && tenantDirectory.getTenant(1L).getStatus() != TenantStatus.READ_ONLY){
+                TenantContext.runAs(1L, () -> addInvoices(1, "EUR", 1_000));
+                written++;
+            }
+            return written;
+        });
+
+        tenantMover.move(1L, "c", new AtomicLong());
+        stopped.set(true);
+        int written = writer.get(10, TimeUnit.SECONDS);
+
+        assertEquals(5 + written, countInvoices(1L));
+        assertEquals(5 + written, countRows("c", 1L, "InvoiceLines"));
+        assertEquals(countRows("a", 1L, "Invoices"), countRows("c", 1L, "Invoices"));
+    }
+
+    @Test
+    void finalPassesCopyWritesThatLandWhileReadOnly() throws Exception {
+        Future<Long> move = executor.submit(() -> tenantMover.move(1L, "c", new AtomicLong()));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(tenantDirectory.getTenant(1L).getStatus() != TenantStatus.READ_ONLY){
+            if(System.nanoTime() > deadline) throw new AssertionError("The tenant never turned read-only");
+            Thread.sleep(5);
+        }
+
+        // Reads keep working on the source shard, and a write that was in flight still reaches it
+        assertEquals("a", tenantDirectory.getTenant(1L).getShard());
+        assertEquals(5, countInvoices(1L));
+        NamedParameterJdbcTemplate source = new NamedParameterJdbcTemplate(shardRouter.getTenantDataSource("a", 1L));
+        source.update("UPDATE Invoices SET amount_paid = total WHERE id = 1", Map.of());
+        move.get(10, TimeUnit.SECONDS);
+
+        assertEquals(TenantStatus.ACTIVE, tenantDirectory.getTenant(1L).getStatus());
+        assertEquals(1_000L, TenantContext.callAs(1L, () -> tenantJdbc.queryForObject("SELECT amount_paid FROM Invoices WHERE id = 1", Map.of(), Long.class)));
+    }
+
+    @Test
+    void mergesOutstandingOfAllTenants() {
+        List<List<Outstanding>> outstanding = tenantFanOut.query(tenant -> tenantJdbc.query(
+                "SELECT currency, COUNT(*), SUM(total - amount_paid) FROM Invoices GROUP BY currency", Map.of(),
+                (resultSet, rowNum) -> new Outstanding(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3))));
+
+        Outstanding total = outstanding.stream().flatMap(List::stream).reduce(Outstanding::merge).orElseThrow();
+        assertEquals(10, total.invoices());
+        assertEquals(7_000, total.amount());
+    }
+
+    private void createDatabase(String shard, Long tenantId) {
+        new NamedParameterJdbcTemplate(shardRouter.getShard(shard)).getJdbcTemplate().execute("CREATE SCHEMA " + shardRouter.getDatabase(tenantId));
+        new ResourceDatabasePopulator(new ClassPathResource("tenant-schema.sql")).execute(shardRouter.getTenantDataSource(shard, tenantId));
+    }
+
+    private int countRows(String shard, Long tenantId, String table) {
+        return new NamedParameterJdbcTemplate(shardRouter.getTenantDataSource(shard, tenantId)).queryForObject("SELECT COUNT(*) FROM " + table, Map.of(), Integer.class);
+    }
+
+    private int countInvoices(Long tenantId) {
+        return TenantContext.callAs(tenantId, () -> tenantJdbc.queryForObject("SELECT COUNT(*) FROM Invoices", Map.of(), Integer.class));
+    }
+
+    private void addInvoices(int count, String currency, long total) {
+        Long customerId = tenantJdbc.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM Customers", Map.of(), Long.class);
+        tenantJdbc.update("INSERT INTO Customers (id, name, email) VALUES (:id, 'Customer', 'customer@example.com')", Map.of("id", customerId));
+        for(int i = 0; i < count; i++){
+            Long invoiceId = tenantJdbc.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM Invoices", Map.of(), Long.class);
+            tenantJdbc.update("INSERT INTO Invoices (id, invoice_number, customer_id, issued_at, due_at, currency, total) VALUES (:id, :number, :customerId, CURRENT_DATE, CURRENT_DATE, :currency, :total)",
+                    Map.of("id", invoiceId, "number", "INV-" + invoiceId, "customerId", customerId, "currency", currency, "total", total));
+            tenantJdbc.update("INSERT INTO InvoiceLines (invoice_id, description, quantity_milli, unit_price, line_total, line_tax) VALUES (:id, 'Service', 1000, :total, :total, 0)",
+                    Map.of("id", invoiceId, "total", total));
+        }
+    }
+}
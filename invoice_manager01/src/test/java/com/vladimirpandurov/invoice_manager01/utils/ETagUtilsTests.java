@@ -0,0 +1,34 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ETagUtilsTests {
+
+    private static final String TAG = ETagUtils.of("user", 7L, 3);
+
+    @Test
+    void tagDependsOnlyOnEntityIdAndVersion() {
+        assertEquals("\"user-7-3\"", TAG);
+        assertEquals(TAG, ETagUtils.of("user", 7L, 3));
+    }
+
+    @Test
+    void matchesExactListWeakAndWildcard() {
+        assertTrue(ETagUtils.matches("\"user-7-3\"", TAG));
+        assertTrue(ETagUtils.matches("\"user-7-2\", \"user-7-3\"", TAG));
+        assertTrue(ETagUtils.matches("W/\"user-7-3\"", TAG));
+        assertTrue(ETagUtils.matches("*", TAG));
+    }
+
+    @Test
+    void rejectsOtherVersionsAndMissingHeader() {
+        assertFalse(ETagUtils.matches("\"user-7-2\"", TAG));
+        assertFalse(ETagUtils.matches("\"user-7-2\", W/\"user-8-3\"", TAG));
+        assertFalse(ETagUtils.matches(null, TAG));
+        assertFalse(ETagUtils.matches(" ", TAG));
+    }
+}
@@ -0,0 +1,53 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MoneyMathTests {
+
+    private static final int SAMPLES = 200_000;
+    private static final RoundingMode[] MODES = {RoundingMode.HALF_EVEN, RoundingMode.HALF_UP, RoundingMode.HALF_DOWN,
+            RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR};
+
+    @Test
+    void lineTotalMatchesBigDecimal() {
+        SplittableRandom random = new SplittableRandom(36);
+        for(int i = 0; i < SAMPLES; i++){
+            long quantity = random.nextLong(-10_000_000L, 10_000_000L);
+            long unitPrice = random.nextLong(0, 1_000_000_000L);
+            int discount = random.nextInt(0, 10_001);
+            RoundingMode mode = MODES[random.nextInt(MODES.length)];
+            BigDecimal expected = BigDecimal.valueOf(quantity).multiply(BigDecimal.valueOf(unitPrice))
+                    .multiply(BigDecimal.valueOf(10_000 - discount))
+                    .divide(BigDecimal.valueOf(10_000_000), 0, mode);
+            assertEquals(expected.longValueExact(), MoneyMath.lineTotal(quantity, unitPrice, discount, mode),
+                    () -> quantity + " x " + unitPrice + " - " + discount + "bp " + mode);
+        }
+    }
+
+    @Test
+    void taxMatchesBigDecimal() {
+        SplittableRandom random = new SplittableRandom(3600);
+        for(int i = 0; i < SAMPLES; i++){
+            long amount = random.nextLong(-Long.MAX_VALUE / 10_000, Long.MAX_VALUE / 10_000);
+            int rate = random.nextInt(0, 10_001);
+            RoundingMode mode = MODES[random.nextInt(MODES.length)];
+            BigDecimal expected = BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(rate))
+                    .divide(BigDecimal.valueOf(10_000), 0, mode);
+            assertEquals(expected.longValueExact(), MoneyMath.tax(amount, rate, mode), () -> amount + " @ " + rate + "bp " + mode);
+        }
+    }
+
+    @Test
+    void tiesRoundToEven() {
+        assertEquals(2, MoneyMath.scale(25, 1, 10, RoundingMode.HALF_EVEN));
+        assertEquals(4, MoneyMath.scale(35, 1, 10, RoundingMode.HALF_EVEN));
+        assertEquals(-2, MoneyMath.scale(-25, 1, 10, RoundingMode.HALF_EVEN));
+        assertEquals(-4, MoneyMath.scale(-35, 1, 10, RoundingMode.HALF_EVEN));
+    }
+}
@@ -0,0 +1,117 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.vladimirpandurov.invoice_manager01.domain.HttpResponse;
+import com.vladimirpandurov.invoice_manager01.dto.TokenData;
+import com.vladimirpandurov.invoice_manager01.dto.UserDTO;
+import com.vladimirpandurov.invoice_manager01.dto.UserData;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the response path before typed envelopes, a {@code Map} payload written by Boot's default mapper, with
+ * the typed envelopes written by cached Blackbird writers as JSON, Smile and CBOR, on the profile and login
+ * responses. Doubles as the benchmark: the iteration count defaults to a size that suits the test run and is
+ * raised with {@code -Dbenchmark.serializations=1000000}.
+ */
+class ResponseSerializationTests {
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.serializations", 20_000);
+    private static final String ACCESS_TOKEN = "eyJ0eXAiOiJKV1QiLCJhbGciOiJIUzUxMiJ9." + "a".repeat(280) + "." + "b".repeat(86);
+    private static final String REFRESH_TOKEN = "eyJ0eXAiOiJKV1QiLCJhbGciOiJIUzUxMiJ9." + "c".repeat(200) + "." + "d".repeat(86);
+    private final ObjectMapper mapMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new BlackbirdModule()).build();
+    private final ObjectWriter jsonWriter = jsonMapper.writerFor(HttpResponse.class);
+    private final ObjectWriter smileWriter = Jackson2ObjectMapperBuilder.smile().modulesToInstall(new BlackbirdModule()).build().writerFor(HttpResponse.class);
+    private final ObjectWriter cborWriter = Jackson2ObjectMapperBuilder.cbor().modulesToInstall(new BlackbirdModule()).build().writerFor(HttpResponse.class);
+
+    @Test
+    void profileResponse() throws Exception {
+        UserDTO user = user();
+        compare("profile", response(Map.of("user", user)), response(new UserData(user)));
+    }
+
+    @Test
+    void loginResponse() throws Exception {
+        UserDTO user = user();
+        compare("login", response(Map.of("user", user, "access_token", ACCESS_TOKEN, "refresh_token", REFRESH_TOKEN)),
+                response(new TokenData(user, ACCESS_TOKEN, REFRESH_TOKEN)));
+    }
+
+    private void compare(String name, HttpResponse mapResponse, HttpResponse typedResponse) throws Exception {
+        byte[] map = mapMapper.writeValueAsBytes(mapResponse);
+        byte[] json = jsonWriter.writeValueAsBytes(typedResponse);
+        byte[] smile = smileWriter.writeValueAsBytes(typedResponse);
+        byte[] cbor = cborWriter.writeValueAsBytes(typedResponse);
+
+        // The typed envelope keeps the wire format of the map it replaces
+        assertEquals(mapMapper.readTree(map), jsonMapper.readTree(json));
+        assertTrue(smile.length < json.length);
+        assertTrue(cbor.length < json.length);
+
+        long mapNanos = time(() -> mapMapper.writeValueAsBytes(mapResponse));
+        long jsonNanos = time(() -> jsonWriter.writeValueAsBytes(typedResponse));
+        long smileNanos = time(() -> smileWriter.writeValueAsBytes(typedResponse));
+        long cborNanos = time(() -> cborWriter.writeValueAsBytes(typedResponse));
+        System.out.printf("%s response over %d writes:%n", name, ITERATIONS);
+        report("map payload, default mapper (JSON)", map.length, mapNanos);
+        report("typed envelope, cached writer (JSON)", json.length, jsonNanos);
+        report("typed envelope, cached writer (Smile)", smile.length, smileNanos);
+        report("typed envelope, cached writer (CBOR)", cbor.length, cborNanos);
+    }
+
+    private static long time(Serialization serialization) throws Exception {
+        // Warm-up pass, so the JIT and Blackbird's generated accessors are in place before measuring
+        for(int i = 0; i < ITERATIONS; i++) serialization.write();
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) serialization.write();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String path, int bytes, long nanos){
+        System.out.printf("  %-40s %5d bytes %8d ns/write %10d writes/s%n", path, bytes, nanos / ITERATIONS, ITERATIONS * 1_000_000_000L / nanos);
+    }
+
+    private static HttpResponse response(Object data){
+        return HttpResponse.builder()
+                .timeStamp(LocalDateTime.of(2024, 5, 2, 10, 15, 30).toString())
+                .data(data)
+                .message("Profile retrieved")
+                .status(HttpStatus.OK)
+                .statusCode(HttpStatus.OK.value())
+                .build();
+    }
+
+    private static UserDTO user(){
+        UserDTO user = new UserDTO();
+        user.setId(42L);
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setEmail("jane.doe@example.com");
+        user.setAddress("1 Main Street, Springfield");
+        user.setPhone("+1 555 0100");
+        user.setTitle("Accountant");
+        user.setBio("Handles the receivables of the northern region.");
+        user.setImageUrl("http://localhost:8080/user/image/3f2a9c.png");
+        user.setEnabled(true);
+        user.setNotLocked(true);
+        user.setCreatedAt(LocalDateTime.of(2023, 1, 9, 8, 0));
+        user.setVersion(7);
+        user.setRoleName("ROLE_MANAGER");
+        user.setPermissions("READ:USER,READ:CUSTOMER,UPDATE:CUSTOMER");
+        return user;
+    }
+
+    private interface Serialization {
+        void write() throws Exception;
+    }
+}
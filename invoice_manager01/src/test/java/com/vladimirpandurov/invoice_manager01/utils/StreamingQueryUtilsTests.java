@@ -0,0 +1,26 @@
+package com.vladimirpandurov.invoice_manager01.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingQueryUtilsTests {
+
+    @Test
+    void usesPositiveFetchSizeOutsideMySql() throws Exception {
+        try(Connection connection = DriverManager.getConnection("jdbc:h2:mem:streaming;MODE=MySQL");
+            PreparedStatement statement = StreamingQueryUtils.prepareStreaming(connection, "SELECT X FROM SYSTEM_RANGE(1, 5000)");
+            ResultSet resultSet = statement.executeQuery()){
+            assertTrue(statement.getFetchSize() > 0);
+            int rows = 0;
+            while(resultSet.next()) rows++;
+            assertEquals(5_000, rows);
+        }
+    }
+}
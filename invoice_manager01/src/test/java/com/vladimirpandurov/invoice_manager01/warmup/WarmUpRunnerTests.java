@@ -0,0 +1,84 @@
+package com.vladimirpandurov.invoice_manager01.warmup;
+
+import com.vladimirpandurov.invoice_manager01.TestDatabases;
+import com.vladimirpandurov.invoice_manager01.domain.Role;
+import com.vladimirpandurov.invoice_manager01.provider.TokenDenylist;
+import com.vladimirpandurov.invoice_manager01.provider.TokenProvider;
+import com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.EventRepositoryImpl;
+import com.vladimirpandurov.invoice_manager01.repository.JdbcImplementation.RoleRepositoryImpl;
+import com.vladimirpandurov.invoice_manager01.repository.RoleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the warm-up against an embedded H2 database built from schema.sql. No user has logged in there, so the
+ * hot-users step never reaches the user and role services.
+ */
+class WarmUpRunnerTests {
+
+    private static final String TIMER = "startup.warmup";
+    private DriverManagerDataSource dataSource;
+    private NamedParameterJdbcTemplate jdbc;
+    private TokenProvider tokenProvider;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = TestDatabases.application("warmup" + System.nanoTime());
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+        tokenProvider = new TokenProvider(new TokenDenylist());
+        ReflectionTestUtils.setField(tokenProvider, "secret", "test-secret");
+        tokenProvider.init();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void reportsEveryStepInOrder() {
+        Map<String, Long> report = runner(new RoleRepositoryImpl(jdbc, null, null, null))
+                .warmUp(System.nanoTime() + Duration.ofMinutes(1).toNanos());
+
+        List<String> steps = List.of("connection-pool", "role-catalog", "hot-users", "token", "password", "serialization");
+        assertEquals(steps, List.copyOf(report.keySet()));
+        report.values().forEach(millis -> assertTrue(millis >= 0));
+        steps.forEach(step -> assertEquals(1, meterRegistry.get(TIMER).tag("step", step).timer().count()));
+    }
+
+    @Test
+    void skipsTheStepsLeftOnceTheBudgetIsSpent() {
+        long deadline = System.nanoTime() + Duration.ofMillis(200).toNanos();
+        RoleRepository<Role> slowRoles = new RoleRepositoryImpl(jdbc, null, null, null) {
+            @Override
+            public Collection<Role> list(int page, int pageSize) {
+                while(System.nanoTime() < deadline) Thread.onSpinWait();
+                return super.list(page, pageSize);
+            }
+        };
+
+        Map<String, Long> report = runner(slowRoles).warmUp(deadline);
+
+        assertEquals(List.of("connection-pool", "role-catalog"), List.copyOf(report.keySet()));
+        assertNull(meterRegistry.find(TIMER).tag("step", "token").timer());
+        assertTrue(runner(slowRoles).warmUp(System.nanoTime()).isEmpty());
+    }
+
+    private WarmUpRunner runner(RoleRepository<Role> roleRepository){
+        return new WarmUpRunner(dataSource, roleRepository, null, new EventRepositoryImpl(jdbc), null, tokenProvider,
+                new BCryptPasswordEncoder(4), Jackson2ObjectMapperBuilder.json().build(), meterRegistry,
+                Duration.ofMinutes(1), 200);
+    }
+}
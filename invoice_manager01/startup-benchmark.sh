@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Measures time to the first successful /user/login and the resident set size for each startup mode.
+#
+#   mvn -B package                      -> jvm
+#   mvn -B -Pcds package                -> cds   (training run needs the database to be reachable; runs the
+#                                                 extracted application in target/cds, see the cds profile)
+#   mvn -B -Pnative native:compile      -> native
+#
+# Usage: ./startup-benchmark.sh <email> <password> [jvm|cds|native ...]
+set -euo pipefail
+
+EMAIL=$1
+PASSWORD=$2
+shift 2
+MODES=${*:-jvm cds native}
+PORT=${PORT:-8080}
+TARGET=$(cd "$(dirname "$0")" && pwd)/target
+JAR=$(ls "$TARGET"/*.jar | grep -v original | head -n 1)
+
+# Runs as the background job itself and replaces its shell with the application, so $! is the application's pid
+start() {
+  case $1 in
+    jvm) exec java -jar "$JAR" --server.port="$PORT" ;;
+    cds) cd "$TARGET"/cds && exec java -XX:SharedArchiveFile=application.jsa -jar "$(basename "${JAR%.jar}")-cds.jar" --server.port="$PORT" ;;
+    native) exec "$TARGET"/invoice_manager01 --server.port="$PORT" ;;
+  esac
+}
+
+port_in_use() {
+  (exec 3<>"/dev/tcp/localhost/$PORT") 2>/dev/null
+}
+
+for mode in $MODES; do
+  if port_in_use; then
+    echo "port $PORT is in use, stop whatever listens on it first"
+    exit 1
+  fi
+  begin=$(date +%s%N)
+  start "$mode" > "$TARGET/startup-$mode.log" 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null -H 'Content-Type: application/json' \
+      -d "{\"email\":\"$EMAIL\",\"password\":\"$PASSWORD\"}" "http://localhost:$PORT/user/login"; do
+    kill -0 "$pid" 2>/dev/null || { echo "$mode: process exited, see $TARGET/startup-$mode.log"; continue 2; }
+    sleep 0.05
+  done
+  elapsed=$(( ($(date +%s%N) - begin) / 1000000 ))
+  rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+  echo "$mode: first login after ${elapsed} ms, RSS ${rss} kB"
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  # The next mode must not find this one's socket still bound
+  for _ in $(seq 100); do port_in_use || break; sleep 0.1; done
+  if port_in_use; then
+    echo "$mode: port $PORT still in use after shutdown"
+    exit 1
+  fi
+done